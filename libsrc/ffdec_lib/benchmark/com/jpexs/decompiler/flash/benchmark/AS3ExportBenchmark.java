@@ -0,0 +1,96 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash.benchmark;
+
+import com.jpexs.decompiler.flash.SWF;
+import com.jpexs.decompiler.flash.exporters.modes.ScriptExportMode;
+import com.jpexs.decompiler.flash.exporters.script.AS3ScriptExporter;
+import com.jpexs.decompiler.flash.exporters.settings.ScriptExportSettings;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Export of all AS3 scripts of the SWF to files
+ *
+ * @author JPEXS
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AS3ExportBenchmark {
+
+    @Param({"as3/as3.swf", "flex/TestFlex.swf"})
+    public String swfFile;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private SWF swf;
+
+    private File outDir;
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkSwfs.configure();
+        swf = BenchmarkSwfs.loadSwf(BenchmarkSwfs.readSwf(swfFile));
+        outDir = Files.createTempDirectory("ffdec_benchmark").toFile();
+    }
+
+    @Setup(Level.Invocation)
+    public void clearCache() {
+        // measure the decompilation, not the cache
+        swf.clearScriptCache();
+    }
+
+    @TearDown
+    public void tearDown() {
+        delete(outDir);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                delete(f);
+            }
+        }
+
+        file.delete();
+    }
+
+    @Benchmark
+    public int exportActionScript3() throws Exception {
+        ScriptExportSettings exportSettings = new ScriptExportSettings(ScriptExportMode.AS, false);
+        return new AS3ScriptExporter().exportActionScript3(swf, null, outDir.getAbsolutePath(), swf.getAS3Packs(), exportSettings, parallel, null).size();
+    }
+}
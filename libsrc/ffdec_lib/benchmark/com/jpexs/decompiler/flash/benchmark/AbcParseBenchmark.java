@@ -0,0 +1,98 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash.benchmark;
+
+import com.jpexs.decompiler.flash.SWF;
+import com.jpexs.decompiler.flash.abc.ABC;
+import com.jpexs.decompiler.flash.abc.ABCInputStream;
+import com.jpexs.decompiler.flash.abc.avm2.AVM2Code;
+import com.jpexs.decompiler.flash.abc.types.MethodBody;
+import com.jpexs.decompiler.flash.tags.ABCContainerTag;
+import com.jpexs.helpers.MemoryInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parsing of ABC files and of the AVM2 code of method bodies
+ *
+ * @author JPEXS
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class AbcParseBenchmark {
+
+    @Param({"as3/as3.swf", "flex/TestFlex.swf", "freeactionscript.com/as3/weaponsystem.swf"})
+    public String swfFile;
+
+    private SWF swf;
+
+    private final List<ABCContainerTag> abcTags = new ArrayList<>();
+
+    private final List<byte[]> abcData = new ArrayList<>();
+
+    private final List<MethodBody> bodies = new ArrayList<>();
+
+    private final List<byte[]> codeData = new ArrayList<>();
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkSwfs.configure();
+        swf = BenchmarkSwfs.loadSwf(BenchmarkSwfs.readSwf(swfFile));
+        for (ABCContainerTag tag : swf.getAbcList()) {
+            ABC abc = tag.getABC();
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            abc.saveToStream(baos);
+            abcTags.add(tag);
+            abcData.add(baos.toByteArray());
+            for (MethodBody body : abc.bodies) {
+                bodies.add(body);
+                codeData.add(body.getCodeBytes());
+            }
+        }
+    }
+
+    @Benchmark
+    public void parseAbc(Blackhole blackhole) throws Exception {
+        for (int i = 0; i < abcData.size(); i++) {
+            blackhole.consume(new ABC(new ABCInputStream(new MemoryInputStream(abcData.get(i))), swf, abcTags.get(i)));
+        }
+    }
+
+    @Benchmark
+    public void parseAvm2Code(Blackhole blackhole) throws Exception {
+        for (int i = 0; i < codeData.size(); i++) {
+            blackhole.consume(new AVM2Code(new ABCInputStream(new MemoryInputStream(codeData.get(i))), bodies.get(i)));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash.benchmark;
+
+import com.jpexs.decompiler.flash.SWF;
+import com.jpexs.decompiler.flash.configuration.Configuration;
+import com.jpexs.helpers.Helper;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Loading of the SWF files from the testdata directory, the benchmarks are run
+ * from the ffdec_lib directory.
+ *
+ * @author JPEXS
+ */
+public class BenchmarkSwfs {
+
+    public static final String TESTDATA_DIR = "testdata";
+
+    public static byte[] readSwf(String name) {
+        File file = new File(TESTDATA_DIR, name);
+        if (!file.exists()) {
+            throw new IllegalArgumentException("SWF file not found: " + file.getAbsolutePath());
+        }
+
+        return Helper.readFile(file.getPath());
+    }
+
+    public static SWF loadSwf(byte[] data) throws IOException, InterruptedException {
+        return new SWF(new ByteArrayInputStream(data), false);
+    }
+
+    /**
+     * Sets the configuration which affects the measured code, so the results
+     * are comparable between runs
+     */
+    public static void configure() {
+        Configuration.parallelSpeedUp.set(false);
+        Configuration.autoDeobfuscate.set(false);
+        Configuration.persistentDecompilationCache.set(false);
+        Configuration.showStat = false;
+    }
+}
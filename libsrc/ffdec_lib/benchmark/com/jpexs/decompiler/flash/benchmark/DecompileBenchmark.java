@@ -0,0 +1,93 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash.benchmark;
+
+import com.jpexs.decompiler.flash.SWF;
+import com.jpexs.decompiler.flash.abc.ScriptPack;
+import com.jpexs.decompiler.flash.abc.types.ConvertData;
+import com.jpexs.decompiler.flash.configuration.Configuration;
+import com.jpexs.decompiler.flash.exporters.modes.ScriptExportMode;
+import com.jpexs.decompiler.flash.helpers.HighlightedTextWriter;
+import com.jpexs.decompiler.flash.tags.base.ASMSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Decompilation of all scripts of the SWF without the caches, the time is
+ * spent mostly in Graph.translate
+ *
+ * @author JPEXS
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DecompileBenchmark {
+
+    @Param({"as2/as2.swf", "freeactionscript.com/as2/flash-game-projectile-weapons-v3.swf", "as3/as3.swf", "flex/TestFlex.swf"})
+    public String swfFile;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private final List<ASMSource> asms = new ArrayList<>();
+
+    private final List<ScriptPack> packs = new ArrayList<>();
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkSwfs.configure();
+        SWF swf = BenchmarkSwfs.loadSwf(BenchmarkSwfs.readSwf(swfFile));
+        if (swf.isAS3()) {
+            packs.addAll(swf.getAS3Packs());
+        } else {
+            asms.addAll(swf.getASMs(false).values());
+        }
+    }
+
+    @Benchmark
+    public void decompileAs2(Blackhole blackhole) throws Exception {
+        for (ASMSource asm : asms) {
+            HighlightedTextWriter writer = new HighlightedTextWriter(Configuration.getCodeFormatting(), false);
+            asm.getActionScriptSource(writer, null);
+            blackhole.consume(writer.toString());
+        }
+    }
+
+    @Benchmark
+    public void decompileAs3(Blackhole blackhole) throws Exception {
+        for (ScriptPack pack : packs) {
+            HighlightedTextWriter writer = new HighlightedTextWriter(Configuration.getCodeFormatting(), false);
+            pack.toSource(writer, pack.abc.script_info.get(pack.scriptIndex).traits.traits, new ConvertData(), ScriptExportMode.AS, parallel);
+            blackhole.consume(writer.toString());
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash.benchmark;
+
+import com.jpexs.decompiler.flash.SWF;
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * SWF loading: decompression and SWFInputStream.readTagList
+ *
+ * @author JPEXS
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ReadTagListBenchmark {
+
+    @Param({"as2/as2.swf", "as3/as3.swf", "flex/TestFlex.swf", "freeactionscript.com/as3/weaponsystem.swf"})
+    public String swfFile;
+
+    @Param({"serial", "parallel", "lazy"})
+    public String mode;
+
+    private byte[] data;
+
+    @Setup
+    public void setup() {
+        BenchmarkSwfs.configure();
+        data = BenchmarkSwfs.readSwf(swfFile);
+    }
+
+    @Benchmark
+    public SWF readTagList() throws Exception {
+        return new SWF(new ByteArrayInputStream(data), "parallel".equals(mode), "lazy".equals(mode));
+    }
+}
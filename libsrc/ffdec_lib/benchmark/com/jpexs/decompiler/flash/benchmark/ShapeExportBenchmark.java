@@ -0,0 +1,106 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash.benchmark;
+
+import com.jpexs.decompiler.flash.SWF;
+import com.jpexs.decompiler.flash.exporters.commonshape.ExportRectangle;
+import com.jpexs.decompiler.flash.exporters.commonshape.Matrix;
+import com.jpexs.decompiler.flash.exporters.commonshape.SVGExporter;
+import com.jpexs.decompiler.flash.exporters.shape.BitmapExporter;
+import com.jpexs.decompiler.flash.tags.Tag;
+import com.jpexs.decompiler.flash.tags.base.ShapeTag;
+import com.jpexs.decompiler.flash.types.CXFORMWITHALPHA;
+import com.jpexs.decompiler.flash.types.RECT;
+import com.jpexs.helpers.SerializableImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Rendering of all shapes of the SWF with BitmapExporter and SVGExporter
+ *
+ * @author JPEXS
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ShapeExportBenchmark {
+
+    @Param({"freeactionscript.com/as2/flash-game-projectile-weapons-v3.swf", "freeactionscript.com/as3/space.swf", "freeactionscript.com/as3/weaponsystem.swf"})
+    public String swfFile;
+
+    @Param({"1"})
+    public double zoom;
+
+    private SWF swf;
+
+    private final List<ShapeTag> shapes = new ArrayList<>();
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkSwfs.configure();
+        swf = BenchmarkSwfs.loadSwf(BenchmarkSwfs.readSwf(swfFile));
+        for (Tag tag : swf.getTags()) {
+            if (tag instanceof ShapeTag) {
+                shapes.add((ShapeTag) tag);
+            }
+        }
+    }
+
+    @Benchmark
+    public void bitmapExport(Blackhole blackhole) {
+        for (ShapeTag st : shapes) {
+            RECT rect = st.getRect();
+            int width = (int) (rect.getWidth() * zoom / SWF.unitDivisor) + 1;
+            int height = (int) (rect.getHeight() * zoom / SWF.unitDivisor) + 1;
+            SerializableImage img = new SerializableImage(width, height, SerializableImage.TYPE_INT_ARGB_PRE);
+            img.fillTransparent();
+            Matrix m = Matrix.getScaleInstance(zoom);
+            m.translate(-rect.Xmin, -rect.Ymin);
+            BitmapExporter.export(swf, st.getShapes(), null, img, m, m, new CXFORMWITHALPHA());
+            blackhole.consume(img);
+        }
+    }
+
+    @Benchmark
+    public void svgExport(Blackhole blackhole) throws Exception {
+        for (ShapeTag st : shapes) {
+            ExportRectangle rect = new ExportRectangle(st.getRect());
+            rect.xMax *= zoom;
+            rect.yMax *= zoom;
+            rect.xMin *= zoom;
+            rect.yMin *= zoom;
+            SVGExporter exporter = new SVGExporter(rect, zoom);
+            st.toSVG(exporter, -2, new CXFORMWITHALPHA(), 0);
+            blackhole.consume(exporter.getSVG());
+        }
+    }
+}
@@ -17,6 +17,7 @@ package com.jpexs.decompiler.flash;
 
 import com.jpexs.helpers.SwfHeaderStreamSearch;
 import com.jpexs.helpers.streams.SeekableInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
@@ -37,6 +38,11 @@ public class BinarySWFBundle implements SWFBundle {
         search.process();
     }
 
+    public BinarySWFBundle(File file, boolean noCheck, SearchMode searchMode) {
+        search = new SWFSearch(new SwfHeaderStreamSearch(file), noCheck, searchMode);
+        search.process();
+    }
+
     @Override
     public int length() {
         return search.length();
@@ -61,7 +67,7 @@ public class BinarySWFBundle implements SWFBundle {
         }
         key = key.substring(1, key.length() - 1);
         try {
-            int address = Integer.parseInt(key);
+            long address = Long.parseLong(key);
             return search.get(null, address);
         } catch (IOException | NumberFormatException iex) {
             return null;
@@ -19,6 +19,7 @@ import com.jpexs.decompiler.flash.abc.ScriptPack;
 import com.jpexs.decompiler.flash.abc.types.ConvertData;
 import com.jpexs.decompiler.flash.abc.types.ScriptInfo;
 import com.jpexs.decompiler.flash.action.ActionList;
+import com.jpexs.decompiler.flash.cache.PersistentDecompilationCache;
 import com.jpexs.decompiler.flash.cache.ScriptDecompiledListener;
 import com.jpexs.decompiler.flash.configuration.Configuration;
 import com.jpexs.decompiler.flash.exporters.modes.ScriptExportMode;
@@ -26,105 +27,239 @@ import com.jpexs.decompiler.flash.helpers.HighlightedText;
 import com.jpexs.decompiler.flash.helpers.HighlightedTextWriter;
 import com.jpexs.decompiler.flash.tags.base.ASMSource;
 import com.jpexs.helpers.ImmediateFuture;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
+ * Decompiles scripts in background threads.
+ *
+ * Queued tasks are ordered by their priority, so the script which the user
+ * looks at does not wait for the background work. Requests for a script which
+ * is already queued or running share the same task, the task is cancelled when
+ * all of its requests are cancelled.
  *
  * @author JPEXS
  */
 public class DecompilerPool {
 
+    private static final Logger logger = Logger.getLogger(DecompilerPool.class.getName());
+
+    public static enum Priority {
+
+        /**
+         * Script displayed to the user
+         */
+        INTERACTIVE,
+        /**
+         * Searching in scripts
+         */
+        SEARCH,
+        /**
+         * Exports and other background work
+         */
+        EXPORT
+    }
+
     private final ThreadPoolExecutor executor;
 
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Queued and running tasks by ScriptPack or ASMSource, guarded by itself
+     */
+    private final Map<Object, DecompilationTask> inFlight = new HashMap<>();
+
+    private final LaneStatistics[] statistics;
+
     public DecompilerPool() {
         int threadCount = Configuration.getParallelThreadCount();
         executor = new ThreadPoolExecutor(threadCount, threadCount,
                 0L, TimeUnit.MILLISECONDS,
-                new LinkedBlockingQueue<>());
+                new PriorityBlockingQueue<>());
+
+        Priority[] priorities = Priority.values();
+        statistics = new LaneStatistics[priorities.length];
+        for (int i = 0; i < priorities.length; i++) {
+            statistics[i] = new LaneStatistics(priorities[i]);
+        }
     }
 
     public Future<HighlightedText> submitTask(ASMSource src, ActionList actions, ScriptDecompiledListener<HighlightedText> listener) {
+        return submitTask(src, actions, listener, Priority.INTERACTIVE);
+    }
+
+    public Future<HighlightedText> submitTask(ASMSource src, ActionList actions, ScriptDecompiledListener<HighlightedText> listener, Priority priority) {
         Callable<HighlightedText> callable = new Callable<HighlightedText>() {
             @Override
             public HighlightedText call() throws Exception {
-                if (listener != null) {
-                    listener.onStart();
-                }
+                // the persistent cache is keyed on the bytes of the source, not on the given actions
+                boolean persistent = PersistentDecompilationCache.isEnabled() && actions == null;
+                HighlightedText result = persistent ? PersistentDecompilationCache.get(src) : null;
+                if (result == null) {
+                    HighlightedTextWriter writer = new HighlightedTextWriter(Configuration.getCodeFormatting(), true);
+                    writer.startFunction("!script");
+                    src.getActionScriptSource(writer, actions);
+                    writer.endFunction();
 
-                HighlightedTextWriter writer = new HighlightedTextWriter(Configuration.getCodeFormatting(), true);
-                writer.startFunction("!script");
-                src.getActionScriptSource(writer, actions);
-                writer.endFunction();
+                    checkInterrupted();
+                    result = new HighlightedText(writer);
+                    if (persistent) {
+                        PersistentDecompilationCache.put(src, result);
+                    }
+                }
 
-                HighlightedText result = new HighlightedText(writer);
                 SWF swf = src.getSwf();
                 if (swf != null) {
                     swf.as2Cache.put(src, result);
                 }
 
-                if (listener != null) {
-                    listener.onComplete(result);
-                }
-
                 return result;
             }
         };
 
-        return submit(callable);
+        Object key = actions == null ? src : new SourceActionsKey(src, actions);
+        return submit(key, callable, listener, priority);
     }
 
     public Future<HighlightedText> submitTask(ScriptPack pack, ScriptDecompiledListener<HighlightedText> listener) {
+        return submitTask(pack, listener, Priority.INTERACTIVE);
+    }
+
+    public Future<HighlightedText> submitTask(ScriptPack pack, ScriptDecompiledListener<HighlightedText> listener, Priority priority) {
         Callable<HighlightedText> callable = new Callable<HighlightedText>() {
             @Override
             public HighlightedText call() throws Exception {
-                if (listener != null) {
-                    listener.onStart();
-                }
+                boolean persistent = PersistentDecompilationCache.isEnabled() && pack.scriptIndex > -1;
+                HighlightedText result = persistent ? PersistentDecompilationCache.get(pack) : null;
+                if (result == null) {
+                    int scriptIndex = pack.scriptIndex;
+                    ScriptInfo script = null;
+                    if (scriptIndex > -1) {
+                        script = pack.abc.script_info.get(scriptIndex);
+                    }
+                    boolean parallel = Configuration.parallelSpeedUp.get();
+                    HighlightedTextWriter writer = new HighlightedTextWriter(Configuration.getCodeFormatting(), true);
+                    pack.toSource(writer, script == null ? null : script.traits.traits, new ConvertData(), ScriptExportMode.AS, parallel);
 
-                int scriptIndex = pack.scriptIndex;
-                ScriptInfo script = null;
-                if (scriptIndex > -1) {
-                    script = pack.abc.script_info.get(scriptIndex);
+                    checkInterrupted();
+                    result = new HighlightedText(writer);
+                    if (persistent) {
+                        PersistentDecompilationCache.put(pack, result);
+                    }
                 }
-                boolean parallel = Configuration.parallelSpeedUp.get();
-                HighlightedTextWriter writer = new HighlightedTextWriter(Configuration.getCodeFormatting(), true);
-                pack.toSource(writer, script == null ? null : script.traits.traits, new ConvertData(), ScriptExportMode.AS, parallel);
 
-                HighlightedText result = new HighlightedText(writer);
                 SWF swf = pack.getSwf();
                 if (swf != null) {
                     swf.as3Cache.put(pack, result);
                 }
 
-                if (listener != null) {
-                    listener.onComplete(result);
-                }
-
                 return result;
             }
         };
 
-        return submit(callable);
+        return submit(pack, callable, listener, priority);
     }
 
-    private Future<HighlightedText> submit(Callable<HighlightedText> callable) {
+    /**
+     * Key of a task decompiling an ASMSource from the given actions, so
+     * requests with different actions do not share the same task.
+     */
+    private static final class SourceActionsKey {
+
+        private final ASMSource src;
+
+        private final ActionList actions;
+
+        public SourceActionsKey(ASMSource src, ActionList actions) {
+            this.src = src;
+            this.actions = actions;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(src) + System.identityHashCode(actions);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof SourceActionsKey)) {
+                return false;
+            }
+            SourceActionsKey other = (SourceActionsKey) obj;
+            return src == other.src && actions == other.actions;
+        }
+    }
+
+    private static void checkInterrupted() throws InterruptedException {
+        // partial result of cancelled task must not be cached
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    private Future<HighlightedText> submit(Object key, Callable<HighlightedText> callable, ScriptDecompiledListener<HighlightedText> listener, Priority priority) {
         boolean parallel = Configuration.parallelSpeedUp.get();
         if (parallel) {
-            Future<HighlightedText> f = executor.submit(callable);
-            return f;
+            DecompilationTask task;
+            synchronized (inFlight) {
+                task = inFlight.get(key);
+                if (task != null) {
+                    task.handleCount++;
+                    if (priority.compareTo(task.priority) < 0 && executor.remove(task)) {
+                        // still queued, move to the faster lane
+                        task.priority = priority;
+                        task.sequenceNumber = sequence.getAndIncrement();
+                        executor.execute(task);
+                    }
+                } else {
+                    task = new DecompilationTask(key, callable, priority, sequence.getAndIncrement());
+                    task.handleCount = 1;
+                    inFlight.put(key, task);
+                    try {
+                        executor.execute(task);
+                    } catch (RejectedExecutionException ex) {
+                        inFlight.remove(key);
+                        throw ex;
+                    }
+                }
+            }
+
+            if (listener != null) {
+                task.addListener(listener);
+            }
+
+            return new DecompilationFuture(task);
         } else {
             boolean cancelled = false;
             Throwable throwable = null;
             HighlightedText result = null;
             try {
+                if (listener != null) {
+                    listener.onStart();
+                }
+
                 result = callable.call();
+                if (listener != null) {
+                    listener.onComplete(result);
+                }
             } catch (InterruptedException ex) {
                 cancelled = true;
             } catch (Exception ex) {
@@ -135,39 +270,70 @@ public class DecompilerPool {
         }
     }
 
+    private void release(DecompilationTask task, boolean mayInterruptIfRunning) {
+        synchronized (inFlight) {
+            task.handleCount--;
+            if (task.handleCount > 0) {
+                return;
+            }
+
+            inFlight.remove(task.key, task);
+        }
+
+        task.cancel(mayInterruptIfRunning);
+        executor.remove(task);
+    }
+
+    public LaneStatistics getStatistics(Priority priority) {
+        return statistics[priority.ordinal()];
+    }
+
     public String getStat() {
-        return "core: " + executor.getCorePoolSize()
-                + " size: " + executor.getPoolSize()
-                + " largest: " + executor.getLargestPoolSize()
-                + " max: " + executor.getMaximumPoolSize()
-                + " active: " + executor.getActiveCount()
-                + " count: " + executor.getTaskCount()
-                + " completed: " + executor.getCompletedTaskCount();
+        StringBuilder sb = new StringBuilder();
+        sb.append("core: ").append(executor.getCorePoolSize())
+                .append(" size: ").append(executor.getPoolSize())
+                .append(" largest: ").append(executor.getLargestPoolSize())
+                .append(" max: ").append(executor.getMaximumPoolSize())
+                .append(" active: ").append(executor.getActiveCount())
+                .append(" count: ").append(executor.getTaskCount())
+                .append(" completed: ").append(executor.getCompletedTaskCount());
+        for (LaneStatistics s : statistics) {
+            sb.append(" ").append(s);
+        }
+
+        return sb.toString();
     }
 
     public HighlightedText decompile(ASMSource src, ActionList actions) throws InterruptedException {
-        Future<HighlightedText> future = submitTask(src, actions, null);
-        try {
-            return future.get();
-        } catch (InterruptedException ex) {
-            future.cancel(true);
-            throw ex;
-        } catch (ExecutionException ex) {
-            Logger.getLogger(DecompilerPool.class.getName()).log(Level.SEVERE, null, ex);
-        }
+        return decompile(src, actions, Priority.INTERACTIVE);
+    }
 
-        return null;
+    public HighlightedText decompile(ASMSource src, ActionList actions, Priority priority) throws InterruptedException {
+        return get(submitTask(src, actions, null, priority));
     }
 
     public HighlightedText decompile(ScriptPack pack) throws InterruptedException {
-        Future<HighlightedText> future = submitTask(pack, null);
+        return decompile(pack, Priority.INTERACTIVE);
+    }
+
+    public HighlightedText decompile(ScriptPack pack, Priority priority) throws InterruptedException {
+        return get(submitTask(pack, null, priority));
+    }
+
+    private HighlightedText get(Future<HighlightedText> future) throws InterruptedException {
         try {
             return future.get();
         } catch (InterruptedException ex) {
             future.cancel(true);
             throw ex;
+        } catch (CancellationException ex) {
+            throw new InterruptedException();
         } catch (ExecutionException ex) {
-            Logger.getLogger(DecompilerPool.class.getName()).log(Level.SEVERE, null, ex);
+            if (ex.getCause() instanceof InterruptedException) {
+                throw (InterruptedException) ex.getCause();
+            }
+
+            logger.log(Level.SEVERE, null, ex);
         }
 
         return null;
@@ -178,4 +344,311 @@ public class DecompilerPool {
         if (!executor.awaitTermination(100, TimeUnit.SECONDS)) {
         }
     }
+
+    /**
+     * Queue wait and run times of the tasks with one priority
+     */
+    public static class LaneStatistics {
+
+        private final Priority priority;
+
+        private final AtomicLong taskCount = new AtomicLong();
+
+        private final AtomicLong cancelledCount = new AtomicLong();
+
+        private final AtomicLong queueWaitTime = new AtomicLong();
+
+        private final AtomicLong runTime = new AtomicLong();
+
+        private final AtomicLong maxQueueWaitTime = new AtomicLong();
+
+        private LaneStatistics(Priority priority) {
+            this.priority = priority;
+        }
+
+        private void add(long queueWait, long run, boolean cancelled) {
+            taskCount.incrementAndGet();
+            if (cancelled) {
+                cancelledCount.incrementAndGet();
+            }
+
+            queueWaitTime.addAndGet(queueWait);
+            runTime.addAndGet(run);
+            long max;
+            while ((max = maxQueueWaitTime.get()) < queueWait && !maxQueueWaitTime.compareAndSet(max, queueWait)) {
+            }
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+
+        public long getTaskCount() {
+            return taskCount.get();
+        }
+
+        public long getCancelledCount() {
+            return cancelledCount.get();
+        }
+
+        /**
+         * Gets the total time which the tasks spent in the queue
+         *
+         * @return Time in nanoseconds
+         */
+        public long getQueueWaitTime() {
+            return queueWaitTime.get();
+        }
+
+        /**
+         * Gets the total run time of the tasks
+         *
+         * @return Time in nanoseconds
+         */
+        public long getRunTime() {
+            return runTime.get();
+        }
+
+        /**
+         * Gets the longest time which a task spent in the queue
+         *
+         * @return Time in nanoseconds
+         */
+        public long getMaxQueueWaitTime() {
+            return maxQueueWaitTime.get();
+        }
+
+        @Override
+        public String toString() {
+            long count = Math.max(1, taskCount.get());
+            return priority.name().toLowerCase() + ": " + taskCount.get()
+                    + " cancelled: " + cancelledCount.get()
+                    + " avg wait: " + TimeUnit.NANOSECONDS.toMillis(queueWaitTime.get() / count) + "ms"
+                    + " max wait: " + TimeUnit.NANOSECONDS.toMillis(maxQueueWaitTime.get()) + "ms"
+                    + " avg run: " + TimeUnit.NANOSECONDS.toMillis(runTime.get() / count) + "ms";
+        }
+    }
+
+    private class DecompilationTask extends FutureTask<HighlightedText> implements Comparable<DecompilationTask> {
+
+        private final Object key;
+
+        private volatile Priority priority;
+
+        private volatile long sequenceNumber;
+
+        /**
+         * Number of not cancelled futures, guarded by inFlight
+         */
+        private int handleCount;
+
+        private final long submitTime = System.nanoTime();
+
+        private volatile long startTime;
+
+        private volatile long endTime;
+
+        private final List<ScriptDecompiledListener<HighlightedText>> listeners = new ArrayList<>();
+
+        private boolean started;
+
+        private HighlightedText result;
+
+        private DecompilationTask(Object key, Callable<HighlightedText> callable, Priority priority, long sequenceNumber) {
+            super(callable);
+            this.key = key;
+            this.priority = priority;
+            this.sequenceNumber = sequenceNumber;
+        }
+
+        @Override
+        public void run() {
+            if (!isDone()) {
+                fireStart();
+            }
+
+            super.run();
+        }
+
+        @Override
+        protected void set(HighlightedText v) {
+            if (isCancelled()) {
+                return;
+            }
+
+            // listeners and statistics are updated before the waiting threads are released
+            fireComplete(v);
+            finish(false);
+            super.set(v);
+        }
+
+        @Override
+        protected void setException(Throwable t) {
+            if (isCancelled()) {
+                return;
+            }
+
+            finish(t instanceof InterruptedException);
+            super.setException(t);
+        }
+
+        @Override
+        public int compareTo(DecompilationTask o) {
+            int ret = priority.compareTo(o.priority);
+            if (ret != 0) {
+                return ret;
+            }
+
+            return Long.compare(sequenceNumber, o.sequenceNumber);
+        }
+
+        private void addListener(ScriptDecompiledListener<HighlightedText> listener) {
+            boolean start;
+            HighlightedText res;
+            synchronized (this) {
+                start = started;
+                res = result;
+                if (res == null) {
+                    listeners.add(listener);
+                }
+            }
+
+            if (start) {
+                listener.onStart();
+            }
+
+            if (res != null) {
+                listener.onComplete(res);
+            }
+        }
+
+        private void fireStart() {
+            startTime = System.nanoTime();
+            List<ScriptDecompiledListener<HighlightedText>> list;
+            synchronized (this) {
+                started = true;
+                list = new ArrayList<>(listeners);
+            }
+
+            for (ScriptDecompiledListener<HighlightedText> listener : list) {
+                listener.onStart();
+            }
+        }
+
+        private void fireComplete(HighlightedText result) {
+            List<ScriptDecompiledListener<HighlightedText>> list;
+            synchronized (this) {
+                this.result = result;
+                list = new ArrayList<>(listeners);
+                listeners.clear();
+            }
+
+            for (ScriptDecompiledListener<HighlightedText> listener : list) {
+                listener.onComplete(result);
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                finish(true);
+            }
+
+            synchronized (inFlight) {
+                inFlight.remove(key, this);
+            }
+        }
+
+        private void finish(boolean cancelled) {
+            endTime = System.nanoTime();
+            long queueWait = startTime == 0 ? endTime - submitTime : startTime - submitTime;
+            long run = startTime == 0 ? 0 : endTime - startTime;
+            getStatistics(priority).add(queueWait, run, cancelled);
+            if (logger.isLoggable(Level.FINE)) {
+                logger.log(Level.FINE, "Decompilation of {0} ({1}) waited {2} ms, ran {3} ms{4}", new Object[]{key, priority, TimeUnit.NANOSECONDS.toMillis(queueWait), TimeUnit.NANOSECONDS.toMillis(run), cancelled ? ", cancelled" : ""});
+            }
+        }
+    }
+
+    /**
+     * Future of one request, the shared task is cancelled when all its
+     * requests are cancelled.
+     */
+    public class DecompilationFuture implements Future<HighlightedText> {
+
+        private final DecompilationTask task;
+
+        private volatile boolean cancelled;
+
+        private DecompilationFuture(DecompilationTask task) {
+            this.task = task;
+        }
+
+        public Priority getPriority() {
+            return task.priority;
+        }
+
+        /**
+         * Gets the time which the task spent in the queue
+         *
+         * @return Time in nanoseconds, -1 when not started
+         */
+        public long getQueueWaitTime() {
+            long start = task.startTime;
+            return start == 0 ? -1 : start - task.submitTime;
+        }
+
+        /**
+         * Gets the run time of the task
+         *
+         * @return Time in nanoseconds, -1 when not finished
+         */
+        public long getRunTime() {
+            long start = task.startTime;
+            long end = task.endTime;
+            return start == 0 || end == 0 ? -1 : end - start;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            synchronized (this) {
+                if (cancelled || task.isDone()) {
+                    return false;
+                }
+
+                cancelled = true;
+            }
+
+            release(task, mayInterruptIfRunning);
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled || task.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return cancelled || task.isDone();
+        }
+
+        @Override
+        public HighlightedText get() throws InterruptedException, ExecutionException {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+
+            return task.get();
+        }
+
+        @Override
+        public HighlightedText get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+
+            return task.get(timeout, unit);
+        }
+    }
 }
@@ -41,20 +41,51 @@ public class RetryTask {
             } catch (InterruptedException ex) {
                 throw ex;
             } catch (Exception ex) {
-                if (handler == null) {
-                    throw ex;
-                }
-
-                switch (handler.handle(ex)) {
-                    case AbortRetryIgnoreHandler.ABORT:
-                        throw ex;
-                    case AbortRetryIgnoreHandler.RETRY:
-                        retry = true;
-                        break;
-                    case AbortRetryIgnoreHandler.IGNORE:
-                        break;
-                }
+                retry = handle(ex);
             }
         } while (retry);
     }
+
+    /**
+     * Handles the exception of the first run, which was executed elsewhere
+     * (for example in a worker thread), and runs the task again when retry is
+     * selected
+     *
+     * @param ex Exception of the first run
+     * @throws IOException On abort
+     * @throws InterruptedException On interrupt
+     */
+    public void handleFailure(Exception ex) throws IOException, InterruptedException {
+        if (ex instanceof InterruptedException) {
+            throw (InterruptedException) ex;
+        }
+
+        if (handle(ex)) {
+            run();
+        }
+    }
+
+    private boolean handle(Exception ex) throws IOException {
+        if (handler == null) {
+            throw rethrow(ex);
+        }
+
+        switch (handler.handle(ex)) {
+            case AbortRetryIgnoreHandler.ABORT:
+                throw rethrow(ex);
+            case AbortRetryIgnoreHandler.RETRY:
+                return true;
+        }
+
+        return false;
+    }
+
+    private static IOException rethrow(Exception ex) {
+        // the task can throw only IOException and unchecked exceptions
+        if (ex instanceof IOException) {
+            return (IOException) ex;
+        }
+
+        throw (RuntimeException) ex;
+    }
 }
@@ -80,6 +80,7 @@ import com.jpexs.decompiler.flash.exporters.modes.ScriptExportMode;
 import com.jpexs.decompiler.flash.exporters.script.AS2ScriptExporter;
 import com.jpexs.decompiler.flash.exporters.script.AS3ScriptExporter;
 import com.jpexs.decompiler.flash.exporters.settings.ScriptExportSettings;
+import com.jpexs.decompiler.flash.exporters.shape.IEdge;
 import com.jpexs.decompiler.flash.exporters.shape.ShapeExportData;
 import com.jpexs.decompiler.flash.helpers.HighlightedText;
 import com.jpexs.decompiler.flash.helpers.HighlightedTextWriter;
@@ -131,6 +132,7 @@ import com.jpexs.decompiler.flash.tags.gfx.DefineCompactedFont;
 import com.jpexs.decompiler.flash.timeline.AS2Package;
 import com.jpexs.decompiler.flash.timeline.Frame;
 import com.jpexs.decompiler.flash.timeline.FrameScript;
+import com.jpexs.decompiler.flash.timeline.RasterCacheKey;
 import com.jpexs.decompiler.flash.timeline.TagScript;
 import com.jpexs.decompiler.flash.timeline.Timeline;
 import com.jpexs.decompiler.flash.timeline.Timelined;
@@ -159,8 +161,11 @@ import com.jpexs.helpers.Cache;
 import com.jpexs.helpers.Helper;
 import com.jpexs.helpers.ImmediateFuture;
 import com.jpexs.helpers.NulStream;
+import com.jpexs.helpers.ParallelDeflaterOutputStream;
 import com.jpexs.helpers.ProgressListener;
 import com.jpexs.helpers.SerializableImage;
+import com.jpexs.helpers.SharedForkJoinPool;
+import com.jpexs.helpers.stat.Metrics;
 import com.jpexs.helpers.utf8.Utf8Helper;
 import java.awt.AlphaComposite;
 import java.awt.Color;
@@ -169,29 +174,40 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.geom.AffineTransform;
 import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.EmptyStackException;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.InflaterInputStream;
 
@@ -274,6 +290,27 @@ public final class SWF implements SWFContainerItem, Timelined {
     @Internal
     public byte[] originalUncompressedData;
 
+    /**
+     * Memory mapped uncompressed data, used instead of uncompressedData when
+     * the SWF was opened in mapped mode
+     */
+    @Internal
+    public ByteBuffer uncompressedDataBuffer;
+
+    /**
+     * Temporary file of uncompressedDataBuffer which was not deleted yet
+     */
+    private File mappedTempFile;
+
+    private static final List<File> MAPPED_TEMP_FILES = new ArrayList<>();
+
+    /**
+     * Hash of all ABC tags used by the persistent decompilation cache, only
+     * valid while the SWF is not modified
+     */
+    @Internal
+    public volatile String abcContentHash;
+
     /**
      * ScaleForm GFx
      */
@@ -310,6 +347,10 @@ public final class SWF implements SWFContainerItem, Timelined {
 
     private static final Logger logger = Logger.getLogger(SWF.class.getName());
 
+    private static final int COMPRESSION_BUFFER_SIZE = 64 * 1024;
+
+    private static final int MAX_LZMA_CANDIDATE_DICTIONARY_SIZE = 8 * 1024 * 1024;
+
     @Internal
     private boolean isModified;
 
@@ -329,16 +370,19 @@ public final class SWF implements SWFContainerItem, Timelined {
     private final IdentifiersDeobfuscation deobfuscation = new IdentifiersDeobfuscation();
 
     @Internal
-    private final Cache<String, SerializableImage> frameCache = Cache.getInstance(false, false, "frame");
+    private final Cache<String, SerializableImage> frameCache = Cache.getInstance(false, false, "frame", Configuration.maxCacheSizeImage, SerializableImage::getEstimatedSize);
 
     @Internal
-    private final Cache<CharacterTag, RECT> rectCache = Cache.getInstance(true, true, "rect");
+    private final Cache<RasterCacheKey, SerializableImage> rasterCache = Cache.getInstance(false, true, "raster", Configuration.maxCacheSizeRaster, SerializableImage::getEstimatedSize);
 
     @Internal
-    private final Cache<SHAPE, ShapeExportData> shapeExportDataCache = Cache.getInstance(true, true, "shapeExportData");
+    private final Cache<CharacterTag, RECT> rectCache = Cache.getInstance(true, true, "rect", Configuration.maxCacheSizeRect, (RECT rect) -> 32);
 
     @Internal
-    private final Cache<SoundTag, byte[]> soundCache = Cache.getInstance(false, false, "sound");
+    private final Cache<SHAPE, ShapeExportData> shapeExportDataCache = Cache.getInstance(true, true, "shapeExportData", Configuration.maxCacheSizeShapeExportData, SWF::getShapeExportDataSize);
+
+    @Internal
+    private final Cache<SoundTag, byte[]> soundCache = Cache.getInstance(false, false, "sound", Configuration.maxCacheSizeSound, (byte[] data) -> data.length);
 
     @Internal
     public final AS2Cache as2Cache = new AS2Cache();
@@ -400,6 +444,9 @@ public final class SWF implements SWFContainerItem, Timelined {
         as2Cache.clear();
         as3Cache.clear();
         frameCache.clear();
+        rasterCache.clear();
+        rectCache.clear();
+        shapeExportDataCache.clear();
         soundCache.clear();
 
         timeline = null;
@@ -407,6 +454,7 @@ public final class SWF implements SWFContainerItem, Timelined {
         dumpInfo = null;
         jtt = null;
         binaryData = null;
+        releaseMappedData();
     }
 
     private void clearDumpInfo(DumpInfo di) {
@@ -865,13 +913,96 @@ public final class SWF implements SWFContainerItem, Timelined {
      * @throws IOException
      */
     public void saveTo(OutputStream os) throws IOException {
-        byte[] uncompressedData = saveToByteArray();
-        compress(new ByteArrayInputStream(uncompressedData), os, compression, lzmaProperties);
+        saveTo(os, gfx);
     }
 
+    /**
+     * Saves this SWF into new file. The file is streamed to the output: the
+     * file length is computed from the tag lengths first, then the tags are
+     * compressed on the fly. Unmodified tags are copied from their original
+     * bytes.
+     *
+     * @param os OutputStream to save SWF in
+     * @param gfx Write GFX signature
+     * @throws IOException
+     */
     public void saveTo(OutputStream os, boolean gfx) throws IOException {
-        byte[] uncompressedData = saveToByteArray(gfx);
-        compress(new ByteArrayInputStream(uncompressedData), os, compression, lzmaProperties);
+        fixCharactersOrder(false);
+
+        List<ByteArrayRange> parts = new ArrayList<>();
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                SWFOutputStream sos = new SWFOutputStream(baos, version)) {
+            sos.writeRECT(displayRect);
+            sos.writeFIXED8(frameRate);
+            sos.writeUI16(frameCount);
+            parts.add(new ByteArrayRange(baos.toByteArray()));
+        }
+
+        // modified tags are serialized here, because their length is needed for the file length
+        for (Tag tag : getLocalTags()) {
+            parts.add(tag.getTagBytes());
+        }
+
+        if (hasEndTag) {
+            parts.add(new ByteArrayRange(new byte[2]));
+        }
+
+        long fileSize = 8;
+        for (ByteArrayRange part : parts) {
+            fileSize += part.getLength();
+        }
+
+        SWFOutputStream sos = new SWFOutputStream(os, version);
+        sos.write(getHeaderBytes(compression, gfx));
+        sos.writeUI8(version);
+        sos.writeUI32(fileSize);
+
+        if ((compression == SWFCompression.LZMA || compression == SWFCompression.LZMA_ABC) && Configuration.parallelCompression.get()) {
+            compressLZMAParallel(parts, os, compression, lzmaProperties, fileSize - 8);
+        } else if (compression == SWFCompression.LZMA || compression == SWFCompression.LZMA_ABC) {
+            Enumeration<InputStream> partStreams = new Enumeration<InputStream>() {
+                private int i = 0;
+
+                @Override
+                public boolean hasMoreElements() {
+                    return i < parts.size();
+                }
+
+                @Override
+                public InputStream nextElement() {
+                    InputStream ret = parts.get(i).getInputStream();
+                    parts.set(i++, null);
+                    return ret;
+                }
+            };
+
+            compressLZMA(new SequenceInputStream(partStreams), os, compression, lzmaProperties, fileSize - 8);
+        } else if (compression == SWFCompression.ZLIB && Configuration.parallelCompression.get()) {
+            ParallelDeflaterOutputStream dos = new ParallelDeflaterOutputStream(os);
+            for (int i = 0; i < parts.size(); i++) {
+                parts.get(i).writeTo(dos);
+                parts.set(i, null);
+            }
+
+            dos.finish();
+        } else if (compression == SWFCompression.ZLIB) {
+            Deflater deflater = new Deflater();
+            try {
+                DeflaterOutputStream dos = new DeflaterOutputStream(os, deflater, COMPRESSION_BUFFER_SIZE);
+                for (int i = 0; i < parts.size(); i++) {
+                    parts.get(i).writeTo(dos);
+                    parts.set(i, null);
+                }
+
+                dos.finish();
+            } finally {
+                deflater.end();
+            }
+        } else {
+            for (ByteArrayRange part : parts) {
+                part.writeTo(os);
+            }
+        }
     }
 
     public byte[] getHeaderBytes() {
@@ -984,54 +1115,14 @@ public final class SWF implements SWFContainerItem, Timelined {
         sos.writeUI8(version);
         sos.writeUI32(fileSize);
 
-        if (compression == SWFCompression.LZMA || compression == SWFCompression.LZMA_ABC) {
-            long uncompressedLength = fileSize - 8;
-            Encoder enc = new Encoder();
-            if (lzmaProperties == null) {
-                // todo: the bytes are from a sample swf
-                lzmaProperties = new byte[]{93, 0, 0, 32, 0};
-            }
-
-            int val = lzmaProperties[0] & 0xFF;
-            int lc = val % 9;
-            int remainder = val / 9;
-            int lp = remainder % 5;
-            int pb = remainder / 5;
-            int dictionarySize = 0;
-            for (int i = 0; i < 4; i++) {
-                dictionarySize += ((int) (lzmaProperties[1 + i]) & 0xFF) << (i * 8);
-            }
-            if (Configuration.lzmaFastBytes.get() > 0) {
-                enc.SetNumFastBytes(Configuration.lzmaFastBytes.get());
-            }
-            enc.SetDictionarySize(dictionarySize);
-            enc.SetLcLpPb(lc, lp, pb);
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            enc.SetEndMarkerMode(true);
-            enc.Code(is, baos, -1, -1, null);
-            byte[] data = baos.toByteArray();
-            if (compression == SWFCompression.LZMA) {
-                byte[] udata = new byte[4];
-                udata[0] = (byte) (data.length & 0xFF);
-                udata[1] = (byte) ((data.length >> 8) & 0xFF);
-                udata[2] = (byte) ((data.length >> 16) & 0xFF);
-                udata[3] = (byte) ((data.length >> 24) & 0xFF);
-                os.write(udata);
-            }
-            enc.WriteCoderProperties(os);
-            if (compression == SWFCompression.LZMA_ABC) {
-                byte[] udata = new byte[8];
-                udata[0] = (byte) (uncompressedLength & 0xFF);
-                udata[1] = (byte) ((uncompressedLength >> 8) & 0xFF);
-                udata[2] = (byte) ((uncompressedLength >> 16) & 0xFF);
-                udata[3] = (byte) ((uncompressedLength >> 24) & 0xFF);
-                udata[4] = (byte) ((uncompressedLength >> 32) & 0xFF);
-                udata[5] = (byte) ((uncompressedLength >> 40) & 0xFF);
-                udata[6] = (byte) ((uncompressedLength >> 48) & 0xFF);
-                udata[7] = (byte) ((uncompressedLength >> 56) & 0xFF);
-                os.write(udata);
-            }
-            os.write(data);
+        if ((compression == SWFCompression.LZMA || compression == SWFCompression.LZMA_ABC) && Configuration.parallelCompression.get()) {
+            compressLZMAParallel(Collections.singletonList(new ByteArrayRange(Helper.readStream(is))), os, compression, lzmaProperties, fileSize - 8);
+        } else if (compression == SWFCompression.LZMA || compression == SWFCompression.LZMA_ABC) {
+            compressLZMA(is, os, compression, lzmaProperties, fileSize - 8);
+        } else if (compression == SWFCompression.ZLIB && Configuration.parallelCompression.get()) {
+            ParallelDeflaterOutputStream dos = new ParallelDeflaterOutputStream(os);
+            Helper.copyStream(is, dos);
+            dos.finish();
         } else if (compression == SWFCompression.ZLIB) {
             DeflaterOutputStream dos = new DeflaterOutputStream(os);
             try {
@@ -1044,6 +1135,146 @@ public final class SWF implements SWFContainerItem, Timelined {
         }
     }
 
+    /**
+     * Compresses the SWF data after the 8 bytes header with LZMA. The length of
+     * compressed data precedes the data in ZWS files, so the compressed data
+     * is buffered in memory, other formats are streamed.
+     */
+    private static void compressLZMA(InputStream is, OutputStream os, SWFCompression compression, byte[] lzmaProperties, long uncompressedLength) throws IOException {
+        lzmaProperties = getLZMAProperties(lzmaProperties);
+        Encoder enc = createLZMAEncoder(lzmaProperties, getLZMADictionarySize(lzmaProperties));
+        if (compression == SWFCompression.LZMA) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            enc.Code(is, baos, -1, -1, null);
+            byte[] data = baos.toByteArray();
+            writeLZMAHeader(os, enc, compression, data.length, uncompressedLength);
+            os.write(data);
+        } else {
+            writeLZMAHeader(os, enc, compression, 0, uncompressedLength);
+            enc.Code(is, os, -1, -1, null);
+        }
+    }
+
+    /**
+     * Compresses the SWF data after the 8 bytes header with LZMA. The LZMA
+     * encoder is single-threaded, so the data is compressed with multiple
+     * dictionary sizes in parallel and the smallest result is written.
+     */
+    private static void compressLZMAParallel(List<ByteArrayRange> parts, OutputStream os, SWFCompression compression, byte[] lzmaProperties, long uncompressedLength) throws IOException {
+        lzmaProperties = getLZMAProperties(lzmaProperties);
+        int dictionarySize = getLZMADictionarySize(lzmaProperties);
+        List<Integer> dictionarySizes = new ArrayList<>();
+        dictionarySizes.add(dictionarySize);
+        for (int size = dictionarySize; size < uncompressedLength && size < MAX_LZMA_CANDIDATE_DICTIONARY_SIZE;) {
+            // the last candidate covers the body, a larger dictionary does not help
+            size = (int) Math.min(Math.min((long) size * 2, uncompressedLength), MAX_LZMA_CANDIDATE_DICTIONARY_SIZE);
+            dictionarySizes.add(size);
+        }
+
+        if (dictionarySizes.size() == 1) {
+            compressLZMA(new SequenceInputStream(Collections.enumeration(getInputStreams(parts))), os, compression, lzmaProperties, uncompressedLength);
+            return;
+        }
+
+        final byte[] fLzmaProperties = lzmaProperties;
+        List<Callable<byte[]>> tasks = new ArrayList<>();
+        for (int size : dictionarySizes) {
+            tasks.add(() -> {
+                Encoder enc = createLZMAEncoder(fLzmaProperties, size);
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                enc.Code(new SequenceInputStream(Collections.enumeration(getInputStreams(parts))), baos, -1, -1, null);
+                return baos.toByteArray();
+            });
+        }
+
+        byte[] data = null;
+        int bestDictionarySize = dictionarySize;
+        try {
+            List<Future<byte[]>> results = SharedForkJoinPool.invokeAll(tasks);
+            for (int i = 0; i < results.size(); i++) {
+                byte[] result = results.get(i).get();
+                if (data == null || result.length < data.length) {
+                    data = result;
+                    bestDictionarySize = dictionarySizes.get(i);
+                }
+            }
+        } catch (InterruptedException ex) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException ex) {
+            throw new IOException(ex.getCause());
+        }
+
+        writeLZMAHeader(os, createLZMAEncoder(lzmaProperties, bestDictionarySize), compression, data.length, uncompressedLength);
+        os.write(data);
+    }
+
+    private static List<InputStream> getInputStreams(List<ByteArrayRange> parts) {
+        List<InputStream> ret = new ArrayList<>(parts.size());
+        for (ByteArrayRange part : parts) {
+            ret.add(part.getInputStream());
+        }
+
+        return ret;
+    }
+
+    private static byte[] getLZMAProperties(byte[] lzmaProperties) {
+        if (lzmaProperties == null) {
+            // todo: the bytes are from a sample swf
+            lzmaProperties = new byte[]{93, 0, 0, 32, 0};
+        }
+
+        return lzmaProperties;
+    }
+
+    private static int getLZMADictionarySize(byte[] lzmaProperties) {
+        int dictionarySize = 0;
+        for (int i = 0; i < 4; i++) {
+            dictionarySize += ((int) (lzmaProperties[1 + i]) & 0xFF) << (i * 8);
+        }
+
+        return dictionarySize;
+    }
+
+    private static Encoder createLZMAEncoder(byte[] lzmaProperties, int dictionarySize) {
+        Encoder enc = new Encoder();
+        int val = lzmaProperties[0] & 0xFF;
+        int lc = val % 9;
+        int remainder = val / 9;
+        int lp = remainder % 5;
+        int pb = remainder / 5;
+        if (Configuration.lzmaFastBytes.get() > 0) {
+            enc.SetNumFastBytes(Configuration.lzmaFastBytes.get());
+        }
+        enc.SetDictionarySize(dictionarySize);
+        enc.SetLcLpPb(lc, lp, pb);
+        enc.SetEndMarkerMode(true);
+        return enc;
+    }
+
+    private static void writeLZMAHeader(OutputStream os, Encoder enc, SWFCompression compression, long compressedLength, long uncompressedLength) throws IOException {
+        if (compression == SWFCompression.LZMA) {
+            byte[] udata = new byte[4];
+            udata[0] = (byte) (compressedLength & 0xFF);
+            udata[1] = (byte) ((compressedLength >> 8) & 0xFF);
+            udata[2] = (byte) ((compressedLength >> 16) & 0xFF);
+            udata[3] = (byte) ((compressedLength >> 24) & 0xFF);
+            os.write(udata);
+            enc.WriteCoderProperties(os);
+        } else {
+            byte[] udata = new byte[8];
+            udata[0] = (byte) (uncompressedLength & 0xFF);
+            udata[1] = (byte) ((uncompressedLength >> 8) & 0xFF);
+            udata[2] = (byte) ((uncompressedLength >> 16) & 0xFF);
+            udata[3] = (byte) ((uncompressedLength >> 24) & 0xFF);
+            udata[4] = (byte) ((uncompressedLength >> 32) & 0xFF);
+            udata[5] = (byte) ((uncompressedLength >> 40) & 0xFF);
+            udata[6] = (byte) ((uncompressedLength >> 48) & 0xFF);
+            udata[7] = (byte) ((uncompressedLength >> 56) & 0xFF);
+            enc.WriteCoderProperties(os);
+            os.write(udata);
+        }
+    }
+
     @Override
     public boolean isModified() {
         if (isModified) {
@@ -1072,6 +1303,7 @@ public final class SWF implements SWFContainerItem, Timelined {
         }
 
         isModified = false;
+        abcContentHash = null;
 
         try {
             uncompressedData = saveToByteArray();
@@ -1184,31 +1416,92 @@ public final class SWF implements SWFContainerItem, Timelined {
      * @throws java.lang.InterruptedException
      */
     public SWF(InputStream is, String file, String fileTitle, ProgressListener listener, boolean parallelRead, boolean checkOnly, boolean lazy, UrlResolver resolver) throws IOException, InterruptedException {
+        this(is, file, fileTitle, listener, parallelRead, checkOnly, lazy, resolver, Configuration.mappedSwfLoading.get() && !Configuration.dumpView.get());
+    }
+
+    /**
+     * Construct SWF from stream
+     *
+     * @param is Stream to read SWF from
+     * @param file Path to the file
+     * @param fileTitle Title of the SWF
+     * @param listener
+     * @param parallelRead Use parallel threads?
+     * @param checkOnly Check only file validity
+     * @param lazy
+     * @param resolver Resolver for imported tags
+     * @param mapped Read the uncompressed data from memory mapped file instead
+     * of the heap. The data is decompressed to a temporary file first.
+     * @throws IOException
+     * @throws java.lang.InterruptedException
+     */
+    public SWF(InputStream is, String file, String fileTitle, ProgressListener listener, boolean parallelRead, boolean checkOnly, boolean lazy, UrlResolver resolver, boolean mapped) throws IOException, InterruptedException {
         this.file = file;
         this.fileTitle = fileTitle;
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        SWFHeader header = decompress(is, baos, true);
+        SWFHeader header;
+        SWFInputStream sis;
+        SWFDecompressionPipeline pipeline = null;
+        if (mapped) {
+            header = mapUncompressedData(is);
+            sis = new SWFInputStream(this, getUncompressedDataRange(0, uncompressedDataBuffer.limit()));
+        } else {
+            byte[] hdr = new byte[8];
+            if (is.read(hdr) != 8) {
+                throw new SwfOpenException("SWF header is too short");
+            }
+
+            header = decodeHeader(hdr);
+            if (parallelRead && !Configuration.dumpView.get() && canPipelineDecompression(hdr, header.fileSize)) {
+                // tags are parsed while the rest of the file is being decompressed
+                pipeline = new SWFDecompressionPipeline(hdr, is, (int) header.fileSize);
+                uncompressedData = pipeline.getData();
+                sis = new SWFInputStream(this, uncompressedData);
+                sis.setDecompressionPipeline(pipeline);
+
+                // signature, version, fileSize, displayRect (max 17 bytes), frameRate, frameCount
+                pipeline.waitFor(8 + 17 + 2 + 2);
+            } else {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                header = decompress(new SequenceInputStream(new ByteArrayInputStream(hdr), is), baos, true);
+                uncompressedData = baos.toByteArray();
+                originalUncompressedData = uncompressedData;
+                sis = new SWFInputStream(this, uncompressedData);
+            }
+        }
+
+        List<Tag> tags = null;
+        try {
+            dumpInfo = new DumpInfoSwfNode(this, "rootswf", "", null, 0, 0);
+            sis.dumpInfo = dumpInfo;
+            sis.skipBytesEx(3, "signature"); // skip siganture
+            version = sis.readUI8("version");
+            fileSize = sis.readUI32("fileSize");
+            dumpInfo.lengthBytes = fileSize;
+            if (listener != null) {
+                sis.addPercentListener(listener);
+            }
+            sis.setPercentMax(fileSize);
+            displayRect = sis.readRECT("displayRect");
+            frameRate = sis.readFIXED8("frameRate");
+            frameCount = sis.readUI16("frameCount");
+            tags = sis.readTagList(this, 0, parallelRead, true, !checkOnly, lazy);
+        } finally {
+            if (pipeline != null && tags == null) {
+                pipeline.cancel();
+            }
+        }
+
+        if (pipeline != null) {
+            header = pipeline.finish();
+
+            // parsed tags reference the array, it is not shrunk when the data are shorter than the header says
+            originalUncompressedData = uncompressedData;
+        }
+
         gfx = header.gfx;
         compression = header.compression;
         lzmaProperties = header.lzmaProperties;
-        uncompressedData = baos.toByteArray();
-        originalUncompressedData = uncompressedData;
-
-        SWFInputStream sis = new SWFInputStream(this, uncompressedData);
-        dumpInfo = new DumpInfoSwfNode(this, "rootswf", "", null, 0, 0);
-        sis.dumpInfo = dumpInfo;
-        sis.skipBytesEx(3, "signature"); // skip siganture
-        version = sis.readUI8("version");
-        fileSize = sis.readUI32("fileSize");
-        dumpInfo.lengthBytes = fileSize;
-        if (listener != null) {
-            sis.addPercentListener(listener);
-        }
-        sis.setPercentMax(fileSize);
-        displayRect = sis.readRECT("displayRect");
-        frameRate = sis.readFIXED8("frameRate");
-        frameCount = sis.readUI16("frameCount");
-        List<Tag> tags = sis.readTagList(this, 0, parallelRead, true, !checkOnly, lazy);
+
         if (tags.size() > 0 && tags.get(tags.size() - 1).getId() == EndTag.ID) {
             tags.remove(tags.size() - 1);
         } else {
@@ -1248,6 +1541,81 @@ public final class SWF implements SWFContainerItem, Timelined {
         getASMs(true); // Add scriptNames to ASMs
     }
 
+    private static boolean canPipelineDecompression(byte[] hdr, long fileSize) {
+        if (hdr[0] == 'F' || hdr[0] == 'G') { // FWS, GFX: nothing to decompress
+            return false;
+        }
+
+        // the whole array is allocated in advance, do not trust invalid headers too much
+        return fileSize > 8 && fileSize < Integer.MAX_VALUE - 8 && fileSize < Runtime.getRuntime().maxMemory() / 2;
+    }
+
+    private SWFHeader mapUncompressedData(InputStream is) throws IOException {
+        byte[] hdr = new byte[8];
+        if (is.read(hdr) != 8) {
+            throw new SwfOpenException("SWF header is too short");
+        }
+
+        // also uncompressed file is copied, the original file must stay replaceable by save
+        File tempFile = File.createTempFile("ffdec_swf_", ".tmp");
+        SWFHeader header;
+        try {
+            try (OutputStream os = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+                header = decompress(new SequenceInputStream(new ByteArrayInputStream(hdr), is), os, true);
+            }
+
+            try (RandomAccessFile raf = new RandomAccessFile(tempFile, "r")) {
+                uncompressedDataBuffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            }
+        } finally {
+            // mapped file can be deleted only on some systems, others delete it when the SWF is closed
+            if (!tempFile.delete()) {
+                mappedTempFile = tempFile;
+            }
+        }
+
+        return header;
+    }
+
+    /**
+     * Releases the memory mapped data and deletes its temporary file. Files
+     * which are still mapped are deleted on the next call or on exit.
+     */
+    private void releaseMappedData() {
+        uncompressedDataBuffer = null;
+        synchronized (MAPPED_TEMP_FILES) {
+            if (mappedTempFile != null) {
+                MAPPED_TEMP_FILES.add(mappedTempFile);
+                mappedTempFile = null;
+            }
+
+            for (Iterator<File> it = MAPPED_TEMP_FILES.iterator(); it.hasNext();) {
+                File f = it.next();
+                if (f.delete() || !f.exists()) {
+                    it.remove();
+                } else {
+                    f.deleteOnExit();
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets range of the uncompressed SWF data
+     *
+     * @param pos Start position
+     * @param length Length of the range
+     * @return Range backed by the uncompressed data array or by the mapped
+     * buffer
+     */
+    public ByteArrayRange getUncompressedDataRange(int pos, int length) {
+        if (uncompressedData == null && uncompressedDataBuffer != null) {
+            return new ByteArrayRange(uncompressedDataBuffer, pos, length);
+        }
+
+        return new ByteArrayRange(uncompressedData, pos, length);
+    }
+
     private void resolveImported(UrlResolver resolver) {
         for (int p = 0; p < tags.size(); p++) {
             Tag t = tags.get(p);
@@ -1508,7 +1876,7 @@ public final class SWF implements SWFContainerItem, Timelined {
         return header;
     }
 
-    private static SWFHeader decompress(InputStream is, OutputStream os, boolean allowUncompressed) throws IOException {
+    static SWFHeader decompress(InputStream is, OutputStream os, boolean allowUncompressed) throws IOException {
 
         byte[] hdr = new byte[8];
 
@@ -1528,6 +1896,7 @@ public final class SWF implements SWFContainerItem, Timelined {
             switch (hdr[0]) {
                 case 'C': { // CWS, CFX
                     Helper.copyStream(new InflaterInputStream(is), os, fileSize - 8);
+                    Metrics.counter(Metrics.BYTES_INFLATED).add(fileSize - 8);
                     header.compression = SWFCompression.ZLIB;
                     break;
                 }
@@ -1545,6 +1914,7 @@ public final class SWF implements SWFContainerItem, Timelined {
                         }
 
                         decodeLZMAStream(is, os, lzmaProperties, fileSize);
+                        Metrics.counter(Metrics.BYTES_INFLATED).add(fileSize - 8);
 
                         header.compression = SWFCompression.LZMA;
                         header.lzmaProperties = lzmaProperties;
@@ -1558,6 +1928,7 @@ public final class SWF implements SWFContainerItem, Timelined {
                     is.read(uncompressedLength);
 
                     decodeLZMAStream(is, os, lzmaProperties, fileSize);
+                    Metrics.counter(Metrics.BYTES_INFLATED).add(fileSize - 8);
 
                     header.compression = SWFCompression.LZMA_ABC;
                     header.lzmaProperties = lzmaProperties;
@@ -2537,6 +2908,8 @@ public final class SWF implements SWFContainerItem, Timelined {
         jtt = null;
         frameCache.clear();
         rectCache.clear();
+        shapeExportDataCache.clear();
+        rasterCache.clear();
         for (Tag tag : getTags()) {
             if (tag instanceof ImageTag) {
                 ((ImageTag) tag).clearCache();
@@ -2576,14 +2949,23 @@ public final class SWF implements SWFContainerItem, Timelined {
     }
 
     public void clearAllCache() {
+        clearSwfCache();
+        clearAllStaticCache();
+    }
+
+    /**
+     * Clears the caches of this SWF, the static caches shared by all SWFs are
+     * kept
+     */
+    public void clearSwfCache() {
         characters = null;
         characterIdTags = null;
         clearAbcListCache();
         timeline = null;
         clearReadOnlyListCache();
         clearImageCache();
+        clearSoundCache();
         clearScriptCache();
-        clearAllStaticCache();
     }
 
     public static void uncache(ASMSource src) {
@@ -2684,14 +3066,11 @@ public final class SWF implements SWFContainerItem, Timelined {
             try {
                 ByteArrayRange actionBytes = src.getActionBytes();
                 int prevLength = actionBytes.getPos();
-                SWFInputStream rri = new SWFInputStream(swf, actionBytes.getArray());
-                if (prevLength != 0) {
-                    rri.seek(prevLength);
-                }
+                SWFInputStream rri = new SWFInputStream(swf, actionBytes);
 
                 int version = swf == null ? SWF.DEFAULT_VERSION : swf.version;
                 ActionList list = ActionListReader.readActionListTimeout(listeners, rri, version, prevLength, prevLength + actionBytes.getLength(), src.toString()/*FIXME?*/, deobfuscationMode);
-                list.fileData = actionBytes.getArray();
+                list.fileData = actionBytes;
                 list.deobfuscationMode = deobfuscationMode;
                 if (swf != null) {
                     swf.as2Cache.put(src, list);
@@ -2708,6 +3087,10 @@ public final class SWF implements SWFContainerItem, Timelined {
     }
 
     public static HighlightedText getCached(ASMSource src, ActionList actions) throws InterruptedException {
+        return getCached(src, actions, DecompilerPool.Priority.INTERACTIVE);
+    }
+
+    public static HighlightedText getCached(ASMSource src, ActionList actions, DecompilerPool.Priority priority) throws InterruptedException {
         SWF swf = src.getSwf();
         HighlightedText res;
         if (swf != null) {
@@ -2717,10 +3100,14 @@ public final class SWF implements SWFContainerItem, Timelined {
             }
         }
 
-        return decompilerPool.decompile(src, actions);
+        return decompilerPool.decompile(src, actions, priority);
     }
 
     public static HighlightedText getCached(ScriptPack pack) throws InterruptedException {
+        return getCached(pack, DecompilerPool.Priority.INTERACTIVE);
+    }
+
+    public static HighlightedText getCached(ScriptPack pack, DecompilerPool.Priority priority) throws InterruptedException {
         SWF swf = pack.getSwf();
         HighlightedText res;
         if (swf != null) {
@@ -2730,10 +3117,14 @@ public final class SWF implements SWFContainerItem, Timelined {
             }
         }
 
-        return decompilerPool.decompile(pack);
+        return decompilerPool.decompile(pack, priority);
     }
 
     public static Future<HighlightedText> getCachedFuture(ASMSource src, ActionList actions, ScriptDecompiledListener<HighlightedText> listener) throws InterruptedException {
+        return getCachedFuture(src, actions, listener, DecompilerPool.Priority.INTERACTIVE);
+    }
+
+    public static Future<HighlightedText> getCachedFuture(ASMSource src, ActionList actions, ScriptDecompiledListener<HighlightedText> listener, DecompilerPool.Priority priority) throws InterruptedException {
         SWF swf = src.getSwf();
         HighlightedText res;
         if (swf != null) {
@@ -2747,10 +3138,14 @@ public final class SWF implements SWFContainerItem, Timelined {
             }
         }
 
-        return decompilerPool.submitTask(src, actions, listener);
+        return decompilerPool.submitTask(src, actions, listener, priority);
     }
 
     public static Future<HighlightedText> getCachedFuture(ScriptPack pack, ScriptDecompiledListener<HighlightedText> listener) throws InterruptedException {
+        return getCachedFuture(pack, listener, DecompilerPool.Priority.INTERACTIVE);
+    }
+
+    public static Future<HighlightedText> getCachedFuture(ScriptPack pack, ScriptDecompiledListener<HighlightedText> listener, DecompilerPool.Priority priority) throws InterruptedException {
         SWF swf = pack.getSwf();
         HighlightedText res;
         if (swf != null) {
@@ -2764,7 +3159,7 @@ public final class SWF implements SWFContainerItem, Timelined {
             }
         }
 
-        return decompilerPool.submitTask(pack, listener);
+        return decompilerPool.submitTask(pack, listener, priority);
     }
 
     public DecompilerPool getDecompilerPool() {
@@ -2775,6 +3170,27 @@ public final class SWF implements SWFContainerItem, Timelined {
         return rectCache;
     }
 
+    public Cache<RasterCacheKey, SerializableImage> getRasterCache() {
+        return rasterCache;
+    }
+
+    public void clearRasterCache() {
+        rasterCache.clear();
+    }
+
+    private static long getShapeExportDataSize(ShapeExportData data) {
+        long size = 64 + 32 * (data.fillStyles.size() + data.lineStyles.size());
+        for (List<IEdge> path : data.fillPaths) {
+            size += 48 * path.size();
+        }
+
+        for (List<IEdge> path : data.linePaths) {
+            size += 48 * path.size();
+        }
+
+        return size;
+    }
+
     public Cache<SHAPE, ShapeExportData> getShapeExportDataCache() {
         return shapeExportDataCache;
     }
@@ -3475,7 +3891,7 @@ public final class SWF implements SWFContainerItem, Timelined {
                 moduleId++;
                 HighlightedText cs;
                 try {
-                    cs = SWF.getCached(asms.get(name), null);
+                    cs = SWF.getCached(asms.get(name), null, DecompilerPool.Priority.EXPORT);
                 } catch (InterruptedException ex) {
                     return false;
                 }
@@ -0,0 +1,190 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+
+/**
+ * Decompresses SWF data on a background thread to a preallocated array, so the
+ * tags can be parsed while the rest of the file is still being decompressed.
+ *
+ * @author JPEXS
+ */
+public class SWFDecompressionPipeline {
+
+    private final byte[] data;
+
+    private final Thread thread;
+
+    private int length;
+
+    private boolean finished;
+
+    private volatile boolean cancelled;
+
+    private IOException error;
+
+    private SWFHeader header;
+
+    /**
+     * Starts the decompression
+     *
+     * @param headerData First 8 bytes of the SWF which were already read from
+     * the stream
+     * @param is Stream to read the rest of the SWF from
+     * @param fileSize Uncompressed size from the SWF header
+     */
+    public SWFDecompressionPipeline(byte[] headerData, InputStream is, int fileSize) {
+        data = new byte[fileSize];
+        final InputStream fis = new CancellableInputStream(new SequenceInputStream(new ByteArrayInputStream(headerData), is));
+        thread = new Thread("SWF decompression") {
+            @Override
+            public void run() {
+                SWFHeader h = null;
+                IOException ex = null;
+                try {
+                    h = SWF.decompress(fis, new PipeOutputStream(), true);
+                } catch (IOException iex) {
+                    ex = iex;
+                }
+
+                synchronized (SWFDecompressionPipeline.this) {
+                    header = h;
+                    error = ex;
+                    finished = true;
+                    SWFDecompressionPipeline.this.notifyAll();
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Gets the array which is being filled. Bytes after the length reported by
+     * waitFor are not valid yet.
+     *
+     * @return Data array
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * Waits until the data up to the given position are available or the
+     * decompression is finished
+     *
+     * @param pos Position
+     * @return Number of available bytes, less than pos only when the data are
+     * shorter
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public synchronized int waitFor(long pos) throws IOException, InterruptedException {
+        while (length < pos && !finished) {
+            wait();
+        }
+
+        if (error != null) {
+            throw error;
+        }
+
+        return length;
+    }
+
+    /**
+     * Waits for the end of decompression
+     *
+     * @return Header of the decompressed SWF
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public synchronized SWFHeader finish() throws IOException, InterruptedException {
+        waitFor(Long.MAX_VALUE);
+        return header;
+    }
+
+    /**
+     * Stops the decompression, for example when parsing failed. The
+     * decompression thread stops at the next read or write.
+     */
+    public void cancel() {
+        cancelled = true;
+        thread.interrupt();
+    }
+
+    public synchronized int getLength() {
+        return length;
+    }
+
+    private void checkCancelled() throws IOException {
+        if (cancelled) {
+            throw new IOException("Decompression cancelled");
+        }
+    }
+
+    private synchronized void written(int count) throws IOException {
+        checkCancelled();
+        length += count;
+        notifyAll();
+    }
+
+    private class CancellableInputStream extends FilterInputStream {
+
+        public CancellableInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkCancelled();
+            return super.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkCancelled();
+            return super.read(b, off, len);
+        }
+    }
+
+    private class PipeOutputStream extends OutputStream {
+
+        private int pos;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            // decompress writes at most fileSize bytes, the same as when the data are not pipelined
+            if (len > data.length - pos) {
+                throw new IOException("Decompressed data are longer than the file size in the SWF header");
+            }
+
+            System.arraycopy(b, off, data, pos, len);
+            pos += len;
+            written(len);
+        }
+    }
+}
@@ -272,24 +272,25 @@ import com.jpexs.decompiler.flash.types.shaperecords.StraightEdgeRecord;
 import com.jpexs.decompiler.flash.types.shaperecords.StyleChangeRecord;
 import com.jpexs.helpers.ByteArrayRange;
 import com.jpexs.helpers.Helper;
-import com.jpexs.helpers.ImmediateFuture;
 import com.jpexs.helpers.MemoryInputStream;
 import com.jpexs.helpers.ProgressListener;
+import com.jpexs.helpers.SharedForkJoinPool;
+import com.jpexs.helpers.stat.Counter;
+import com.jpexs.helpers.stat.Metrics;
 import com.jpexs.helpers.utf8.Utf8Helper;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.InflaterInputStream;
@@ -305,14 +306,29 @@ public class SWFInputStream implements AutoCloseable {
 
     private long startingPos;
 
+    private SWFDecompressionPipeline decompressionPipeline;
+
     private static final Logger logger = Logger.getLogger(SWFInputStream.class.getName());
 
+    private static final Counter tagsParsed = Metrics.counter(Metrics.TAGS_PARSED);
+
     public static final byte[] BYTE_ARRAY_EMPTY = new byte[0];
 
     private final List<ProgressListener> listeners = new ArrayList<>();
 
     private long percentMax;
 
+    private volatile boolean progressByResolvedTags;
+
+    private long resolvedLength;
+
+    /**
+     * Tags are resolved in batches of this length in bytes in parallel mode
+     */
+    private static final int TAG_RESOLUTION_BATCH_LENGTH = 16 * 1024;
+
+    private static final int TAG_RESOLUTION_BATCH_COUNT = 64;
+
     private SWF swf;
 
     public DumpInfo dumpInfo;
@@ -329,14 +345,31 @@ public class SWFInputStream implements AutoCloseable {
     }
 
     private void informListeners() {
-        if (listeners.size() > 0 && percentMax > 0) {
-            int percent = (int) (getPos() * 100 / percentMax);
-            if (lastPercent != percent) {
-                for (ProgressListener pl : listeners) {
-                    pl.progress(percent);
-                }
-                lastPercent = percent;
+        if (listeners.size() > 0 && percentMax > 0 && !progressByResolvedTags) {
+            reportProgress(getPos());
+        }
+    }
+
+    /**
+     * Adds the length of the resolved tags to the progress, used instead of
+     * the read position when the tags are resolved in parallel
+     *
+     * @param length Length of the tags in bytes
+     */
+    private synchronized void tagsResolved(long length) {
+        resolvedLength += length;
+        if (percentMax > 0) {
+            reportProgress(resolvedLength);
+        }
+    }
+
+    private void reportProgress(long pos) {
+        int percent = (int) (pos * 100 / percentMax);
+        if (lastPercent != percent) {
+            for (ProgressListener pl : listeners) {
+                pl.progress(percent);
             }
+            lastPercent = percent;
         }
     }
 
@@ -370,10 +403,57 @@ public class SWFInputStream implements AutoCloseable {
         this(swf, data, 0L, data.length);
     }
 
+    /**
+     * Constructor. The stream reads the data backing the range, it is
+     * positioned at the start of the range and limited by its end.
+     *
+     * @param swf SWF to read
+     * @param data Range of the SWF data
+     * @throws java.io.IOException
+     */
+    public SWFInputStream(SWF swf, ByteArrayRange data) throws IOException {
+        this.swf = swf;
+        int limit = data.getPos() + data.getLength();
+        if (data.hasArray()) {
+            is = new MemoryInputStream(data.getArray(), 0, limit);
+        } else {
+            is = new MemoryInputStream(data.getBuffer(), 0, limit);
+        }
+
+        is.seek(data.getPos());
+    }
+
+    private SWFInputStream(SWF swf, MemoryInputStream is, long startingPos) {
+        this.swf = swf;
+        this.startingPos = startingPos;
+        this.is = is;
+    }
+
     public SWF getSwf() {
         return swf;
     }
 
+    /**
+     * Sets the pipeline which is still filling the data of this stream. Tag
+     * reading then waits for the data of each tag.
+     *
+     * @param decompressionPipeline Pipeline
+     */
+    public void setDecompressionPipeline(SWFDecompressionPipeline decompressionPipeline) {
+        this.decompressionPipeline = decompressionPipeline;
+    }
+
+    private void waitForData(long endPos) throws IOException, InterruptedException {
+        if (decompressionPipeline == null) {
+            return;
+        }
+
+        int length = decompressionPipeline.waitFor(endPos);
+        if (length < endPos) {
+            is.truncate((int) (length - startingPos));
+        }
+    }
+
     /**
      * Gets position in bytes in the stream
      *
@@ -816,7 +896,7 @@ public class SWFInputStream implements AutoCloseable {
         int startPos = (int) getPos();
         skipBytesEx(count);
         endDumpLevel();
-        return new ByteArrayRange(swf.uncompressedData, startPos, (int) count);
+        return swf.getUncompressedDataRange(startPos, (int) count);
     }
 
     /**
@@ -935,7 +1015,15 @@ public class SWFInputStream implements AutoCloseable {
     }
 
     public static byte[] uncompressByteArray(byte[] data, int offset, int length) throws IOException {
-        InflaterInputStream dis = new InflaterInputStream(new ByteArrayInputStream(data, offset, length));
+        return uncompressStream(new ByteArrayInputStream(data, offset, length));
+    }
+
+    public static byte[] uncompressByteArray(ByteArrayRange data) throws IOException {
+        return uncompressStream(data.getInputStream());
+    }
+
+    private static byte[] uncompressStream(InputStream is) throws IOException {
+        InflaterInputStream dis = new InflaterInputStream(is);
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         byte[] buf = new byte[4096];
         int c;
@@ -1132,11 +1220,17 @@ public class SWFInputStream implements AutoCloseable {
     public void close() {
     }
 
-    private class TagResolutionTask implements Callable<Tag> {
+    /**
+     * Resolves a batch of consecutive tags, small tags are resolved together
+     * to lower the task overhead
+     */
+    private class TagResolutionTask implements Callable<Void> {
+
+        private final List<TagStub> stubs = new ArrayList<>();
 
-        private final TagStub tag;
+        private final List<DumpInfo> dumpInfos = new ArrayList<>();
 
-        private final DumpInfo dumpInfo;
+        private final List<Integer> indices = new ArrayList<>();
 
         private final int level;
 
@@ -1146,28 +1240,66 @@ public class SWFInputStream implements AutoCloseable {
 
         private final boolean lazy;
 
-        public TagResolutionTask(TagStub tag, DumpInfo dumpInfo, int level, boolean parallel, boolean skipUnusualTags, boolean lazy) {
-            this.tag = tag;
-            this.dumpInfo = dumpInfo;
+        private Tag[] resolvedTags;
+
+        private long length;
+
+        public TagResolutionTask(int level, boolean parallel, boolean skipUnusualTags, boolean lazy) {
             this.level = level;
             this.parallel = parallel;
             this.skipUnusualTags = skipUnusualTags;
             this.lazy = lazy;
         }
 
+        public void add(TagStub tag, DumpInfo dumpInfo, int index, long tagLength) {
+            stubs.add(tag);
+            dumpInfos.add(dumpInfo);
+            indices.add(index);
+            length += tagLength;
+        }
+
+        public boolean isFull() {
+            return length >= TAG_RESOLUTION_BATCH_LENGTH || stubs.size() >= TAG_RESOLUTION_BATCH_COUNT;
+        }
+
         @Override
-        public Tag call() throws Exception {
-            DumpInfo di = dumpInfo;
-            try {
-                Tag t = resolveTag(tag, level, parallel, skipUnusualTags, lazy);
-                if (dumpInfo != null && t != null) {
-                    dumpInfo.name = t.getName();
+        public Void call() throws Exception {
+            Tag[] result = new Tag[stubs.size()];
+            for (int i = 0; i < result.length; i++) {
+                TagStub tag = stubs.get(i);
+                DumpInfo di = dumpInfos.get(i);
+                try {
+                    Tag t = resolveTag(tag, level, parallel, skipUnusualTags, lazy);
+                    if (di != null && t != null) {
+                        di.name = t.getName();
+                    }
+
+                    result[i] = t;
+                } catch (InterruptedException ex) {
+                    throw ex;
+                } catch (Exception ex) {
+                    tag.getDataStream().endDumpLevelUntil(di);
+                    logger.log(Level.SEVERE, null, ex);
+                    result[i] = tag;
                 }
-                return t;
-            } catch (Exception ex) {
-                tag.getDataStream().endDumpLevelUntil(di);
-                logger.log(Level.SEVERE, null, ex);
-                return tag;
+            }
+
+            resolvedTags = result;
+            if (progressByResolvedTags) {
+                tagsResolved(length);
+            }
+
+            return null;
+        }
+
+        /**
+         * Replaces the stubs with the resolved tags
+         *
+         * @param tags Tag list
+         */
+        public void setResolvedTags(List<Tag> tags) {
+            for (int i = 0; i < resolvedTags.length; i++) {
+                tags.set(indices.get(i), resolvedTags[i]);
             }
         }
     }
@@ -1191,13 +1323,17 @@ public class SWFInputStream implements AutoCloseable {
             throw new InterruptedException();
         }
 
-        boolean parallel1 = level == 0 && parallel;
-        ExecutorService executor = null;
-        List<Future<Tag>> futureResults = new ArrayList<>();
-        if (parallel1) {
-            executor = Executors.newFixedThreadPool(Configuration.getParallelThreadCount());
-            futureResults = new ArrayList<>();
+        // sub tags of sprites are resolved in parallel when the sprite is resolved in the shared pool
+        boolean parallel1 = parallel && (level == 0 || SharedForkJoinPool.isPoolThread());
+        List<ForkJoinTask<Void>> resolutionTasks = new ArrayList<>();
+        List<TagResolutionTask> resolutionBatches = new ArrayList<>();
+        TagResolutionTask batch = null;
+        if (parallel1 && parseTags && !listeners.isEmpty()) {
+            // reading is fast, show the progress of the resolution
+            resolvedLength = getPos();
+            progressByResolvedTags = true;
         }
+
         List<Tag> tags = new ArrayList<>();
         Tag tag;
         boolean isAS3 = false;
@@ -1268,24 +1404,32 @@ public class SWFInputStream implements AutoCloseable {
             }
 
             tag.setTimelined(timelined);
-            if (!parallel1) {
-                tags.add(tag);
-            }
+            tags.add(tag);
             if (Configuration.dumpTags.get() && level == 0) {
                 dumpTag(System.out, tag, tags.size() - 1, level);
             }
 
-            if (parseTags && doParse && parallel1 && tag instanceof TagStub && executor != null) {
-                Future<Tag> future = executor.submit(new TagResolutionTask((TagStub) tag, di, level, parallel1, skipUnusualTags, lazy));
-                futureResults.add(future);
+            if (parseTags && doParse && parallel1 && tag instanceof TagStub) {
+                if (batch == null) {
+                    batch = new TagResolutionTask(level, parallel, skipUnusualTags, lazy);
+                }
+
+                batch.add((TagStub) tag, di, tags.size() - 1, getPos() - pos);
+                if (batch.isFull()) {
+                    resolutionTasks.add(SharedForkJoinPool.fork(batch));
+                    resolutionBatches.add(batch);
+                    batch = null;
+                }
             } else {
-                Future<Tag> future = new ImmediateFuture<>(tag);
-                futureResults.add(future);
                 if (!(tag instanceof TagStub)) {
                     if (di != null) {
                         di.name = tag.getName();
                     }
                 }
+
+                if (progressByResolvedTags) {
+                    tagsResolved(getPos() - pos);
+                }
             }
 
             if (tag.getId() == EndTag.ID) {
@@ -1293,26 +1437,55 @@ public class SWFInputStream implements AutoCloseable {
             }
         }
 
-        if (parallel1) {
-            for (Future<Tag> future : futureResults) {
-                try {
-                    tags.add(future.get());
-                } catch (InterruptedException ex) {
-                    future.cancel(true);
-                } catch (ExecutionException e) {
-                    logger.log(Level.SEVERE, "Error during tag reading", e);
-                }
+        if (batch != null) {
+            resolutionTasks.add(SharedForkJoinPool.fork(batch));
+            resolutionBatches.add(batch);
+        }
+
+        try {
+            SharedForkJoinPool.awaitAll(resolutionTasks);
+        } finally {
+            progressByResolvedTags = false;
+        }
+
+        for (int i = 0; i < resolutionTasks.size(); i++) {
+            ForkJoinTask<Void> task = resolutionTasks.get(i);
+            Throwable ex = task.isCancelled() ? null : task.getException();
+            if (task.isCancelled() || isInterruption(ex)) {
+                throw new InterruptedException();
             }
 
-            if (executor != null) {
-                executor.shutdown();
+            if (ex != null) {
+                logger.log(Level.SEVERE, "Error during tag reading", ex);
+                continue;
             }
+
+            resolutionBatches.get(i).setResolvedTags(tags);
         }
+
         return tags;
     }
 
+    /**
+     * Checks whether the exception of a forked task was caused by an interrupt
+     * or a cancellation. The pool wraps the checked exceptions of the tasks.
+     *
+     * @param ex Exception of the task
+     * @return True when the task was interrupted
+     */
+    private static boolean isInterruption(Throwable ex) {
+        for (Throwable t = ex; t != null; t = t.getCause()) {
+            if (t instanceof InterruptedException || t instanceof CancellationException) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     public static Tag resolveTag(TagStub tag, int level, boolean parallel, boolean skipUnusualTags, boolean lazy) throws InterruptedException {
         Tag ret;
+        tagsParsed.increment();
 
         ByteArrayRange data = tag.getOriginalRange();
         SWF swf = tag.getSwf();
@@ -1631,6 +1804,7 @@ public class SWFInputStream implements AutoCloseable {
      * @throws java.lang.InterruptedException
      */
     public Tag readTag(Timelined timelined, int level, long pos, boolean resolve, boolean parallel, boolean skipUnusualTags, boolean lazy) throws IOException, InterruptedException {
+        waitForData(pos + 6);
         int tagIDTagLength = readUI16("tagIDTagLength");
         int tagID = (tagIDTagLength) >> 6;
 
@@ -1643,13 +1817,14 @@ public class SWFInputStream implements AutoCloseable {
             readLong = true;
         }
         int headerLength = readLong ? 6 : 2;
+        waitForData(pos + headerLength + tagLength);
         SWFInputStream tagDataStream = getLimitedStream((int) tagLength);
         int available = available();
         if (tagLength > available) {
             tagLength = available;
         }
 
-        ByteArrayRange dataRange = new ByteArrayRange(swf.uncompressedData, (int) pos, (int) (tagLength + headerLength));
+        ByteArrayRange dataRange = swf.getUncompressedDataRange((int) pos, (int) (tagLength + headerLength));
         skipBytes(tagLength);
 
         TagStub tagStub = new TagStub(swf, tagID, "Unresolved", dataRange, tagDataStream);
@@ -3589,13 +3764,18 @@ public class SWFInputStream implements AutoCloseable {
 
     public MemoryInputStream getBaseStream() throws IOException {
         int pos = (int) is.getPos();
-        MemoryInputStream mis = new MemoryInputStream(is.getAllRead(), 0, pos + is.available());
+        MemoryInputStream mis = is.getLimitedStream(pos + is.available());
         mis.seek(pos);
         return mis;
     }
 
     public SWFInputStream getLimitedStream(int limit) throws IOException {
-        SWFInputStream sis = new SWFInputStream(swf, is.getAllRead(), startingPos, (int) (is.getPos() + limit));
+        if (decompressionPipeline != null) {
+            // the array is longer than the data when the stream was truncated
+            limit = Math.min(limit, available());
+        }
+
+        SWFInputStream sis = new SWFInputStream(swf, is.getLimitedStream((int) (is.getPos() + limit)), startingPos);
 
         // uncomment the following line to turn off lazy dump info collecting
         //sis.dumpInfo = dumpInfo;
@@ -22,7 +22,7 @@ import com.jpexs.helpers.ProgressListener;
 import com.jpexs.helpers.Searchable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -43,7 +43,7 @@ public class SWFSearch {
 
     private final Set<ProgressListener> listeners = new HashSet<>();
 
-    private final Map<Long, MemoryInputStream> swfStreams = new HashMap<>();
+    private final Map<Long, MemoryInputStream> swfStreams = new LinkedHashMap<>();
 
     public SWFSearch(Searchable s, boolean noCheck, SearchMode searchMode) {
         this.s = s;
@@ -96,7 +96,7 @@ public class SWFSearch {
                         && swf.version <= SWF.MAX_VERSION;
                 if (valid) {
                     long limit = pmi.getPos();
-                    MemoryInputStream is = new MemoryInputStream(mis.getAllRead(), (int) (long) addr, (int) limit);
+                    MemoryInputStream is = mis.getLimitedStream((int) limit);
                     switch (searchMode) {
                         case ALL:
                             swfStreams.put(addr, is);
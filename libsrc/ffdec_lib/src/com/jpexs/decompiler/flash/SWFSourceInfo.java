@@ -17,9 +17,7 @@ package com.jpexs.decompiler.flash;
 
 import com.jpexs.decompiler.flash.iggy.conversion.IggySwfBundle;
 import com.jpexs.helpers.Path;
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -99,6 +97,6 @@ public class SWFSourceInfo {
             }
         }
 
-        return new BinarySWFBundle(new BufferedInputStream(new FileInputStream(file)), noCheck, searchMode);
+        return new BinarySWFBundle(new File(file), noCheck, searchMode);
     }
 }
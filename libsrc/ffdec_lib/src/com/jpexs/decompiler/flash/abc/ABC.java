@@ -42,19 +42,9 @@ import com.jpexs.decompiler.flash.abc.types.traits.TraitMethodGetterSetter;
 import com.jpexs.decompiler.flash.abc.types.traits.TraitSlotConst;
 import com.jpexs.decompiler.flash.abc.types.traits.TraitType;
 import com.jpexs.decompiler.flash.abc.types.traits.Traits;
-import com.jpexs.decompiler.flash.abc.usages.ClassNameMultinameUsage;
-import com.jpexs.decompiler.flash.abc.usages.ConstVarNameMultinameUsage;
-import com.jpexs.decompiler.flash.abc.usages.ConstVarTypeMultinameUsage;
 import com.jpexs.decompiler.flash.abc.usages.DefinitionUsage;
-import com.jpexs.decompiler.flash.abc.usages.ExtendsMultinameUsage;
-import com.jpexs.decompiler.flash.abc.usages.ImplementsMultinameUsage;
-import com.jpexs.decompiler.flash.abc.usages.MethodBodyMultinameUsage;
-import com.jpexs.decompiler.flash.abc.usages.MethodNameMultinameUsage;
-import com.jpexs.decompiler.flash.abc.usages.MethodParamsMultinameUsage;
-import com.jpexs.decompiler.flash.abc.usages.MethodReturnTypeMultinameUsage;
 import com.jpexs.decompiler.flash.abc.usages.MultinameUsage;
-import com.jpexs.decompiler.flash.abc.usages.TraitMultinameUsage;
-import com.jpexs.decompiler.flash.abc.usages.TypeNameMultinameUsage;
+import com.jpexs.decompiler.flash.abc.usages.MultinameUsageIndex;
 import com.jpexs.decompiler.flash.dumpview.DumpInfo;
 import com.jpexs.decompiler.flash.dumpview.DumpInfoSpecial;
 import com.jpexs.decompiler.flash.dumpview.DumpInfoSpecialType;
@@ -103,6 +93,10 @@ public class ABC {
 
     private ABCMethodIndexing abcMethodIndexing;
 
+    private volatile MultinameUsageIndex multinameUsageIndex;
+
+    private volatile ABCClassIndexing abcClassIndexing;
+
     public static final int MINORwithDECIMAL = 17;
 
     protected Set<EventListener> listeners = new HashSet<>();
@@ -133,6 +127,7 @@ public class ABC {
     public int addMethodBody(MethodBody body) {
         bodies.add(body);
         abcMethodIndexing = null;
+        invalidateMultinameUsages();
         return bodies.size() - 1;
     }
 
@@ -193,6 +188,7 @@ public class ABC {
         MethodInfo methodInfo = new MethodInfo();
         int methodInfoId = addMethodInfo(methodInfo);
         MethodBody methodBody = new MethodBody();
+        methodBody.setAbc(this);
         methodBody.method_info = methodInfoId;
         addMethodBody(methodBody);
 
@@ -213,6 +209,7 @@ public class ABC {
             instanceInfo.instance_traits.addTrait(trait);
         }
 
+        invalidateMultinameUsages();
         return trait;
     }
 
@@ -348,6 +345,7 @@ public class ABC {
         } else {
             constants.setString(strIndex, newname);
         }
+        clearClassIndexing();
     }
 
     public void deobfuscateIdentifiers(HashMap<DottedChain, DottedChain> namesMap, RenameType renameType, boolean classesOnly) {
@@ -371,6 +369,7 @@ public class ABC {
                 constants.getMultiname(insti.super_index).name_index = deobfuscation.deobfuscateName(stringUsageTypes, stringUsages, namespaceUsages, namesMap, constants.getMultiname(insti.super_index).name_index, true, renameType);
             }
         }
+        clearClassIndexing();
         if (classesOnly) {
             return;
         }
@@ -426,6 +425,7 @@ public class ABC {
                 }
             }
         }
+        clearClassIndexing();
     }
 
     public boolean hasDecimalSupport() {
@@ -977,6 +977,63 @@ public class ABC {
         return deobfuscation;
     }
 
+    public MultinameUsageIndex getMultinameUsageIndex() {
+        MultinameUsageIndex index = multinameUsageIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = multinameUsageIndex;
+                if (index == null) {
+                    index = new MultinameUsageIndex(this);
+                    multinameUsageIndex = index;
+                }
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Clears the index of multiname usages, call it after structural changes
+     * of ABC. Changes of method bodies are tracked by the bodies.
+     */
+    public void invalidateMultinameUsages() {
+        MultinameUsageIndex index = multinameUsageIndex;
+        if (index != null) {
+            index.invalidate();
+        }
+    }
+
+    /**
+     * Marks usages of multinames in the method info, its body and the traits
+     * of the body as changed.
+     *
+     * @param methodInfo Method info index
+     */
+    public void invalidateMultinameUsages(int methodInfo) {
+        MultinameUsageIndex index = multinameUsageIndex;
+        if (index != null) {
+            index.invalidateMethod(methodInfo);
+        }
+    }
+
+    public ABCClassIndexing getClassIndexing() {
+        ABCClassIndexing indexing = abcClassIndexing;
+        if (indexing == null || !indexing.isValid()) {
+            indexing = new ABCClassIndexing(this);
+            abcClassIndexing = indexing;
+        }
+
+        return indexing;
+    }
+
+    /**
+     * Clears the index of class names and script packs, call it after classes
+     * or scripts are added, removed or renamed.
+     */
+    public void clearClassIndexing() {
+        abcClassIndexing = null;
+    }
+
     public final ABCMethodIndexing getMethodIndexing() {
         if (abcMethodIndexing == null) {
             abcMethodIndexing = new ABCMethodIndexing(this);
@@ -1036,129 +1093,6 @@ public class ABC {
         }
     }
 
-    private void checkMultinameUsedInMethod(int multinameIndex, int methodInfo, List<MultinameUsage> ret, int scriptIndex, int classIndex, int traitIndex, int traitsType, boolean isInitializer, Traits traits, int parentTraitIndex) {
-        for (int p = 0; p < method_info.get(methodInfo).param_types.length; p++) {
-            if (method_info.get(methodInfo).param_types[p] == multinameIndex) {
-                ret.add(new MethodParamsMultinameUsage(this, multinameIndex, scriptIndex, classIndex, traitIndex, traitsType, isInitializer, traits, parentTraitIndex));
-                break;
-            }
-        }
-        if (method_info.get(methodInfo).ret_type == multinameIndex) {
-            ret.add(new MethodReturnTypeMultinameUsage(this, multinameIndex, scriptIndex, classIndex, traitIndex, traitsType, isInitializer, traits, parentTraitIndex));
-        }
-        MethodBody body = findBody(methodInfo);
-        if (body != null) {
-            findMultinameUsageInTraits(body.traits, multinameIndex, traitsType, scriptIndex, classIndex, ret, traitIndex);
-            for (ABCException e : body.exceptions) {
-                if ((e.name_index == multinameIndex) || (e.type_index == multinameIndex)) {
-                    ret.add(new MethodBodyMultinameUsage(this, multinameIndex, scriptIndex, classIndex, traitIndex, traitsType, isInitializer, traits, parentTraitIndex));
-                    return;
-                }
-            }
-            for (AVM2Instruction ins : body.getCode().code) {
-                for (int o = 0; o < ins.definition.operands.length; o++) {
-                    if (ins.definition.operands[o] == AVM2Code.DAT_MULTINAME_INDEX) {
-                        if (ins.operands[o] == multinameIndex) {
-                            ret.add(new MethodBodyMultinameUsage(this, multinameIndex, scriptIndex, classIndex, traitIndex, traitsType, isInitializer, traits, parentTraitIndex));
-                            return;
-                        }
-                    }
-                }
-            }
-        }
-    }
-
-    private void checkAllMultinameUsedInMethod(int methodInfo, List<List<MultinameUsage>> ret, int scriptIndex, int classIndex, int traitIndex, int traitsType, boolean isInitializer, Traits traits, int parentTraitIndex) {
-        boolean[] foundMultinames = new boolean[constants.getMultinameCount()];
-        for (int p = 0; p < method_info.get(methodInfo).param_types.length; p++) {
-            int methodParamsMultinameIndex = method_info.get(methodInfo).param_types[p];
-            if (!foundMultinames[methodParamsMultinameIndex]) {
-                ret.get(methodParamsMultinameIndex).add(new MethodParamsMultinameUsage(this, methodParamsMultinameIndex, scriptIndex, classIndex, traitIndex, traitsType, isInitializer, traits, parentTraitIndex));
-                foundMultinames[methodParamsMultinameIndex] = true;
-            }
-        }
-        int methodReturnTypeMultinameIndex = method_info.get(methodInfo).ret_type;
-        ret.get(methodReturnTypeMultinameIndex).add(new MethodReturnTypeMultinameUsage(this, methodReturnTypeMultinameIndex, scriptIndex, classIndex, traitIndex, traitsType, isInitializer, traits, parentTraitIndex));
-
-        MethodBody body = findBody(methodInfo);
-        if (body != null) {
-            findAllMultinameUsageInTraits(body.traits, traitsType, scriptIndex, classIndex, ret, traitIndex);
-            foundMultinames = new boolean[constants.getMultinameCount()];
-            for (ABCException e : body.exceptions) {
-                if (!foundMultinames[e.name_index]) {
-                    ret.get(e.name_index).add(new MethodBodyMultinameUsage(this, e.name_index, scriptIndex, classIndex, traitIndex, traitsType, isInitializer, traits, parentTraitIndex));
-                    foundMultinames[e.name_index] = true;
-                }
-
-                if (!foundMultinames[e.type_index]) {
-                    ret.get(e.type_index).add(new MethodBodyMultinameUsage(this, e.type_index, scriptIndex, classIndex, traitIndex, traitsType, isInitializer, traits, parentTraitIndex));
-                    foundMultinames[e.type_index] = true;
-                }
-            }
-            for (AVM2Instruction ins : body.getCode().code) {
-                for (int o = 0; o < ins.definition.operands.length; o++) {
-                    if (ins.definition.operands[o] == AVM2Code.DAT_MULTINAME_INDEX) {
-                        int mi = ins.operands[o];
-                        if (!foundMultinames[mi]) {
-                            ret.get(mi).add(new MethodBodyMultinameUsage(this, mi, scriptIndex, classIndex, traitIndex, traitsType, isInitializer, traits, parentTraitIndex));
-                            foundMultinames[mi] = true;
-                        }
-                    }
-                }
-            }
-        }
-    }
-
-    private void findMultinameUsageInTraits(Traits traits, int multinameIndex, int traitsType, int scriptIndex, int classIndex, List<MultinameUsage> ret, int parentTraitIndex) {
-        for (int t = 0; t < traits.traits.size(); t++) {
-            //Assuming instance_info.name_index has same multiname as in the class trait
-            /*if (traits.traits.get(t) instanceof TraitClass) {
-                TraitClass tc = (TraitClass) traits.traits.get(t);
-                if (tc.name_index == multinameIndex) {
-                    ret.add(new ClassNameInTraitMultinameUsage(this, multinameIndex, tc.class_info));
-                }
-            }*/
-            if (traits.traits.get(t) instanceof TraitSlotConst) {
-                TraitSlotConst tsc = (TraitSlotConst) traits.traits.get(t);
-                if (tsc.name_index == multinameIndex) {
-                    ret.add(new ConstVarNameMultinameUsage(this, multinameIndex, scriptIndex, classIndex, t, traitsType, traits, parentTraitIndex));
-                }
-                if (tsc.type_index == multinameIndex) {
-                    ret.add(new ConstVarTypeMultinameUsage(this, multinameIndex, scriptIndex, classIndex, t, traitsType, traits, parentTraitIndex));
-                }
-            }
-            if (traits.traits.get(t) instanceof TraitMethodGetterSetter) {
-                TraitMethodGetterSetter tmgs = (TraitMethodGetterSetter) traits.traits.get(t);
-                if (tmgs.name_index == multinameIndex) {
-                    ret.add(new MethodNameMultinameUsage(this, multinameIndex, scriptIndex, classIndex, t, traitsType, false, traits, parentTraitIndex));
-                }
-                checkMultinameUsedInMethod(multinameIndex, tmgs.method_info, ret, scriptIndex, classIndex, t, traitsType, false, traits, parentTraitIndex);
-            }
-        }
-    }
-
-    private void findAllMultinameUsageInTraits(Traits traits, int traitsType, int scriptIndex, int classIndex, List<List<MultinameUsage>> ret, int parentTraitIndex) {
-        for (int t = 0; t < traits.traits.size(); t++) {
-            //Assuming instance_info.name_index has same multiname as in the class trait
-            /*if (traits.traits.get(t) instanceof TraitClass) {
-                TraitClass tc = (TraitClass) traits.traits.get(t);
-                if (tc.name_index == multinameIndex) {
-                    ret.add(new ClassNameInTraitMultinameUsage(this, multinameIndex, tc.class_info));
-                }
-            }*/
-            if (traits.traits.get(t) instanceof TraitSlotConst) {
-                TraitSlotConst tsc = (TraitSlotConst) traits.traits.get(t);
-                ret.get(tsc.name_index).add(new ConstVarNameMultinameUsage(this, tsc.name_index, scriptIndex, classIndex, t, traitsType, traits, parentTraitIndex));
-                ret.get(tsc.type_index).add(new ConstVarTypeMultinameUsage(this, tsc.type_index, scriptIndex, classIndex, t, traitsType, traits, parentTraitIndex));
-            }
-            if (traits.traits.get(t) instanceof TraitMethodGetterSetter) {
-                TraitMethodGetterSetter tmgs = (TraitMethodGetterSetter) traits.traits.get(t);
-                ret.get(tmgs.name_index).add(new MethodNameMultinameUsage(this, tmgs.name_index, scriptIndex, classIndex, t, traitsType, false, traits, parentTraitIndex));
-                checkAllMultinameUsedInMethod(tmgs.method_info, ret, scriptIndex, classIndex, t, traitsType, false, traits, parentTraitIndex);
-            }
-        }
-    }
-
     public List<MultinameUsage> findMultinameDefinition(int multinameIndex) {
         List<MultinameUsage> usages = findMultinameUsage(multinameIndex);
         List<MultinameUsage> ret = new ArrayList<>();
@@ -1253,90 +1187,16 @@ public class ABC {
     }
 
     public List<MultinameUsage> findMultinameUsage(int multinameIndex) {
-        List<MultinameUsage> ret = new ArrayList<>();
-        if (multinameIndex == 0) {
-            return ret;
-        }
-        for (int s = 0; s < script_info.size(); s++) {
-            findMultinameUsageInTraits(script_info.get(s).traits, multinameIndex, TraitMultinameUsage.TRAITS_TYPE_SCRIPT, s, -1, ret, -1);
-        }
-        for (int c = 0; c < instance_info.size(); c++) {
-            if (instance_info.get(c).name_index == multinameIndex) {
-                ret.add(new ClassNameMultinameUsage(this, multinameIndex, c));
-            }
-            if (instance_info.get(c).super_index == multinameIndex) {
-                ret.add(new ExtendsMultinameUsage(this, multinameIndex, c));
-            }
-            for (int i = 0; i < instance_info.get(c).interfaces.length; i++) {
-                if (instance_info.get(c).interfaces[i] == multinameIndex) {
-                    ret.add(new ImplementsMultinameUsage(this, multinameIndex, c));
-                }
-            }
-            checkMultinameUsedInMethod(multinameIndex, instance_info.get(c).iinit_index, ret, -1/*FIXME*/, c, 0, TraitMultinameUsage.TRAITS_TYPE_INSTANCE, true, null, -1);
-            checkMultinameUsedInMethod(multinameIndex, class_info.get(c).cinit_index, ret, -1/*FIXME*/, c, 0, TraitMultinameUsage.TRAITS_TYPE_CLASS, true, null, -1);
-            findMultinameUsageInTraits(instance_info.get(c).instance_traits, multinameIndex, TraitMultinameUsage.TRAITS_TYPE_INSTANCE, -1/*FIXME*/, c, ret, -1);
-            findMultinameUsageInTraits(class_info.get(c).static_traits, multinameIndex, TraitMultinameUsage.TRAITS_TYPE_CLASS, -1/*FIXME*/, c, ret, -1);
-        }
-        loopm:
-        for (int t = 1; t < constants.getMultinameCount(); t++) {
-            Multiname multiname = constants.getMultiname(t);
-            if (multiname.kind == Multiname.TYPENAME) {
-                if (multiname.qname_index == multinameIndex) {
-                    ret.add(new TypeNameMultinameUsage(this, multinameIndex, t));
-                    continue;
-                }
-                for (int mp : multiname.params) {
-                    if (mp == multinameIndex) {
-                        ret.add(new TypeNameMultinameUsage(this, multinameIndex, t));
-                        continue loopm;
-                    }
-                }
-            }
-        }
-        return ret;
+        return getMultinameUsageIndex().getUsages(multinameIndex);
     }
 
+    /**
+     * Finds usages of all multinames. Multiname 0 has no usages.
+     *
+     * @return List of usages for each multiname index
+     */
     public List<List<MultinameUsage>> findAllMultinameUsage() {
-        List<List<MultinameUsage>> ret = new ArrayList<>();
-        for (int i = 0; i < constants.getMultinameCount(); i++) {
-            ret.add(new ArrayList<>());
-        }
-
-        for (int s = 0; s < script_info.size(); s++) {
-            findAllMultinameUsageInTraits(script_info.get(s).traits, TraitMultinameUsage.TRAITS_TYPE_SCRIPT, s, -1, ret, -1);
-        }
-        for (int c = 0; c < instance_info.size(); c++) {
-            int classNameMultinameIndex = instance_info.get(c).name_index;
-            ret.get(classNameMultinameIndex).add(new ClassNameMultinameUsage(this, classNameMultinameIndex, c));
-            int extendsMultinameIndex = instance_info.get(c).super_index;
-            ret.get(extendsMultinameIndex).add(new ExtendsMultinameUsage(this, extendsMultinameIndex, c));
-            for (int i = 0; i < instance_info.get(c).interfaces.length; i++) {
-                int implementsMultinameIndex = instance_info.get(c).interfaces[i];
-                ret.get(implementsMultinameIndex).add(new ImplementsMultinameUsage(this, implementsMultinameIndex, c));
-            }
-            checkAllMultinameUsedInMethod(instance_info.get(c).iinit_index, ret, -1/*FIXME*/, c, 0, TraitMultinameUsage.TRAITS_TYPE_INSTANCE, true, null, -1);
-            checkAllMultinameUsedInMethod(class_info.get(c).cinit_index, ret, -1/*FIXME*/, c, 0, TraitMultinameUsage.TRAITS_TYPE_CLASS, true, null, -1);
-            findAllMultinameUsageInTraits(instance_info.get(c).instance_traits, TraitMultinameUsage.TRAITS_TYPE_INSTANCE, -1/*FIXME*/, c, ret, -1);
-            findAllMultinameUsageInTraits(class_info.get(c).static_traits, TraitMultinameUsage.TRAITS_TYPE_CLASS, -1/*FIXME*/, c, ret, -1);
-        }
-
-        boolean[] foundMultinames = new boolean[constants.getMultinameCount()];
-        for (int t = 1; t < constants.getMultinameCount(); t++) {
-            Multiname multiname = constants.getMultiname(t);
-            if (multiname.kind == Multiname.TYPENAME) {
-                if (!foundMultinames[multiname.qname_index]) {
-                    ret.get(multiname.qname_index).add(new TypeNameMultinameUsage(this, multiname.qname_index, t));
-                    foundMultinames[multiname.qname_index] = true;
-                }
-                for (int mp : multiname.params) {
-                    if (!foundMultinames[mp]) {
-                        ret.get(mp).add(new TypeNameMultinameUsage(this, mp, t));
-                        foundMultinames[mp] = true;
-                    }
-                }
-            }
-        }
-        return ret;
+        return getMultinameUsageIndex().getAllUsages();
     }
 
     public int findMethodInfoByName(int classId, String methodNameWithSuffix) {
@@ -1376,37 +1236,25 @@ public class ABC {
     }
 
     public int findClassByName(String nameWithSuffix) {
-        for (int c = 0; c < instance_info.size(); c++) {
-            DottedChain s = constants.getMultiname(instance_info.get(c).name_index).getNameWithNamespace(constants, true);
-            if (nameWithSuffix.equals(s.toRawString())) {
-                return c;
-            }
+        ABCClassIndexing indexing = getClassIndexing();
+        int c = indexing.findClassByName(nameWithSuffix);
+        if (c > -1 && !nameWithSuffix.equals(indexing.getClassName(c))) {
+            // renamed without clearing the index
+            clearClassIndexing();
+            c = getClassIndexing().findClassByName(nameWithSuffix);
         }
-        return -1;
+
+        return c;
     }
 
     public List<ScriptPack> findScriptPacksByPath(String name, List<ABC> allAbcs) {
         List<ScriptPack> ret = new ArrayList<>();
-        List<ScriptPack> allPacks = getScriptPacks(null, allAbcs); // todo: honfika: use filter parameter
         if (name.endsWith(".**") || name.equals("**") || name.endsWith(".++") || name.equals("++")) {
             name = name.substring(0, name.length() - 2);
-
-            for (ScriptPack en : allPacks) {
-                if (en.getClassPath().toString().startsWith(name)) {
-                    ret.add(en);
-                }
-            }
+            ret.addAll(getClassIndexing().findScriptPacksInPackage(name, true, allAbcs));
         } else if (name.endsWith(".*") || name.equals("*") || name.endsWith(".+") || name.equals("+")) {
             name = name.substring(0, name.length() - 1);
-            for (ScriptPack en : allPacks) {
-                String classPathStr = en.getClassPath().toString();
-                if (classPathStr.startsWith(name)) {
-                    String rem = name.isEmpty() ? classPathStr : classPathStr.substring(name.length());
-                    if (!rem.contains(".")) {
-                        ret.add(en);
-                    }
-                }
-            }
+            ret.addAll(getClassIndexing().findScriptPacksInPackage(name, false, allAbcs));
         } else {
             ScriptPack p = findScriptPackByPath(name, allAbcs);
             if (p != null) {
@@ -1418,13 +1266,7 @@ public class ABC {
     }
 
     public ScriptPack findScriptPackByPath(String name, List<ABC> allAbcs) {
-        List<ScriptPack> packs = getScriptPacks(null, allAbcs);
-        for (ScriptPack en : packs) {
-            if (en.getClassPath().toString().equals(name)) {
-                return en;
-            }
-        }
-        return null;
+        return getClassIndexing().findScriptPack(name, allAbcs);
     }
 
     public int getGlobalTraitId(TraitType type, boolean isStatic, int classIndex, int index) {
@@ -1484,6 +1326,8 @@ public class ABC {
         }
         instance_info.add(index, ii);
         class_info.add(index, ci);
+        invalidateMultinameUsages();
+        clearClassIndexing();
     }
 
     private void addClassInTraits(Traits traits, int index) {
@@ -1528,6 +1372,9 @@ public class ABC {
             instance_info.set(to, backupInstanceInfos.get(from));
             class_info.set(to, backupClassInfos.get(from));
         }
+
+        invalidateMultinameUsages();
+        clearClassIndexing();
     }
 
     private void reorganizeClassesInTraits(Traits traits, Map<Integer, Integer> classIndexMap) {
@@ -1563,6 +1410,8 @@ public class ABC {
         }
         instance_info.remove(index);
         class_info.remove(index);
+        invalidateMultinameUsages();
+        clearClassIndexing();
     }
 
     private void removeMethodFromTraits(Traits traits, int index) {
@@ -1633,12 +1482,15 @@ public class ABC {
         }
 
         abcMethodIndexing = null;
+        invalidateMultinameUsages();
 
         method_info.remove(index);
     }
 
     public boolean replaceScriptPack(As3ScriptReplacerInterface replacer, ScriptPack pack, String as) throws As3ScriptReplaceException, IOException, InterruptedException {
         replacer.replaceScript(pack, as);
+        invalidateMultinameUsages();
+        clearClassIndexing();
         ((Tag) parentTag).setModified(true);
         return pack.isSimple;
     }
@@ -1941,6 +1793,8 @@ public class ABC {
 
         //clear caches
         abcMethodIndexing = null;
+        invalidateMultinameUsages();
+        clearClassIndexing();
         getSwf().clearScriptCache();
         ((Tag) parentTag).setModified(true);
     }
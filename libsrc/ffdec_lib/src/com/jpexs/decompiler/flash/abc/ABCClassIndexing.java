@@ -0,0 +1,214 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash.abc;
+
+import com.jpexs.decompiler.flash.abc.types.ScriptInfo;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lookup of classes by name and of script packs by class path.
+ *
+ * Script packs are stored in a trie of the dot separated parts of their class
+ * paths, so package wildcard queries visit only the matching packages. The
+ * packs are created again for the matching scripts on each query.
+ *
+ * @author JPEXS
+ */
+public class ABCClassIndexing {
+
+    private final ABC abc;
+
+    private final Map<String, Integer> classIdxFromName;
+
+    private final Node root = new Node();
+
+    private final int scriptCount;
+
+    private final int classCount;
+
+    private final int nameModificationCount;
+
+    public ABCClassIndexing(ABC abc) {
+        this.abc = abc;
+        scriptCount = abc.script_info.size();
+        classCount = abc.instance_info.size();
+        nameModificationCount = abc.constants.getNameModificationCount();
+
+        classIdxFromName = new HashMap<>(abc.instance_info.size());
+        for (int c = 0; c < abc.instance_info.size(); c++) {
+            String name = getClassName(c);
+            if (!classIdxFromName.containsKey(name)) {
+                classIdxFromName.put(name, c);
+            }
+        }
+
+        for (int s = 0; s < abc.script_info.size(); s++) {
+            List<ScriptPack> packs = abc.script_info.get(s).getPacks(abc, s, null, null);
+            for (int p = 0; p < packs.size(); p++) {
+                String path = packs.get(p).getClassPath().toString();
+                Node node = root;
+                for (String part : path.split("\\.", -1)) {
+                    node = node.getOrAddChild(part);
+                }
+
+                node.packs.add(new PackRef(s, p));
+            }
+        }
+    }
+
+    String getClassName(int classIndex) {
+        return abc.constants.getMultiname(abc.instance_info.get(classIndex).name_index).getNameWithNamespace(abc.constants, true).toRawString();
+    }
+
+    /**
+     * Checks whether the index was created for current scripts, classes and
+     * constant pool names. Direct changes of multiname or namespace fields
+     * must be reported by clearing the index.
+     *
+     * @return True when up to date
+     */
+    public boolean isValid() {
+        return scriptCount == abc.script_info.size() && classCount == abc.instance_info.size()
+                && nameModificationCount == abc.constants.getNameModificationCount();
+    }
+
+    public int findClassByName(String nameWithSuffix) {
+        Integer c = classIdxFromName.get(nameWithSuffix);
+        return c == null ? -1 : c;
+    }
+
+    /**
+     * Finds script pack by class path.
+     *
+     * @param path Class path as returned by ClassPath.toString
+     * @param allAbcs All ABCs of the SWF
+     * @return Script pack or null
+     */
+    public ScriptPack findScriptPack(String path, List<ABC> allAbcs) {
+        Node node = findNode(path.split("\\.", -1));
+        if (node == null) {
+            return null;
+        }
+
+        List<ScriptPack> ret = getScriptPacks(node.packs, allAbcs);
+        return ret.isEmpty() ? null : ret.get(0);
+    }
+
+    /**
+     * Finds script packs in the package.
+     *
+     * @param packagePrefix Package name followed by dot or empty string for
+     * the top level package
+     * @param subPackages Include packs of the sub packages
+     * @param allAbcs All ABCs of the SWF
+     * @return Script packs in the order of scripts
+     */
+    public List<ScriptPack> findScriptPacksInPackage(String packagePrefix, boolean subPackages, List<ABC> allAbcs) {
+        Node node = root;
+        if (!packagePrefix.isEmpty()) {
+            String packageName = packagePrefix.substring(0, packagePrefix.length() - 1);
+            node = findNode(packageName.split("\\.", -1));
+        }
+
+        List<PackRef> refs = new ArrayList<>();
+        if (node != null) {
+            for (Node child : node.children.values()) {
+                if (subPackages) {
+                    child.collectPacks(refs);
+                } else {
+                    refs.addAll(child.packs);
+                }
+            }
+        }
+
+        refs.sort((PackRef r1, PackRef r2) -> r1.scriptIndex != r2.scriptIndex ? Integer.compare(r1.scriptIndex, r2.scriptIndex) : Integer.compare(r1.packIndex, r2.packIndex));
+        return getScriptPacks(refs, allAbcs);
+    }
+
+    private Node findNode(String[] parts) {
+        Node node = root;
+        for (String part : parts) {
+            node = node.children.get(part);
+            if (node == null) {
+                return null;
+            }
+        }
+
+        return node;
+    }
+
+    private List<ScriptPack> getScriptPacks(List<PackRef> refs, List<ABC> allAbcs) {
+        List<ScriptPack> ret = new ArrayList<>();
+        int lastScriptIndex = -1;
+        List<ScriptPack> scriptPacks = null;
+        for (PackRef ref : refs) {
+            ScriptInfo si = abc.script_info.get(ref.scriptIndex);
+            if (si.deleted) {
+                continue;
+            }
+
+            if (ref.scriptIndex != lastScriptIndex) {
+                scriptPacks = si.getPacks(abc, ref.scriptIndex, null, allAbcs);
+                lastScriptIndex = ref.scriptIndex;
+            }
+
+            if (ref.packIndex < scriptPacks.size()) {
+                ret.add(scriptPacks.get(ref.packIndex));
+            }
+        }
+
+        return ret;
+    }
+
+    private static class PackRef {
+
+        private final int scriptIndex;
+
+        private final int packIndex;
+
+        public PackRef(int scriptIndex, int packIndex) {
+            this.scriptIndex = scriptIndex;
+            this.packIndex = packIndex;
+        }
+    }
+
+    private static class Node {
+
+        private final Map<String, Node> children = new HashMap<>();
+
+        private final List<PackRef> packs = new ArrayList<>(1);
+
+        public Node getOrAddChild(String part) {
+            Node child = children.get(part);
+            if (child == null) {
+                child = new Node();
+                children.put(part, child);
+            }
+
+            return child;
+        }
+
+        public void collectPacks(List<PackRef> refs) {
+            refs.addAll(packs);
+            for (Node child : children.values()) {
+                child.collectPacks(refs);
+            }
+        }
+    }
+}
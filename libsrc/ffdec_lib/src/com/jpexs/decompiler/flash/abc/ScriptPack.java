@@ -15,6 +15,7 @@
  * License along with this library. */
 package com.jpexs.decompiler.flash.abc;
 
+import com.jpexs.decompiler.flash.DecompilerPool;
 import com.jpexs.decompiler.flash.SWF;
 import com.jpexs.decompiler.flash.abc.avm2.ConvertException;
 import com.jpexs.decompiler.flash.abc.avm2.instructions.AVM2Instruction;
@@ -338,7 +339,7 @@ public class ScriptPack extends AS3ClassTreeItem {
 
         Set<Integer> lonelyBody = new HashSet<>();
         try {
-            HighlightedText decompiled = SWF.getCached(this);
+            HighlightedText decompiled = SWF.getCached(this, DecompilerPool.Priority.EXPORT);
             int line = 1;
             String txt = decompiled.text;
             txt = txt.replace("\r", "");
@@ -532,7 +533,7 @@ public class ScriptPack extends AS3ClassTreeItem {
         Map<Integer, String> bodyToIdentifier = new HashMap<>();
 
         try {
-            HighlightedText decompiled = SWF.getCached(this);
+            HighlightedText decompiled = SWF.getCached(this, DecompilerPool.Priority.EXPORT);
             String txt = decompiled.text;
             txt = txt.replace("\r", "");
 
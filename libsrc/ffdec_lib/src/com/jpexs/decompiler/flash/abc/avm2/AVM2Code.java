@@ -2035,14 +2035,13 @@ public class AVM2Code implements Cloneable {
                                 if ((t instanceof TraitSlotConst)) {
                                     if (((TraitSlotConst) t).isConst() || initializerType == GraphTextWriter.TRAIT_CLASS_INITIALIZER || initializerType == GraphTextWriter.TRAIT_SCRIPT_INITIALIZER) {
                                         TraitSlotConst tsc = (TraitSlotConst) t;
-                                        if (value != null && !convertData.assignedValues.containsKey(tsc)) {
+                                        // initializers can be converted in parallel, the first assigned value wins
+                                        if (value != null && convertData.assignedValues.putIfAbsent(tsc, new AssignedValue(value, initializerType, methodIndex)) == null) {
 
                                             if (value instanceof NewFunctionAVM2Item) {
                                                 NewFunctionAVM2Item f = (NewFunctionAVM2Item) value;
                                                 f.functionName = tsc.getName(abc).getName(abc.constants, fullyQualifiedNames, true, true);
                                             }
-                                            AssignedValue av = new AssignedValue(value, initializerType, methodIndex);
-                                            convertData.assignedValues.put(tsc, av);
                                             list.remove(i);
                                             i--;
                                             continue;
@@ -29,7 +29,11 @@ import com.jpexs.decompiler.flash.types.annotations.Internal;
 import com.jpexs.decompiler.flash.types.annotations.SWFField;
 import com.jpexs.decompiler.flash.types.annotations.SWFVersion;
 import com.jpexs.decompiler.graph.DottedChain;
+import com.jpexs.helpers.DoubleHashArrayList;
+import com.jpexs.helpers.FloatHashArrayList;
 import com.jpexs.helpers.HashArrayList;
+import com.jpexs.helpers.LongHashArrayList;
+import com.jpexs.helpers.StringHashArrayList;
 import com.jpexs.helpers.utf8.Utf8PrintWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -49,13 +53,13 @@ public class AVM2ConstantPool implements Cloneable {
     private static final Logger logger = Logger.getLogger(AVM2ConstantPool.class.getName());
 
     @SWFField
-    private HashArrayList<Long> constant_int = new HashArrayList<>();
+    private LongHashArrayList constant_int = new LongHashArrayList();
 
     @SWFField
-    private HashArrayList<Long> constant_uint = new HashArrayList<>();
+    private LongHashArrayList constant_uint = new LongHashArrayList();
 
     @SWFField
-    private HashArrayList<Double> constant_double = new HashArrayList<>();
+    private DoubleHashArrayList constant_double = new DoubleHashArrayList();
 
     @SWFField
     @ABCVersionRequirements(exactMinor = 17)
@@ -64,7 +68,7 @@ public class AVM2ConstantPool implements Cloneable {
     @SWFField
     @SWFVersion(from = 16)
     @ABCVersionRequirements(minMajor = 47, minMinor = 16)
-    private HashArrayList<Float> constant_float = new HashArrayList<>();
+    private FloatHashArrayList constant_float = new FloatHashArrayList();
 
     /* Only for some versions */
     @SWFField
@@ -73,7 +77,7 @@ public class AVM2ConstantPool implements Cloneable {
     private HashArrayList<Float4> constant_float4 = new HashArrayList<>();
 
     @SWFField
-    private HashArrayList<String> constant_string = new HashArrayList<>();
+    private StringHashArrayList constant_string = new StringHashArrayList();
 
     @SWFField
     private HashArrayList<Namespace> constant_namespace = new HashArrayList<>();
@@ -90,6 +94,9 @@ public class AVM2ConstantPool implements Cloneable {
     @Internal
     public Map<String, DottedChain> dottedChainCache = new HashMap<>();
 
+    @Internal
+    private volatile int nameModificationCount;
+
     private void ensureDefault(List<?> list) {
         if (list.isEmpty()) {
             list.add(null);
@@ -168,9 +175,7 @@ public class AVM2ConstantPool implements Cloneable {
 
     public synchronized int addInt(long value) {
         ensureDefault(constant_int);
-        value = (int) value;
-        constant_int.add(value);
-        return constant_int.size() - 1;
+        return constant_int.addLong((int) value);
     }
 
     public synchronized int addNamespace(Namespace ns) {
@@ -197,15 +202,12 @@ public class AVM2ConstantPool implements Cloneable {
 
     public synchronized int addUInt(long value) {
         ensureDefault(constant_uint);
-        value &= 0xffffffffl;
-        constant_uint.add(value);
-        return constant_uint.size() - 1;
+        return constant_uint.addLong(value & 0xffffffffl);
     }
 
     public synchronized int addDouble(double value) {
         ensureDefault(constant_double);
-        constant_double.add(value);
-        return constant_double.size() - 1;
+        return constant_double.addDouble(value);
     }
 
     public synchronized int addDecimal(Decimal value) {
@@ -216,8 +218,7 @@ public class AVM2ConstantPool implements Cloneable {
 
     public synchronized int addFloat(Float value) {
         ensureDefault(constant_float);
-        constant_float.add(value);
-        return constant_float.size() - 1;
+        return constant_float.addFloat(value == null ? 0 : value);
     }
 
     public synchronized int addFloat4(Float4 value) {
@@ -233,32 +234,35 @@ public class AVM2ConstantPool implements Cloneable {
     }
 
     public long setInt(int index, long value) {
-        constant_int.set(index, value);
+        constant_int.setLong(index, value);
         return value;
     }
 
     public Namespace setNamespace(int index, Namespace ns) {
         constant_namespace.set(index, ns);
+        nameModificationCount++;
         return ns;
     }
 
     public NamespaceSet setNamespaceSet(int index, NamespaceSet nss) {
         constant_namespace_set.set(index, nss);
+        nameModificationCount++;
         return nss;
     }
 
     public Multiname setMultiname(int index, Multiname m) {
         constant_multiname.set(index, m);
+        nameModificationCount++;
         return m;
     }
 
     public long setUInt(int index, long value) {
-        constant_uint.set(index, value);
+        constant_uint.setLong(index, value);
         return value;
     }
 
     public double setDouble(int index, double value) {
-        constant_double.set(index, value);
+        constant_double.setDouble(index, value);
         return value;
     }
 
@@ -268,7 +272,7 @@ public class AVM2ConstantPool implements Cloneable {
     }
 
     public float setFloat(int index, float value) {
-        constant_float.set(index, value);
+        constant_float.setFloat(index, value);
         return value;
     }
 
@@ -279,15 +283,27 @@ public class AVM2ConstantPool implements Cloneable {
 
     public String setString(int index, String value) {
         constant_string.set(index, value);
+        nameModificationCount++;
         return value;
     }
 
+    /**
+     * Gets the number of replaced strings, namespaces, namespace sets and
+     * multinames. Indices which depend on names can compare it to detect
+     * renames.
+     *
+     * @return Modification count
+     */
+    public int getNameModificationCount() {
+        return nameModificationCount;
+    }
+
     public long getInt(int index) {
         try {
             if (index == 0) {
                 return 0;
             }
-            return constant_int.get(index);
+            return constant_int.getLong(index);
         } catch (IndexOutOfBoundsException ex) {
             logger.log(Level.SEVERE, "Int not found. Index: " + index, ex);
         }
@@ -350,7 +366,7 @@ public class AVM2ConstantPool implements Cloneable {
             if (index == 0) {
                 return 0;
             }
-            return constant_uint.get(index);
+            return constant_uint.getLong(index);
         } catch (IndexOutOfBoundsException ex) {
             logger.log(Level.SEVERE, "UInt not found. Index: " + index, ex);
         }
@@ -362,7 +378,7 @@ public class AVM2ConstantPool implements Cloneable {
             if (index == 0) {
                 return 0;
             }
-            return constant_double.get(index);
+            return constant_double.getDouble(index);
         } catch (IndexOutOfBoundsException ex) {
             logger.log(Level.SEVERE, "Double not found. Index: " + index, ex);
         }
@@ -388,7 +404,10 @@ public class AVM2ConstantPool implements Cloneable {
 
     public Float getFloat(int index) {
         try {
-            return constant_float.get(index);
+            if (index == 0) {
+                return null;
+            }
+            return constant_float.getFloat(index);
         } catch (IndexOutOfBoundsException ex) {
             logger.log(Level.SEVERE, "Float not found. Index: " + index, ex);
         }
@@ -504,19 +523,19 @@ public class AVM2ConstantPool implements Cloneable {
     }
 
     private int getIntId(long value) {
-        return constant_int.indexOf(value);
+        return constant_int.indexOfLong(value);
     }
 
     private int getUIntId(long value) {
-        return constant_uint.indexOf(value);
+        return constant_uint.indexOfLong(value);
     }
 
     private int getDoubleId(double value) {
-        return constant_double.indexOf(value);
+        return constant_double.indexOfDouble(value);
     }
 
     private int getFloatId(float value) {
-        return constant_float.indexOf(value);
+        return constant_float.indexOfFloat(value);
     }
 
     private int getFloat4Id(Float4 value) {
@@ -720,13 +739,13 @@ public class AVM2ConstantPool implements Cloneable {
     public AVM2ConstantPool clone() {
         try {
             AVM2ConstantPool ret = (AVM2ConstantPool) super.clone();
-            ret.constant_int = new HashArrayList<>(constant_int);
-            ret.constant_uint = new HashArrayList<>(constant_uint);
-            ret.constant_double = new HashArrayList<>(constant_double);
+            ret.constant_int = new LongHashArrayList(constant_int);
+            ret.constant_uint = new LongHashArrayList(constant_uint);
+            ret.constant_double = new DoubleHashArrayList(constant_double);
             ret.constant_decimal = new HashArrayList<>(constant_decimal);
-            ret.constant_float = new HashArrayList<>(constant_float);
+            ret.constant_float = new FloatHashArrayList(constant_float);
             ret.constant_float4 = new HashArrayList<>(constant_float4);
-            ret.constant_string = new HashArrayList<>(constant_string);
+            ret.constant_string = new StringHashArrayList(constant_string);
             ret.constant_namespace = new HashArrayList<>(constant_namespace);
             ret.constant_namespace_set = new HashArrayList<>(constant_namespace_set);
             ret.constant_multiname = new HashArrayList<>(constant_multiname);
@@ -792,22 +811,22 @@ public class AVM2ConstantPool implements Cloneable {
         }
         intMap.put(0, 0);
         for (int i = 1; i < secondPool.constant_int.size(); i++) {
-            Long val = secondPool.constant_int.get(i);
+            long val = secondPool.constant_int.getLong(i);
             intMap.put(i, getIntId(val, true));
         }
         uintMap.put(0, 0);
         for (int i = 1; i < secondPool.constant_uint.size(); i++) {
-            Long val = secondPool.constant_uint.get(i);
+            long val = secondPool.constant_uint.getLong(i);
             uintMap.put(i, getUIntId(val, true));
         }
         doubleMap.put(0, 0);
         for (int i = 1; i < secondPool.constant_double.size(); i++) {
-            Double val = secondPool.constant_double.get(i);
+            double val = secondPool.constant_double.getDouble(i);
             doubleMap.put(i, getDoubleId(val, true));
         }
         floatMap.put(0, 0);
         for (int i = 1; i < secondPool.constant_float.size(); i++) {
-            Float val = secondPool.constant_float.get(i);
+            float val = secondPool.constant_float.getFloat(i);
             floatMap.put(i, getFloatId(val, true));
         }
         float4Map.put(0, 0);
@@ -92,6 +92,7 @@ public class AbcMultiNameCollisionFixer {
             ret++;
         }
         if (ret > 0) {
+            abc.clearClassIndexing();
             ((Tag) abc.parentTag).setModified(true);
         }
         return ret;
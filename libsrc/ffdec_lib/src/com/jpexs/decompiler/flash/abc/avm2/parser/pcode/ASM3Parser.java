@@ -217,6 +217,7 @@ public class ASM3Parser {
         tsc.value_kind = val.value_kind;
         tsc.value_index = val.value_index;
         tsc.name_index = name_index;
+        abc.getMultinameUsageIndex().invalidateTrait(tsc);
         return true;
     }
 
@@ -1128,6 +1129,10 @@ public class ASM3Parser {
                 info.optional[i] = optional.get(i);
             }
         }
+        if (trait != null) {
+            abc.getMultinameUsageIndex().invalidateTrait(trait);
+        }
+        abc.invalidateMultinameUsages(body.method_info);
         abc.refreshMultinameNamespaceSuffixes();
         return code;
     }
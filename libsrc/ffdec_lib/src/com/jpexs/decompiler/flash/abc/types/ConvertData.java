@@ -17,8 +17,8 @@ package com.jpexs.decompiler.flash.abc.types;
 
 import com.jpexs.decompiler.flash.abc.types.traits.TraitSlotConst;
 import com.jpexs.decompiler.flash.configuration.Configuration;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  *
@@ -28,7 +28,11 @@ public class ConvertData {
 
     public int deobfuscationMode;
 
-    public Map<TraitSlotConst, AssignedValue> assignedValues = new HashMap<>();
+    /**
+     * Values assigned in initializers, initializers can be converted in
+     * parallel
+     */
+    public Map<TraitSlotConst, AssignedValue> assignedValues = new ConcurrentHashMap<>();
 
     public boolean thisHasDefaultToPrimitive;
 
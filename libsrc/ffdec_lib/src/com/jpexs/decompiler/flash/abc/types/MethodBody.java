@@ -42,6 +42,8 @@ import com.jpexs.decompiler.graph.model.LocalData;
 import com.jpexs.helpers.CancellableWorker;
 import com.jpexs.helpers.Helper;
 import com.jpexs.helpers.MemoryInputStream;
+import com.jpexs.helpers.stat.Counter;
+import com.jpexs.helpers.stat.Metrics;
 import com.jpexs.helpers.stat.Statistics;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -65,6 +67,8 @@ public final class MethodBody implements Cloneable {
 
     private static final String DEBUG_FIXED = null;
 
+    private static final Counter methodsDecompiled = Metrics.counter(Metrics.AS3_METHODS_DECOMPILED);
+
     @Internal
     public boolean deleted;
 
@@ -120,10 +124,18 @@ public final class MethodBody implements Cloneable {
     public synchronized void setCodeBytes(byte codeBytes[]) {
         this.codeBytes = codeBytes;
         this.code = null;
+        invalidateMultinameUsages();
     }
 
     public void setModified() {
         this.codeBytes = null;
+        invalidateMultinameUsages();
+    }
+
+    private void invalidateMultinameUsages() {
+        if (abc != null) {
+            abc.invalidateMultinameUsages(method_info);
+        }
     }
 
     public synchronized byte[] getCodeBytes() {
@@ -154,6 +166,7 @@ public final class MethodBody implements Cloneable {
     public void setCode(AVM2Code code) {
         this.code = code;
         this.codeBytes = null;
+        invalidateMultinameUsages();
     }
 
     public List<Integer> getExceptionEntries() {
@@ -306,6 +319,7 @@ public final class MethodBody implements Cloneable {
                     @Override
                     public Void call() throws InterruptedException {
                         try (Statistics s1 = new Statistics("MethodBody.convert")) {
+                            methodsDecompiled.increment();
                             MethodBody converted = convertMethodBody(convertData, path, isStatic, scriptIndex, classIndex, abc, trait, scopeStack, initializerType != GraphTextWriter.TRAIT_INSTANCE_INITIALIZER, fullyQualifiedNames, initTraits);
                             HashMap<Integer, String> localRegNames = getLocalRegNames(abc);
                             List<GraphTargetItem> convertedItems1;
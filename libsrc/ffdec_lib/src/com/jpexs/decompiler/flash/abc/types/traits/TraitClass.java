@@ -37,6 +37,7 @@ import com.jpexs.decompiler.graph.TypeItem;
 import com.jpexs.helpers.Helper;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  *
@@ -217,30 +218,65 @@ public class TraitClass extends Trait implements TraitWithSlot {
         //for simplification of String(this)
         convertData.thisHasDefaultToPrimitive = null == index.findProperty(new AbcIndexing.PropertyDef("toString", new TypeItem(instanceInfo.getName(abc.constants).getNameWithNamespace(abc.constants, true)), abc, abc.constants.getNamespaceId(Namespace.KIND_PACKAGE, DottedChain.TOPLEVEL, abc.constants.getStringId("", true), true)), false, true);
 
+        final List<DottedChain> fqn = fullyQualifiedNames;
+        List<Callable<Void>> initializerTasks = new ArrayList<>();
+
         //class initializer
         int bodyIndex = abc.findBodyIndex(classInfo.cinit_index);
         if (bodyIndex != -1) {
-            writer.mark();
-            List<Traits> ts = new ArrayList<>();
-            ts.add(classInfo.static_traits);
-            abc.bodies.get(bodyIndex).convert(convertData, path +/*packageName +*/ "/" + instanceInfoName + ".staticinitializer", exportMode, true, classInfo.cinit_index, scriptIndex, class_info, abc, this, new ScopeStack(), GraphTextWriter.TRAIT_CLASS_INITIALIZER, writer, fullyQualifiedNames, ts, true);
-            classInitializerIsEmpty = !writer.getMark();
+            MethodBody body = abc.bodies.get(bodyIndex);
+            initializerTasks.add(() -> {
+                NulWriter w = parallel ? new NulWriter() : writer;
+                w.mark();
+                List<Traits> ts = new ArrayList<>();
+                ts.add(classInfo.static_traits);
+                body.convert(convertData, path +/*packageName +*/ "/" + instanceInfoName + ".staticinitializer", exportMode, true, classInfo.cinit_index, scriptIndex, class_info, abc, this, new ScopeStack(), GraphTextWriter.TRAIT_CLASS_INITIALIZER, w, fqn, ts, true);
+                classInitializerIsEmpty = !w.getMark();
+                return null;
+            });
         }
 
         //constructor - instance initializer
         if (!instanceInfo.isInterface()) {
             bodyIndex = abc.findBodyIndex(instanceInfo.iinit_index);
             if (bodyIndex != -1) {
-                List<Traits> ts = new ArrayList<>();
-                ts.add(instanceInfo.instance_traits);
-                abc.bodies.get(bodyIndex).convert(convertData, path +/*packageName +*/ "/" + instanceInfoName + ".initializer", exportMode, false, instanceInfo.iinit_index, scriptIndex, class_info, abc, this, new ScopeStack(), GraphTextWriter.TRAIT_INSTANCE_INITIALIZER, writer, fullyQualifiedNames, ts, true);
+                MethodBody body = abc.bodies.get(bodyIndex);
+                initializerTasks.add(() -> {
+                    List<Traits> ts = new ArrayList<>();
+                    ts.add(instanceInfo.instance_traits);
+                    body.convert(convertData, path +/*packageName +*/ "/" + instanceInfoName + ".initializer", exportMode, false, instanceInfo.iinit_index, scriptIndex, class_info, abc, this, new ScopeStack(), GraphTextWriter.TRAIT_INSTANCE_INITIALIZER, parallel ? new NulWriter() : writer, fqn, ts, true);
+                    return null;
+                });
             }
         }
 
-        //static variables,constants & methods
-        classInfo.static_traits.convert(this, convertData, path +/*packageName +*/ "/" + instanceInfoName, abc, true, exportMode, false, scriptIndex, class_info, writer, fullyQualifiedNames, parallel);
+        if (!parallel) {
+            for (Callable<Void> task : initializerTasks) {
+                try {
+                    task.call();
+                } catch (InterruptedException ex) {
+                    throw ex;
+                } catch (Exception ex) {
+                    // MethodBody.convert throws only InterruptedException
+                    throw new Error("This should never happen.", ex);
+                }
+            }
+
+            //static variables,constants & methods
+            classInfo.static_traits.convert(this, convertData, path +/*packageName +*/ "/" + instanceInfoName, abc, true, exportMode, false, scriptIndex, class_info, writer, fullyQualifiedNames, parallel);
+
+            instanceInfo.instance_traits.convert(this, convertData, path +/*packageName +*/ "/" + instanceInfoName, abc, false, exportMode, false, scriptIndex, class_info, writer, fullyQualifiedNames, parallel);
+            return;
+        }
+
+        // the traits use values assigned in the initializers, so the initializers are converted first
+        Traits.invokeConvertTasks(initializerTasks);
 
-        instanceInfo.instance_traits.convert(this, convertData, path +/*packageName +*/ "/" + instanceInfoName, abc, false, exportMode, false, scriptIndex, class_info, writer, fullyQualifiedNames, parallel);
+        // static and instance traits are converted together, so a class with many methods keeps all threads busy
+        List<Callable<Void>> traitTasks = new ArrayList<>();
+        traitTasks.addAll(classInfo.static_traits.getConvertTasks(this, convertData, path +/*packageName +*/ "/" + instanceInfoName, abc, true, exportMode, false, scriptIndex, class_info, fullyQualifiedNames));
+        traitTasks.addAll(instanceInfo.instance_traits.getConvertTasks(this, convertData, path +/*packageName +*/ "/" + instanceInfoName, abc, false, exportMode, false, scriptIndex, class_info, fullyQualifiedNames));
+        Traits.invokeConvertTasks(traitTasks);
     }
 
     @Override
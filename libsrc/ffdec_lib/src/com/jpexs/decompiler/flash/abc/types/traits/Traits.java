@@ -17,20 +17,19 @@ package com.jpexs.decompiler.flash.abc.types.traits;
 
 import com.jpexs.decompiler.flash.abc.ABC;
 import com.jpexs.decompiler.flash.abc.types.ConvertData;
-import com.jpexs.decompiler.flash.configuration.Configuration;
 import com.jpexs.decompiler.flash.exporters.modes.ScriptExportMode;
 import com.jpexs.decompiler.flash.exporters.script.Dependency;
 import com.jpexs.decompiler.flash.helpers.GraphTextWriter;
 import com.jpexs.decompiler.flash.helpers.NulWriter;
 import com.jpexs.decompiler.flash.search.MethodId;
 import com.jpexs.decompiler.graph.DottedChain;
+import com.jpexs.helpers.SharedForkJoinPool;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -197,28 +196,46 @@ public class Traits implements Cloneable, Serializable {
                 task.call();
             }
         } else {
-            ExecutorService executor = Executors.newFixedThreadPool(Configuration.getParallelThreadCount());
-            List<Future<Void>> futureResults;
+            invokeConvertTasks(getConvertTasks(parent, convertData, path, abc, isStatic, exportMode, makePackages, scriptIndex, classIndex, fullyQualifiedNames));
+        }
+    }
 
-            futureResults = new ArrayList<>();
-            for (int t = 0; t < traits.size(); t++) {
-                // each convert task needs a separate NulWriter, because they are executed parallel
-                TraitConvertTask task = new TraitConvertTask(traits.get(t), parent, convertData, makePackages, path, abc, isStatic, exportMode, scriptIndex, classIndex, new NulWriter(), fullyQualifiedNames, t, parallel);
-                Future<Void> future = executor.submit(task);
-                futureResults.add(future);
-            }
+    /**
+     * Creates tasks for parallel converting of the traits
+     *
+     * @return Tasks
+     */
+    List<Callable<Void>> getConvertTasks(Trait parent, ConvertData convertData, String path, ABC abc, boolean isStatic, ScriptExportMode exportMode, boolean makePackages, int scriptIndex, int classIndex, List<DottedChain> fullyQualifiedNames) {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < traits.size(); t++) {
+            // each convert task needs a separate NulWriter, because they are executed parallel
+            tasks.add(new TraitConvertTask(traits.get(t), parent, convertData, makePackages, path, abc, isStatic, exportMode, scriptIndex, classIndex, new NulWriter(), fullyQualifiedNames, t, true));
+        }
+
+        return tasks;
+    }
 
-            for (int f = 0; f < futureResults.size(); f++) {
-                try {
-                    futureResults.get(f).get();
-                } catch (InterruptedException ex) {
-                    executor.shutdownNow();
-                    throw ex;
-                } catch (ExecutionException ex) {
-                    Logger.getLogger(Traits.class.getName()).log(Level.SEVERE, "Error during traits converting", ex);
+    /**
+     * Runs the tasks in the shared fork-join pool
+     *
+     * @param tasks Tasks
+     * @throws InterruptedException On interrupt
+     */
+    static void invokeConvertTasks(List<Callable<Void>> tasks) throws InterruptedException {
+        List<Future<Void>> futureResults = SharedForkJoinPool.invokeAll(tasks);
+        for (int f = 0; f < futureResults.size(); f++) {
+            try {
+                futureResults.get(f).get();
+            } catch (CancellationException ex) {
+                // the decompilation which started the tasks was cancelled
+                throw new InterruptedException();
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof InterruptedException) {
+                    throw (InterruptedException) ex.getCause();
                 }
+
+                Logger.getLogger(Traits.class.getName()).log(Level.SEVERE, "Error during traits converting", ex);
             }
-            executor.shutdown();
         }
     }
 
@@ -0,0 +1,462 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash.abc.usages;
+
+import com.jpexs.decompiler.flash.abc.ABC;
+import com.jpexs.decompiler.flash.abc.avm2.AVM2Code;
+import com.jpexs.decompiler.flash.abc.avm2.instructions.AVM2Instruction;
+import com.jpexs.decompiler.flash.abc.types.ABCException;
+import com.jpexs.decompiler.flash.abc.types.InstanceInfo;
+import com.jpexs.decompiler.flash.abc.types.MethodBody;
+import com.jpexs.decompiler.flash.abc.types.MethodInfo;
+import com.jpexs.decompiler.flash.abc.types.Multiname;
+import com.jpexs.decompiler.flash.abc.types.traits.Trait;
+import com.jpexs.decompiler.flash.abc.types.traits.TraitMethodGetterSetter;
+import com.jpexs.decompiler.flash.abc.types.traits.TraitSlotConst;
+import com.jpexs.decompiler.flash.abc.types.traits.Traits;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Inverted index of multiname usages in ABC.
+ *
+ * The usages are collected per unit: a trait of script, instance or class, a
+ * class header with its initializers and the typenames of the constant pool.
+ * When a method body or a trait changes, only its unit is collected again on
+ * the next query. Adding or removing scripts, classes, traits or methods
+ * rebuilds the whole index, ABC.invalidateMultinameUsages has to be called
+ * after such a change. Queries only compare a modification count, they do not
+ * walk the ABC.
+ *
+ * @author JPEXS
+ */
+public class MultinameUsageIndex {
+
+    private static final int UNIT_SCRIPT_TRAIT = 0;
+
+    private static final int UNIT_CLASS = 1;
+
+    private static final int UNIT_CLASS_TRAIT = 2;
+
+    private static final int UNIT_TYPENAMES = 3;
+
+    private final ABC abc;
+
+    private volatile State state;
+
+    /**
+     * Incremented by each structural change, the state is rebuilt when it was
+     * built for a different count
+     */
+    private final AtomicInteger modificationCount = new AtomicInteger();
+
+    public MultinameUsageIndex(ABC abc) {
+        this.abc = abc;
+    }
+
+    /**
+     * Gets usages of the multiname in the same order as the full scan of ABC
+     * returns them.
+     *
+     * @param multinameIndex Multiname index
+     * @return List of usages
+     */
+    public synchronized List<MultinameUsage> getUsages(int multinameIndex) {
+        List<MultinameUsage> ret = new ArrayList<>();
+        if (multinameIndex == 0) {
+            return ret;
+        }
+
+        State s = refresh();
+        TreeSet<Unit> units = s.multinameUnits.get(multinameIndex);
+        if (units != null) {
+            for (Unit unit : units) {
+                ret.addAll(unit.usages.get(multinameIndex));
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Gets usages of all multinames.
+     *
+     * @return List of usages for each multiname index
+     */
+    public synchronized List<List<MultinameUsage>> getAllUsages() {
+        int multinameCount = abc.constants.getMultinameCount();
+        List<List<MultinameUsage>> ret = new ArrayList<>(multinameCount);
+        for (int i = 0; i < multinameCount; i++) {
+            ret.add(new ArrayList<>());
+        }
+
+        State s = refresh();
+        for (Unit unit : s.units) {
+            for (Map.Entry<Integer, List<MultinameUsage>> entry : unit.usages.entrySet()) {
+                int multinameIndex = entry.getKey();
+                if (multinameIndex < multinameCount) {
+                    ret.get(multinameIndex).addAll(entry.getValue());
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Marks the method info and its body as changed. Can be called from any
+     * thread, also while the index is being refreshed.
+     *
+     * @param methodInfo Method info index
+     */
+    public void invalidateMethod(int methodInfo) {
+        State s = state;
+        if (s == null) {
+            return;
+        }
+
+        List<Unit> units = s.methodUnits.get(methodInfo);
+        if (units != null) {
+            for (Unit unit : units) {
+                unit.dirty = true;
+            }
+
+            s.dirty = true;
+        }
+    }
+
+    /**
+     * Marks the trait as changed.
+     *
+     * @param trait Trait
+     */
+    public synchronized void invalidateTrait(Trait trait) {
+        State s = state;
+        if (s == null) {
+            return;
+        }
+
+        Unit unit = s.traitUnits.get(trait);
+        if (unit == null) {
+            // unknown trait, for example new trait of a method body
+            modificationCount.incrementAndGet();
+            return;
+        }
+
+        unit.dirty = true;
+        s.dirty = true;
+    }
+
+    /**
+     * Clears the index, it is rebuilt on the next query.
+     */
+    public void invalidate() {
+        modificationCount.incrementAndGet();
+    }
+
+    private State refresh() {
+        State s = state;
+        int count = modificationCount.get();
+        if (s == null || s.modificationCount != count) {
+            s = new State(count);
+            for (Unit unit : createUnits()) {
+                s.units.add(unit);
+                s.update(unit);
+            }
+
+            state = s;
+            return s;
+        }
+
+        if (s.multinameCount != abc.constants.getMultinameCount()) {
+            s.units.get(s.units.size() - 1).dirty = true;
+            s.dirty = true;
+        }
+
+        if (s.dirty) {
+            s.dirty = false;
+            for (Unit unit : s.units) {
+                if (unit.dirty) {
+                    s.update(unit);
+                }
+            }
+        }
+
+        return s;
+    }
+
+    private List<Unit> createUnits() {
+        List<Unit> ret = new ArrayList<>();
+        for (int s = 0; s < abc.script_info.size(); s++) {
+            Traits traits = abc.script_info.get(s).traits;
+            for (int t = 0; t < traits.traits.size(); t++) {
+                ret.add(new Unit(ret.size(), UNIT_SCRIPT_TRAIT, s, -1, TraitMultinameUsage.TRAITS_TYPE_SCRIPT, traits, t));
+            }
+        }
+
+        for (int c = 0; c < abc.instance_info.size(); c++) {
+            ret.add(new Unit(ret.size(), UNIT_CLASS, -1, c, 0, null, -1));
+            Traits traits = abc.instance_info.get(c).instance_traits;
+            for (int t = 0; t < traits.traits.size(); t++) {
+                ret.add(new Unit(ret.size(), UNIT_CLASS_TRAIT, -1/*FIXME*/, c, TraitMultinameUsage.TRAITS_TYPE_INSTANCE, traits, t));
+            }
+
+            traits = abc.class_info.get(c).static_traits;
+            for (int t = 0; t < traits.traits.size(); t++) {
+                ret.add(new Unit(ret.size(), UNIT_CLASS_TRAIT, -1/*FIXME*/, c, TraitMultinameUsage.TRAITS_TYPE_CLASS, traits, t));
+            }
+        }
+
+        ret.add(new Unit(ret.size(), UNIT_TYPENAMES, -1, -1, 0, null, -1));
+        return ret;
+    }
+
+    private class State {
+
+        private final int modificationCount;
+
+        private final List<Unit> units = new ArrayList<>();
+
+        private final Map<Integer, TreeSet<Unit>> multinameUnits = new HashMap<>();
+
+        private final Map<Integer, List<Unit>> methodUnits = new ConcurrentHashMap<>();
+
+        private final Map<Trait, Unit> traitUnits = new IdentityHashMap<>();
+
+        private int multinameCount;
+
+        private volatile boolean dirty;
+
+        public State(int modificationCount) {
+            this.modificationCount = modificationCount;
+        }
+
+        public void update(Unit unit) {
+            for (int multinameIndex : unit.usages.keySet()) {
+                TreeSet<Unit> units = multinameUnits.get(multinameIndex);
+                units.remove(unit);
+                if (units.isEmpty()) {
+                    multinameUnits.remove(multinameIndex);
+                }
+            }
+
+            for (int methodInfo : unit.methods) {
+                List<Unit> units = new ArrayList<>(methodUnits.get(methodInfo));
+                units.remove(unit);
+                if (units.isEmpty()) {
+                    methodUnits.remove(methodInfo);
+                } else {
+                    methodUnits.put(methodInfo, units);
+                }
+            }
+
+            for (Trait trait : unit.traitSet) {
+                traitUnits.remove(trait);
+            }
+
+            unit.collect();
+            if (unit.kind == UNIT_TYPENAMES) {
+                multinameCount = abc.constants.getMultinameCount();
+            }
+
+            for (int multinameIndex : unit.usages.keySet()) {
+                TreeSet<Unit> units = multinameUnits.get(multinameIndex);
+                if (units == null) {
+                    units = new TreeSet<>((Unit u1, Unit u2) -> Integer.compare(u1.ordinal, u2.ordinal));
+                    multinameUnits.put(multinameIndex, units);
+                }
+
+                units.add(unit);
+            }
+
+            for (int methodInfo : unit.methods) {
+                List<Unit> oldUnits = methodUnits.get(methodInfo);
+                List<Unit> units = oldUnits == null ? new ArrayList<>() : new ArrayList<>(oldUnits);
+                units.add(unit);
+                methodUnits.put(methodInfo, units);
+            }
+
+            for (Trait trait : unit.traitSet) {
+                traitUnits.put(trait, unit);
+            }
+        }
+    }
+
+    private class Unit {
+
+        private final int ordinal;
+
+        private final int kind;
+
+        private final int scriptIndex;
+
+        private final int classIndex;
+
+        private final int traitsType;
+
+        private final Traits traits;
+
+        private final int traitIndex;
+
+        private Map<Integer, List<MultinameUsage>> usages = new HashMap<>();
+
+        private Set<Integer> methods = new HashSet<>();
+
+        private Set<Trait> traitSet = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private volatile boolean dirty;
+
+        public Unit(int ordinal, int kind, int scriptIndex, int classIndex, int traitsType, Traits traits, int traitIndex) {
+            this.ordinal = ordinal;
+            this.kind = kind;
+            this.scriptIndex = scriptIndex;
+            this.classIndex = classIndex;
+            this.traitsType = traitsType;
+            this.traits = traits;
+            this.traitIndex = traitIndex;
+        }
+
+        public void collect() {
+            dirty = false;
+            usages = new HashMap<>();
+            methods = new HashSet<>();
+            traitSet = Collections.newSetFromMap(new IdentityHashMap<>());
+            switch (kind) {
+                case UNIT_SCRIPT_TRAIT:
+                case UNIT_CLASS_TRAIT:
+                    collectTrait(traits, traitIndex, traitsType, scriptIndex, classIndex, -1);
+                    break;
+                case UNIT_CLASS:
+                    collectClass();
+                    break;
+                case UNIT_TYPENAMES:
+                    collectTypeNames();
+                    break;
+            }
+        }
+
+        private void add(int multinameIndex, MultinameUsage usage) {
+            if (multinameIndex == 0) {
+                return;
+            }
+
+            List<MultinameUsage> list = usages.get(multinameIndex);
+            if (list == null) {
+                list = new ArrayList<>();
+                usages.put(multinameIndex, list);
+            }
+
+            list.add(usage);
+        }
+
+        private void collectClass() {
+            InstanceInfo ii = abc.instance_info.get(classIndex);
+            add(ii.name_index, new ClassNameMultinameUsage(abc, ii.name_index, classIndex));
+            add(ii.super_index, new ExtendsMultinameUsage(abc, ii.super_index, classIndex));
+            for (int i = 0; i < ii.interfaces.length; i++) {
+                add(ii.interfaces[i], new ImplementsMultinameUsage(abc, ii.interfaces[i], classIndex));
+            }
+
+            collectMethod(ii.iinit_index, -1/*FIXME*/, classIndex, 0, TraitMultinameUsage.TRAITS_TYPE_INSTANCE, true, null, -1);
+            collectMethod(abc.class_info.get(classIndex).cinit_index, -1/*FIXME*/, classIndex, 0, TraitMultinameUsage.TRAITS_TYPE_CLASS, true, null, -1);
+        }
+
+        private void collectTrait(Traits traits, int t, int traitsType, int scriptIndex, int classIndex, int parentTraitIndex) {
+            Trait trait = traits.traits.get(t);
+            traitSet.add(trait);
+            if (trait instanceof TraitSlotConst) {
+                TraitSlotConst tsc = (TraitSlotConst) trait;
+                add(tsc.name_index, new ConstVarNameMultinameUsage(abc, tsc.name_index, scriptIndex, classIndex, t, traitsType, traits, parentTraitIndex));
+                add(tsc.type_index, new ConstVarTypeMultinameUsage(abc, tsc.type_index, scriptIndex, classIndex, t, traitsType, traits, parentTraitIndex));
+            }
+
+            if (trait instanceof TraitMethodGetterSetter) {
+                TraitMethodGetterSetter tmgs = (TraitMethodGetterSetter) trait;
+                add(tmgs.name_index, new MethodNameMultinameUsage(abc, tmgs.name_index, scriptIndex, classIndex, t, traitsType, false, traits, parentTraitIndex));
+                collectMethod(tmgs.method_info, scriptIndex, classIndex, t, traitsType, false, traits, parentTraitIndex);
+            }
+        }
+
+        private void collectMethod(int methodInfo, int scriptIndex, int classIndex, int traitIndex, int traitsType, boolean isInitializer, Traits traits, int parentTraitIndex) {
+            methods.add(methodInfo);
+            MethodInfo mi = abc.method_info.get(methodInfo);
+            Set<Integer> found = new HashSet<>();
+            for (int p : mi.param_types) {
+                if (found.add(p)) {
+                    add(p, new MethodParamsMultinameUsage(abc, p, scriptIndex, classIndex, traitIndex, traitsType, isInitializer, traits, parentTraitIndex));
+                }
+            }
+
+            add(mi.ret_type, new MethodReturnTypeMultinameUsage(abc, mi.ret_type, scriptIndex, classIndex, traitIndex, traitsType, isInitializer, traits, parentTraitIndex));
+
+            MethodBody body = abc.findBody(methodInfo);
+            if (body == null) {
+                return;
+            }
+
+            for (int t = 0; t < body.traits.traits.size(); t++) {
+                collectTrait(body.traits, t, traitsType, scriptIndex, classIndex, traitIndex);
+            }
+
+            found.clear();
+            for (ABCException e : body.exceptions) {
+                found.add(e.name_index);
+                found.add(e.type_index);
+            }
+
+            for (AVM2Instruction ins : body.getCode().code) {
+                for (int o = 0; o < ins.definition.operands.length; o++) {
+                    if (ins.definition.operands[o] == AVM2Code.DAT_MULTINAME_INDEX) {
+                        found.add(ins.operands[o]);
+                    }
+                }
+            }
+
+            for (int multinameIndex : found) {
+                add(multinameIndex, new MethodBodyMultinameUsage(abc, multinameIndex, scriptIndex, classIndex, traitIndex, traitsType, isInitializer, traits, parentTraitIndex));
+            }
+        }
+
+        private void collectTypeNames() {
+            Set<Integer> found = new HashSet<>();
+            for (int t = 1; t < abc.constants.getMultinameCount(); t++) {
+                Multiname multiname = abc.constants.getMultiname(t);
+                if (multiname.kind != Multiname.TYPENAME) {
+                    continue;
+                }
+
+                found.clear();
+                found.add(multiname.qname_index);
+                for (int mp : multiname.params) {
+                    found.add(mp);
+                }
+
+                for (int multinameIndex : found) {
+                    add(multinameIndex, new TypeNameMultinameUsage(abc, multinameIndex, t));
+                }
+            }
+        }
+    }
+}
@@ -505,7 +505,7 @@ public abstract class Action implements GraphSourceItem {
         HashMap<GraphSourceItemContainer, Integer> containersPos = new HashMap<>();
         offset = address;
         boolean lastPush = false;
-        byte[] fileData = list.fileData;
+        ByteArrayRange fileData = list.fileData;
         for (int pos = 0; pos < list.size(); pos++) {
             Action a = list.get(pos);
 
@@ -530,24 +530,16 @@ public abstract class Action implements GraphSourceItem {
                 writer.appendNoHilight(Helper.bytesToHexString(bytes));
 
                 if (Configuration.showOriginalBytesInPcodeHex.get()) {
-                    if (fileData != null && fileOffset != -1 && fileData.length > fileOffset + bytes.length - 1) {
-                        boolean same = true;
-                        for (int i = 0; i < bytes.length; i++) {
-                            byte b = fileData[(int) (fileOffset + i)];
-                            if (b != bytes[i]) {
-                                same = false;
-                                break;
-                            }
-                        }
-
-                        if (!same) {
+                    if (fileData != null && fileOffset >= fileData.getPos() && fileOffset + bytes.length <= fileData.getPos() + fileData.getLength()) {
+                        byte[] originalBytes = fileData.getRangeData((int) (fileOffset - fileData.getPos()), bytes.length);
+                        if (!Arrays.equals(originalBytes, bytes)) {
                             writer.appendNoHilight(" (");
-                            for (int i = 0; i < bytes.length; i++) {
+                            for (int i = 0; i < originalBytes.length; i++) {
                                 if (i != 0) {
                                     writer.appendNoHilight(" ");
                                 }
 
-                                writer.appendNoHilight(Helper.byteToHex(fileData[(int) (fileOffset + i)]));
+                                writer.appendNoHilight(Helper.byteToHex(originalBytes[i]));
                             }
 
                             writer.appendNoHilight(")");
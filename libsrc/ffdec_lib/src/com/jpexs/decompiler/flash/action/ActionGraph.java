@@ -50,6 +50,8 @@ import com.jpexs.decompiler.graph.model.ContinueItem;
 import com.jpexs.decompiler.graph.model.DefaultItem;
 import com.jpexs.decompiler.graph.model.SwitchItem;
 import com.jpexs.decompiler.graph.model.WhileItem;
+import com.jpexs.helpers.stat.Counter;
+import com.jpexs.helpers.stat.Metrics;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -62,6 +64,8 @@ import java.util.Set;
  */
 public class ActionGraph extends Graph {
 
+    private static final Counter blocksDecompiled = Metrics.counter(Metrics.AS2_BLOCKS_DECOMPILED);
+
     public ActionGraph(List<Action> code, HashMap<Integer, String> registerNames, HashMap<String, GraphTargetItem> variables, HashMap<String, GraphTargetItem> functions, int version) {
         super(new ActionGraphSource(code, version, registerNames, variables, functions), new ArrayList<>());
         //this.version = version;
@@ -74,6 +78,7 @@ public class ActionGraph extends Graph {
 
     public static List<GraphTargetItem> translateViaGraph(HashMap<Integer, String> registerNames, HashMap<String, GraphTargetItem> variables, HashMap<String, GraphTargetItem> functions, List<Action> code, int version, int staticOperation, String path) throws InterruptedException {
 
+        blocksDecompiled.increment();
         ActionGraph g = new ActionGraph(code, registerNames, variables, functions, version);
         ActionLocalData localData = new ActionLocalData(registerNames);
         g.init(localData);
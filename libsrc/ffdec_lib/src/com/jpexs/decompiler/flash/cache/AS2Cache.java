@@ -16,9 +16,13 @@
 package com.jpexs.decompiler.flash.cache;
 
 import com.jpexs.decompiler.flash.action.ActionList;
+import com.jpexs.decompiler.flash.configuration.Configuration;
 import com.jpexs.decompiler.flash.helpers.HighlightedText;
+import com.jpexs.decompiler.flash.search.TrigramIndex;
 import com.jpexs.decompiler.flash.tags.base.ASMSource;
 import com.jpexs.helpers.Cache;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  *
@@ -26,13 +30,20 @@ import com.jpexs.helpers.Cache;
  */
 public class AS2Cache {
 
-    private final Cache<ASMSource, HighlightedText> cache = Cache.getInstance(true, false, "as2");
+    private final Cache<ASMSource, HighlightedText> cache = Cache.getInstance(true, false, "as2", Configuration.maxCacheSizeAs2, HighlightedText::getEstimatedSize);
 
-    private final Cache<ASMSource, ActionList> pcodeCache = Cache.getInstance(true, true, "as2pcode");
+    private final Cache<ASMSource, ActionList> pcodeCache = Cache.getInstance(true, true, "as2pcode", Configuration.maxCacheSizeAs2PCode, (ActionList list) -> 64L * list.size());
+
+    /**
+     * Search indices of the decompiled scripts, they are small, so they are
+     * kept also when the text is evicted from the cache
+     */
+    private final Map<ASMSource, TrigramIndex> searchIndices = new ConcurrentHashMap<>();
 
     public void clear() {
         pcodeCache.clear();
         cache.clear();
+        searchIndices.clear();
     }
 
     public boolean isCached(ASMSource src) {
@@ -59,10 +70,19 @@ public class AS2Cache {
         pcodeCache.put(src, actionList);
     }
 
+    public TrigramIndex getSearchIndex(ASMSource src) {
+        return searchIndices.get(src);
+    }
+
+    public void putSearchIndex(ASMSource src, TrigramIndex index) {
+        searchIndices.put(src, index);
+    }
+
     public void remove(ASMSource src) {
         if (src != null) {
             cache.remove(src);
             pcodeCache.remove(src);
+            searchIndices.remove(src);
         }
     }
 }
@@ -16,8 +16,12 @@
 package com.jpexs.decompiler.flash.cache;
 
 import com.jpexs.decompiler.flash.abc.ScriptPack;
+import com.jpexs.decompiler.flash.configuration.Configuration;
 import com.jpexs.decompiler.flash.helpers.HighlightedText;
+import com.jpexs.decompiler.flash.search.TrigramIndex;
 import com.jpexs.helpers.Cache;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  *
@@ -25,10 +29,17 @@ import com.jpexs.helpers.Cache;
  */
 public class AS3Cache {
 
-    private final Cache<ScriptPack, HighlightedText> cache = Cache.getInstance(true, false, "as3");
+    private final Cache<ScriptPack, HighlightedText> cache = Cache.getInstance(true, false, "as3", Configuration.maxCacheSizeAs3, HighlightedText::getEstimatedSize);
+
+    /**
+     * Search indices of the decompiled scripts, they are small, so they are
+     * kept also when the text is evicted from the cache
+     */
+    private final Map<ScriptPack, TrigramIndex> searchIndices = new ConcurrentHashMap<>();
 
     public void clear() {
         cache.clear();
+        searchIndices.clear();
     }
 
     public boolean isCached(ScriptPack pack) {
@@ -43,9 +54,18 @@ public class AS3Cache {
         cache.put(pack, text);
     }
 
+    public TrigramIndex getSearchIndex(ScriptPack pack) {
+        return searchIndices.get(pack);
+    }
+
+    public void putSearchIndex(ScriptPack pack, TrigramIndex index) {
+        searchIndices.put(pack, index);
+    }
+
     public void remove(ScriptPack pack) {
         if (pack != null) {
             cache.remove(pack);
+            searchIndices.remove(pack);
         }
     }
 }
@@ -0,0 +1,600 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash.cache;
+
+import com.jpexs.decompiler.flash.AppResources;
+import com.jpexs.decompiler.flash.ApplicationInfo;
+import com.jpexs.decompiler.flash.SWF;
+import com.jpexs.decompiler.flash.abc.ScriptPack;
+import com.jpexs.decompiler.flash.configuration.Configuration;
+import com.jpexs.decompiler.flash.configuration.ConfigurationCategory;
+import com.jpexs.decompiler.flash.configuration.ConfigurationItem;
+import com.jpexs.decompiler.flash.helpers.HighlightedText;
+import com.jpexs.decompiler.flash.helpers.hilight.HighlightData;
+import com.jpexs.decompiler.flash.helpers.hilight.HighlightSpecialType;
+import com.jpexs.decompiler.flash.helpers.hilight.HighlightType;
+import com.jpexs.decompiler.flash.helpers.hilight.Highlighting;
+import com.jpexs.decompiler.flash.search.TrigramIndex;
+import com.jpexs.decompiler.flash.tags.ABCContainerTag;
+import com.jpexs.decompiler.flash.tags.Tag;
+import com.jpexs.decompiler.flash.tags.base.ASMSource;
+import com.jpexs.decompiler.graph.DottedChain;
+import com.jpexs.helpers.ByteArrayRange;
+import com.jpexs.helpers.Helper;
+import com.jpexs.helpers.utf8.Utf8Helper;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stores decompiled scripts on disk, so they can be reused when the same script
+ * is decompiled again, also after restart or in a new build of the SWF.
+ *
+ * Scripts are identified by the hash of their content (see
+ * ScriptContentHasher), the application version and the settings which affect
+ * the decompiled code. AS3 scripts depend also on the other classes, so their
+ * hash includes all ABC tags of the SWF. Modified SWFs do not use the cache.
+ * Search indices of the scripts are stored next to them.
+ *
+ * The entries are stored in a simple binary format, not by Java serialization,
+ * so the files in a shared directory cannot create arbitrary objects.
+ *
+ * @author JPEXS
+ */
+public class PersistentDecompilationCache {
+
+    private static final Logger logger = Logger.getLogger(PersistentDecompilationCache.class.getName());
+
+    /**
+     * Version of the stored data, increase when the format changes
+     */
+    private static final int FORMAT_VERSION = 2;
+
+    private static final int MAX_LENGTH = 1 << 28;
+
+    private static final String ENTRY_EXTENSION = ".bin";
+
+    private static final String INDEX_EXTENSION = ".idx";
+
+    private static final String[] SETTINGS_CATEGORIES = new String[]{"script", "decompilation", "format"};
+
+    public static boolean isEnabled() {
+        // renamed identifiers depend on the whole SWF
+        return Configuration.persistentDecompilationCache.get() && !Configuration.autoRenameIdentifiers.get();
+    }
+
+    public static File getDirectory() {
+        String dir = Configuration.persistentDecompilationCacheDirectory.get();
+        if (dir == null || dir.isEmpty()) {
+            dir = Configuration.getFFDecHome() + "decompilationcache";
+        }
+
+        return new File(dir, "v" + FORMAT_VERSION);
+    }
+
+    /**
+     * Gets the decompiled script from the cache
+     *
+     * @param pack Script pack
+     * @return Decompiled text or null when not cached
+     */
+    public static HighlightedText get(ScriptPack pack) {
+        ScriptContentHasher hasher = getHasher(pack);
+        if (hasher == null) {
+            return null;
+        }
+
+        Entry entry = read(hasher.getHash());
+        if (entry == null) {
+            return null;
+        }
+
+        return remapIndices(entry, hasher.getMethodIndices(), hasher.getClassIndices());
+    }
+
+    public static void put(ScriptPack pack, HighlightedText text) {
+        if (isTimeout(text)) {
+            return;
+        }
+
+        ScriptContentHasher hasher = getHasher(pack);
+        if (hasher == null) {
+            return;
+        }
+
+        Entry entry = new Entry();
+        entry.text = text;
+        entry.methodIndices = Helper.toIntArray(hasher.getMethodIndices());
+        entry.classIndices = Helper.toIntArray(hasher.getClassIndices());
+        write(hasher.getHash(), entry);
+    }
+
+    public static HighlightedText get(ASMSource src) {
+        String hash = getHash(src);
+        if (hash == null) {
+            return null;
+        }
+
+        Entry entry = read(hash);
+        return entry == null ? null : entry.text;
+    }
+
+    /**
+     * Gets the search index of the script, it is stored next to the decompiled
+     * script.
+     *
+     * @param pack Script pack
+     * @return Search index or null when not cached
+     */
+    public static TrigramIndex getSearchIndex(ScriptPack pack) {
+        ScriptContentHasher hasher = getHasher(pack);
+        return hasher == null ? null : readSearchIndex(hasher.getHash());
+    }
+
+    public static void putSearchIndex(ScriptPack pack, TrigramIndex index) {
+        ScriptContentHasher hasher = getHasher(pack);
+        if (hasher != null) {
+            writeSearchIndex(hasher.getHash(), index);
+        }
+    }
+
+    public static TrigramIndex getSearchIndex(ASMSource src) {
+        String hash = getHash(src);
+        return hash == null ? null : readSearchIndex(hash);
+    }
+
+    public static void putSearchIndex(ASMSource src, TrigramIndex index) {
+        String hash = getHash(src);
+        if (hash != null) {
+            writeSearchIndex(hash, index);
+        }
+    }
+
+    public static void put(ASMSource src, HighlightedText text) {
+        String hash = getHash(src);
+        if (hash == null || isTimeout(text)) {
+            return;
+        }
+
+        Entry entry = new Entry();
+        entry.text = text;
+        write(hash, entry);
+    }
+
+    /**
+     * Deletes all cached scripts
+     */
+    public static void clear() {
+        File[] files = getDirectory().listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            delete(file);
+        }
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                delete(f);
+            }
+        }
+
+        file.delete();
+    }
+
+    private static boolean isTimeout(HighlightedText text) {
+        // timeouts depend on the machine, the next attempt can succeed
+        return text.text.contains(AppResources.translate("decompilationError.timeout.description"));
+    }
+
+    /**
+     * Gets hash of AS1/2 script. The decompiled code depends only on the
+     * actions of the script, the SWF version and the settings.
+     *
+     * @param src Script
+     * @return Hash or null when the cache cannot be used for the script
+     */
+    private static String getHash(ASMSource src) {
+        SWF swf = src.getSwf();
+        if (swf != null && swf.isModified()) {
+            return null;
+        }
+
+        ScriptContentHasher hasher = new ScriptContentHasher(getSettingsFingerprint());
+        hasher.hashASMSource(src, swf == null ? SWF.DEFAULT_VERSION : swf.version);
+        return hasher.getHash();
+    }
+
+    /**
+     * Gets hasher of AS3 script. The decompiled code depends also on the other
+     * classes (imports, resolved types), so the hash of all ABC tags is
+     * included.
+     *
+     * @param pack Script pack
+     * @return Hasher or null when the cache cannot be used for the script
+     */
+    private static ScriptContentHasher getHasher(ScriptPack pack) {
+        SWF swf = pack.getSwf();
+        if (swf == null || swf.isModified()) {
+            return null;
+        }
+
+        String abcHash = getAbcContentHash(swf);
+        if (abcHash == null) {
+            return null;
+        }
+
+        ScriptContentHasher hasher = new ScriptContentHasher(getSettingsFingerprint() + "abc=" + abcHash + ";");
+        hasher.hashScriptPack(pack);
+        return hasher;
+    }
+
+    private static String getAbcContentHash(SWF swf) {
+        String result = swf.abcContentHash;
+        if (result != null) {
+            return result;
+        }
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new Error("This should never happen.", ex);
+        }
+
+        try (OutputStream os = new DigestOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }, digest)) {
+            for (ABCContainerTag container : swf.getAbcList()) {
+                ByteArrayRange bytes = ((Tag) container).getTagBytes();
+                if (bytes == null) {
+                    return null;
+                }
+
+                bytes.writeTo(os);
+            }
+        } catch (IOException ex) {
+            throw new Error("This should never happen.", ex);
+        }
+
+        result = Helper.byteArrayToHex(digest.digest()).toLowerCase();
+        swf.abcContentHash = result;
+        return result;
+    }
+
+    private static String getSettingsFingerprint() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(ApplicationInfo.version).append(";");
+        Map<String, Field> fields = new TreeMap<>(Configuration.getConfigurationFields());
+        for (Map.Entry<String, Field> field : fields.entrySet()) {
+            ConfigurationCategory category = field.getValue().getAnnotation(ConfigurationCategory.class);
+            if (category == null || field.getKey().startsWith("parallel") || field.getKey().startsWith("persistentDecompilationCache")) {
+                continue;
+            }
+
+            for (String c : SETTINGS_CATEGORIES) {
+                if (c.equals(category.value())) {
+                    try {
+                        field.getValue().setAccessible(true);
+                        ConfigurationItem<?> item = (ConfigurationItem<?>) field.getValue().get(null);
+                        sb.append(field.getKey()).append("=").append(item.get()).append(";");
+                    } catch (IllegalArgumentException | IllegalAccessException ex) {
+                        // Reflection exceptions. This should never happen
+                        throw new Error(ex.getMessage());
+                    }
+
+                    break;
+                }
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private static HighlightedText remapIndices(Entry entry, List<Integer> methodIndices, List<Integer> classIndices) {
+        if (entry.methodIndices.length != methodIndices.size() || entry.classIndices.length != classIndices.size()) {
+            return null;
+        }
+
+        remap(entry.text.getMethodHighlights(), entry.methodIndices, methodIndices);
+        remap(entry.text.getClassHighlights(), entry.classIndices, classIndices);
+        return entry.text;
+    }
+
+    private static void remap(List<Highlighting> highlights, int[] oldIndices, List<Integer> newIndices) {
+        Map<Long, Long> map = new HashMap<>();
+        for (int i = 0; i < oldIndices.length; i++) {
+            map.put((long) oldIndices[i], (long) newIndices.get(i));
+        }
+
+        for (Highlighting h : highlights) {
+            Long newIndex = map.get(h.getProperties().index);
+            if (newIndex != null) {
+                h.getProperties().index = newIndex;
+            }
+        }
+    }
+
+    private static File getFile(String hash, String extension) {
+        return new File(new File(getDirectory(), hash.substring(0, 2)), hash + extension);
+    }
+
+    private static Entry read(String hash) {
+        File file = getFile(hash, ENTRY_EXTENSION);
+        if (!file.exists()) {
+            return null;
+        }
+
+        try (DataInputStream in = openInput(file)) {
+            Entry entry = new Entry();
+            HighlightedText text = new HighlightedText(readString(in));
+            entry.methodIndices = readInts(in);
+            entry.classIndices = readInts(in);
+            readHighlights(in, text.getTraitHighlights());
+            readHighlights(in, text.getClassHighlights());
+            readHighlights(in, text.getMethodHighlights());
+            readHighlights(in, text.getInstructionHighlights());
+            readHighlights(in, text.getSpecialHighlights());
+            entry.text = text;
+            return entry;
+        } catch (IOException | IllegalArgumentException ex) {
+            readFailed(file, ex);
+            return null;
+        }
+    }
+
+    private static void write(String hash, Entry entry) {
+        writeFile(getFile(hash, ENTRY_EXTENSION), (DataOutputStream out) -> {
+            HighlightedText text = entry.text;
+            writeString(out, text.text);
+            writeInts(out, entry.methodIndices);
+            writeInts(out, entry.classIndices);
+            writeHighlights(out, text.getTraitHighlights());
+            writeHighlights(out, text.getClassHighlights());
+            writeHighlights(out, text.getMethodHighlights());
+            writeHighlights(out, text.getInstructionHighlights());
+            writeHighlights(out, text.getSpecialHighlights());
+        });
+    }
+
+    private static TrigramIndex readSearchIndex(String hash) {
+        File file = getFile(hash, INDEX_EXTENSION);
+        if (!file.exists()) {
+            return null;
+        }
+
+        try (DataInputStream in = openInput(file)) {
+            return TrigramIndex.readFrom(in);
+        } catch (IOException ex) {
+            readFailed(file, ex);
+            return null;
+        }
+    }
+
+    private static void writeSearchIndex(String hash, TrigramIndex index) {
+        writeFile(getFile(hash, INDEX_EXTENSION), index::writeTo);
+    }
+
+    private static DataInputStream openInput(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))));
+        if (in.readInt() != FORMAT_VERSION) {
+            in.close();
+            throw new IOException("Unknown format version");
+        }
+
+        return in;
+    }
+
+    private static void readFailed(File file, Exception ex) {
+        // corrupted or written by an incompatible version
+        logger.log(Level.FINE, "Cannot read cached script", ex);
+        file.delete();
+    }
+
+    private static void writeFile(File file, DataWriter writer) {
+        File dir = file.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            return;
+        }
+
+        File tempFile = null;
+        try {
+            // write to temporary file first, the file can be read from other processes
+            tempFile = File.createTempFile(file.getName(), ".tmp", dir);
+            try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile))))) {
+                out.writeInt(FORMAT_VERSION);
+                writer.write(out);
+            }
+
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Cannot write cached script", ex);
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    private static void writeHighlights(DataOutputStream out, List<Highlighting> highlights) throws IOException {
+        out.writeInt(highlights.size());
+        for (Highlighting h : highlights) {
+            writeString(out, h.type == null ? null : h.type.name());
+            writeString(out, h.HighlightedText);
+            out.writeInt(h.startPos);
+            out.writeInt(h.len);
+            HighlightData data = h.getProperties();
+            out.writeBoolean(data.declaration);
+            if (data.declaredType == null) {
+                out.writeInt(-2);
+            } else if (data.declaredType.isEmpty()) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(data.declaredType.size());
+                for (int i = 0; i < data.declaredType.size(); i++) {
+                    writeString(out, data.declaredType.get(i));
+                }
+
+                writeString(out, data.declaredType.getNamespaceSuffix());
+            }
+
+            writeString(out, data.localName);
+            writeString(out, data.subtype == null ? null : data.subtype.name());
+            writeString(out, data.specialValue);
+            out.writeLong(data.index);
+            out.writeLong(data.offset);
+            out.writeLong(data.fileOffset);
+            out.writeLong(data.firstLineOffset);
+            out.writeInt(data.regIndex);
+        }
+    }
+
+    private static void readHighlights(DataInputStream in, List<Highlighting> highlights) throws IOException {
+        int count = readLength(in);
+        for (int i = 0; i < count; i++) {
+            String type = readString(in);
+            String highlightedText = readString(in);
+            int startPos = in.readInt();
+            int len = in.readInt();
+            HighlightData data = new HighlightData();
+            data.declaration = in.readBoolean();
+            int typeLength = in.readInt();
+            if (typeLength == -1) {
+                data.declaredType = DottedChain.EMPTY;
+            } else if (typeLength >= 0) {
+                List<String> parts = new ArrayList<>();
+                for (int j = 0; j < typeLength; j++) {
+                    parts.add(readString(in));
+                }
+
+                String suffix = readString(in);
+                data.declaredType = suffix == null || suffix.isEmpty() ? new DottedChain(parts) : new DottedChain(parts.toArray(new String[parts.size()]), suffix);
+            } else if (typeLength != -2) {
+                throw new IOException("Invalid type length");
+            }
+
+            data.localName = readString(in);
+            String subtype = readString(in);
+            data.subtype = subtype == null ? null : HighlightSpecialType.valueOf(subtype);
+            data.specialValue = readString(in);
+            data.index = in.readLong();
+            data.offset = in.readLong();
+            data.fileOffset = in.readLong();
+            data.firstLineOffset = in.readLong();
+            data.regIndex = in.readInt();
+
+            Highlighting h = new Highlighting(startPos, data, type == null ? null : HighlightType.valueOf(type), null);
+            h.HighlightedText = highlightedText;
+            h.len = len;
+            highlights.add(h);
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int v : values) {
+            out.writeInt(v);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[readLength(in)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+
+        return values;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = Utf8Helper.getBytes(value);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+
+        if (length < 0 || length > MAX_LENGTH) {
+            throw new IOException("Invalid string length");
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, Utf8Helper.charset);
+    }
+
+    private static int readLength(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_LENGTH / 4) {
+            throw new IOException("Invalid length");
+        }
+
+        return length;
+    }
+
+    private interface DataWriter {
+
+        public void write(DataOutputStream out) throws IOException;
+    }
+
+    private static class Entry {
+
+        HighlightedText text;
+
+        int[] methodIndices = new int[0];
+
+        int[] classIndices = new int[0];
+    }
+}
@@ -0,0 +1,472 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash.cache;
+
+import com.jpexs.decompiler.flash.abc.ABC;
+import com.jpexs.decompiler.flash.abc.ScriptPack;
+import com.jpexs.decompiler.flash.abc.avm2.AVM2Code;
+import com.jpexs.decompiler.flash.abc.avm2.AVM2ConstantPool;
+import com.jpexs.decompiler.flash.abc.avm2.instructions.AVM2Instruction;
+import com.jpexs.decompiler.flash.abc.types.ABCException;
+import com.jpexs.decompiler.flash.abc.types.ClassInfo;
+import com.jpexs.decompiler.flash.abc.types.InstanceInfo;
+import com.jpexs.decompiler.flash.abc.types.MetadataInfo;
+import com.jpexs.decompiler.flash.abc.types.MethodBody;
+import com.jpexs.decompiler.flash.abc.types.MethodInfo;
+import com.jpexs.decompiler.flash.abc.types.Multiname;
+import com.jpexs.decompiler.flash.abc.types.Namespace;
+import com.jpexs.decompiler.flash.abc.types.NamespaceSet;
+import com.jpexs.decompiler.flash.abc.types.ScriptInfo;
+import com.jpexs.decompiler.flash.abc.types.ValueKind;
+import com.jpexs.decompiler.flash.abc.types.traits.Trait;
+import com.jpexs.decompiler.flash.abc.types.traits.TraitClass;
+import com.jpexs.decompiler.flash.abc.types.traits.TraitFunction;
+import com.jpexs.decompiler.flash.abc.types.traits.TraitMethodGetterSetter;
+import com.jpexs.decompiler.flash.abc.types.traits.TraitSlotConst;
+import com.jpexs.decompiler.flash.abc.types.traits.Traits;
+import com.jpexs.decompiler.flash.configuration.Configuration;
+import com.jpexs.decompiler.flash.tags.base.ASMSource;
+import com.jpexs.decompiler.flash.helpers.StringBuilderTextWriter;
+import com.jpexs.helpers.ByteArrayRange;
+import com.jpexs.helpers.Helper;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the content hash of a script. The hash does not depend on the
+ * position of the script in the ABC: the constant pool references are replaced
+ * by the constant values, so an unchanged class has the same hash in a new
+ * build of the SWF.
+ *
+ * The method and class indices found during the hashing are recorded in the
+ * order they were visited, so the highlights of a stored decompiled text can be
+ * remapped to the indices of another ABC.
+ *
+ * @author JPEXS
+ */
+public class ScriptContentHasher {
+
+    private final MessageDigest digest;
+
+    private final DataOutputStream out;
+
+    private final List<Integer> methodIndices = new ArrayList<>();
+
+    private final List<Integer> classIndices = new ArrayList<>();
+
+    private final Map<Integer, Integer> methodOrdinals = new HashMap<>();
+
+    private final Map<Integer, Integer> privateNamespaceOrdinals = new HashMap<>();
+
+    private ABC abc;
+
+    private AVM2ConstantPool constants;
+
+    public ScriptContentHasher(String settings) {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new Error("This should never happen.", ex);
+        }
+
+        out = new DataOutputStream(new DigestOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }, digest));
+
+        writeString(settings);
+    }
+
+    public List<Integer> getMethodIndices() {
+        return methodIndices;
+    }
+
+    public List<Integer> getClassIndices() {
+        return classIndices;
+    }
+
+    /**
+     * Gets the hash as hexadecimal string. No data can be added after calling
+     * this method.
+     *
+     * @return Hash
+     */
+    public String getHash() {
+        try {
+            out.flush();
+        } catch (IOException ex) {
+            throw new Error("This should never happen.", ex);
+        }
+
+        return Helper.byteArrayToHex(digest.digest()).toLowerCase();
+    }
+
+    public void hashScriptPack(ScriptPack pack) {
+        abc = pack.abc;
+        constants = abc.constants;
+        writeString("as3");
+        writeInt(abc.version.major);
+        writeInt(abc.version.minor);
+        ScriptInfo script = abc.script_info.get(pack.scriptIndex);
+        writeInt(pack.traitIndices.size());
+        for (int traitIndex : pack.traitIndices) {
+            writeInt(traitIndex);
+        }
+
+        hashMethod(script.init_index);
+        hashTraits(script.traits);
+    }
+
+    public void hashASMSource(ASMSource src, int swfVersion) {
+        writeString("as2");
+        writeString(src.getClass().getName());
+        writeInt(swfVersion);
+        StringBuilderTextWriter writer = new StringBuilderTextWriter(Configuration.getCodeFormatting(), new StringBuilder());
+        src.getActionSourcePrefix(writer);
+        src.getActionSourceSuffix(writer);
+        writeString(writer.toString());
+
+        // the instruction highlights contain file offsets, so the position matters
+        ByteArrayRange actionBytes = src.getActionBytes();
+        writeInt(actionBytes.getPos());
+        writeInt(actionBytes.getLength());
+        try {
+            actionBytes.writeTo(out);
+        } catch (IOException ex) {
+            throw new Error("This should never happen.", ex);
+        }
+    }
+
+    private void hashTraits(Traits traits) {
+        if (traits == null) {
+            writeInt(-1);
+            return;
+        }
+
+        writeInt(traits.traits.size());
+        for (Trait trait : traits.traits) {
+            hashTrait(trait);
+        }
+    }
+
+    private void hashTrait(Trait trait) {
+        writeInt(trait.kindType);
+        writeInt(trait.kindFlags);
+        hashMultiname(trait.name_index);
+        writeInt(trait.metadata.length);
+        for (int m : trait.metadata) {
+            if (m < 0 || m >= abc.metadata_info.size()) {
+                writeInt(-1);
+                continue;
+            }
+
+            MetadataInfo metadata = abc.metadata_info.get(m);
+            writeString(getString(metadata.name_index));
+            writeInt(metadata.keys.length);
+            for (int i = 0; i < metadata.keys.length; i++) {
+                writeString(getString(metadata.keys[i]));
+                writeString(i < metadata.values.length ? getString(metadata.values[i]) : null);
+            }
+        }
+
+        if (trait instanceof TraitSlotConst) {
+            TraitSlotConst slot = (TraitSlotConst) trait;
+            writeInt(slot.slot_id);
+            hashMultiname(slot.type_index);
+            hashValue(slot.value_index, slot.value_kind);
+        } else if (trait instanceof TraitMethodGetterSetter) {
+            TraitMethodGetterSetter method = (TraitMethodGetterSetter) trait;
+            writeInt(method.disp_id);
+            hashMethod(method.method_info);
+        } else if (trait instanceof TraitFunction) {
+            TraitFunction function = (TraitFunction) trait;
+            writeInt(function.slot_id);
+            hashMethod(function.method_info);
+        } else if (trait instanceof TraitClass) {
+            TraitClass traitClass = (TraitClass) trait;
+            writeInt(traitClass.slot_id);
+            hashClass(traitClass.class_info);
+        }
+    }
+
+    private void hashClass(int classIndex) {
+        if (classIndex < 0 || classIndex >= abc.instance_info.size()) {
+            writeInt(-1);
+            return;
+        }
+
+        writeInt(classIndices.size());
+        classIndices.add(classIndex);
+        InstanceInfo instanceInfo = abc.instance_info.get(classIndex);
+        ClassInfo classInfo = abc.class_info.get(classIndex);
+        hashMultiname(instanceInfo.name_index);
+        hashMultiname(instanceInfo.super_index);
+        writeInt(instanceInfo.flags);
+        hashNamespace(instanceInfo.protectedNS);
+        writeInt(instanceInfo.interfaces.length);
+        for (int iface : instanceInfo.interfaces) {
+            hashMultiname(iface);
+        }
+
+        hashMethod(instanceInfo.iinit_index);
+        hashTraits(instanceInfo.instance_traits);
+        hashMethod(classInfo.cinit_index);
+        hashTraits(classInfo.static_traits);
+    }
+
+    private void hashMethod(int methodIndex) {
+        Integer ordinal = methodOrdinals.get(methodIndex);
+        if (ordinal != null) {
+            // already hashed, reference it
+            writeInt(-2);
+            writeInt(ordinal);
+            return;
+        }
+
+        if (methodIndex < 0 || methodIndex >= abc.method_info.size()) {
+            writeInt(-1);
+            return;
+        }
+
+        writeInt(methodIndices.size());
+        methodOrdinals.put(methodIndex, methodIndices.size());
+        methodIndices.add(methodIndex);
+        if (Configuration.showMethodBodyId.get()) {
+            writeInt(methodIndex);
+        }
+
+        MethodInfo methodInfo = abc.method_info.get(methodIndex);
+        writeInt(methodInfo.param_types.length);
+        for (int paramType : methodInfo.param_types) {
+            hashMultiname(paramType);
+        }
+
+        hashMultiname(methodInfo.ret_type);
+        writeString(getString(methodInfo.name_index));
+        writeInt(methodInfo.flags);
+        writeInt(methodInfo.optional.length);
+        for (ValueKind optional : methodInfo.optional) {
+            hashValue(optional.value_index, optional.value_kind);
+        }
+
+        writeInt(methodInfo.paramNames.length);
+        for (int paramName : methodInfo.paramNames) {
+            writeString(getString(paramName));
+        }
+
+        MethodBody body = abc.findBody(methodIndex);
+        if (body == null) {
+            writeInt(-1);
+            return;
+        }
+
+        writeInt(body.max_stack);
+        writeInt(body.max_regs);
+        writeInt(body.init_scope_depth);
+        writeInt(body.max_scope_depth);
+        writeInt(body.exceptions.length);
+        for (ABCException ex : body.exceptions) {
+            writeInt(ex.start);
+            writeInt(ex.end);
+            writeInt(ex.target);
+            hashMultiname(ex.type_index);
+            hashMultiname(ex.name_index);
+        }
+
+        List<AVM2Instruction> code = body.getCode().code;
+        writeInt(code.size());
+        for (AVM2Instruction ins : code) {
+            hashInstruction(ins);
+        }
+
+        hashTraits(body.traits);
+    }
+
+    private void hashInstruction(AVM2Instruction ins) {
+        writeInt(ins.definition.instructionCode);
+        int[] operandTypes = ins.definition.operands;
+        int[] operands = ins.operands;
+        writeInt(operands == null ? 0 : operands.length);
+        if (operands == null) {
+            return;
+        }
+
+        for (int i = 0; i < operands.length; i++) {
+            int type = i < operandTypes.length ? operandTypes[i] : AVM2Code.OPT_CASE_OFFSETS;
+            int operand = operands[i];
+            writeInt(type);
+            switch (type) {
+                case AVM2Code.DAT_MULTINAME_INDEX:
+                    hashMultiname(operand);
+                    break;
+                case AVM2Code.DAT_STRING_INDEX:
+                    writeString(getString(operand));
+                    break;
+                case AVM2Code.DAT_INT_INDEX:
+                    hashValue(operand, ValueKind.CONSTANT_Int);
+                    break;
+                case AVM2Code.DAT_UINT_INDEX:
+                    hashValue(operand, ValueKind.CONSTANT_UInt);
+                    break;
+                case AVM2Code.DAT_DOUBLE_INDEX:
+                    hashValue(operand, ValueKind.CONSTANT_Double);
+                    break;
+                case AVM2Code.DAT_DECIMAL_INDEX:
+                case AVM2Code.DAT_FLOAT_INDEX:
+                    hashValue(operand, ValueKind.CONSTANT_DecimalOrFloat);
+                    break;
+                case AVM2Code.DAT_FLOAT4_INDEX:
+                    hashValue(operand, ValueKind.CONSTANT_Float4);
+                    break;
+                case AVM2Code.DAT_NAMESPACE_INDEX:
+                    hashNamespace(operand);
+                    break;
+                case AVM2Code.DAT_METHOD_INDEX:
+                    hashMethod(operand);
+                    break;
+                case AVM2Code.DAT_CLASS_INDEX:
+                    // the class itself is hashed from its trait
+                    if (operand >= 0 && operand < abc.instance_info.size()) {
+                        hashMultiname(abc.instance_info.get(operand).name_index);
+                    } else {
+                        writeInt(-1);
+                    }
+                    break;
+                default:
+                    writeInt(operand);
+                    break;
+            }
+        }
+    }
+
+    private void hashValue(int valueIndex, int valueKind) {
+        writeInt(valueKind);
+        switch (valueKind) {
+            case ValueKind.CONSTANT_Namespace:
+            case ValueKind.CONSTANT_PackageNamespace:
+            case ValueKind.CONSTANT_PackageInternalNs:
+            case ValueKind.CONSTANT_ProtectedNamespace:
+            case ValueKind.CONSTANT_ExplicitNamespace:
+            case ValueKind.CONSTANT_StaticProtectedNs:
+            case ValueKind.CONSTANT_PrivateNs:
+                hashNamespace(valueIndex);
+                break;
+            case ValueKind.CONSTANT_Utf8:
+                writeString(getString(valueIndex));
+                break;
+            default:
+                writeString(new ValueKind(valueIndex, valueKind).toString(constants));
+                break;
+        }
+    }
+
+    private void hashMultiname(int index) {
+        if (index <= 0 || index >= constants.getMultinameCount()) {
+            writeInt(-1);
+            return;
+        }
+
+        Multiname multiname = constants.getMultiname(index);
+        writeInt(multiname.kind);
+        if (multiname.kind == Multiname.TYPENAME) {
+            hashMultiname(multiname.qname_index);
+            writeInt(multiname.params == null ? -1 : multiname.params.length);
+            if (multiname.params != null) {
+                for (int param : multiname.params) {
+                    hashMultiname(param);
+                }
+            }
+
+            return;
+        }
+
+        writeString(getString(multiname.name_index));
+        hashNamespace(multiname.namespace_index);
+        if (multiname.namespace_set_index <= 0 || multiname.namespace_set_index >= constants.getNamespaceSetCount()) {
+            writeInt(-1);
+        } else {
+            NamespaceSet namespaceSet = constants.getNamespaceSet(multiname.namespace_set_index);
+            writeInt(namespaceSet.namespaces.length);
+            for (int ns : namespaceSet.namespaces) {
+                hashNamespace(ns);
+            }
+        }
+    }
+
+    private void hashNamespace(int index) {
+        if (index <= 0 || index >= constants.getNamespaceCount()) {
+            writeInt(-1);
+            return;
+        }
+
+        Namespace ns = constants.getNamespace(index);
+        writeInt(ns.kind);
+        writeString(getString(ns.name_index));
+        if (ns.kind == Namespace.KIND_PRIVATE) {
+            // private namespaces are distinguished by identity, not by name
+            Integer ordinal = privateNamespaceOrdinals.get(index);
+            if (ordinal == null) {
+                ordinal = privateNamespaceOrdinals.size();
+                privateNamespaceOrdinals.put(index, ordinal);
+            }
+
+            writeInt(ordinal);
+        }
+    }
+
+    private String getString(int index) {
+        if (index <= 0 || index >= constants.getStringCount()) {
+            return null;
+        }
+
+        return constants.getString(index);
+    }
+
+    private void writeInt(int value) {
+        try {
+            out.writeInt(value);
+        } catch (IOException ex) {
+            throw new Error("This should never happen.", ex);
+        }
+    }
+
+    private void writeString(String value) {
+        try {
+            if (value == null) {
+                out.writeInt(-1);
+                return;
+            }
+
+            out.writeInt(value.length());
+            out.writeChars(value);
+        } catch (IOException ex) {
+            throw new Error("This should never happen.", ex);
+        }
+    }
+}
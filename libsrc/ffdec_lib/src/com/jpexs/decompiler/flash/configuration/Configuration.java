@@ -452,6 +452,14 @@ public final class Configuration {
     @ConfigurationDefaultInt(128)
     public static final ConfigurationItem<Integer> lzmaFastBytes = null;
 
+    /**
+     * Compress saved SWF files in multiple threads. ZLIB data is compressed in
+     * blocks, for LZMA multiple dictionary sizes are tried and the smallest
+     * result is saved.
+     */
+    @ConfigurationDefaultBoolean(false)
+    public static final ConfigurationItem<Boolean> parallelCompression = null;
+
     @ConfigurationDefaultBoolean(false)
     @ConfigurationCategory("script")
     public static final ConfigurationItem<Boolean> showMethodBodyId = null;
@@ -631,6 +639,93 @@ public final class Configuration {
     @ConfigurationCategory("ui")
     public static final ConfigurationItem<Boolean> showSetAdvanceValuesMessage = null;
 
+    @ConfigurationDefaultBoolean(false)
+    @ConfigurationCategory("limit")
+    public static final ConfigurationItem<Boolean> mappedSwfLoading = null;
+
+    /**
+     * Maximum size of the decompiled AS1/2 cache in MB, 0 = unlimited
+     */
+    @ConfigurationDefaultInt(0)
+    @ConfigurationCategory("limit")
+    public static final ConfigurationItem<Integer> maxCacheSizeAs2 = null;
+
+    /**
+     * Maximum size of the AS1/2 P-code cache in MB, 0 = unlimited
+     */
+    @ConfigurationDefaultInt(0)
+    @ConfigurationCategory("limit")
+    public static final ConfigurationItem<Integer> maxCacheSizeAs2PCode = null;
+
+    /**
+     * Maximum size of the decompiled AS3 cache in MB, 0 = unlimited
+     */
+    @ConfigurationDefaultInt(0)
+    @ConfigurationCategory("limit")
+    public static final ConfigurationItem<Integer> maxCacheSizeAs3 = null;
+
+    /**
+     * Maximum size of the frame and display object image caches in MB, 0 =
+     * unlimited
+     */
+    @ConfigurationDefaultInt(0)
+    @ConfigurationCategory("limit")
+    public static final ConfigurationItem<Integer> maxCacheSizeImage = null;
+
+    /**
+     * Maximum size of the cache of rasterized display objects which are reused
+     * between frames in MB, 0 = unlimited
+     */
+    @ConfigurationDefaultInt(128)
+    @ConfigurationCategory("limit")
+    public static final ConfigurationItem<Integer> maxCacheSizeRaster = null;
+
+    /**
+     * Maximum size of the sound cache in MB, 0 = unlimited
+     */
+    @ConfigurationDefaultInt(0)
+    @ConfigurationCategory("limit")
+    public static final ConfigurationItem<Integer> maxCacheSizeSound = null;
+
+    /**
+     * Maximum size of the character bounds cache in MB, 0 = unlimited
+     */
+    @ConfigurationDefaultInt(0)
+    @ConfigurationCategory("limit")
+    public static final ConfigurationItem<Integer> maxCacheSizeRect = null;
+
+    /**
+     * Maximum size of the shape export data cache in MB, 0 = unlimited
+     */
+    @ConfigurationDefaultInt(0)
+    @ConfigurationCategory("limit")
+    public static final ConfigurationItem<Integer> maxCacheSizeShapeExportData = null;
+
+    @ConfigurationDefaultBoolean(false)
+    @ConfigurationCategory("decompilation")
+    public static final ConfigurationItem<Boolean> persistentDecompilationCache = null;
+
+    @ConfigurationDefaultString("")
+    @ConfigurationCategory("paths")
+    @ConfigurationDirectory
+    public static final ConfigurationItem<String> persistentDecompilationCacheDirectory = null;
+
+    /**
+     * Number of SWF files exported at the same time in the command line folder
+     * export
+     */
+    @ConfigurationDefaultInt(1)
+    @ConfigurationCategory("export")
+    public static final ConfigurationItem<Integer> exportParallelFiles = null;
+
+    /**
+     * Estimated memory of the SWF files exported at the same time in MB, 0 =
+     * half of the maximum heap size
+     */
+    @ConfigurationDefaultInt(0)
+    @ConfigurationCategory("export")
+    public static final ConfigurationItem<Integer> exportMemoryBudget = null;
+
     private enum OSId {
         WINDOWS, OSX, UNIX
     }
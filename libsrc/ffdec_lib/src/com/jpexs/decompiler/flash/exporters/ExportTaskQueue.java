@@ -0,0 +1,143 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash.exporters;
+
+import com.jpexs.decompiler.flash.AbortRetryIgnoreHandler;
+import com.jpexs.decompiler.flash.EventListener;
+import com.jpexs.decompiler.flash.RetryTask;
+import com.jpexs.decompiler.flash.RunnableIOEx;
+import com.jpexs.decompiler.flash.configuration.Configuration;
+import com.jpexs.helpers.SharedForkJoinPool;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Exports independent items (for example characters) in the shared fork-join
+ * pool when parallel speedup is enabled.
+ *
+ * The exporting and exported events and the calls of the abort/retry/ignore
+ * handler are made from the calling thread in the order of the items, the same
+ * as in the serial export. A failed item is retried on the calling thread.
+ *
+ * @author JPEXS
+ */
+public class ExportTaskQueue {
+
+    private final AbortRetryIgnoreHandler handler;
+
+    private final EventListener evl;
+
+    private final String type;
+
+    private final List<String> names = new ArrayList<>();
+
+    private final List<RunnableIOEx> tasks = new ArrayList<>();
+
+    public ExportTaskQueue(AbortRetryIgnoreHandler handler, EventListener evl, String type) {
+        this.handler = handler;
+        this.evl = evl;
+        this.type = type;
+    }
+
+    /**
+     * Adds the item
+     *
+     * @param name Name of the item for the events
+     * @param task Export task
+     */
+    public void add(String name, RunnableIOEx task) {
+        names.add(name);
+        tasks.add(task);
+    }
+
+    /**
+     * Runs the tasks and waits for them
+     *
+     * @throws IOException When an item fails and the handler aborts
+     * @throws InterruptedException On interrupt
+     */
+    public void run() throws IOException, InterruptedException {
+        int count = tasks.size();
+        if (!Configuration.parallelSpeedUp.get() || count < 2) {
+            for (int i = 0; i < count; i++) {
+                if (evl != null) {
+                    evl.handleExportingEvent(type, i + 1, count, names.get(i));
+                }
+
+                new RetryTask(tasks.get(i), handler).run();
+                if (evl != null) {
+                    evl.handleExportedEvent(type, i + 1, count, names.get(i));
+                }
+            }
+
+            return;
+        }
+
+        // the tasks return their exception, so it is not wrapped by the pool
+        List<ForkJoinTask<Exception>> futures = new ArrayList<>(count);
+        for (RunnableIOEx task : tasks) {
+            futures.add(SharedForkJoinPool.fork(() -> {
+                try {
+                    task.run();
+                    return null;
+                } catch (Exception ex) {
+                    return ex;
+                }
+            }));
+        }
+
+        boolean finished = false;
+        try {
+            for (int i = 0; i < count; i++) {
+                if (evl != null) {
+                    evl.handleExportingEvent(type, i + 1, count, names.get(i));
+                }
+
+                Exception failure;
+                try {
+                    failure = futures.get(i).get();
+                } catch (ExecutionException ex) {
+                    // only errors are not returned
+                    if (ex.getCause() instanceof Error) {
+                        throw (Error) ex.getCause();
+                    }
+
+                    throw new Error(ex.getCause());
+                }
+
+                if (failure != null) {
+                    new RetryTask(tasks.get(i), handler).handleFailure(failure);
+                }
+
+                if (evl != null) {
+                    evl.handleExportedEvent(type, i + 1, count, names.get(i));
+                }
+            }
+
+            finished = true;
+        } finally {
+            if (!finished) {
+                // abort, the not started items are skipped
+                for (ForkJoinTask<Exception> future : futures) {
+                    future.cancel(false);
+                }
+            }
+        }
+    }
+}
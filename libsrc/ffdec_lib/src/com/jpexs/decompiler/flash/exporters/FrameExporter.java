@@ -190,40 +190,39 @@ public class FrameExporter {
         }
 
         if (settings.mode == FrameExportMode.SVG) {
+            Tag parentTag = tim.getParentTag();
+            String tagName = parentTag == null ? "" : parentTag.getName();
+            ExportTaskQueue queue = new ExportTaskQueue(handler, evl, "frame");
+            final File[] written = new File[frames.size()];
             for (int i = 0; i < frames.size(); i++) {
-                if (evl != null) {
-                    Tag parentTag = tim.getParentTag();
-                    evl.handleExportingEvent("frame", i + 1, frames.size(), parentTag == null ? "" : parentTag.getName());
-                }
-
+                final int frame = frames.get(i);
                 final int fi = i;
                 final Color fbackgroundColor = null;
-                new RetryTask(() -> {
-                    int frame = fframes.get(fi);
-                    File f = new File(foutdir + File.separator + (frame + 1) + ".svg");
+                final File f = new File(foutdir + File.separator + (frame + 1) + ".svg");
+                queue.add(tagName, () -> {
                     try (OutputStream fos = new BufferedOutputStream(new FileOutputStream(f))) {
                         ExportRectangle rect = new ExportRectangle(tim.displayRect);
                         rect.xMax *= settings.zoom;
                         rect.yMax *= settings.zoom;
                         rect.xMin *= settings.zoom;
                         rect.yMin *= settings.zoom;
-                        SVGExporter exporter = new SVGExporter(rect, settings.zoom);
+                        SVGExporter exporter = new SVGExporter(rect, settings.zoom, fos);
                         if (fbackgroundColor != null) {
                             exporter.setBackGroundColor(fbackgroundColor);
                         }
 
                         tim.toSVG(frame, 0, null, 0, exporter, null, 0);
-                        fos.write(Utf8Helper.getBytes(exporter.getSVG()));
+                        exporter.finish();
                     }
-                    ret.add(f);
-                }, handler).run();
 
-                if (evl != null) {
-                    Tag parentTag = tim.getParentTag();
-                    evl.handleExportedEvent("frame", i + 1, frames.size(), parentTag == null ? "" : parentTag.getName());
-                }
+                    written[fi] = f;
+                });
             }
 
+            // initialize the timeline before the export threads use it
+            tim.getFrameCount();
+            queue.run();
+            addWrittenFiles(ret, written);
             return ret;
         }
 
@@ -378,109 +377,97 @@ public class FrameExporter {
         }
 
         final Color fbackgroundColor = backgroundColor;
-        final Iterator<BufferedImage> frameImages = new Iterator<BufferedImage>() {
-            private int pos = 0;
-
-            @Override
-            public boolean hasNext() {
-                return fframes.size() > pos;
-            }
-
-            @Override
-            public void remove() {
-                throw new UnsupportedOperationException();
-            }
-
-            @Override
-            public BufferedImage next() {
-                if (!hasNext()) {
-                    return null;
-                }
-
+        switch (settings.mode) {
+            case BMP:
+            case PNG:
                 Tag parentTag = tim.getParentTag();
                 String tagName = parentTag == null ? "" : parentTag.getName();
+                ExportTaskQueue queue = new ExportTaskQueue(handler, evl, "frame");
+                final File[] written = new File[fframes.size()];
+                for (int i = 0; i < fframes.size(); i++) {
+                    final int frame = fframes.get(i);
+                    final int fi = i;
+                    final File file = new File(foutdir + File.separator + (frame + 1) + (settings.mode == FrameExportMode.PNG ? ".png" : ".bmp"));
+                    queue.add(tagName, () -> {
+                        BufferedImage image = SWF.frameToImageGet(tim, frame, frame, null, 0, tim.displayRect, new Matrix(), null, fbackgroundColor, settings.zoom).getBufferedImage();
+                        if (settings.mode == FrameExportMode.PNG) {
+                            ImageHelper.write(image, ImageFormat.PNG, file);
+                        } else {
+                            BMPFile.saveBitmap(image, file);
+                        }
 
-                if (evl != null) {
-                    evl.handleExportingEvent("frame", pos + 1, fframes.size(), tagName);
-                }
-
-                int fframe = fframes.get(pos++);
-                BufferedImage result = SWF.frameToImageGet(tim, fframe, fframe, null, 0, tim.displayRect, new Matrix(), null, fbackgroundColor, settings.zoom).getBufferedImage();
-
-                if (evl != null) {
-                    evl.handleExportedEvent("frame", pos, fframes.size(), tagName);
+                        written[fi] = file;
+                    });
                 }
 
-                return result;
-            }
-        };
+                // initialize the timeline before the export threads use it
+                tim.getFrameCount();
+                queue.run();
+                addWrittenFiles(ret, written);
+                return ret;
+        }
 
-        switch (settings.mode) {
-            case GIF:
-                new RetryTask(() -> {
-                    File f = new File(foutdir + File.separator + "frames.gif");
-                    makeGIF(frameImages, swf.frameRate, f, evl);
-                    ret.add(f);
-                }, handler).run();
-                break;
-            case BMP:
-                for (int i = 0; frameImages.hasNext(); i++) {
-                    final int fi = i;
+        try (final FrameImageIterator frameImages = new FrameImageIterator(tim, fframes, fbackgroundColor, settings.zoom, evl)) {
+            switch (settings.mode) {
+                case GIF:
                     new RetryTask(() -> {
-                        File f = new File(foutdir + File.separator + (fframes.get(fi) + 1) + ".bmp");
-                        BMPFile.saveBitmap(frameImages.next(), f);
+                        File f = new File(foutdir + File.separator + "frames.gif");
+                        makeGIF(frameImages, swf.frameRate, f, evl);
                         ret.add(f);
                     }, handler).run();
-                }
-                break;
-            case PNG:
-                for (int i = 0; frameImages.hasNext(); i++) {
-                    final int fi = i;
-                    new RetryTask(() -> {
-                        File file = new File(foutdir + File.separator + (fframes.get(fi) + 1) + ".png");
-                        ImageHelper.write(frameImages.next(), ImageFormat.PNG, file);
-                        ret.add(file);
-                    }, handler).run();
-                }
+                    break;
+                case PDF:
+                    if (frameImages.hasNext()) {
+                        new RetryTask(() -> {
+                            File f = new File(foutdir + File.separator + "frames.pdf");
+                            PDFJob job = new PDFJob(new BufferedOutputStream(new FileOutputStream(f)));
+                            PageFormat pf = new PageFormat();
+                            pf.setOrientation(PageFormat.PORTRAIT);
+                            Paper p = new Paper();
+                            BufferedImage img0 = frameImages.next();
+                            p.setSize(img0.getWidth() + 10, img0.getHeight() + 10);
+                            pf.setPaper(p);
+
+                            for (int i = 0; frameImages.hasNext(); i++) {
+                                BufferedImage img = frameImages.next();
+                                Graphics g = job.getGraphics(pf);
+                                g.drawImage(img, 5, 5, img.getWidth(), img.getHeight(), null);
+                                g.dispose();
+                            }
 
-                //ShapeExporterBase.clearCache();
-                break;
-            case PDF:
-                if (frameImages.hasNext()) {
+                            job.end();
+                            ret.add(f);
+                        }, handler).run();
+                    }
+                    break;
+                case AVI:
                     new RetryTask(() -> {
-                        File f = new File(foutdir + File.separator + "frames.pdf");
-                        PDFJob job = new PDFJob(new BufferedOutputStream(new FileOutputStream(f)));
-                        PageFormat pf = new PageFormat();
-                        pf.setOrientation(PageFormat.PORTRAIT);
-                        Paper p = new Paper();
-                        BufferedImage img0 = frameImages.next();
-                        p.setSize(img0.getWidth() + 10, img0.getHeight() + 10);
-                        pf.setPaper(p);
-
-                        for (int i = 0; frameImages.hasNext(); i++) {
-                            BufferedImage img = frameImages.next();
-                            Graphics g = job.getGraphics(pf);
-                            g.drawImage(img, 5, 5, img.getWidth(), img.getHeight(), null);
-                            g.dispose();
-                        }
-
-                        job.end();
+                        File f = new File(foutdir + File.separator + "frames.avi");
+                        makeAVI(frameImages, swf.frameRate, f, evl);
                         ret.add(f);
                     }, handler).run();
-                }
-                break;
-            case AVI:
-                new RetryTask(() -> {
-                    File f = new File(foutdir + File.separator + "frames.avi");
-                    makeAVI(frameImages, swf.frameRate, f, evl);
-                    ret.add(f);
-                }, handler).run();
-                break;
+                    break;
+            }
         }
 
         return ret;
     }
 
+    /**
+     * Adds the files of the frames which were exported, the files of the
+     * ignored failures are null.
+     *
+     * @param ret Result list
+     * @param written Files in the order of the frames
+     */
+    private static void addWrittenFiles(List<File> ret, File[] written) {
+        for (File f : written) {
+            if (f != null) {
+                ret.add(f);
+            }
+        }
+    }
+
     private static String jsArrColor(RGB rgb) {
         return "[" + rgb.red + "," + rgb.green + "," + rgb.blue + "," + ((rgb instanceof RGBA) ? ((RGBA) rgb).getAlphaFloat() : 1) + "]";
     }
@@ -596,7 +583,7 @@ public class FrameExporter {
                     DefineSpriteTag sp = (DefineSpriteTag) character;
                     Timeline tim = sp.getTimeline();
                     if (tim.getFrameCount() > 0) {
-                        f = layer.time % tim.getFrameCount();
+                        f = layer.getTime(frame) % tim.getFrameCount();
                         fstr = "(" + f + "+time)%" + tim.getFrameCount();
                     }
                 }
@@ -0,0 +1,151 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash.exporters;
+
+import com.jpexs.decompiler.flash.EventListener;
+import com.jpexs.decompiler.flash.SWF;
+import com.jpexs.decompiler.flash.configuration.Configuration;
+import com.jpexs.decompiler.flash.exporters.commonshape.Matrix;
+import com.jpexs.decompiler.flash.tags.Tag;
+import com.jpexs.decompiler.flash.timeline.Timeline;
+import com.jpexs.helpers.SharedForkJoinPool;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Renders the frames of a timeline for the exporters which encode the images
+ * one after another (GIF, AVI, PDF).
+ *
+ * When parallel speedup is enabled, a limited number of frames ahead of the
+ * returned one are rendered in the shared fork-join pool, each of them with its
+ * own render context, so the encoding of a frame overlaps the rendering of the
+ * following frames. The images are returned in the order of the frames and the
+ * exporting and exported events are fired from the consuming thread.
+ *
+ * @author JPEXS
+ */
+public class FrameImageIterator implements Iterator<BufferedImage>, AutoCloseable {
+
+    private final Timeline timeline;
+
+    private final List<Integer> frames;
+
+    private final Color backgroundColor;
+
+    private final double zoom;
+
+    private final EventListener evl;
+
+    private final int window;
+
+    private final Deque<ForkJoinTask<BufferedImage>> tasks = new ArrayDeque<>();
+
+    private int forkedCount = 0;
+
+    private int pos = 0;
+
+    public FrameImageIterator(Timeline timeline, List<Integer> frames, Color backgroundColor, double zoom, EventListener evl) {
+        this(timeline, frames, backgroundColor, zoom, evl, Configuration.parallelSpeedUp.get() && frames.size() > 1 ? Configuration.getParallelThreadCount() * 2 : 0);
+    }
+
+    /**
+     * Constructs the iterator
+     *
+     * @param timeline Timeline
+     * @param frames Frames to render
+     * @param backgroundColor Background color, null = transparent
+     * @param zoom Zoom
+     * @param evl Event listener
+     * @param window Maximum number of frames rendered ahead, 0 = render the
+     * frames on the consuming thread
+     */
+    public FrameImageIterator(Timeline timeline, List<Integer> frames, Color backgroundColor, double zoom, EventListener evl, int window) {
+        this.timeline = timeline;
+        this.frames = frames;
+        this.backgroundColor = backgroundColor;
+        this.zoom = zoom;
+        this.evl = evl;
+        this.window = window;
+
+        // initialize the timeline before the rendering threads use it
+        timeline.getFrameCount();
+    }
+
+    private BufferedImage render(int frame) {
+        return SWF.frameToImageGet(timeline, frame, frame, null, 0, timeline.displayRect, new Matrix(), null, backgroundColor, zoom).getBufferedImage();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return frames.size() > pos;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public BufferedImage next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        Tag parentTag = timeline.getParentTag();
+        String tagName = parentTag == null ? "" : parentTag.getName();
+
+        if (evl != null) {
+            evl.handleExportingEvent("frame", pos + 1, frames.size(), tagName);
+        }
+
+        BufferedImage result;
+        if (window == 0) {
+            result = render(frames.get(pos));
+        } else {
+            while (forkedCount < frames.size() && forkedCount < pos + window) {
+                final int frame = frames.get(forkedCount++);
+                tasks.add(SharedForkJoinPool.fork(() -> render(frame)));
+            }
+
+            result = tasks.poll().join();
+        }
+
+        pos++;
+        if (evl != null) {
+            evl.handleExportedEvent("frame", pos, frames.size(), tagName);
+        }
+
+        return result;
+    }
+
+    /**
+     * Cancels rendering of the frames which were not returned
+     */
+    @Override
+    public void close() {
+        for (ForkJoinTask<BufferedImage> task : tasks) {
+            task.cancel(false);
+        }
+
+        tasks.clear();
+    }
+}
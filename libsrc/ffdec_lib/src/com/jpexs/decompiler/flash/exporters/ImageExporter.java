@@ -18,7 +18,6 @@ package com.jpexs.decompiler.flash.exporters;
 import com.jpexs.decompiler.flash.AbortRetryIgnoreHandler;
 import com.jpexs.decompiler.flash.EventListener;
 import com.jpexs.decompiler.flash.ReadOnlyTagList;
-import com.jpexs.decompiler.flash.RetryTask;
 import com.jpexs.decompiler.flash.exporters.modes.ImageExportMode;
 import com.jpexs.decompiler.flash.exporters.settings.ImageExportSettings;
 import com.jpexs.decompiler.flash.helpers.BMPFile;
@@ -62,13 +61,9 @@ public class ImageExporter {
             return ret;
         }
 
-        int currentIndex = 1;
+        ExportTaskQueue queue = new ExportTaskQueue(handler, evl, "image");
         for (Tag t : tags) {
             if (t instanceof ImageTag) {
-                if (evl != null) {
-                    evl.handleExportingEvent("image", currentIndex, count, t.getName());
-                }
-
                 final ImageTag imageTag = (ImageTag) t;
 
                 ImageFormat fileFormat = imageTag.getImageFormat();
@@ -89,7 +84,7 @@ public class ImageExporter {
                     final File file = new File(outdir + File.separator + Helper.makeFileName(imageTag.getCharacterExportFileName() + "." + ImageHelper.getImageFormatString(fileFormat)));
                     final ImageFormat ffileFormat = fileFormat;
 
-                    new RetryTask(() -> {
+                    queue.add(t.getName(), () -> {
                         if (ffileFormat == originalFormat) {
                             try (OutputStream fos = new BufferedOutputStream(new FileOutputStream(file))) {
                                 fos.write(Helper.readStream(imageTag.getImageData()));
@@ -99,18 +94,13 @@ public class ImageExporter {
                         } else {
                             ImageHelper.write(imageTag.getImageCached().getBufferedImage(), ffileFormat, file);
                         }
-                    }, handler).run();
+                    });
                     ret.add(file);
                 }
-
-                if (evl != null) {
-                    evl.handleExportedEvent("image", currentIndex, count, t.getName());
-                }
-
-                currentIndex++;
             }
         }
 
+        queue.run();
         return ret;
     }
 }
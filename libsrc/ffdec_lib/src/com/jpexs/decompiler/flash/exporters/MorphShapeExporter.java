@@ -18,7 +18,6 @@ package com.jpexs.decompiler.flash.exporters;
 import com.jpexs.decompiler.flash.AbortRetryIgnoreHandler;
 import com.jpexs.decompiler.flash.EventListener;
 import com.jpexs.decompiler.flash.ReadOnlyTagList;
-import com.jpexs.decompiler.flash.RetryTask;
 import com.jpexs.decompiler.flash.SWF;
 import com.jpexs.decompiler.flash.action.parser.ActionParseException;
 import com.jpexs.decompiler.flash.exporters.commonshape.ExportRectangle;
@@ -74,20 +73,16 @@ public class MorphShapeExporter {
             return ret;
         }
 
-        int currentIndex = 1;
+        ExportTaskQueue queue = new ExportTaskQueue(handler, evl, "morphshape");
         for (final Tag t : tags) {
             if (t instanceof MorphShapeTag) {
-                if (evl != null) {
-                    evl.handleExportingEvent("morphshape", currentIndex, count, t.getName());
-                }
-
                 int characterID = 0;
                 if (t instanceof CharacterTag) {
                     characterID = ((CharacterTag) t).getCharacterId();
                 }
 
                 final File file = new File(outdir + File.separator + characterID + settings.getFileExtension());
-                new RetryTask(() -> {
+                queue.add(t.getName(), () -> {
                     MorphShapeTag mst = (MorphShapeTag) t;
                     switch (settings.mode) {
                         case SVG:
@@ -97,9 +92,9 @@ public class MorphShapeExporter {
                                 rect.yMax *= settings.zoom;
                                 rect.xMin *= settings.zoom;
                                 rect.yMin *= settings.zoom;
-                                SVGExporter exporter = new SVGExporter(rect, settings.zoom);
+                                SVGExporter exporter = new SVGExporter(rect, settings.zoom, fos);
                                 mst.toSVG(exporter, -2, new CXFORMWITHALPHA(), 0);
-                                fos.write(Utf8Helper.getBytes(exporter.getSVG()));
+                                exporter.finish();
                             }
                             break;
                         case CANVAS:
@@ -128,17 +123,12 @@ public class MorphShapeExporter {
 
                             break;
                     }
-                }, handler).run();
+                });
                 ret.add(file);
-
-                if (evl != null) {
-                    evl.handleExportedEvent("morphshape", currentIndex, count, t.getName());
-                }
-
-                currentIndex++;
             }
         }
 
+        queue.run();
         if (settings.mode == MorphShapeExportMode.CANVAS) {
             File fcanvas = new File(foutdir + File.separator + "canvas.js");
             Helper.saveStream(SWF.class.getClassLoader().getResourceAsStream("com/jpexs/helpers/resource/canvas.js"), fcanvas);
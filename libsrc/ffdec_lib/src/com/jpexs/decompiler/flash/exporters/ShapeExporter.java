@@ -18,7 +18,6 @@ package com.jpexs.decompiler.flash.exporters;
 import com.jpexs.decompiler.flash.AbortRetryIgnoreHandler;
 import com.jpexs.decompiler.flash.EventListener;
 import com.jpexs.decompiler.flash.ReadOnlyTagList;
-import com.jpexs.decompiler.flash.RetryTask;
 import com.jpexs.decompiler.flash.SWF;
 import com.jpexs.decompiler.flash.action.parser.ActionParseException;
 import com.jpexs.decompiler.flash.exporters.commonshape.ExportRectangle;
@@ -79,16 +78,12 @@ public class ShapeExporter {
             return ret;
         }
 
-        int currentIndex = 1;
+        ExportTaskQueue queue = new ExportTaskQueue(handler, evl, "shape");
         for (final Tag t : tags) {
             if (t instanceof ShapeTag) {
                 final ShapeTag st = (ShapeTag) t;
-                if (evl != null) {
-                    evl.handleExportingEvent("shape", currentIndex, count, t.getName());
-                }
-
                 final File file = new File(outdir + File.separator + Helper.makeFileName(st.getCharacterExportFileName() + settings.getFileExtension()));
-                new RetryTask(() -> {
+                queue.add(t.getName(), () -> {
                     switch (settings.mode) {
                         case SVG:
                             try (OutputStream fos = new BufferedOutputStream(new FileOutputStream(file))) {
@@ -97,9 +92,9 @@ public class ShapeExporter {
                                 rect.yMax *= settings.zoom;
                                 rect.xMin *= settings.zoom;
                                 rect.yMin *= settings.zoom;
-                                SVGExporter exporter = new SVGExporter(rect, settings.zoom);
+                                SVGExporter exporter = new SVGExporter(rect, settings.zoom, fos);
                                 st.toSVG(exporter, -2, new CXFORMWITHALPHA(), 0);
-                                fos.write(Utf8Helper.getBytes(exporter.getSVG()));
+                                exporter.finish();
                             }
                             break;
                         case PNG:
@@ -144,16 +139,12 @@ public class ShapeExporter {
 
                             break;
                     }
-                }, handler).run();
+                });
                 ret.add(file);
-
-                if (evl != null) {
-                    evl.handleExportedEvent("shape", currentIndex, count, t.getName());
-                }
-
-                currentIndex++;
             }
         }
+
+        queue.run();
         if (settings.mode == ShapeExportMode.CANVAS) {
             File fcanvas = new File(foutdir + File.separator + "canvas.js");
             Helper.saveStream(SWF.class.getClassLoader().getResourceAsStream("com/jpexs/helpers/resource/canvas.js"), fcanvas);
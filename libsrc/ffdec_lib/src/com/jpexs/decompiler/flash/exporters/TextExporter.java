@@ -68,33 +68,25 @@ public class TextExporter {
             return ret;
         }
 
-        int currentIndex = 1;
+        ExportTaskQueue queue = new ExportTaskQueue(handler, evl, "text");
         if (settings.mode == TextExportMode.SVG) {
             for (Tag t : tags) {
                 if (t instanceof TextTag) {
-                    if (evl != null) {
-                        evl.handleExportingEvent("text", currentIndex, count, t.getName());
-                    }
-
                     final TextTag textTag = (TextTag) t;
                     final File file = new File(outdir + File.separator + Helper.makeFileName(textTag.getCharacterExportFileName() + ".svg"));
-                    new RetryTask(() -> {
+                    queue.add(t.getName(), () -> {
                         try (OutputStream fos = new BufferedOutputStream(new FileOutputStream(file))) {
                             ExportRectangle rect = new ExportRectangle(textTag.getRect());
-                            SVGExporter exporter = new SVGExporter(rect, settings.zoom);
+                            SVGExporter exporter = new SVGExporter(rect, settings.zoom, fos);
                             textTag.toSVG(exporter, -2, new CXFORMWITHALPHA(), 0);
-                            fos.write(Utf8Helper.getBytes(exporter.getSVG()));
+                            exporter.finish();
                         }
-                    }, handler).run();
+                    });
                     ret.add(file);
-
-                    if (evl != null) {
-                        evl.handleExportedEvent("text", currentIndex, count, t.getName());
-                    }
-
-                    currentIndex++;
                 }
             }
+
+            queue.run();
             return ret;
         }
 
@@ -130,13 +122,9 @@ public class TextExporter {
         } else {
             for (Tag t : tags) {
                 if (t instanceof TextTag) {
-                    if (evl != null) {
-                        evl.handleExportingEvent("text", currentIndex, count, t.getName());
-                    }
-
                     final TextTag textTag = (TextTag) t;
                     final File file = new File(outdir + File.separator + Helper.makeFileName(textTag.getCharacterExportFileName() + ".txt"));
-                    new RetryTask(() -> {
+                    queue.add(t.getName(), () -> {
                         try (OutputStream fos = new BufferedOutputStream(new FileOutputStream(file))) {
                             if (settings.mode == TextExportMode.FORMATTED) {
                                 fos.write(Utf8Helper.getBytes(textTag.getFormattedText(false).text));
@@ -147,16 +135,12 @@ public class TextExporter {
                                 fos.write(Utf8Helper.getBytes(String.join(separator, texts)));
                             }
                         }
-                    }, handler).run();
+                    });
                     ret.add(file);
-
-                    if (evl != null) {
-                        evl.handleExportedEvent("text", currentIndex, count, t.getName());
-                    }
-
-                    currentIndex++;
                 }
             }
+
+            queue.run();
         }
         return ret;
     }
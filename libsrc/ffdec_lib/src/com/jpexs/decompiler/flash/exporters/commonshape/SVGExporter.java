@@ -23,33 +23,42 @@ import com.jpexs.decompiler.flash.types.RECT;
 import com.jpexs.decompiler.flash.types.RGBA;
 import com.jpexs.helpers.Helper;
 import java.awt.Color;
-import java.io.StringWriter;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import org.w3c.dom.Attr;
-import org.w3c.dom.CDATASection;
-import org.w3c.dom.DOMImplementation;
 import org.w3c.dom.Document;
-import org.w3c.dom.DocumentType;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
 
 /**
+ * Writes SVG directly to an output stream with StAX.
+ *
+ * The groups are written when their first child is written, so empty groups
+ * are left out and the attributes of a group can be set until then. The
+ * elements created by createElement are small DOM trees, the last added one
+ * can be modified until the next call of the exporter. The definitions (def
+ * groups, gradients, styles) are written in defs elements at the current
+ * position, they are referenced by id, so they do not need to be at the start
+ * of the document.
  *
  * @author JPEXS
  */
@@ -59,15 +68,9 @@ public class SVGExporter {
 
     protected static final String xlinkNamespace = "http://www.w3.org/1999/xlink";
 
-    protected Document _svg;
-
-    protected Element _svgDefs;
-
-    protected CDATASection _svgStyle;
+    private static final String INDENT = "  ";
 
-    protected Stack<Element> _svgGs = new Stack<>();
-
-    public List<Element> gradients;
+    protected Document _svg;
 
     protected int lastPatternId;
 
@@ -79,46 +82,87 @@ public class SVGExporter {
 
     private final HashSet<String> fontFaces = new HashSet<>();
 
+    /**
+     * Gradient ids by the gradient content
+     */
+    private final Map<String, String> gradientIds = new HashMap<>();
+
     public boolean useTextTag = Configuration.textExportExportFontFace.get();
 
+    private final ByteArrayOutputStream buffer;
+
+    private final Writer writer;
+
+    private XMLStreamWriter xmlWriter;
+
+    private final List<Group> groups = new ArrayList<>();
+
+    private Node pendingNode;
+
+    /**
+     * Number of the written and not closed elements
+     */
+    private int depth;
+
+    private XMLStreamException error;
+
+    private boolean finished;
+
+    /**
+     * Creates exporter which collects the SVG for getSVG method
+     *
+     * @param bounds Bounds
+     * @param zoom Zoom
+     */
     public SVGExporter(ExportRectangle bounds, double zoom) {
+        this(bounds, zoom, null);
+    }
 
-        DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
+    /**
+     * Creates exporter which writes the SVG to the stream, finish method must
+     * be called at the end
+     *
+     * @param bounds Bounds
+     * @param zoom Zoom
+     * @param os Output stream, it is not closed
+     */
+    public SVGExporter(ExportRectangle bounds, double zoom, OutputStream os) {
+        if (os == null) {
+            buffer = new ByteArrayOutputStream();
+            os = buffer;
+        } else {
+            buffer = null;
+        }
+
+        writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
         try {
-            DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
-            DOMImplementation impl = docBuilder.getDOMImplementation();
-            DocumentType svgDocType = impl.createDocumentType("svg", "-//W3C//DTD SVG 1.0//EN",
-                    "http://www.w3.org/TR/2001/REC-SVG-20010904/DTD/svg10.dtd");
-            _svg = impl.createDocument(sNamespace, "svg", svgDocType);
-            Element svgRoot = _svg.getDocumentElement();
-            svgRoot.setAttribute("xmlns:xlink", xlinkNamespace);
-            if (bounds != null) {
-                svgRoot.setAttribute("width", (bounds.getWidth() / SWF.unitDivisor) + "px");
-                svgRoot.setAttribute("height", (bounds.getHeight() / SWF.unitDivisor) + "px");
-                createDefGroup(bounds, null, zoom);
-            }
+            _svg = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
         } catch (ParserConfigurationException ex) {
             Logger.getLogger(SVGExporter.class.getName()).log(Level.SEVERE, null, ex);
         }
-        gradients = new ArrayList<>();
-    }
 
-    private Element getDefs() {
-        if (_svgDefs == null) {
-            _svgDefs = _svg.createElement("defs");
-            _svg.getDocumentElement().appendChild(_svgDefs);
+        try {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>");
+            xmlWriter = XMLOutputFactory.newInstance().createXMLStreamWriter(writer);
+            writeIndent();
+            xmlWriter.writeStartElement("svg");
+            xmlWriter.writeAttribute("xmlns:xlink", xlinkNamespace);
+            if (bounds != null) {
+                xmlWriter.writeAttribute("height", (bounds.getHeight() / SWF.unitDivisor) + "px");
+                xmlWriter.writeAttribute("width", (bounds.getWidth() / SWF.unitDivisor) + "px");
+            }
+
+            xmlWriter.writeDefaultNamespace(sNamespace);
+            depth++;
+        } catch (IOException ex) {
+            error = new XMLStreamException(ex);
+        } catch (XMLStreamException ex) {
+            error = ex;
         }
-        return _svgDefs;
-    }
 
-    private CDATASection getStyle() {
-        if (_svgStyle == null) {
-            Element style = _svg.createElement("style");
-            _svgStyle = _svg.createCDATASection("");
-            style.appendChild(_svgStyle);
-            getDefs().appendChild(style);
+        if (bounds != null) {
+            createDefGroup(bounds, null, zoom);
         }
-        return _svgStyle;
     }
 
     public final void createDefGroup(ExportRectangle bounds, String id) {
@@ -126,6 +170,7 @@ public class SVGExporter {
     }
 
     public final void createDefGroup(ExportRectangle bounds, String id, double zoom) {
+        flushPendingNode();
         Element g = _svg.createElement("g");
         if (bounds != null) {
             Matrix mat = Matrix.getTranslateInstance(-bounds.xMin, -bounds.yMin);
@@ -135,21 +180,36 @@ public class SVGExporter {
         if (id != null) {
             g.setAttribute("id", id);
         }
-        if (_svgGs.size() == 0) {
-            _svg.getDocumentElement().appendChild(g);
-        } else {
-            getDefs().appendChild(g);
-        }
-        _svgGs.add(g);
+
+        // the first group is the main group, the others are definitions
+        groups.add(new Group(g, !groups.isEmpty()));
     }
 
+    /**
+     * Ends the current group
+     *
+     * @return False when the group was empty and it was not written
+     */
     public boolean endGroup() {
-        Element g = _svgGs.pop();
-        if (g.getChildNodes().getLength() == 0) {
-            g.getParentNode().removeChild(g);
+        flushPendingNode();
+        Group group = groups.remove(groups.size() - 1);
+        if (!group.written) {
             return false;
         }
-        
+
+        try {
+            depth--;
+            writeIndent();
+            xmlWriter.writeEndElement();
+            if (group.definition) {
+                depth--;
+                writeIndent();
+                xmlWriter.writeEndElement();
+            }
+        } catch (XMLStreamException ex) {
+            setError(ex);
+        }
+
         return true;
     }
 
@@ -163,51 +223,114 @@ public class SVGExporter {
     }
 
     public final Element createClipPath(Matrix transform, String id) {
+        Element parent = groups.get(groups.size() - 1).element;
         Element group = createSubGroup(id, "clipPath");
-        Node parent = group.getParentNode();
-        if (parent instanceof Element) {
-            Element parentElement = (Element) parent;
-            group.setAttribute("transform", parentElement.getAttribute("transform"));
-        }
+        group.setAttribute("transform", parent.getAttribute("transform"));
         return group;
     }
 
     private Element createSubGroup(String id, String tagName) {
+        flushPendingNode();
         Element group = _svg.createElement(tagName);
         if (id != null) {
             group.setAttribute("id", id);
         }
-        _svgGs.peek().appendChild(group);
-        _svgGs.add(group);
+        groups.add(new Group(group, false));
         return group;
     }
 
     public void addToGroup(Node newChild) {
-        _svgGs.peek().appendChild(newChild);
+        flushPendingNode();
+        pendingNode = newChild;
     }
 
     public void addToDefs(Node newChild) {
-        getDefs().appendChild(newChild);
+        flushPendingNode();
+        writeDefinition(newChild);
+    }
+
+    /**
+     * Adds the gradient to the definitions when the same gradient was not
+     * added yet
+     *
+     * @param gradient Gradient element without id
+     * @return Id of the gradient
+     */
+    public String addGradient(Element gradient) {
+        String key = getNodeKey(gradient);
+        String id = gradientIds.get(key);
+        if (id == null) {
+            id = "gradient" + gradientIds.size();
+            gradientIds.put(key, id);
+            gradient.setAttribute("id", id);
+            addToDefs(gradient);
+        }
+
+        return id;
     }
 
     public Element createElement(String tagName) {
         return _svg.createElement(tagName);
     }
 
+    /**
+     * Writes the not closed elements and flushes the output
+     *
+     * @throws IOException On error
+     */
+    public void finish() throws IOException {
+        if (!finished) {
+            finished = true;
+            flushPendingNode();
+            while (groups.size() > 1) {
+                endGroup();
+            }
+
+            try {
+                if (!groups.isEmpty() && !groups.get(0).written) {
+                    // the main group is in the document also when it is empty
+                    writeIndent();
+                    xmlWriter.writeEmptyElement("g");
+                    writeAttributes(groups.get(0).element);
+                    groups.clear();
+                }
+
+                while (!groups.isEmpty()) {
+                    endGroup();
+                }
+
+                depth--;
+                writeIndent();
+                xmlWriter.writeEndElement();
+                xmlWriter.writeCharacters(Helper.newLine);
+                xmlWriter.writeEndDocument();
+                xmlWriter.flush();
+            } catch (XMLStreamException ex) {
+                setError(ex);
+            }
+        }
+
+        if (error != null) {
+            throw new IOException(error);
+        }
+
+        writer.flush();
+    }
+
+    /**
+     * Gets the SVG, available only when the exporter was created without
+     * output stream
+     *
+     * @return SVG
+     */
     public String getSVG() {
-        TransformerFactory transformerFactory = TransformerFactory.newInstance();
-        StringWriter writer = new StringWriter();
         try {
-            Transformer transformer = transformerFactory.newTransformer();
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-            DOMSource source = new DOMSource(_svg);
-            StreamResult result = new StreamResult(writer);
-            transformer.transform(source, result);
-        } catch (TransformerException ex) {
+            finish();
+        } catch (IOException ex) {
             Logger.getLogger(SVGExporter.class.getName()).log(Level.SEVERE, null, ex);
         }
-        return writer.toString();
+
+        return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
     }
 
     public void setBackGroundColor(Color backGroundColor) {
@@ -226,7 +349,7 @@ public class SVGExporter {
             image.setAttribute("id", instanceName);
         }
         image.setAttribute("xlink:href", "#" + href);
-        _svgGs.peek().appendChild(image);
+        addToGroup(image);
         return image;
     }
 
@@ -234,8 +357,7 @@ public class SVGExporter {
         if (!fontFaces.contains(fontFace)) {
             fontFaces.add(fontFace);
             String base64Data = Helper.byteArrayToBase64String(data);
-            String value = getStyle().getTextContent();
-            value += Helper.newLine;
+            String value = Helper.newLine;
             value += "      @font-face {" + Helper.newLine;
             value += "        font-family: \"" + fontFace + "\";" + Helper.newLine;
             switch (mode) {
@@ -247,7 +369,9 @@ public class SVGExporter {
                     break;
             }
             value += "      }" + Helper.newLine;
-            getStyle().setTextContent(value);
+            Element style = _svg.createElement("style");
+            style.appendChild(_svg.createCDATASection(value));
+            addToDefs(style);
         }
     }
 
@@ -265,4 +389,182 @@ public class SVGExporter {
     protected static double roundPixels20(double pixels) {
         return Math.round(pixels * 100) / 100.0;
     }
+
+    private void flushPendingNode() {
+        if (pendingNode == null) {
+            return;
+        }
+
+        Node node = pendingNode;
+        pendingNode = null;
+        try {
+            openGroups();
+            writeNode(node);
+        } catch (XMLStreamException ex) {
+            setError(ex);
+        }
+    }
+
+    private void writeDefinition(Node node) {
+        try {
+            writeIndent();
+            xmlWriter.writeStartElement("defs");
+            depth++;
+            writeNode(node);
+            depth--;
+            writeIndent();
+            xmlWriter.writeEndElement();
+        } catch (XMLStreamException ex) {
+            setError(ex);
+        }
+    }
+
+    /**
+     * Writes the not written groups up to the current one. A definition group
+     * is written at the current position without its parents.
+     */
+    private void openGroups() throws XMLStreamException {
+        if (groups.isEmpty()) {
+            return;
+        }
+
+        int last = groups.size() - 1;
+        int first = last;
+        while (first > 0 && !groups.get(first).definition && !groups.get(first - 1).written) {
+            first--;
+        }
+
+        for (int i = first; i <= last; i++) {
+            if (!groups.get(i).written) {
+                writeGroupStart(groups.get(i));
+            }
+        }
+    }
+
+    private void writeGroupStart(Group group) {
+        try {
+            if (group.definition) {
+                writeIndent();
+                xmlWriter.writeStartElement("defs");
+                depth++;
+            }
+
+            writeIndent();
+            xmlWriter.writeStartElement(group.element.getTagName());
+            writeAttributes(group.element);
+            depth++;
+            group.written = true;
+        } catch (XMLStreamException ex) {
+            setError(ex);
+        }
+    }
+
+    private void writeNode(Node node) throws XMLStreamException {
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                writeIndent();
+                NodeList children = node.getChildNodes();
+                if (children.getLength() == 0) {
+                    xmlWriter.writeEmptyElement(node.getNodeName());
+                    writeAttributes(node);
+                    break;
+                }
+
+                xmlWriter.writeStartElement(node.getNodeName());
+                writeAttributes(node);
+                depth++;
+                boolean hasElements = false;
+                for (int i = 0; i < children.getLength(); i++) {
+                    Node child = children.item(i);
+                    if (child.getNodeType() == Node.ELEMENT_NODE) {
+                        hasElements = true;
+                    }
+
+                    writeNode(child);
+                }
+
+                depth--;
+                if (hasElements) {
+                    writeIndent();
+                }
+
+                xmlWriter.writeEndElement();
+                break;
+            case Node.TEXT_NODE:
+                xmlWriter.writeCharacters(node.getNodeValue());
+                break;
+            case Node.CDATA_SECTION_NODE:
+                xmlWriter.writeCData(node.getNodeValue());
+                break;
+        }
+    }
+
+    private void writeAttributes(Node node) throws XMLStreamException {
+        NamedNodeMap attributes = node.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Node attribute = attributes.item(i);
+            xmlWriter.writeAttribute(attribute.getNodeName(), attribute.getNodeValue());
+        }
+    }
+
+    private void writeIndent() throws XMLStreamException {
+        StringBuilder sb = new StringBuilder(Helper.newLine);
+        for (int i = 0; i < depth; i++) {
+            sb.append(INDENT);
+        }
+
+        xmlWriter.writeCharacters(sb.toString());
+    }
+
+    private static String getNodeKey(Node node) {
+        StringBuilder sb = new StringBuilder();
+        appendNodeKey(node, sb);
+        return sb.toString();
+    }
+
+    private static void appendNodeKey(Node node, StringBuilder sb) {
+        sb.append('<').append(node.getNodeName());
+        NamedNodeMap attributes = node.getAttributes();
+        if (attributes != null) {
+            for (int i = 0; i < attributes.getLength(); i++) {
+                Node attribute = attributes.item(i);
+                if (!"id".equals(attribute.getNodeName())) {
+                    sb.append(' ').append(attribute.getNodeName()).append("=\"").append(attribute.getNodeValue()).append('"');
+                }
+            }
+        }
+
+        sb.append('>');
+        NodeList children = node.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node child = children.item(i);
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                appendNodeKey(child, sb);
+            } else {
+                sb.append(child.getNodeValue());
+            }
+        }
+
+        sb.append("</>");
+    }
+
+    private void setError(XMLStreamException ex) {
+        if (error == null) {
+            error = ex;
+        }
+    }
+
+    private static class Group {
+
+        private final Element element;
+
+        private final boolean definition;
+
+        private boolean written;
+
+        public Group(Element element, boolean definition) {
+            this.element = element;
+            this.definition = definition;
+        }
+    }
 }
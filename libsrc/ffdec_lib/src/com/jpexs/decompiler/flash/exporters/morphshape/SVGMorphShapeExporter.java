@@ -89,17 +89,10 @@ public class SVGMorphShapeExporter extends DefaultSVGMorphShapeExporter {
                 ? exporter.createElement("linearGradient")
                 : exporter.createElement("radialGradient");
         populateGradientElement(gradient, type, gradientRecords, gradientRecordsEnd, matrix, matrixEnd, spreadMethod, interpolationMethod, focalPointRatio);
-        int id = exporter.gradients.indexOf(gradient);
-        if (id < 0) {
-            // todo: filter same gradients
-            id = exporter.gradients.size();
-            exporter.gradients.add(gradient);
-        }
-        gradient.setAttribute("id", "gradient" + id);
+        String gradientId = exporter.addGradient(gradient);
         path.setAttribute("stroke", "none");
-        path.setAttribute("fill", "url(#gradient" + id + ")");
+        path.setAttribute("fill", "url(#" + gradientId + ")");
         path.setAttribute("fill-rule", "evenodd");
-        exporter.addToDefs(gradient);
     }
 
     @Override
@@ -206,16 +199,9 @@ public class SVGMorphShapeExporter extends DefaultSVGMorphShapeExporter {
                 ? exporter.createElement("linearGradient")
                 : exporter.createElement("radialGradient");
         populateGradientElement(gradient, type, gradientRecords, gradientRecordsEnd, matrix, matrixEnd, spreadMethod, interpolationMethod, focalPointRatio);
-        int id = exporter.gradients.indexOf(gradient);
-        if (id < 0) {
-            // todo: filter same gradients
-            id = exporter.gradients.size();
-            exporter.gradients.add(gradient);
-        }
-        gradient.setAttribute("id", "gradient" + id);
-        path.setAttribute("stroke", "url(#gradient" + id + ")");
+        String gradientId = exporter.addGradient(gradient);
+        path.setAttribute("stroke", "url(#" + gradientId + ")");
         path.setAttribute("fill", "none");
-        exporter.addToDefs(gradient);
     }
 
     private Element createAnimateElement(String attributeName, Object startValue, Object endValue) {
@@ -85,18 +85,10 @@ public class SVGShapeExporter extends DefaultSVGShapeExporter {
                 ? exporter.createElement("linearGradient")
                 : exporter.createElement("radialGradient");
         populateGradientElement(gradient, type, gradientRecords, matrix, spreadMethod, interpolationMethod, focalPointRatio);
-        int id = exporter.gradients.indexOf(gradient);
-        if (id < 0) {
-            // todo: filter same gradients
-            id = exporter.gradients.size();
-            exporter.gradients.add(gradient);
-        }
-        String gradientId = "gradient" + id;
-        gradient.setAttribute("id", gradientId);
+        String gradientId = exporter.addGradient(gradient);
         path.setAttribute("stroke", "none");
         path.setAttribute("fill", "url(#" + gradientId + ")");
         path.setAttribute("fill-rule", "evenodd");
-        exporter.addToDefs(gradient);
     }
 
     @Override
@@ -190,16 +182,9 @@ public class SVGShapeExporter extends DefaultSVGShapeExporter {
                 ? exporter.createElement("linearGradient")
                 : exporter.createElement("radialGradient");
         populateGradientElement(gradient, type, gradientRecords, matrix, spreadMethod, interpolationMethod, focalPointRatio);
-        int id = exporter.gradients.indexOf(gradient);
-        if (id < 0) {
-            // todo: filter same gradients
-            id = exporter.gradients.size();
-            exporter.gradients.add(gradient);
-        }
-        gradient.setAttribute("id", "gradient" + id);
-        path.setAttribute("stroke", "url(#gradient" + id + ")");
+        String gradientId = exporter.addGradient(gradient);
+        path.setAttribute("stroke", "url(#" + gradientId + ")");
         path.setAttribute("fill", "none");
-        exporter.addToDefs(gradient);
     }
 
     @Override
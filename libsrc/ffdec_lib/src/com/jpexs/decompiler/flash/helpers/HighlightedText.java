@@ -61,6 +61,17 @@ public class HighlightedText implements Serializable {
         return specialHighlights;
     }
 
+    /**
+     * Gets approximate memory size of the text and its highlights
+     *
+     * @return Size in bytes
+     */
+    public long getEstimatedSize() {
+        long highlightCount = traitHighlights.size() + classHighlights.size() + methodHighlights.size()
+                + instructionHighlights.size() + specialHighlights.size();
+        return 64 + 2L * text.length() + 64 * highlightCount;
+    }
+
     public HighlightedText(HighlightedTextWriter writer) {
         this.text = writer.toString();
         this.traitHighlights = writer.traitHilights;
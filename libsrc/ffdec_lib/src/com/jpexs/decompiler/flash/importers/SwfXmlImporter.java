@@ -97,7 +97,6 @@ import com.jpexs.decompiler.flash.types.shaperecords.EndShapeRecord;
 import com.jpexs.decompiler.flash.types.shaperecords.StraightEdgeRecord;
 import com.jpexs.decompiler.flash.types.shaperecords.StyleChangeRecord;
 import com.jpexs.helpers.ByteArrayRange;
-import com.jpexs.helpers.HashArrayList;
 import com.jpexs.helpers.ReflectionTools;
 import java.io.IOException;
 import java.io.StringReader;
@@ -220,7 +219,7 @@ public class SwfXmlImporter {
                     Field field = getField(cls, name);
                     Class childCls = field.getType();
                     if (List.class.isAssignableFrom(childCls)) {
-                        List list = HashArrayList.class.isAssignableFrom(childCls) ? new HashArrayList() : new ArrayList();
+                        List list = childCls.isInterface() || Modifier.isAbstract(childCls.getModifiers()) ? new ArrayList() : (List) childCls.newInstance();
                         for (int j = 0; j < child.getChildNodes().getLength(); j++) {
                             Node childChildNode = child.getChildNodes().item(j);
                             if (childChildNode instanceof Element) {
@@ -15,10 +15,12 @@
  * License along with this library. */
 package com.jpexs.decompiler.flash.search;
 
+import com.jpexs.decompiler.flash.DecompilerPool;
 import com.jpexs.decompiler.flash.SWF;
 import com.jpexs.decompiler.flash.abc.ABC;
 import com.jpexs.decompiler.flash.abc.ScriptPack;
 import com.jpexs.decompiler.flash.abc.types.MethodBody;
+import com.jpexs.decompiler.flash.cache.PersistentDecompilationCache;
 import com.jpexs.decompiler.flash.cache.ScriptDecompiledListener;
 import com.jpexs.decompiler.flash.configuration.Configuration;
 import com.jpexs.decompiler.flash.exporters.modes.ScriptExportMode;
@@ -26,6 +28,7 @@ import com.jpexs.decompiler.flash.helpers.HighlightedText;
 import com.jpexs.decompiler.flash.helpers.HighlightedTextWriter;
 import com.jpexs.decompiler.flash.tags.base.ASMSource;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
@@ -35,18 +38,28 @@ import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
 /**
+ * Searches the decompiled scripts.
+ *
+ * Trigram index of each searched script is kept in the script cache (and in
+ * the persistent decompilation cache when enabled), so the next searches
+ * decompile and match only the scripts which can contain the searched text.
  *
  * @author JPEXS
  */
 public class ActionScriptSearch {
 
     public List<ActionSearchResult> searchAs2(SWF swf, final String txt, boolean ignoreCase, boolean regexp, boolean pcode, ScriptSearchListener listener) {
+        return searchAs2(swf, txt, ignoreCase, regexp, pcode, listener, null);
+    }
+
+    public List<ActionSearchResult> searchAs2(SWF swf, final String txt, boolean ignoreCase, boolean regexp, boolean pcode, ScriptSearchListener listener, ScriptSearchResultListener<ActionSearchResult> resultListener) {
         if (txt != null && !txt.isEmpty()) {
             Map<String, ASMSource> asms = swf.getASMs(false);
-            final List<ActionSearchResult> found = new ArrayList<>();
+            final List<ActionSearchResult> found = Collections.synchronizedList(new ArrayList<>());
             Pattern pat = regexp
                     ? Pattern.compile(txt, ignoreCase ? (Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE) : 0)
                     : Pattern.compile(Pattern.quote(txt), ignoreCase ? (Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE) : 0);
+            int[] requiredTrigrams = TrigramIndex.getRequiredTrigrams(txt, regexp);
 
             int pos = 0;
             List<Future<HighlightedText>> futures = new ArrayList<>();
@@ -64,9 +77,16 @@ public class ActionScriptSearch {
                         asm.getASMSource(ScriptExportMode.PCODE, writer, null);
                         String text = writer.toString();
                         if (pat.matcher(text).find()) {
-                            found.add(new ActionSearchResult(asm, pcode, item.getKey()));
+                            addResult(found, new ActionSearchResult(asm, pcode, item.getKey()), resultListener);
                         }
                     } else {
+                        if (requiredTrigrams.length > 0) {
+                            TrigramIndex index = getSearchIndex(asm);
+                            if (index != null && !index.containsAll(requiredTrigrams)) {
+                                continue;
+                            }
+                        }
+
                         int fpos = pos;
                         Future<HighlightedText> text = SWF.getCachedFuture(asm, null, new ScriptDecompiledListener<HighlightedText>() {
                             @Override
@@ -82,29 +102,35 @@ public class ActionScriptSearch {
                                     listener.onSearch(fpos, asms.size(), item.getKey());
                                 }
 
+                                putSearchIndex(asm, result);
                                 if (pat.matcher(result.text).find()) {
-                                    ActionSearchResult searchResult = new ActionSearchResult(asm, pcode, item.getKey());
-                                    found.add(searchResult);
+                                    addResult(found, new ActionSearchResult(asm, pcode, item.getKey()), resultListener);
                                 }
                             }
-                        });
+                        }, DecompilerPool.Priority.SEARCH);
 
                         futures.add(text);
                     }
                 }
+
+                waitForAll(futures);
             } catch (InterruptedException ex) {
                 for (Future<HighlightedText> future : futures) {
                     future.cancel(true);
                 }
             }
 
-            return found;
+            return new ArrayList<>(found);
         }
 
         return null;
     }
 
     public List<ABCSearchResult> searchAs3(final SWF swf, final String txt, boolean ignoreCase, boolean regexp, boolean pcode, ScriptSearchListener listener) {
+        return searchAs3(swf, txt, ignoreCase, regexp, pcode, listener, null);
+    }
+
+    public List<ABCSearchResult> searchAs3(final SWF swf, final String txt, boolean ignoreCase, boolean regexp, boolean pcode, ScriptSearchListener listener, ScriptSearchResultListener<ABCSearchResult> resultListener) {
         // todo: pcode seach
         if (txt != null && !txt.isEmpty()) {
             List<String> ignoredClasses = new ArrayList<>();
@@ -114,11 +140,12 @@ public class ActionScriptSearch {
                 swf.getFlexMainClass(ignoredClasses, ignoredNss);
             }
 
-            final List<ABCSearchResult> found = new ArrayList<>();
+            final List<ABCSearchResult> found = Collections.synchronizedList(new ArrayList<>());
             List<ScriptPack> allpacks = swf.getAS3Packs();
             final Pattern pat = regexp
                     ? Pattern.compile(txt, ignoreCase ? (Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE) : 0)
                     : Pattern.compile(Pattern.quote(txt), ignoreCase ? (Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE) : 0);
+            int[] requiredTrigrams = TrigramIndex.getRequiredTrigrams(txt, regexp);
 
             int pos = 0;
             List<Future<HighlightedText>> futures = new ArrayList<>();
@@ -158,12 +185,18 @@ public class ActionScriptSearch {
                                 abc.bodies.get(bodyIndex).getCode().toASMSource(abc.constants, abc.method_info.get(body.method_info), body, ScriptExportMode.PCODE, writer);
                                 String text = writer.toString();
                                 if (pat.matcher(text).find()) {
-                                    ABCSearchResult searchResult = new ABCSearchResult(pack, methodInfo.getClassIndex(), methodInfo.getTraitId());
-                                    found.add(searchResult);
+                                    addResult(found, new ABCSearchResult(pack, methodInfo.getClassIndex(), methodInfo.getTraitId()), resultListener);
                                 }
                             }
                         }
                     } else {
+                        if (requiredTrigrams.length > 0) {
+                            TrigramIndex index = getSearchIndex(pack);
+                            if (index != null && !index.containsAll(requiredTrigrams)) {
+                                continue;
+                            }
+                        }
+
                         int fpos = pos;
                         Future<HighlightedText> text = SWF.getCachedFuture(pack, new ScriptDecompiledListener<HighlightedText>() {
                             @Override
@@ -179,33 +212,104 @@ public class ActionScriptSearch {
                                     listener.onSearch(fpos, allpacks.size(), pack.getClassPath().toString());
                                 }
 
+                                putSearchIndex(pack, result);
                                 if (pat.matcher(result.text).find()) {
-                                    ABCSearchResult searchResult = new ABCSearchResult(pack);
-                                    found.add(searchResult);
+                                    addResult(found, new ABCSearchResult(pack), resultListener);
                                 }
                             }
-                        });
+                        }, DecompilerPool.Priority.SEARCH);
 
                         futures.add(text);
                     }
                 }
 
-                for (Future<HighlightedText> future : futures) {
-                    try {
-                        future.get();
-                    } catch (ExecutionException ex) {
-                        Logger.getLogger(ActionScriptSearch.class.getName()).log(Level.SEVERE, null, ex);
-                    }
-                }
+                waitForAll(futures);
             } catch (InterruptedException ex) {
                 for (Future<HighlightedText> future : futures) {
                     future.cancel(true);
                 }
             }
 
-            return found;
+            return new ArrayList<>(found);
         }
 
         return null;
     }
+
+    private static <T> void addResult(List<T> found, T result, ScriptSearchResultListener<T> resultListener) {
+        found.add(result);
+        if (resultListener != null) {
+            resultListener.onResult(result);
+        }
+    }
+
+    private static void waitForAll(List<Future<HighlightedText>> futures) throws InterruptedException {
+        for (Future<HighlightedText> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException ex) {
+                Logger.getLogger(ActionScriptSearch.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+
+    private static TrigramIndex getSearchIndex(ASMSource src) {
+        SWF swf = src.getSwf();
+        if (swf == null) {
+            return null;
+        }
+
+        TrigramIndex index = swf.as2Cache.getSearchIndex(src);
+        if (index == null && PersistentDecompilationCache.isEnabled()) {
+            index = PersistentDecompilationCache.getSearchIndex(src);
+            if (index != null) {
+                swf.as2Cache.putSearchIndex(src, index);
+            }
+        }
+
+        return index;
+    }
+
+    private static void putSearchIndex(ASMSource src, HighlightedText text) {
+        SWF swf = src.getSwf();
+        if (swf == null || swf.as2Cache.getSearchIndex(src) != null) {
+            return;
+        }
+
+        TrigramIndex index = TrigramIndex.create(text.text);
+        swf.as2Cache.putSearchIndex(src, index);
+        if (PersistentDecompilationCache.isEnabled()) {
+            PersistentDecompilationCache.putSearchIndex(src, index);
+        }
+    }
+
+    private static TrigramIndex getSearchIndex(ScriptPack pack) {
+        SWF swf = pack.getSwf();
+        if (swf == null) {
+            return null;
+        }
+
+        TrigramIndex index = swf.as3Cache.getSearchIndex(pack);
+        if (index == null && PersistentDecompilationCache.isEnabled() && pack.scriptIndex > -1) {
+            index = PersistentDecompilationCache.getSearchIndex(pack);
+            if (index != null) {
+                swf.as3Cache.putSearchIndex(pack, index);
+            }
+        }
+
+        return index;
+    }
+
+    private static void putSearchIndex(ScriptPack pack, HighlightedText text) {
+        SWF swf = pack.getSwf();
+        if (swf == null || swf.as3Cache.getSearchIndex(pack) != null) {
+            return;
+        }
+
+        TrigramIndex index = TrigramIndex.create(text.text);
+        swf.as3Cache.putSearchIndex(pack, index);
+        if (PersistentDecompilationCache.isEnabled() && pack.scriptIndex > -1) {
+            PersistentDecompilationCache.putSearchIndex(pack, index);
+        }
+    }
 }
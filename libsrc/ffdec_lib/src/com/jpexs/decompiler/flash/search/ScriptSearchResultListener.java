@@ -1,31 +1,28 @@
 /*
  *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
- * 
+ *
  * This library is free software; you can redistribute it and/or
  * modify it under the terms of the GNU Lesser General Public
  * License as published by the Free Software Foundation; either
  * version 3.0 of the License, or (at your option) any later version.
- * 
+ *
  * This library is distributed in the hope that it will be useful,
  * but WITHOUT ANY WARRANTY; without even the implied warranty of
  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
  * Lesser General Public License for more details.
- * 
+ *
  * You should have received a copy of the GNU Lesser General Public
- * License along with this library. */
-package com.jpexs.helpers.stat;
+ * License along with this library. */
+package com.jpexs.decompiler.flash.search;
 
 /**
+ * Receives search results as soon as they are found. It is called from the
+ * decompiler threads.
  *
  * @author JPEXS
+ * @param <T> Result type
  */
-public class StatisticData {
-
-    public int count;
-
-    public long value;
-
-    public long min = Long.MAX_VALUE;
+public interface ScriptSearchResultListener<T> {
 
-    public long max = Long.MIN_VALUE;
+    public void onResult(T result);
 }
@@ -0,0 +1,384 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash.search;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Set of the trigrams (3 character sequences) of a decompiled script.
+ *
+ * The trigrams are case folded and stored as sorted hashes, so the index is
+ * much smaller than the text. A script can contain the searched text only when
+ * its index contains all trigrams required by the query, only such scripts have
+ * to be searched with the regular expression.
+ *
+ * @author JPEXS
+ */
+public class TrigramIndex {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final int[] trigrams;
+
+    private TrigramIndex(int[] trigrams) {
+        this.trigrams = trigrams;
+    }
+
+    public static TrigramIndex create(String text) {
+        return new TrigramIndex(getTrigrams(text));
+    }
+
+    /**
+     * Reads the index written by writeTo
+     *
+     * @param in Input stream
+     * @return Index
+     * @throws IOException On read error or invalid data
+     */
+    public static TrigramIndex readFrom(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > (1 << 24)) {
+            throw new IOException("Invalid trigram count");
+        }
+
+        int[] trigrams = new int[length];
+        for (int i = 0; i < length; i++) {
+            trigrams[i] = in.readInt();
+            if (i > 0 && trigrams[i] <= trigrams[i - 1]) {
+                throw new IOException("Trigrams are not sorted");
+            }
+        }
+
+        return new TrigramIndex(trigrams);
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(trigrams.length);
+        for (int t : trigrams) {
+            out.writeInt(t);
+        }
+    }
+
+    /**
+     * Checks whether the script can contain text with all the trigrams
+     *
+     * @param requiredTrigrams Sorted trigrams from getRequiredTrigrams
+     * @return False when the script surely does not match
+     */
+    public boolean containsAll(int[] requiredTrigrams) {
+        int i = 0;
+        for (int t : requiredTrigrams) {
+            while (i < trigrams.length && trigrams[i] < t) {
+                i++;
+            }
+
+            if (i == trigrams.length || trigrams[i] != t) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public int size() {
+        return trigrams.length;
+    }
+
+    public int getEstimatedSize() {
+        return 16 + trigrams.length * 4;
+    }
+
+    /**
+     * Gets the trigrams which every matching text must contain
+     *
+     * @param txt Searched text
+     * @param regexp Text is regular expression
+     * @return Sorted trigrams, empty array when the query cannot be filtered
+     */
+    public static int[] getRequiredTrigrams(String txt, boolean regexp) {
+        if (!regexp) {
+            return getTrigrams(txt);
+        }
+
+        List<String> literals = getRequiredLiterals(txt);
+        if (literals == null) {
+            return EMPTY;
+        }
+
+        int[] ret = EMPTY;
+        for (String literal : literals) {
+            int[] t = getTrigrams(literal);
+            int[] merged = Arrays.copyOf(ret, ret.length + t.length);
+            System.arraycopy(t, 0, merged, ret.length, t.length);
+            ret = merged;
+        }
+
+        return sortUnique(ret);
+    }
+
+    /**
+     * Gets literal parts of the regular expression which must be contained in
+     * every match. Only simple sequences are recognized, parts in groups,
+     * character classes and quantified characters are skipped.
+     *
+     * @param regexp Regular expression
+     * @return Literals or null when the expression cannot be analyzed
+     */
+    static List<String> getRequiredLiterals(String regexp) {
+        if (regexp.contains("|") || regexp.contains("(?") || regexp.contains("\\Q")) {
+            // alternatives and inline flags (for example comments mode) change what is required
+            return null;
+        }
+
+        List<String> ret = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < regexp.length()) {
+            char c = regexp.charAt(i);
+            boolean isLiteral = false;
+            char literalChar = c;
+            int next = i + 1;
+            switch (c) {
+                case '\\':
+                    if (i + 1 < regexp.length() && !Character.isLetterOrDigit(regexp.charAt(i + 1))) {
+                        isLiteral = true;
+                        literalChar = regexp.charAt(i + 1);
+                        next = i + 2;
+                    } else {
+                        next = skipEscape(regexp, i);
+                    }
+                    break;
+                case '[':
+                    next = skipCharacterClass(regexp, i);
+                    break;
+                case '(':
+                    next = skipGroup(regexp, i);
+                    break;
+                case '{':
+                    int end = regexp.indexOf('}', i);
+                    next = end == -1 ? regexp.length() : end + 1;
+                    break;
+                case '.':
+                case '^':
+                case '$':
+                case ')':
+                case ']':
+                case '}':
+                case '*':
+                case '+':
+                case '?':
+                    break;
+                default:
+                    isLiteral = true;
+            }
+
+            char quantifier = next < regexp.length() ? regexp.charAt(next) : 0;
+            boolean optional = quantifier == '?' || quantifier == '*' || quantifier == '{';
+            if (isLiteral && !optional) {
+                literal.append(literalChar);
+            }
+
+            if (!isLiteral || optional || quantifier == '+') {
+                addLiteral(ret, literal);
+            }
+
+            i = next;
+        }
+
+        addLiteral(ret, literal);
+        return ret;
+    }
+
+    private static void addLiteral(List<String> literals, StringBuilder literal) {
+        if (literal.length() > 0) {
+            literals.add(literal.toString());
+            literal.setLength(0);
+        }
+    }
+
+    /**
+     * Skips escape sequence starting with a backslash followed by a letter or
+     * a digit, including its payload, for example hexadecimal digits of
+     * {@code \x41} or the property name of {@code \p{Lu}}.
+     *
+     * @param regexp Regular expression
+     * @param pos Position of the backslash
+     * @return Position after the escape sequence
+     */
+    private static int skipEscape(String regexp, int pos) {
+        int i = pos + 1;
+        if (i >= regexp.length()) {
+            return regexp.length();
+        }
+
+        char c = regexp.charAt(i++);
+        switch (c) {
+            case 'x':
+                if (i < regexp.length() && regexp.charAt(i) == '{') {
+                    return skipTo(regexp, i, '}');
+                }
+
+                return skipDigits(regexp, i, 16, 2);
+            case 'u':
+                return skipDigits(regexp, i, 16, 4);
+            case '0':
+                int max = i < regexp.length() && regexp.charAt(i) >= '0' && regexp.charAt(i) <= '3' ? 3 : 2;
+                return skipDigits(regexp, i, 8, max);
+            case 'k':
+                if (i < regexp.length() && regexp.charAt(i) == '<') {
+                    return skipTo(regexp, i, '>');
+                }
+
+                return i;
+            case 'c':
+                return Math.min(i + 1, regexp.length());
+            case 'p':
+            case 'P':
+                if (i < regexp.length() && regexp.charAt(i) == '{') {
+                    return skipTo(regexp, i, '}');
+                }
+
+                return Math.min(i + 1, regexp.length());
+            default:
+                if (c >= '1' && c <= '9') {
+                    // back reference
+                    return skipDigits(regexp, i, 10, Integer.MAX_VALUE);
+                }
+
+                return i;
+        }
+    }
+
+    private static int skipTo(String regexp, int pos, char end) {
+        int i = regexp.indexOf(end, pos);
+        return i == -1 ? regexp.length() : i + 1;
+    }
+
+    private static int skipDigits(String regexp, int pos, int radix, int max) {
+        int i = pos;
+        while (i < regexp.length() && i - pos < max && Character.digit(regexp.charAt(i), radix) != -1) {
+            i++;
+        }
+
+        return i;
+    }
+
+    private static int skipCharacterClass(String regexp, int pos) {
+        int i = pos + 1;
+        if (i < regexp.length() && regexp.charAt(i) == '^') {
+            i++;
+        }
+
+        if (i < regexp.length() && regexp.charAt(i) == ']') {
+            i++;
+        }
+
+        int depth = 1;
+        while (i < regexp.length()) {
+            char c = regexp.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                depth++;
+            } else if (c == ']') {
+                depth--;
+                if (depth == 0) {
+                    return i + 1;
+                }
+            }
+
+            i++;
+        }
+
+        return regexp.length();
+    }
+
+    private static int skipGroup(String regexp, int pos) {
+        int depth = 0;
+        int i = pos;
+        while (i < regexp.length()) {
+            char c = regexp.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                i = skipCharacterClass(regexp, i) - 1;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+                if (depth == 0) {
+                    return i + 1;
+                }
+            }
+
+            i++;
+        }
+
+        return regexp.length();
+    }
+
+    private static int[] getTrigrams(String text) {
+        if (text.length() < 3) {
+            return EMPTY;
+        }
+
+        int[] ret = new int[text.length() - 2];
+        char c1 = fold(text.charAt(0));
+        char c2 = fold(text.charAt(1));
+        for (int i = 2; i < text.length(); i++) {
+            char c3 = fold(text.charAt(i));
+            ret[i - 2] = hash(c1, c2, c3);
+            c1 = c2;
+            c2 = c3;
+        }
+
+        return sortUnique(ret);
+    }
+
+    private static int[] sortUnique(int[] values) {
+        if (values.length == 0) {
+            return values;
+        }
+
+        Arrays.sort(values);
+        int count = 1;
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] != values[count - 1]) {
+                values[count++] = values[i];
+            }
+        }
+
+        return Arrays.copyOf(values, count);
+    }
+
+    /**
+     * Folds the case like the case insensitive regular expressions do, so the
+     * index can be used for both case sensitive and insensitive search
+     */
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static int hash(char c1, char c2, char c3) {
+        long value = ((long) c1 << 32) | ((long) c2 << 16) | c3;
+        return (int) ((value * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+}
@@ -31,7 +31,6 @@ import com.jpexs.helpers.SerializableImage;
 import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -178,7 +177,7 @@ public class DefineBitsJPEG4Tag extends ImageTag implements AloneTag {
     @Override
     public InputStream getOriginalImageData() {
         if (bitmapAlphaData.getLength() == 0) { // No alpha
-            return new ByteArrayInputStream(imageData.getArray(), imageData.getPos(), imageData.getLength());
+            return imageData.getInputStream();
         }
 
         return null;
@@ -187,7 +186,7 @@ public class DefineBitsJPEG4Tag extends ImageTag implements AloneTag {
     @Override
     protected SerializableImage getImage() {
         try {
-            BufferedImage image = ImageHelper.read(new ByteArrayInputStream(imageData.getArray(), imageData.getPos(), imageData.getLength()));
+            BufferedImage image = ImageHelper.read(imageData.getInputStream());
             if (image == null) {
                 Logger.getLogger(DefineBitsJPEG4Tag.class.getName()).log(Level.SEVERE, "Failed to load image");
                 return null;
@@ -227,7 +226,7 @@ public class DefineBitsJPEG4Tag extends ImageTag implements AloneTag {
         }
 
         try {
-            ByteArrayInputStream bis = new ByteArrayInputStream(imageData.getArray(), imageData.getPos(), imageData.getLength());
+            InputStream bis = imageData.getInputStream();
             return ImageHelper.getDimesion(bis);
         } catch (IOException ex) {
             Logger.getLogger(DefineBitsJPEG3Tag.class.getName()).log(Level.SEVERE, "Failed to get image dimension", ex);
@@ -119,11 +119,11 @@ public class DefineBitsTag extends ImageTag implements TagChangedListener {
                 ByteArrayRange jttdata = swf.getJtt().jpegData;
                 if (jttdata.getLength() != 0) {
                     int jttErrorLength = hasErrorHeader(jttdata) ? 4 : 0;
-                    baos.write(jttdata.getArray(), jttdata.getPos() + jttErrorLength, jttdata.getLength() - jttErrorLength);
+                    jttdata.getSubRange(jttErrorLength, jttdata.getLength() - jttErrorLength).writeTo(baos);
                 }
 
                 int errorLength = hasErrorHeader(jpegData) ? 4 : 0;
-                baos.write(jpegData.getArray(), jpegData.getPos() + errorLength, jpegData.getLength() - errorLength);
+                jpegData.getSubRange(errorLength, jpegData.getLength() - errorLength).writeTo(baos);
 
                 return new ByteArrayInputStream(baos.toByteArray());
             } catch (IOException ex) {
@@ -60,7 +60,7 @@ public class DefineShape3Tag extends ShapeTag {
         if (!lazy) {
             shapes = sis.readSHAPEWITHSTYLE(getShapeNum(), false, "shapes");
         } else {
-            shapeData = new ByteArrayRange(data.getArray(), (int) sis.getPos(), sis.available());
+            shapeData = data.getSubRange((int) sis.getPos() - data.getPos(), sis.available());
             sis.skipBytes(sis.available());
         }
     }
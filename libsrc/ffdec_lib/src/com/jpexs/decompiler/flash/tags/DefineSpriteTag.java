@@ -84,7 +84,7 @@ public class DefineSpriteTag extends DrawableTag implements Timelined {
 
     public boolean hasEndTag;
 
-    private Timeline timeline;
+    private volatile Timeline timeline;
 
     private boolean isSingleFrameInitialized;
 
@@ -149,7 +149,11 @@ public class DefineSpriteTag extends DrawableTag implements Timelined {
     @Override
     public Timeline getTimeline() {
         if (timeline == null) {
-            timeline = new Timeline(swf, this, spriteId, getRect());
+            synchronized (this) {
+                if (timeline == null) {
+                    timeline = new Timeline(swf, this, spriteId, getRect());
+                }
+            }
         }
         return timeline;
     }
@@ -419,10 +419,29 @@ public abstract class Tag implements NeedsCharacters, Exportable, Serializable {
             sos.write(newHeaderData);
             sos.write(newData);
         } else {
-            sos.write(originalRange.getArray(), originalRange.getPos(), originalRange.getLength());
+            sos.write(originalRange);
         }
     }
 
+    /**
+     * Gets the bytes of the tag with header as they are written by writeTag.
+     * The original range is returned for unmodified tags, so the bytes are not
+     * copied.
+     *
+     * @return Tag bytes
+     */
+    public ByteArrayRange getTagBytes() {
+        if (Configuration._debugCopy.get() || isModified()) {
+            byte[] newData = getData();
+            byte[] newHeaderData = getHeader(newData.length);
+            byte[] tagBytes = Arrays.copyOf(newHeaderData, newHeaderData.length + newData.length);
+            System.arraycopy(newData, 0, tagBytes, newHeaderData.length, newData.length);
+            return new ByteArrayRange(tagBytes);
+        }
+
+        return originalRange;
+    }
+
     public Tag cloneTag() throws InterruptedException, IOException {
         byte[] data = getData();
         SWFInputStream tagDataStream = new SWFInputStream(swf, data, getDataPos(), data.length);
@@ -514,11 +533,7 @@ public abstract class Tag implements NeedsCharacters, Exportable, Serializable {
         }
 
         int dataLength = getOriginalDataLength();
-        int pos = (int) (originalRange.getPos() + originalRange.getLength() - dataLength);
-
-        byte[] data = new byte[dataLength];
-        System.arraycopy(originalRange.getArray(), pos, data, 0, dataLength);
-        return data;
+        return originalRange.getRangeData(originalRange.getLength() - dataLength, dataLength);
     }
 
     public final int getOriginalDataLength() {
@@ -530,7 +545,7 @@ public abstract class Tag implements NeedsCharacters, Exportable, Serializable {
     }
 
     private boolean isLongOriginal() {
-        int shortLength = originalRange.getArray()[(int) originalRange.getPos()] & 0x003F;
+        int shortLength = originalRange.get(0) & 0x003F;
         return shortLength == 0x3f;
     }
 
@@ -553,6 +568,11 @@ public abstract class Tag implements NeedsCharacters, Exportable, Serializable {
     public void setModified(boolean value) {
         boolean oldValue = modified;
         modified = value;
+        if (value && swf != null) {
+            // rasters of the characters which use this tag are not valid anymore
+            swf.clearRasterCache();
+        }
+
         if (value && oldValue != value) {
             informListeners();
         }
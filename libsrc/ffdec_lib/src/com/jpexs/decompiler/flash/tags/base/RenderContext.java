@@ -17,6 +17,7 @@ package com.jpexs.decompiler.flash.tags.base;
 
 import com.jpexs.decompiler.flash.timeline.DepthState;
 import com.jpexs.helpers.Cache;
+import com.jpexs.helpers.RasterPool;
 import com.jpexs.helpers.SerializableImage;
 import java.awt.Point;
 import java.util.List;
@@ -38,4 +39,7 @@ public class RenderContext {
     public SerializableImage borderImage;
 
     public Cache<PlaceObjectTypeTag, SerializableImage> displayObjectCache;
+
+    // pool of the current thread, the context is used only by the thread which created it
+    public RasterPool rasterPool = RasterPool.getInstance();
 }
@@ -75,8 +75,7 @@ public abstract class ShapeTag extends DrawableTag implements LazyObject {
     public SHAPEWITHSTYLE getShapes() {
         if (shapes == null && shapeData != null) {
             try {
-                SWFInputStream sis = new SWFInputStream(swf, shapeData.getArray(), 0, shapeData.getPos() + shapeData.getLength());
-                sis.seek(shapeData.getPos());
+                SWFInputStream sis = new SWFInputStream(swf, shapeData);
                 shapes = sis.readSHAPEWITHSTYLE(getShapeNum(), false, "shapes");
                 shapeData = null; // not needed anymore, give it to GC
             } catch (IOException ex) {
@@ -62,14 +62,25 @@ public class DepthState {
 
     public int ratio = -1;
 
+    /**
+     * Character was placed in the first frame of this state, see isKey
+     */
     public boolean key = false;
 
     public int clipDepth = -1;
 
+    /**
+     * Number of frames since the placement in the first frame of this state,
+     * see getTime
+     */
     public int time = 0;
 
     private final SWF swf;
 
+    /**
+     * First frame of this state. The state is shared by the following frames
+     * until the depth is changed.
+     */
     public Frame frame;
 
     public PlaceObjectTypeTag placeObjectTag;
@@ -111,13 +122,34 @@ public class DepthState {
         placeObjectTag = obj.placeObjectTag;
         minPlaceObjectNum = obj.minPlaceObjectNum;
         if (sameInstance) {
-            time++;
+            time = obj.getTime(frame.frame);
             instanceId = obj.instanceId;
         } else {
             instanceId = getNewInstanceId();
         }
     }
 
+    /**
+     * Gets number of frames since the placement
+     *
+     * @param frame Frame index in which the state is used
+     * @return Time
+     */
+    public int getTime(int frame) {
+        return this.frame == null ? time : time + frame - this.frame.frame;
+    }
+
+    /**
+     * Checks whether the character was placed in the frame, frames which only
+     * share this state are not key frames
+     *
+     * @param frame Frame in which the state is used
+     * @return True on key frame
+     */
+    public boolean isKey(Frame frame) {
+        return key && this.frame == frame;
+    }
+
     public boolean cacheAsBitmap() {
         return (placeObjectTag != null && placeObjectTag.cacheAsBitmap())
                 || (filters != null && filters.size() > 0);
@@ -37,7 +37,13 @@ public class Frame implements TreeItem, Exportable {
 
     public final int frame;
 
-    public TreeMap<Integer, DepthState> layers = new TreeMap<>();
+    /**
+     * Depth states. The map and the states are shared with the previous frame
+     * until the layers of this frame are changed.
+     */
+    public TreeMap<Integer, DepthState> layers;
+
+    private boolean layersShared;
 
     public RGB backgroundColor = new RGBA(0, 0, 0, 0);
 
@@ -64,19 +70,44 @@ public class Frame implements TreeItem, Exportable {
     public Frame(Timeline timeline, int frame) {
         this.timeline = timeline;
         this.frame = frame;
+        layers = new TreeMap<>();
     }
 
     public Frame(Frame obj, int frame) {
         this.frame = frame;
-        layers = new TreeMap<>();
         backgroundColor = obj.backgroundColor;
         timeline = obj.timeline;
-        for (int depth : obj.layers.keySet()) {
-            layers.put(depth, new DepthState(obj.layers.get(depth), this, true));
-        }
+        layers = obj.layers;
+        layersShared = true;
         //Do not copy sounds
     }
 
+    /**
+     * Gets state of the depth which can be modified in this frame. The map and
+     * the state shared with the previous frame are copied first.
+     *
+     * @param depth Depth
+     * @return State or null when the depth is empty
+     */
+    DepthState getModifiableLayer(int depth) {
+        DepthState ds = getModifiableLayers().get(depth);
+        if (ds != null && ds.frame != this) {
+            ds = new DepthState(ds, this, true);
+            layers.put(depth, ds);
+        }
+
+        return ds;
+    }
+
+    TreeMap<Integer, DepthState> getModifiableLayers() {
+        if (layersShared) {
+            layers = new TreeMap<>(layers);
+            layersShared = false;
+        }
+
+        return layers;
+    }
+
     @Override
     public SWF getSwf() {
         return timeline.swf;
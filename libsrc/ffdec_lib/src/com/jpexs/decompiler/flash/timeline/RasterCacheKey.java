@@ -0,0 +1,97 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash.timeline;
+
+import com.jpexs.decompiler.flash.exporters.commonshape.Matrix;
+import com.jpexs.decompiler.flash.tags.base.DrawableTag;
+import com.jpexs.decompiler.flash.types.ColorTransform;
+import com.jpexs.decompiler.flash.types.filters.FILTER;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Key of a rasterized display object.
+ *
+ * The raster of a drawable depends only on the scale and rotation of its
+ * matrix, not on the translation, so one raster is reused in all frames where
+ * the object is only moved. The drawable and the filter list are compared by
+ * identity, the cache is cleared when a tag is modified.
+ *
+ * @author JPEXS
+ */
+public final class RasterCacheKey {
+
+    private final DrawableTag drawable;
+
+    private final List<FILTER> filters;
+
+    private final int[] values;
+
+    private final double[] matrices;
+
+    private final int hash;
+
+    public RasterCacheKey(DrawableTag drawable, int frame, int ratio, Matrix matrix, Matrix strokeTransformation, ColorTransform colorTransform, ColorTransform blendColorTransform, List<FILTER> filters, int blendMode, boolean clip, int width, int height) {
+        this.drawable = drawable;
+        this.filters = filters;
+        values = new int[]{frame, ratio, blendMode, clip ? 1 : 0, width, height,
+            colorTransform == null ? 0 : 1,
+            colorTransform == null ? 0 : colorTransform.getRedMulti(),
+            colorTransform == null ? 0 : colorTransform.getGreenMulti(),
+            colorTransform == null ? 0 : colorTransform.getBlueMulti(),
+            colorTransform == null ? 0 : colorTransform.getAlphaMulti(),
+            colorTransform == null ? 0 : colorTransform.getRedAdd(),
+            colorTransform == null ? 0 : colorTransform.getGreenAdd(),
+            colorTransform == null ? 0 : colorTransform.getBlueAdd(),
+            colorTransform == null ? 0 : colorTransform.getAlphaAdd(),
+            blendColorTransform == null ? 0 : 1,
+            blendColorTransform == null ? 0 : blendColorTransform.getRedMulti(),
+            blendColorTransform == null ? 0 : blendColorTransform.getGreenMulti(),
+            blendColorTransform == null ? 0 : blendColorTransform.getBlueMulti(),
+            blendColorTransform == null ? 0 : blendColorTransform.getAlphaMulti(),
+            blendColorTransform == null ? 0 : blendColorTransform.getRedAdd(),
+            blendColorTransform == null ? 0 : blendColorTransform.getGreenAdd(),
+            blendColorTransform == null ? 0 : blendColorTransform.getBlueAdd(),
+            blendColorTransform == null ? 0 : blendColorTransform.getAlphaAdd()};
+        matrices = new double[]{matrix.scaleX, matrix.scaleY, matrix.rotateSkew0, matrix.rotateSkew1,
+            strokeTransformation.scaleX, strokeTransformation.scaleY, strokeTransformation.rotateSkew0, strokeTransformation.rotateSkew1,
+            strokeTransformation.translateX, strokeTransformation.translateY};
+        hash = (System.identityHashCode(drawable) * 31 + Arrays.hashCode(values)) * 31 + Arrays.hashCode(matrices);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (!(obj instanceof RasterCacheKey)) {
+            return false;
+        }
+
+        RasterCacheKey other = (RasterCacheKey) obj;
+        return drawable == other.drawable
+                && filters == other.filters
+                && hash == other.hash
+                && Arrays.equals(values, other.values)
+                && Arrays.equals(matrices, other.matrices);
+    }
+}
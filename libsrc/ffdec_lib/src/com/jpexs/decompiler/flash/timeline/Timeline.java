@@ -53,6 +53,7 @@ import com.jpexs.decompiler.flash.types.RECT;
 import com.jpexs.decompiler.flash.types.filters.BlendComposite;
 import com.jpexs.decompiler.flash.types.filters.FILTER;
 import com.jpexs.helpers.Helper;
+import com.jpexs.helpers.RasterPool;
 import com.jpexs.helpers.SerializableImage;
 import java.awt.AlphaComposite;
 import java.awt.BasicStroke;
@@ -72,6 +73,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.TreeMap;
 import org.w3c.dom.Element;
 
 /**
@@ -110,14 +112,19 @@ public class Timeline {
 
     public final List<Tag> otherTags = new ArrayList<>();
 
-    private boolean initialized = false;
+    private volatile boolean initialized = false;
 
     private Map<String, Integer> labelToFrame = new HashMap<>();
 
     private void ensureInitialized() {
         if (!initialized) {
-            initialize();
-            initialized = true;
+            // frames can be rendered from more threads
+            synchronized (this) {
+                if (!initialized) {
+                    initialize();
+                    initialized = true;
+                }
+            }
         }
     }
 
@@ -188,7 +195,13 @@ public class Timeline {
 
     private int getMaxDepthInternal() {
         int max_depth = 0;
+        TreeMap<Integer, DepthState> prevLayers = null;
         for (Frame f : frames) {
+            if (f.layers == prevLayers) {
+                continue;
+            }
+
+            prevLayers = f.layers;
             for (int depth : f.layers.keySet()) {
                 if (depth > max_depth) {
                     max_depth = depth;
@@ -294,9 +307,9 @@ public class Timeline {
                 newFrameNeeded = true;
                 PlaceObjectTypeTag po = (PlaceObjectTypeTag) t;
                 int depth = po.getDepth();
-                DepthState fl = frame.layers.get(depth);
+                DepthState fl = frame.getModifiableLayer(depth);
                 if (fl == null) {
-                    frame.layers.put(depth, fl = new DepthState(swf, frame));
+                    frame.getModifiableLayers().put(depth, fl = new DepthState(swf, frame));
                 }
                 frame.layersChanged = true;
                 fl.placeObjectTag = po;
@@ -358,7 +371,7 @@ public class Timeline {
                 newFrameNeeded = true;
                 RemoveTag r = (RemoveTag) t;
                 int depth = r.getDepth();
-                frame.layers.remove(depth);
+                frame.getModifiableLayers().remove(depth);
                 frame.layersChanged = true;
             } else if (t instanceof DoActionTag) {
                 newFrameNeeded = true;
@@ -412,13 +425,15 @@ public class Timeline {
 
                         List<TweenRange> ranges = TweenDetector.detectRanges(matrices);
                         for (TweenRange r : ranges) {
+                            // tween flags are set per frame, so the states can not be shared over the tween bounds
+                            unshareFollowingLayers(startPos + r.endPosition, d);
                             for (int t = r.startPosition; t <= r.endPosition; t++) {
-                                DepthState layer = frames.get(startPos + t).layers.get(d);
+                                DepthState layer = frames.get(startPos + t).getModifiableLayer(d);
                                 layer.motionTween = true;
                                 layer.key = false;
                             }
 
-                            frames.get(startPos + r.startPosition).layers.get(d).key = true;
+                            frames.get(startPos + r.startPosition).getModifiableLayer(d).key = true;
                         }
                     }
 
@@ -430,6 +445,37 @@ public class Timeline {
         }
     }
 
+    /**
+     * Gives own copy of the depth state to the frames which follow the frame
+     * and share the state with it
+     */
+    private void unshareFollowingLayers(int frame, int depth) {
+        DepthState ds = frames.get(frame).layers.get(depth);
+        DepthState copy = null;
+        TreeMap<Integer, DepthState> prevLayers = null;
+        TreeMap<Integer, DepthState> prevModifiedLayers = null;
+        for (int f = frame + 1; f < frames.size(); f++) {
+            Frame fr = frames.get(f);
+            if (fr.layers.get(depth) != ds) {
+                break;
+            }
+
+            if (fr.layers == prevLayers) {
+                // keep the map shared with the previous frame
+                fr.layers = prevModifiedLayers;
+                continue;
+            }
+
+            prevLayers = fr.layers;
+            if (copy == null) {
+                copy = new DepthState(ds, fr, true);
+            }
+
+            fr.getModifiableLayers().put(depth, copy);
+            prevModifiedLayers = fr.layers;
+        }
+    }
+
     private void calculateMaxDepthFrames() {
         depthMaxFrame.clear();
         for (int d = 1; d <= maxDepth; d++) {
@@ -622,7 +668,10 @@ public class Timeline {
          g.drawLine(r.Xmax, r.Ymin, r.Xmin, r.Ymax);
          g.setComposite(AlphaComposite.Dst);*/
 
+        RasterPool rasterPool = renderContext.rasterPool;
         SerializableImage img = null;
+        // temporary image which is returned to the pool after drawing
+        SerializableImage pooledImage = null;
         if (cacheAsBitmap && renderContext.displayObjectCache != null) {
             img = renderContext.displayObjectCache.get(layer.placeObjectTag);
         }
@@ -653,6 +702,7 @@ public class Timeline {
 
         rect.xMin -= unzoom;
         rect.yMin -= unzoom;
+        boolean clipped = rect.xMin < 0 || rect.yMin < 0;
         rect.xMin = Math.max(0, rect.xMin);
         rect.yMin = Math.max(0, rect.yMin);
         drawMatrix.translate(rect.xMin, rect.yMin);
@@ -662,6 +712,7 @@ public class Timeline {
             int newHeight = (int) (rect.getHeight() / unzoom);
             int deltaX = (int) (rect.xMin / unzoom);
             int deltaY = (int) (rect.yMin / unzoom);
+            clipped = clipped || newWidth > image.getWidth() - deltaX || newHeight > image.getHeight() - deltaY;
             newWidth = Math.min(image.getWidth() - deltaX, newWidth) + 1;
             newHeight = Math.min(image.getHeight() - deltaY, newHeight) + 1;
 
@@ -688,29 +739,43 @@ public class Timeline {
                 }
             }
 
-            img = new SerializableImage(newWidth, newHeight, SerializableImage.TYPE_INT_ARGB_PRE);
-            img.fillTransparent();
-
-            if (!(drawable instanceof ImageTag)) {
-                // image tags are not rendered, they should be embedded in shape tags
-                drawable.toImage(dframe, time, ratio, renderContext, img, isClip || clipDepth > -1, m, strokeTransform, absMat, clrTrans);
-            } else {
-                // todo: show one time warning
+            // the raster does not depend on the translation when the object is not clipped by the image bounds,
+            // so it can be reused in other frames, the cursor and border tracking needs the drawing
+            RasterCacheKey rasterKey = null;
+            if (!clipped && !(cacheAsBitmap && renderContext.displayObjectCache != null) && drawable.isSingleFrame()
+                    && renderContext.cursorPosition == null && renderContext.borderImage == null) {
+                rasterKey = new RasterCacheKey(drawable, dframe, ratio, mat, strokeTransform, clrTrans, blendMode > 1 ? colorTransForm : null, filters, blendMode, isClip || clipDepth > -1, newWidth, newHeight);
+                img = swf.getRasterCache().get(rasterKey);
             }
 
-            if (filters != null) {
-                for (FILTER filter : filters) {
-                    img = filter.apply(img);
+            if (img == null) {
+                img = rasterPool.getImage(newWidth, newHeight);
+
+                if (!(drawable instanceof ImageTag)) {
+                    // image tags are not rendered, they should be embedded in shape tags
+                    drawable.toImage(dframe, time, ratio, renderContext, img, isClip || clipDepth > -1, m, strokeTransform, absMat, clrTrans);
+                } else {
+                    // todo: show one time warning
                 }
-            }
-            if (blendMode > 1) {
-                if (colorTransForm != null) {
-                    img = colorTransForm.apply(img);
+
+                if (filters != null) {
+                    for (FILTER filter : filters) {
+                        img = applyPooled(rasterPool, img, filter.apply(img));
+                    }
+                }
+                if (blendMode > 1) {
+                    if (colorTransForm != null) {
+                        img = applyPooled(rasterPool, img, colorTransForm.apply(img));
+                    }
                 }
-            }
 
-            if (cacheAsBitmap && renderContext.displayObjectCache != null) {
-                renderContext.displayObjectCache.put(layer.placeObjectTag, img);
+                if (cacheAsBitmap && renderContext.displayObjectCache != null) {
+                    renderContext.displayObjectCache.put(layer.placeObjectTag, img);
+                } else if (rasterKey != null) {
+                    swf.getRasterCache().put(rasterKey, img);
+                } else {
+                    pooledImage = img;
+                }
             }
         }
 
@@ -768,7 +833,7 @@ public class Timeline {
         }
 
         if (clipDepth > -1) {
-            BufferedImage mask = new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
+            BufferedImage mask = rasterPool.getBufferedImage(image.getWidth(), image.getHeight(), image.getType());
             Graphics2D gm = (Graphics2D) mask.getGraphics();
             gm.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
             gm.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
@@ -780,6 +845,7 @@ public class Timeline {
             gm.drawImage(img.getBufferedImage(), 0, 0, null);
             Clip clip = new Clip(Helper.imageToShape(mask), clipDepth); // Maybe we can get current outline instead converting from image (?)
             clips.add(clip);
+            rasterPool.returnImage(mask);
         } else {
             if (renderContext.cursorPosition != null) {
                 if (drawable instanceof DefineSpriteTag) {
@@ -805,6 +871,19 @@ public class Timeline {
             g.setTransform(trans);
             g.drawImage(img.getBufferedImage(), 0, 0, null);
         }
+
+        if (pooledImage != null) {
+            rasterPool.returnImage(pooledImage);
+        }
+    }
+
+    private static SerializableImage applyPooled(RasterPool rasterPool, SerializableImage src, SerializableImage result) {
+        // the source is not needed anymore when the filter created a new image
+        if (result != src) {
+            rasterPool.returnImage(src);
+        }
+
+        return result;
     }
 
     public void toImage(int frame, int time, RenderContext renderContext, SerializableImage image, boolean isClip, Matrix transformation, Matrix strokeTransformation, Matrix absoluteTransformation, ColorTransform colorTransform) {
@@ -826,11 +905,12 @@ public class Timeline {
         g.setTransform(transformation.toTransform());
         List<Clip> clips = new ArrayList<>();
 
-        int maxDepth = getMaxDepth();
         int clipCount = 0;
-        for (int i = 1; i <= maxDepth; i++) {
+        // only the occupied depths are visited
+        for (Map.Entry<Integer, DepthState> entry : frameObj.layers.tailMap(1).entrySet()) {
+            int i = entry.getKey();
             boolean clipChanged = clipCount != clips.size();
-            for (int c = 0; c < clips.size(); c++) {
+            for (int c = clips.size() - 1; c >= 0; c--) {
                 if (clips.get(c).depth < i) {
                     clips.remove(c);
                     clipChanged = true;
@@ -863,10 +943,7 @@ public class Timeline {
                 clipCount = clips.size();
             }
 
-            if (!frameObj.layers.containsKey(i)) {
-                continue;
-            }
-            DepthState layer = frameObj.layers.get(i);
+            DepthState layer = entry.getValue();
             if (!swf.getCharacters().containsKey(layer.characterId)) {
                 continue;
             }
@@ -1076,28 +1153,25 @@ public class Timeline {
         Frame fr = getFrame(frame);
         sounds.addAll(fr.sounds);
         soundClasses.addAll(fr.soundClasses);
-        for (int d = maxDepth; d >= 0; d--) {
-            DepthState ds = fr.layers.get(d);
-            if (ds != null) {
-                CharacterTag c = swf.getCharacter(ds.characterId);
-                if (c instanceof Timelined) {
-                    int frameCount = ((Timelined) c).getTimeline().frames.size();
-                    if (frameCount == 0) {
-                        continue;
-                    }
-                    int dframe = time % frameCount;
-                    if (c instanceof ButtonTag) {
-                        dframe = ButtonTag.FRAME_UP;
-                        if (mouseOverButton == c) {
-                            if (mouseButton > 0) {
-                                dframe = ButtonTag.FRAME_DOWN;
-                            } else {
-                                dframe = ButtonTag.FRAME_OVER;
-                            }
+        for (DepthState ds : fr.layers.descendingMap().values()) {
+            CharacterTag c = swf.getCharacter(ds.characterId);
+            if (c instanceof Timelined) {
+                int frameCount = ((Timelined) c).getTimeline().frames.size();
+                if (frameCount == 0) {
+                    continue;
+                }
+                int dframe = time % frameCount;
+                if (c instanceof ButtonTag) {
+                    dframe = ButtonTag.FRAME_UP;
+                    if (mouseOverButton == c) {
+                        if (mouseButton > 0) {
+                            dframe = ButtonTag.FRAME_DOWN;
+                        } else {
+                            dframe = ButtonTag.FRAME_OVER;
                         }
                     }
-                    ((Timelined) c).getTimeline().getSounds(dframe, time, mouseOverButton, mouseButton, sounds, soundClasses);
                 }
+                ((Timelined) c).getTimeline().getSounds(dframe, time, mouseOverButton, mouseButton, sounds, soundClasses);
             }
         }
     }
@@ -1106,7 +1180,8 @@ public class Timeline {
         Frame fr = getFrame(frame);
         Area area = new Area();
         Stack<Clip> clips = new Stack<>();
-        for (int d = maxDepth; d >= 0; d--) {
+        for (Map.Entry<Integer, DepthState> entry : fr.layers.descendingMap().entrySet()) {
+            int d = entry.getKey();
             Clip currentClip = null;
             for (int i = clips.size() - 1; i >= 0; i--) {
                 Clip cl = clips.get(i);
@@ -1117,10 +1192,7 @@ public class Timeline {
             if (!clips.isEmpty()) {
                 currentClip = clips.peek();
             }
-            DepthState layer = fr.layers.get(d);
-            if (layer == null) {
-                continue;
-            }
+            DepthState layer = entry.getValue();
             if (!layer.isVisible) {
                 continue;
             }
@@ -1180,11 +1252,7 @@ public class Timeline {
 
     public boolean isSingleFrame(int frame) {
         Frame frameObj = getFrame(frame);
-        for (int i = 1; i <= maxDepth; i++) {
-            if (!frameObj.layers.containsKey(i)) {
-                continue;
-            }
-            DepthState layer = frameObj.layers.get(i);
+        for (DepthState layer : frameObj.layers.tailMap(1).values()) {
             if (!swf.getCharacters().containsKey(layer.characterId)) {
                 continue;
             }
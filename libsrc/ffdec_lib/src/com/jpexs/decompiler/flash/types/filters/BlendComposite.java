@@ -15,6 +15,7 @@
  * License along with this library. */
 package com.jpexs.decompiler.flash.types.filters;
 
+import com.jpexs.helpers.RasterPool;
 import java.awt.Composite;
 import java.awt.CompositeContext;
 import java.awt.RenderingHints;
@@ -177,8 +178,10 @@ public final class BlendComposite implements Composite {
             int[] srcPixel = new int[4];
             int[] dstPixel = new int[4];
             int[] retPixel = new int[4];
-            int[] srcPixels = new int[width];
-            int[] dstPixels = new int[width];
+            // compose is called for each tile, the rows are taken from the pool of the drawing thread
+            RasterPool pool = RasterPool.getInstance();
+            int[] srcPixels = pool.getArray(width);
+            int[] dstPixels = pool.getArray(width);
 
             for (int y = 0; y < height; y++) {
                 src.getDataElements(0, y, width, 1, srcPixels);
@@ -216,6 +219,9 @@ public final class BlendComposite implements Composite {
                 }
                 dstOut.setDataElements(0, y, width, 1, dstPixels);
             }
+
+            pool.returnArray(srcPixels);
+            pool.returnArray(dstPixels);
         }
     }
 
@@ -0,0 +1,553 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash.types.filters;
+
+import com.jpexs.decompiler.flash.configuration.Configuration;
+import com.jpexs.decompiler.flash.types.RGBA;
+import com.jpexs.helpers.RasterPool;
+import com.jpexs.helpers.SharedForkJoinPool;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Box blur of premultiplied pixels, used by the blur, glow, drop shadow and
+ * bevel filters.
+ *
+ * Rows of the horizontal pass and blocks of columns of the vertical pass are
+ * blurred in the shared fork-join pool when the image is large enough. The
+ * premultiplication is done in the first horizontal pass and the
+ * unpremultiplication in the last vertical pass. Transparent rows are skipped
+ * and only the area where the blurred pixels can be non-transparent is
+ * processed. The result is the same as the result of the serial blur.
+ *
+ * @author JPEXS
+ */
+final class BoxBlur {
+
+    private static final int MIN_PARALLEL_PIXELS = 128 * 128;
+
+    /**
+     * Number of columns blurred together, so the rows of the block are read
+     * sequentially
+     */
+    private static final int COLUMN_BLOCK = 32;
+
+    private final int[] pixels;
+
+    private final int[] mask;
+
+    private final int width;
+
+    private final int height;
+
+    private BoxBlur(int[] pixels, int[] mask, int width, int height) {
+        this.pixels = pixels;
+        this.mask = mask;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Blurs the pixels
+     *
+     * @param pixels Pixels, the array can be longer than width * height
+     * @param width Width
+     * @param height Height
+     * @param hRadius Horizontal radius
+     * @param vRadius Vertical radius
+     * @param iterations Number of passes
+     * @param mask Pixels with zero alpha in mask are transparent in the
+     * result, null = no mask
+     */
+    static void blur(int[] pixels, int width, int height, int hRadius, int vRadius, int iterations, int[] mask) {
+        int length = width * height;
+        if (iterations <= 0 || hRadius < 0 || vRadius < 0) {
+            blurSerial(pixels, mask, width, height, hRadius, vRadius, iterations);
+            return;
+        }
+
+        int taskCount = 1;
+        if (length >= MIN_PARALLEL_PIXELS && Configuration.parallelSpeedUp.get() && Configuration.getParallelThreadCount() > 1) {
+            taskCount = Configuration.getParallelThreadCount() * 4;
+        }
+
+        new BoxBlur(pixels, mask, width, height).blur(hRadius, vRadius, iterations, taskCount);
+    }
+
+    private void blur(int hRadius, int vRadius, int iterations, int taskCount) {
+        for (int i = 0; i < iterations; i++) {
+            boolean first = i == 0;
+            boolean last = i == iterations - 1;
+
+            // bounds of non-transparent pixels before the horizontal pass
+            int[] bounds = blurRows(hRadius, first, taskCount);
+            if (bounds == null) {
+                // all pixels are transparent, blurring does not change them
+                return;
+            }
+
+            int xMin = Math.max(0, bounds[0] - hRadius);
+            int xMax = Math.min(width - 1, bounds[1] + hRadius);
+            blurColumns(vRadius, xMin, xMax, bounds[2], bounds[3], last, taskCount);
+        }
+    }
+
+    private int[] blurRows(int radius, boolean premultiply, int taskCount) {
+        int rowsPerTask = Math.max(1, (height + taskCount - 1) / taskCount);
+        if (rowsPerTask >= height) {
+            return blurRows(radius, premultiply, 0, height);
+        }
+
+        List<ForkJoinTask<int[]>> tasks = new ArrayList<>();
+        for (int y = 0; y < height; y += rowsPerTask) {
+            final int yFrom = y;
+            final int yTo = Math.min(height, y + rowsPerTask);
+            tasks.add(SharedForkJoinPool.fork(() -> blurRows(radius, premultiply, yFrom, yTo)));
+        }
+
+        int[] result = null;
+        for (ForkJoinTask<int[]> task : tasks) {
+            int[] bounds = task.join();
+            if (bounds == null) {
+                continue;
+            }
+
+            if (result == null) {
+                result = bounds;
+            } else {
+                result[0] = Math.min(result[0], bounds[0]);
+                result[1] = Math.max(result[1], bounds[1]);
+                result[3] = bounds[3];
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Blurs the rows horizontally
+     *
+     * @return Bounds of non-transparent pixels before blurring (xMin, xMax,
+     * yMin, yMax), null when all the rows are transparent
+     */
+    private int[] blurRows(int radius, boolean premultiply, int yFrom, int yTo) {
+        RasterPool pool = RasterPool.getInstance();
+        int[] newColors = pool.getArray(width);
+        int[] bounds = null;
+        for (int y = yFrom; y < yTo; y++) {
+            int index = y * width;
+            if (premultiply) {
+                premultiply(pixels, index, index + width);
+            }
+
+            int rowMin = -1;
+            int rowMax = -1;
+            for (int x = 0; x < width; x++) {
+                if (pixels[index + x] != 0) {
+                    if (rowMin == -1) {
+                        rowMin = x;
+                    }
+
+                    rowMax = x;
+                }
+            }
+
+            if (rowMin == -1) {
+                continue;
+            }
+
+            if (bounds == null) {
+                bounds = new int[]{rowMin, rowMax, y, y};
+            } else {
+                bounds[0] = Math.min(bounds[0], rowMin);
+                bounds[1] = Math.max(bounds[1], rowMax);
+                bounds[3] = y;
+            }
+
+            blurRow(index, newColors, radius, rowMin, rowMax);
+        }
+
+        pool.returnArray(newColors);
+        return bounds;
+    }
+
+    private boolean isVisible(int index) {
+        return mask == null || ((mask[index] >> 24) & 0xff) > 0;
+    }
+
+    private void blurRow(int index, int[] newColors, int radius, int rowMin, int rowMax) {
+        // the pixels outside of the range are transparent before and after blurring
+        int xFrom = Math.max(-radius, rowMin - radius);
+        int xTo = Math.min(width - 1, rowMax + radius);
+
+        // the window of the previous position contains only transparent pixels
+        int hits = 0;
+        for (int x = Math.max(0, xFrom - radius - 1); x <= Math.min(width - 1, xFrom + radius - 1); x++) {
+            if (isVisible(index + x)) {
+                hits++;
+            }
+        }
+
+        int r = 0;
+        int g = 0;
+        int b = 0;
+        int a = 0;
+        for (int x = xFrom; x <= xTo; x++) {
+            int oldPixel = x - radius - 1;
+            if (oldPixel >= 0) {
+                if (isVisible(index + oldPixel)) {
+                    int color = pixels[index + oldPixel];
+                    if (color != 0) {
+                        a -= (color >> 24) & 0xff;
+                        r -= (color >> 16) & 0xff;
+                        g -= (color >> 8) & 0xff;
+                        b -= color & 0xff;
+                    }
+
+                    hits--;
+                }
+            }
+
+            int newPixel = x + radius;
+            if (newPixel < width) {
+                if (isVisible(index + newPixel)) {
+                    int color = pixels[index + newPixel];
+                    if (color != 0) {
+                        a += (color >> 24) & 0xff;
+                        r += (color >> 16) & 0xff;
+                        g += (color >> 8) & 0xff;
+                        b += color & 0xff;
+                    }
+
+                    hits++;
+                }
+            }
+
+            if (x >= 0) {
+                if (hits == 0 || !isVisible(index + x)) {
+                    newColors[x] = 0;
+                } else {
+                    newColors[x] = RGBA.toInt(r / hits, g / hits, b / hits, a / hits);
+                }
+            }
+        }
+
+        int xStart = Math.max(0, xFrom);
+        System.arraycopy(newColors, xStart, pixels, index + xStart, xTo - xStart + 1);
+    }
+
+    private void blurColumns(int radius, int xMin, int xMax, int yMin, int yMax, boolean unpremultiply, int taskCount) {
+        int blockCount = (xMax - xMin) / COLUMN_BLOCK + 1;
+        int blocksPerTask = Math.max(1, (blockCount + taskCount - 1) / taskCount);
+        if (blocksPerTask >= blockCount) {
+            blurColumns(radius, xMin, xMax + 1, yMin, yMax, unpremultiply);
+            return;
+        }
+
+        List<ForkJoinTask<Void>> tasks = new ArrayList<>();
+        for (int x = xMin; x <= xMax; x += blocksPerTask * COLUMN_BLOCK) {
+            final int xFrom = x;
+            final int xTo = Math.min(xMax + 1, x + blocksPerTask * COLUMN_BLOCK);
+            tasks.add(SharedForkJoinPool.fork(() -> {
+                blurColumns(radius, xFrom, xTo, yMin, yMax, unpremultiply);
+                return null;
+            }));
+        }
+
+        for (ForkJoinTask<Void> task : tasks) {
+            task.join();
+        }
+    }
+
+    /**
+     * Blurs the columns vertically, the rows outside of yMin and yMax are
+     * transparent
+     */
+    private void blurColumns(int radius, int xFrom, int xTo, int yMin, int yMax, boolean unpremultiply) {
+        int yStart = Math.max(-radius, yMin - radius);
+        int yEnd = Math.min(height - 1, yMax + radius);
+        int firstRow = Math.max(0, yStart);
+        int rowCount = yEnd - firstRow + 1;
+
+        RasterPool pool = RasterPool.getInstance();
+        int[] sums = pool.getArray(COLUMN_BLOCK * 5);
+        int[] newColors = pool.getArray(COLUMN_BLOCK * rowCount);
+        for (int x0 = xFrom; x0 < xTo; x0 += COLUMN_BLOCK) {
+            int blockWidth = Math.min(COLUMN_BLOCK, xTo - x0);
+
+            // the window of the previous position contains only transparent pixels
+            for (int c = 0; c < blockWidth; c++) {
+                int hits = 0;
+                for (int y = Math.max(0, yStart - radius - 1); y <= Math.min(height - 1, yStart + radius - 1); y++) {
+                    if (isVisible(y * width + x0 + c)) {
+                        hits++;
+                    }
+                }
+
+                int s = c * 5;
+                sums[s] = 0;
+                sums[s + 1] = 0;
+                sums[s + 2] = 0;
+                sums[s + 3] = 0;
+                sums[s + 4] = hits;
+            }
+
+            for (int y = yStart; y <= yEnd; y++) {
+                int oldPixel = y - radius - 1;
+                int newPixel = y + radius;
+                int oldIndex = oldPixel * width + x0;
+                int newIndex = newPixel * width + x0;
+                int outIndex = (y - firstRow) * blockWidth;
+                for (int c = 0, s = 0; c < blockWidth; c++, s += 5) {
+                    if (oldPixel >= 0) {
+                        if (isVisible(oldIndex + c)) {
+                            int color = pixels[oldIndex + c];
+                            if (color != 0) {
+                                sums[s] -= (color >> 24) & 0xff;
+                                sums[s + 1] -= (color >> 16) & 0xff;
+                                sums[s + 2] -= (color >> 8) & 0xff;
+                                sums[s + 3] -= color & 0xff;
+                            }
+
+                            sums[s + 4]--;
+                        }
+                    }
+
+                    if (newPixel < height) {
+                        if (isVisible(newIndex + c)) {
+                            int color = pixels[newIndex + c];
+                            if (color != 0) {
+                                sums[s] += (color >> 24) & 0xff;
+                                sums[s + 1] += (color >> 16) & 0xff;
+                                sums[s + 2] += (color >> 8) & 0xff;
+                                sums[s + 3] += color & 0xff;
+                            }
+
+                            sums[s + 4]++;
+                        }
+                    }
+
+                    if (y >= 0) {
+                        int hits = sums[s + 4];
+                        if (hits == 0 || !isVisible(y * width + x0 + c)) {
+                            newColors[outIndex + c] = 0;
+                        } else {
+                            newColors[outIndex + c] = RGBA.toInt(sums[s + 1] / hits, sums[s + 2] / hits, sums[s + 3] / hits, sums[s] / hits);
+                        }
+                    }
+                }
+            }
+
+            for (int y = firstRow; y <= yEnd; y++) {
+                int index = y * width + x0;
+                System.arraycopy(newColors, (y - firstRow) * blockWidth, pixels, index, blockWidth);
+                if (unpremultiply) {
+                    unpremultiply(pixels, index, index + blockWidth);
+                }
+            }
+        }
+
+        pool.returnArray(sums);
+        pool.returnArray(newColors);
+    }
+
+    private static void premultiply(int[] p, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int rgb = p[i];
+            int a = rgb >> 24 & 0xff;
+            int r = rgb >> 16 & 0xff;
+            int g = rgb >> 8 & 0xff;
+            int b = rgb & 0xff;
+            float f = (float) a * 0.003921569F;
+            r = (int) ((float) r * f);
+            g = (int) ((float) g * f);
+            b = (int) ((float) b * f);
+            p[i] = a << 24 | r << 16 | g << 8 | b;
+        }
+    }
+
+    private static void unpremultiply(int[] p, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int rgb = p[i];
+            int a = rgb >> 24 & 0xff;
+            int r = rgb >> 16 & 0xff;
+            int g = rgb >> 8 & 0xff;
+            int b = rgb & 0xff;
+            if (a == 0 || a == 255) {
+                continue;
+            }
+            float f = 255F / (float) a;
+            r = (int) ((float) r * f);
+            g = (int) ((float) g * f);
+            b = (int) ((float) b * f);
+            if (r > 255) {
+                r = 255;
+            }
+            if (g > 255) {
+                g = 255;
+            }
+            if (b > 255) {
+                b = 255;
+            }
+            p[i] = a << 24 | r << 16 | g << 8 | b;
+        }
+    }
+
+    /**
+     * Blur for parameters which are not handled by the fast blur (negative
+     * radius, no iterations)
+     */
+    private static void blurSerial(int[] pixels, int[] mask, int width, int height, int hRadius, int vRadius, int iterations) {
+        int length = width * height;
+        premultiply(pixels, 0, length);
+
+        RasterPool pool = RasterPool.getInstance();
+        int[] tempRow = pool.getArray(width);
+        int[] tempColumn = pool.getArray(height);
+        for (int i = 0; i < iterations; i++) {
+            boxBlurHorizontal(pixels, mask, tempRow, width, height, hRadius);
+            boxBlurVertical(pixels, mask, tempColumn, width, height, vRadius);
+        }
+
+        unpremultiply(pixels, 0, length);
+        pool.returnArray(tempRow);
+        pool.returnArray(tempColumn);
+    }
+
+    private static void boxBlurHorizontal(int[] pixels, int[] mask, int[] newColors, int w, int h, int radius) {
+        int index = 0;
+
+        for (int y = 0; y < h; y++) {
+            int hits = 0;
+            long r = 0;
+            long g = 0;
+            long b = 0;
+            long a = 0;
+            for (int x = -radius; x < w; x++) {
+                int oldPixel = x - radius - 1;
+                if (oldPixel >= 0) {
+
+                    int color = pixels[index + oldPixel];
+                    if ((mask == null) || (((mask[index + oldPixel] >> 24) & 0xff) > 0)) {
+                        if (color != 0) {
+                            a -= (color >> 24) & 0xff;
+                            r -= ((color >> 16) & 0xff);
+                            g -= ((color >> 8) & 0xff);
+                            b -= ((color) & 0xff);
+
+                        }
+                        hits--;
+                    }
+                }
+
+                int newPixel = x + radius;
+                if (newPixel < w) {
+                    int color = pixels[index + newPixel];
+                    if ((mask == null) || (((mask[index + newPixel] >> 24) & 0xff) > 0)) {
+                        if (color != 0) {
+                            a += (color >> 24) & 0xff;
+                            r += ((color >> 16) & 0xff);
+                            g += ((color >> 8) & 0xff);
+                            b += ((color) & 0xff);
+                        }
+                        hits++;
+                    }
+                }
+
+                if (x >= 0) {
+                    if ((mask == null) || (((mask[index + x] >> 24) & 0xff) > 0)) {
+                        if (hits == 0) {
+                            newColors[x] = 0;
+                        } else {
+                            newColors[x] = RGBA.toInt((int) (r / hits) & 0xff, (int) (g / hits) & 0xff, (int) (b / hits) & 0xff, (int) (a / hits));
+                        }
+                    } else {
+                        newColors[x] = 0;
+                    }
+                }
+            }
+
+            System.arraycopy(newColors, 0, pixels, index, w);
+
+            index += w;
+        }
+    }
+
+    private static void boxBlurVertical(int[] pixels, int[] mask, int[] newColors, int w, int h, int radius) {
+        int oldPixelOffset = -(radius + 1) * w;
+        int newPixelOffset = (radius) * w;
+
+        for (int x = 0; x < w; x++) {
+            int hits = 0;
+            long r = 0;
+            long g = 0;
+            long b = 0;
+            long a = 0;
+            int index = -radius * w + x;
+            for (int y = -radius; y < h; y++) {
+                int oldPixel = y - radius - 1;
+                if (oldPixel >= 0) {
+                    int color = pixels[index + oldPixelOffset];
+                    if ((mask == null) || (((mask[index + oldPixelOffset] >> 24) & 0xff) > 0)) {
+                        if (color != 0) {
+                            a -= (color >> 24) & 0xff;
+                            r -= ((color >> 16) & 0xff);
+                            g -= ((color >> 8) & 0xff);
+                            b -= ((color) & 0xff);
+
+                        }
+                        hits--;
+                    }
+
+                }
+
+                int newPixel = y + radius;
+                if (newPixel < h) {
+                    if ((mask == null) || (((mask[index + newPixelOffset] >> 24) & 0xff) > 0)) {
+                        int color = pixels[index + newPixelOffset];
+                        if (color != 0) {
+                            a += (color >> 24) & 0xff;
+                            r += ((color >> 16) & 0xff);
+                            g += ((color >> 8) & 0xff);
+                            b += ((color) & 0xff);
+
+                        }
+                        hits++;
+                    }
+                }
+
+                if (y >= 0) {
+                    if ((mask == null) || (((mask[y * w + x] >> 24) & 0xff) > 0)) {
+                        if (hits == 0) {
+                            newColors[y] = 0;
+                        } else {
+                            newColors[y] = RGBA.toInt((int) (r / hits) & 0xff, (int) (g / hits) & 0xff, (int) (b / hits) & 0xff, (int) (a / hits) & 0xff);
+                        }
+                    } else {
+                        newColors[y] = 0;
+                    }
+                }
+
+                index += w;
+            }
+
+            for (int y = 0; y < h; y++) {
+                pixels[y * w + x] = newColors[y];
+            }
+        }
+    }
+}
@@ -16,6 +16,7 @@
 package com.jpexs.decompiler.flash.types.filters;
 
 import com.jpexs.decompiler.flash.types.RGBA;
+import com.jpexs.helpers.RasterPool;
 import com.jpexs.helpers.SerializableImage;
 import java.awt.AlphaComposite;
 import java.awt.Color;
@@ -55,198 +56,20 @@ public class Filtering {
 
     private static final Rectangle RECTANGLE_512_1 = new Rectangle(512, 1);
 
-    private static void boxBlurHorizontal(int[] pixels, int[] mask, int[] newColors, int w, int h, int radius) {
-        int index = 0;
-
-        for (int y = 0; y < h; y++) {
-            int hits = 0;
-            long r = 0;
-            long g = 0;
-            long b = 0;
-            long a = 0;
-            for (int x = -radius; x < w; x++) {
-                int oldPixel = x - radius - 1;
-                if (oldPixel >= 0) {
-
-                    int color = pixels[index + oldPixel];
-                    if ((mask == null) || (((mask[index + oldPixel] >> 24) & 0xff) > 0)) {
-                        if (color != 0) {
-                            a -= (color >> 24) & 0xff;
-                            r -= ((color >> 16) & 0xff);
-                            g -= ((color >> 8) & 0xff);
-                            b -= ((color) & 0xff);
-
-                        }
-                        hits--;
-                    }
-                }
-
-                int newPixel = x + radius;
-                if (newPixel < w) {
-                    int color = pixels[index + newPixel];
-                    if ((mask == null) || (((mask[index + newPixel] >> 24) & 0xff) > 0)) {
-                        if (color != 0) {
-                            a += (color >> 24) & 0xff;
-                            r += ((color >> 16) & 0xff);
-                            g += ((color >> 8) & 0xff);
-                            b += ((color) & 0xff);
-                        }
-                        hits++;
-                    }
-                }
-
-                if (x >= 0) {
-                    if ((mask == null) || (((mask[index + x] >> 24) & 0xff) > 0)) {
-                        if (hits == 0) {
-                            newColors[x] = 0;
-                        } else {
-                            newColors[x] = RGBA.toInt((int) (r / hits) & 0xff, (int) (g / hits) & 0xff, (int) (b / hits) & 0xff, (int) (a / hits));
-                        }
-                    } else {
-                        newColors[x] = 0;
-                    }
-                }
-            }
-
-            System.arraycopy(newColors, 0, pixels, index, w);
-
-            index += w;
-        }
-    }
-
-    private static void boxBlurVertical(int[] pixels, int[] mask, int[] newColors, int w, int h, int radius) {
-        int oldPixelOffset = -(radius + 1) * w;
-        int newPixelOffset = (radius) * w;
-
-        for (int x = 0; x < w; x++) {
-            int hits = 0;
-            long r = 0;
-            long g = 0;
-            long b = 0;
-            long a = 0;
-            int index = -radius * w + x;
-            for (int y = -radius; y < h; y++) {
-                int oldPixel = y - radius - 1;
-                if (oldPixel >= 0) {
-                    int color = pixels[index + oldPixelOffset];
-                    if ((mask == null) || (((mask[index + oldPixelOffset] >> 24) & 0xff) > 0)) {
-                        if (color != 0) {
-                            a -= (color >> 24) & 0xff;
-                            r -= ((color >> 16) & 0xff);
-                            g -= ((color >> 8) & 0xff);
-                            b -= ((color) & 0xff);
-
-                        }
-                        hits--;
-                    }
-
-                }
-
-                int newPixel = y + radius;
-                if (newPixel < h) {
-                    if ((mask == null) || (((mask[index + newPixelOffset] >> 24) & 0xff) > 0)) {
-                        int color = pixels[index + newPixelOffset];
-                        if (color != 0) {
-                            a += (color >> 24) & 0xff;
-                            r += ((color >> 16) & 0xff);
-                            g += ((color >> 8) & 0xff);
-                            b += ((color) & 0xff);
-
-                        }
-                        hits++;
-                    }
-                }
-
-                if (y >= 0) {
-                    if ((mask == null) || (((mask[y * w + x] >> 24) & 0xff) > 0)) {
-                        if (hits == 0) {
-                            newColors[y] = 0;
-                        } else {
-                            newColors[y] = RGBA.toInt((int) (r / hits) & 0xff, (int) (g / hits) & 0xff, (int) (b / hits) & 0xff, (int) (a / hits) & 0xff);
-                        }
-                    } else {
-                        newColors[y] = 0;
-                    }
-                }
-
-                index += w;
-            }
-
-            for (int y = 0; y < h; y++) {
-                pixels[y * w + x] = newColors[y];
-            }
-        }
-    }
-
-    private static void premultiply(int[] p) {
-        int length = p.length;
-        int offset = 0;
-        length += offset;
-        for (int i = offset; i < length; i++) {
-            int rgb = p[i];
-            int a = rgb >> 24 & 0xff;
-            int r = rgb >> 16 & 0xff;
-            int g = rgb >> 8 & 0xff;
-            int b = rgb & 0xff;
-            float f = (float) a * 0.003921569F;
-            r = (int) ((float) r * f);
-            g = (int) ((float) g * f);
-            b = (int) ((float) b * f);
-            p[i] = a << 24 | r << 16 | g << 8 | b;
-        }
-    }
-
-    private static void unpremultiply(int[] p) {
-        int length = p.length;
-        int offset = 0;
-        length += offset;
-        for (int i = offset; i < length; i++) {
-            int rgb = p[i];
-            int a = rgb >> 24 & 0xff;
-            int r = rgb >> 16 & 0xff;
-            int g = rgb >> 8 & 0xff;
-            int b = rgb & 0xff;
-            if (a == 0 || a == 255) {
-                continue;
-            }
-            float f = 255F / (float) a;
-            r = (int) ((float) r * f);
-            g = (int) ((float) g * f);
-            b = (int) ((float) b * f);
-            if (r > 255) {
-                r = 255;
-            }
-            if (g > 255) {
-                g = 255;
-            }
-            if (b > 255) {
-                b = 255;
-            }
-            p[i] = a << 24 | r << 16 | g << 8 | b;
-        }
-    }
-
     public static SerializableImage blur(SerializableImage src, int hRadius, int vRadius, int iterations) {
-        int[] pixels = (int[]) getRGB(src.getBufferedImage()).clone();
+        RasterPool pool = RasterPool.getInstance();
+        int[] pixels = getPooledRGB(pool, src.getBufferedImage());
         int width = src.getWidth();
         int height = src.getHeight();
         blur(pixels, width, height, hRadius, vRadius, iterations, null);
-        BufferedImage ret = new BufferedImage(width, height, src.getType());
+        BufferedImage ret = pool.getBufferedImage(width, height, src.getType());
         setRGB(ret, width, height, pixels);
+        pool.returnArray(pixels);
         return new SerializableImage(ret);
     }
 
     private static void blur(int[] src, int width, int height, int hRadius, int vRadius, int iterations, int[] mask) {
-        int[] inPixels = src;
-        premultiply(inPixels);
-
-        int[] tempRow = new int[width];
-        int[] tempColumn = new int[height];
-        for (int i = 0; i < iterations; i++) {
-            boxBlurHorizontal(inPixels, mask, tempRow, width, height, hRadius / 2);
-            boxBlurVertical(inPixels, mask, tempColumn, width, height, vRadius / 2);
-        }
-        unpremultiply(inPixels);
+        BoxBlur.blur(src, width, height, hRadius / 2, vRadius / 2, iterations, mask);
     }
 
     public static SerializableImage bevel(SerializableImage src, int blurX, int blurY, float strength, int type, int highlightColor, int shadowColor, float angle, float distance, boolean knockout, int iterations) {
@@ -265,11 +88,13 @@ public class Filtering {
     private static BufferedImage gradientBevel(BufferedImage src, Color[] colors, float[] ratios, int blurX, int blurY, float strength, int type, float angle, float distance, boolean knockout, int iterations) {
         int width = src.getWidth();
         int height = src.getHeight();
-        BufferedImage retImg = new BufferedImage(width, height, src.getType());
-        int[] srcPixels = getRGB(src);
+        int length = width * height;
+        RasterPool pool = RasterPool.getInstance();
+        BufferedImage retImg = pool.getBufferedImage(width, height, src.getType());
+        int[] srcPixels = getPooledRGB(pool, src);
 
-        int[] revPixels = new int[srcPixels.length];
-        for (int i = 0; i < srcPixels.length; i++) {
+        int[] revPixels = pool.getArray(length);
+        for (int i = 0; i < length; i++) {
             revPixels[i] = (srcPixels[i] & 0xffffff) + ((255 - ((srcPixels[i] >> 24) & 0xff)) << 24);
         }
 
@@ -287,8 +112,8 @@ public class Filtering {
         if (type != OUTER) {
             BufferedImage hilightIm = dropShadow(src, 0, 0, angle, distance, Color.red, true, iterations, strength, true);//new DropShadowFilter(blurX, blurY, strength, inner ? highlightColor : shadowColor, angle, distance, inner, true, iterations).filter(src
             BufferedImage shadowIm = dropShadow(src, 0, 0, angle + 180, distance, Color.blue, true, iterations, strength, true); //new DropShadowFilter(blurX, blurY, strength, inner ? shadowColor : highlightColor, angle + 180, distance, inner, true, iterations).filter(src);
-            BufferedImage h2 = new BufferedImage(width, height, src.getType());
-            BufferedImage s2 = new BufferedImage(width, height, src.getType());
+            BufferedImage h2 = pool.getBufferedImage(width, height, src.getType());
+            BufferedImage s2 = pool.getBufferedImage(width, height, src.getType());
             Graphics2D hc = h2.createGraphics();
             Graphics2D sc = s2.createGraphics();
             hc.drawImage(hilightIm, 0, 0, null);
@@ -298,6 +123,8 @@ public class Filtering {
             sc.drawImage(shadowIm, 0, 0, null);
             sc.setComposite(AlphaComposite.DstOut);
             sc.drawImage(hilightIm, 0, 0, null);
+            pool.returnImage(hilightIm);
+            pool.returnImage(shadowIm);
             shadowInner = s2;
             hilightInner = h2;
         }
@@ -307,8 +134,8 @@ public class Filtering {
         if (type != INNER) {
             BufferedImage hilightIm = dropShadow(src, 0, 0, angle + 180, distance, Color.red, false, iterations, strength, true);//new DropShadowFilter(blurX, blurY, strength, inner ? highlightColor : shadowColor, angle, distance, inner, true, iterations).filter(src
             BufferedImage shadowIm = dropShadow(src, 0, 0, angle, distance, Color.blue, false, iterations, strength, true); //new DropShadowFilter(blurX, blurY, strength, inner ? shadowColor : highlightColor, angle + 180, distance, inner, true, iterations).filter(src);
-            BufferedImage h2 = new BufferedImage(width, height, src.getType());
-            BufferedImage s2 = new BufferedImage(width, height, src.getType());
+            BufferedImage h2 = pool.getBufferedImage(width, height, src.getType());
+            BufferedImage s2 = pool.getBufferedImage(width, height, src.getType());
             Graphics2D hc = h2.createGraphics();
             Graphics2D sc = s2.createGraphics();
             hc.drawImage(hilightIm, 0, 0, null);
@@ -318,6 +145,8 @@ public class Filtering {
             sc.drawImage(shadowIm, 0, 0, null);
             sc.setComposite(AlphaComposite.DstOut);
             sc.drawImage(hilightIm, 0, 0, null);
+            pool.returnImage(hilightIm);
+            pool.returnImage(shadowIm);
             shadowOuter = s2;
             hilightOuter = h2;
         }
@@ -360,10 +189,10 @@ public class Filtering {
         retc.drawImage(shadowIm, 0, 0, null);
         retc.drawImage(hilightIm, 0, 0, null);
 
-        int[] ret = getRGB(retImg);
+        int[] ret = getPooledRGB(pool, retImg);
         blur(ret, width, height, blurX, blurY, iterations, mask);
 
-        for (int i = 0; i < srcPixels.length; i++) {
+        for (int i = 0; i < length; i++) {
             int ah = (int) (((ret[i] >> 16) & 0xFF) * strength);
             int as = (int) ((ret[i] & 0xFF) * strength);
             int ra = cut(ah - as, -255, 255);
@@ -371,6 +200,14 @@ public class Filtering {
         }
 
         setRGB(retImg, width, height, ret);
+        pool.returnArray(ret);
+        pool.returnArray(srcPixels);
+        pool.returnArray(revPixels);
+        for (BufferedImage temp : new BufferedImage[]{shadowInner, hilightInner, shadowOuter, hilightOuter}) {
+            if (temp != null) {
+                pool.returnImage(temp);
+            }
+        }
 
         if (!knockout) {
             Graphics2D g = retImg.createGraphics();
@@ -401,9 +238,11 @@ public class Filtering {
     private static BufferedImage dropShadow(BufferedImage src, int blurX, int blurY, float angle, double distance, Color color, boolean inner, int iterations, float strength, boolean knockout) {
         int width = src.getWidth();
         int height = src.getHeight();
-        int[] srcPixels = getRGB(src);
-        int[] shadow = new int[srcPixels.length];
-        for (int i = 0; i < srcPixels.length; i++) {
+        int length = width * height;
+        RasterPool pool = RasterPool.getInstance();
+        int[] srcPixels = getPooledRGB(pool, src);
+        int[] shadow = pool.getArray(length);
+        for (int i = 0; i < length; i++) {
             int alpha = (srcPixels[i] >> 24) & 0xff;
             if (inner) {
                 alpha = 255 - alpha;
@@ -417,13 +256,13 @@ public class Filtering {
         double angleRad = angle / 180 * Math.PI;
         double moveX = (distance * Math.cos(angleRad));
         double moveY = (distance * Math.sin(angleRad));
-        shadow = moveRGB(width, height, shadow, moveX, moveY, inner ? colorFirst : colorAlpha);
+        shadow = moveRGB(pool, width, height, shadow, moveX, moveY, inner ? colorFirst : colorAlpha);
 
         if (blurX > 0 || blurY > 0) {
             blur(shadow, width, height, blurX, blurY, iterations, null);
         }
 
-        for (int i = 0; i < shadow.length; i++) {
+        for (int i = 0; i < length; i++) {
             int mask = (srcPixels[i] >> 24) & 0xff;
             if (!inner) {
                 mask = 255 - mask;
@@ -431,8 +270,10 @@ public class Filtering {
             shadow[i] = shadow[i] & 0xffffff + ((mask * ((shadow[i] >> 24) & 0xff) / 255) << 24);
         }
 
-        BufferedImage retCanvas = new BufferedImage(width, height, src.getType());
+        BufferedImage retCanvas = pool.getBufferedImage(width, height, src.getType());
         setRGB(retCanvas, width, height, shadow);
+        pool.returnArray(srcPixels);
+        pool.returnArray(shadow);
 
         if (!knockout) {
             Graphics2D g = retCanvas.createGraphics();
@@ -463,19 +304,21 @@ public class Filtering {
         double angleRad = angle / 180 * Math.PI;
         double moveX = (distance * Math.cos(angleRad));
         double moveY = (distance * Math.sin(angleRad));
-        int[] srcPixels = getRGB(src);
-        int[] revPixels = new int[srcPixels.length];
-        for (int i = 0; i < srcPixels.length; i++) {
+        int length = width * height;
+        RasterPool pool = RasterPool.getInstance();
+        int[] srcPixels = getPooledRGB(pool, src);
+        int[] revPixels = pool.getArray(length);
+        for (int i = 0; i < length; i++) {
             revPixels[i] = (srcPixels[i] & 0xffffff) + ((255 - ((srcPixels[i] >> 24) & 0xff)) << 24);
         }
 
-        int[] shadow = new int[srcPixels.length];
-        for (int i = 0; i < srcPixels.length; i++) {
+        int[] shadow = pool.getArray(length);
+        for (int i = 0; i < length; i++) {
             shadow[i] = 0 + ((cut(strength * ((srcPixels[i] >> 24) & 0xff))) << 24);
         }
 
         Color colorAlpha = ALPHA;
-        shadow = moveRGB(width, height, shadow, moveX, moveY, colorAlpha);
+        shadow = moveRGB(pool, width, height, shadow, moveX, moveY, colorAlpha);
 
         int[] mask = null;
         if (type == INNER) {
@@ -488,7 +331,7 @@ public class Filtering {
         blur(shadow, width, height, blurX, blurY, iterations, mask);
 
         if (mask != null) {
-            for (int i = 0; i < mask.length; i++) {
+            for (int i = 0; i < length; i++) {
                 int m = (mask[i] >> 24);
                 if (m == 0) {
                     shadow[i] = 0;
@@ -496,13 +339,16 @@ public class Filtering {
             }
         }
 
-        for (int i = 0; i < shadow.length; i++) {
+        for (int i = 0; i < length; i++) {
             int a = (shadow[i] >> 24) & 0xff;
             shadow[i] = gradientPixels[a];
         }
 
-        BufferedImage retCanvas = new BufferedImage(width, height, src.getType());
+        BufferedImage retCanvas = pool.getBufferedImage(width, height, src.getType());
         setRGB(retCanvas, width, height, shadow);
+        pool.returnArray(srcPixels);
+        pool.returnArray(revPixels);
+        pool.returnArray(shadow);
 
         if (!knockout) {
             Graphics2D retImg = retCanvas.createGraphics();
@@ -522,6 +368,28 @@ public class Filtering {
         return image.getRGB(0, 0, width, image.getHeight(), null, 0, width);
     }
 
+    /**
+     * Gets pixels of the image to an array of the pool, the array can be
+     * longer than the number of pixels
+     *
+     * @param pool Raster pool
+     * @param image Image
+     * @return Copy of the pixels
+     */
+    private static int[] getPooledRGB(RasterPool pool, BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = pool.getArray(width * height);
+        int type = image.getType();
+        if (type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB) {
+            image.getRaster().getDataElements(0, 0, width, height, pixels);
+        } else {
+            image.getRGB(0, 0, width, height, pixels, 0, width);
+        }
+
+        return pixels;
+    }
+
     public static void setRGB(BufferedImage image, int width, int height, int[] pixels) {
         int type = image.getType();
         if (type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB) {
@@ -531,10 +399,16 @@ public class Filtering {
         }
     }
 
-    private static int[] moveRGB(int width, int height, int[] rgb, double deltaX, double deltaY, Color fill) {
-        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    private static int[] moveRGB(RasterPool pool, int width, int height, int[] rgb, double deltaX, double deltaY, Color fill) {
+        if (deltaX == 0 && deltaY == 0) {
+            // drawing without translation copies the pixels
+            return rgb;
+        }
+
+        BufferedImage img = pool.getBufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
         setRGB(img, width, height, rgb);
-        BufferedImage retImg = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        pool.returnArray(rgb);
+        BufferedImage retImg = pool.getBufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
         Graphics2D g = (Graphics2D) retImg.getGraphics();
         g.setPaint(fill);
         g.fillRect(0, 0, width, height);
@@ -545,11 +419,14 @@ public class Filtering {
         g.setTransform(AffineTransform.getTranslateInstance(deltaX, deltaY));
         g.setComposite(AlphaComposite.Src);
         g.drawImage(img, 0, 0, null);
+        pool.returnImage(img);
+
+        // the array of the image from the pool
         return getRGB(retImg);
     }
 
     public static SerializableImage convolution(SerializableImage src, float[] matrix, int w, int h) {
-        BufferedImage dst = new BufferedImage(src.getWidth(), src.getHeight(), src.getType());
+        BufferedImage dst = RasterPool.getInstance().getBufferedImage(src.getWidth(), src.getHeight(), src.getType());
         BufferedImageOp op = new ConvolveOp(new Kernel(w, h, matrix), ConvolveOp.EDGE_ZERO_FILL, new RenderingHints(null));
         op.filter(src.getBufferedImage(), dst);
         return new SerializableImage(dst);
@@ -561,9 +438,11 @@ public class Filtering {
          WritableRaster displayRaster = sourceRaster.createCompatibleWritableRaster();
          changeColors.filter(sourceRaster, displayRaster);
          return new SerializableImage(src.getColorModel(), displayRaster, true, null);*/
-        BufferedImage dst = new BufferedImage(src.getWidth(), src.getHeight(), src.getType());
-        int[] pixels = getRGB(src.getBufferedImage()).clone();
-        for (int i = 0; i < pixels.length; i++) {
+        RasterPool pool = RasterPool.getInstance();
+        BufferedImage dst = pool.getBufferedImage(src.getWidth(), src.getHeight(), src.getType());
+        int[] pixels = getPooledRGB(pool, src.getBufferedImage());
+        int length = src.getWidth() * src.getHeight();
+        for (int i = 0; i < length; i++) {
             int rgb = pixels[i];
             int a = (rgb >> 24) & 0xff;
             int r = (rgb >> 16) & 0xff;
@@ -580,6 +459,7 @@ public class Filtering {
             pixels[i] = (a2 << 24) | (r2 << 16) | (g2 << 8) | b2;
         }
         setRGB(dst, src.getWidth(), src.getHeight(), pixels);
+        pool.returnArray(pixels);
         return new SerializableImage(dst);
     }
 
@@ -611,9 +491,11 @@ public class Filtering {
     public static SerializableImage colorEffect(SerializableImage src,
             int redAddTerm, int greenAddTerm, int blueAddTerm, int alphaAddTerm,
             int redMultTerm, int greenMultTerm, int blueMultTerm, int alphaMultTerm) {
-        BufferedImage dst = new BufferedImage(src.getWidth(), src.getHeight(), src.getType());
-        int[] pixels = getRGB(src.getBufferedImage()).clone();
-        for (int i = 0; i < pixels.length; i++) {
+        RasterPool pool = RasterPool.getInstance();
+        BufferedImage dst = pool.getBufferedImage(src.getWidth(), src.getHeight(), src.getType());
+        int[] pixels = getPooledRGB(pool, src.getBufferedImage());
+        int length = src.getWidth() * src.getHeight();
+        for (int i = 0; i < length; i++) {
             int rgb = pixels[i];
             int a = (rgb >> 24) & 0xff;
             int r = (rgb >> 16) & 0xff;
@@ -626,6 +508,7 @@ public class Filtering {
             pixels[i] = (a << 24) | (r << 16) | (g << 8) | b;
         }
         setRGB(dst, src.getWidth(), src.getHeight(), pixels);
+        pool.returnArray(pixels);
         return new SerializableImage(dst);
     }
 }
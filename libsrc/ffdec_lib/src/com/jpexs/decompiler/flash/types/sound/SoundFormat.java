@@ -203,8 +203,7 @@ public class SoundFormat {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         SoundDecoder decoder = getDecoder();
         for (ByteArrayRange dataRange : dataRanges) {
-            SWFInputStream sis = new SWFInputStream(null, dataRange.getArray(), 0, dataRange.getPos() + dataRange.getLength());
-            sis.seek(dataRange.getPos());
+            SWFInputStream sis = new SWFInputStream(null, dataRange);
             decoder.decode(sis, baos);
         }
 
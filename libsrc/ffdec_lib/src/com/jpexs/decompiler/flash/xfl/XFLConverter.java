@@ -130,6 +130,7 @@ import com.jpexs.decompiler.graph.ScopeStack;
 import com.jpexs.helpers.Helper;
 import com.jpexs.helpers.Path;
 import com.jpexs.helpers.SerializableImage;
+import com.jpexs.helpers.SharedForkJoinPool;
 import com.jpexs.helpers.utf8.Utf8Helper;
 import java.awt.Font;
 import java.awt.Point;
@@ -138,9 +139,11 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -148,10 +151,9 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ForkJoinTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 import javax.xml.parsers.SAXParserFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.OutputKeys;
@@ -192,8 +194,29 @@ public class XFLConverter {
 
     public static final String PUBLISH_DATA_FORMAT = "_EMBED_SWF_";
 
+    private static final char COLOR_PLACEHOLDER_START = '\uFDD0';
+
+    private static final char COLOR_PLACEHOLDER_END = '\uFDD1';
+
     private final Random random = new Random(123); // predictable random
 
+    /**
+     * Symbols converted in parallel write placeholders instead of the outline
+     * colors. They are replaced in the original order of the symbols, so the
+     * colors are the same as in serial conversion.
+     */
+    private final boolean colorPlaceholders;
+
+    private int colorPlaceholderCount;
+
+    public XFLConverter() {
+        this(false);
+    }
+
+    private XFLConverter(boolean colorPlaceholders) {
+        this.colorPlaceholders = colorPlaceholders;
+    }
+
     private static void convertShapeEdge(MATRIX mat, SHAPERECORD record, int x, int y, StringBuilder ret) {
         if (record instanceof StyleChangeRecord) {
             StyleChangeRecord scr = (StyleChangeRecord) record;
@@ -1444,16 +1467,16 @@ public class XFLConverter {
         return date.getTime() / 1000;
     }
 
-    private void convertLibrary(SWF swf, Map<Integer, String> characterVariables, Map<Integer, String> characterClasses, Map<Integer, ScriptPack> characterScriptPacks, List<Integer> nonLibraryShapes, String backgroundColor, ReadOnlyTagList tags, HashMap<Integer, CharacterTag> characters, HashMap<String, byte[]> files, HashMap<String, byte[]> datfiles, FLAVersion flaVersion, XFLXmlWriter writer) throws XMLStreamException {
+    private void convertLibrary(SWF swf, Map<Integer, String> characterVariables, Map<Integer, String> characterClasses, Map<Integer, ScriptPack> characterScriptPacks, List<Integer> nonLibraryShapes, String backgroundColor, ReadOnlyTagList tags, HashMap<Integer, CharacterTag> characters, XFLOutput output, FLAVersion flaVersion, boolean parallel, XFLXmlWriter writer) throws XMLStreamException, IOException, InterruptedException {
 
         //TODO: Imported assets
         //linkageImportForRS="true" linkageIdentifier="xxx" linkageURL="yyy.swf"
-        convertMedia(swf, characterVariables, characterClasses, nonLibraryShapes, backgroundColor, tags, characters, files, datfiles, flaVersion, writer);
-        convertSymbols(swf, characterVariables, characterClasses, characterScriptPacks, nonLibraryShapes, backgroundColor, tags, characters, files, datfiles, flaVersion, writer);
+        convertMedia(swf, characterVariables, characterClasses, nonLibraryShapes, backgroundColor, tags, characters, output, flaVersion, writer);
+        convertSymbols(swf, characterVariables, characterClasses, characterScriptPacks, nonLibraryShapes, backgroundColor, tags, characters, output, flaVersion, parallel, writer);
     }
 
-    private void convertSymbols(SWF swf, Map<Integer, String> characterVariables, Map<Integer, String> characterClasses, Map<Integer, ScriptPack> characterScriptPacks, List<Integer> nonLibraryShapes, String backgroundColor, ReadOnlyTagList tags, HashMap<Integer, CharacterTag> characters, HashMap<String, byte[]> files, HashMap<String, byte[]> datfiles, FLAVersion flaVersion, XFLXmlWriter writer) throws XMLStreamException {
-        boolean hasSymbol = false;
+    private void convertSymbols(SWF swf, Map<Integer, String> characterVariables, Map<Integer, String> characterClasses, Map<Integer, ScriptPack> characterScriptPacks, List<Integer> nonLibraryShapes, String backgroundColor, ReadOnlyTagList tags, HashMap<Integer, CharacterTag> characters, XFLOutput output, FLAVersion flaVersion, boolean parallel, XFLXmlWriter writer) throws XMLStreamException, IOException, InterruptedException {
+        List<CharacterTag> symbols = new ArrayList<>();
         for (int ch : characters.keySet()) {
             CharacterTag symbol = characters.get(ch);
             if ((symbol instanceof ShapeTag) && nonLibraryShapes.contains(symbol.getCharacterId())) {
@@ -1461,187 +1484,71 @@ public class XFLConverter {
             }
 
             if ((symbol instanceof ShapeTag) || (symbol instanceof DefineSpriteTag) || (symbol instanceof ButtonTag)) {
-                XFLXmlWriter symbolStr = new XFLXmlWriter();
+                symbols.add(symbol);
+            }
+        }
 
-                symbolStr.writeStartElement("DOMSymbolItem", new String[]{
-                    "xmlns:xsi", "http://www.w3.org/2001/XMLSchema-instance",
-                    "xmlns", "http://ns.adobe.com/xfl/2008/",
-                    "name", "Symbol " + symbol.getCharacterId(),
-                    "lastModified", Long.toString(getTimestamp(swf))}); //TODO:itemID
+        // symbols reference each other only by name, so they are converted in parallel,
+        // a limited number of them ahead of the one which is written
+        int window = parallel && symbols.size() > 1 ? Configuration.getParallelThreadCount() * 2 : 0;
+        if (window > 0) {
+            for (CharacterTag symbol : symbols) {
                 if (symbol instanceof ShapeTag) {
-                    symbolStr.writeAttribute("symbolType", "graphic");
-                } else if (symbol instanceof ButtonTag) {
-                    symbolStr.writeAttribute("symbolType", "button");
-                    if (((ButtonTag) symbol).trackAsMenu()) {
-                        symbolStr.writeAttribute("trackAsMenu", true);
-                    }
+                    // shapes are parsed lazily, which is not thread safe
+                    ((ShapeTag) symbol).getShapes();
                 }
-                boolean linkageExportForAS = false;
-                if (characterClasses.containsKey(symbol.getCharacterId())) {
-                    linkageExportForAS = true;
-                    symbolStr.writeAttribute("linkageClassName", characterClasses.get(symbol.getCharacterId()));
-                }
-                if (characterVariables.containsKey(symbol.getCharacterId())) {
-                    linkageExportForAS = true;
-                    symbolStr.writeAttribute("linkageIdentifier", characterVariables.get(symbol.getCharacterId()));
-                }
-                if (linkageExportForAS) {
-                    symbolStr.writeAttribute("linkageExportForAS", true);
-                }
-                symbolStr.writeStartElement("timeline");
-                String itemIcon = null;
-                if (symbol instanceof ButtonTag) {
-                    itemIcon = "0";
-                    symbolStr.writeStartElement("DOMTimeline", new String[]{"name", "Symbol " + symbol.getCharacterId(), "currentFrame", "0"});
-                    symbolStr.writeStartElement("layers");
-
-                    ButtonTag button = (ButtonTag) symbol;
-                    List<BUTTONRECORD> records = button.getRecords();
-
-                    int maxDepth = 0;
-                    for (BUTTONRECORD rec : records) {
-                        if (rec.placeDepth > maxDepth) {
-                            maxDepth = rec.placeDepth;
-                        }
-                    }
-                    for (int i = maxDepth; i >= 1; i--) {
-                        symbolStr.writeStartElement("DOMLayer", new String[]{"name", "Layer " + (maxDepth - i + 1)});
-                        if (i == 1) {
-                            symbolStr.writeAttribute("current", true);
-                            symbolStr.writeAttribute("isSelected", true);
-                        }
-                        symbolStr.writeAttribute("color", randomOutlineColor());
-                        symbolStr.writeStartElement("frames");
-                        int lastFrame = 0;
-                        DefineButtonSoundTag sound = button.getSounds();
-                        loopframes:
-                        for (int frame = 1; frame <= 4; frame++) {
-                            if (sound != null) {
-                                switch (frame) {
-                                    case 1:
-                                        break;
-                                    case 2:
-                                        break;
-                                    case 3:
-                                        break;
-                                    case 4:
-                                        break;
-                                }
-                            }
-                            for (BUTTONRECORD rec : records) {
-                                if (rec.placeDepth == i) {
-                                    boolean ok = false;
-                                    switch (frame) {
-                                        case 1:
-                                            ok = rec.buttonStateUp;
-                                            break;
-                                        case 2:
-                                            ok = rec.buttonStateOver;
-                                            break;
-                                        case 3:
-                                            ok = rec.buttonStateDown;
-                                            break;
-                                        case 4:
-                                            ok = rec.buttonStateHitTest;
-                                            break;
-                                    }
-                                    if (!ok) {
-                                        continue;
-                                    }
-                                    CXFORMWITHALPHA colorTransformAlpha = null;
-                                    int blendMode = 0;
-                                    List<FILTER> filters = new ArrayList<>();
-                                    if (button instanceof DefineButton2Tag) {
-                                        colorTransformAlpha = rec.colorTransform;
-                                        if (rec.buttonHasBlendMode) {
-                                            blendMode = rec.blendMode;
-                                        }
-                                        if (rec.buttonHasFilterList) {
-                                            filters = rec.filterList;
-                                        }
-                                    }
-                                    CharacterTag character = characters.get(rec.characterId);
-                                    if (character != null) {
-                                        MATRIX matrix = rec.placeMatrix;
-                                        XFLXmlWriter recCharWriter = new XFLXmlWriter();
-
-                                        int characterId = character.getCharacterId();
-                                        if ((character instanceof ShapeTag) && (nonLibraryShapes.contains(characterId))) {
-                                            ShapeTag shape = (ShapeTag) character;
-                                            convertShape(characters, matrix, shape.getShapeNum(), shape.getShapes().shapeRecords, shape.getShapes().fillStyles, shape.getShapes().lineStyles, false, false, recCharWriter);
-                                        } else if (character instanceof TextTag) {
-                                            convertText(null, (TextTag) character, matrix, filters, null, recCharWriter);
-                                        } else if (character instanceof DefineVideoStreamTag) {
-                                            convertVideoInstance(null, matrix, (DefineVideoStreamTag) character, null, recCharWriter);
-                                        } else {
-                                            convertSymbolInstance(null, matrix, colorTransformAlpha, false, blendMode, filters, true, null, null, null, characters.get(rec.characterId), characters, tags, flaVersion, recCharWriter);
-                                        }
+            }
+        }
 
-                                        int duration = frame - lastFrame;
-                                        lastFrame = frame;
-                                        if (duration > 0) {
-                                            if (duration > 1) {
-                                                symbolStr.writeStartElement("DOMFrame", new String[]{
-                                                    "index", Integer.toString(frame - duration),
-                                                    "duration", Integer.toString(duration - 1),
-                                                    "keyMode", Integer.toString(KEY_MODE_NORMAL),});
-                                                symbolStr.writeElementValue("elements", "");
-                                                symbolStr.writeEndElement();
-                                            }
-                                            symbolStr.writeStartElement("DOMFrame", new String[]{
-                                                "index", Integer.toString(frame - 1),
-                                                "keyMode", Integer.toString(KEY_MODE_NORMAL),});
-                                            symbolStr.writeStartElement("elements");
-                                            symbolStr.writeCharactersRaw(recCharWriter.toString());
-                                            symbolStr.writeEndElement();
-                                            symbolStr.writeEndElement();
-                                        }
-                                    } else {
-                                        logger.log(Level.WARNING, "Character with id={0} was not found.", rec.characterId);
-                                    }
-                                }
+        boolean hasSymbol = false;
+        Deque<ForkJoinTask<ConvertedSymbol>> tasks = new ArrayDeque<>();
+        int forkedCount = 0;
+        try {
+            for (int i = 0; i < symbols.size(); i++) {
+                ConvertedSymbol converted;
+                if (window == 0) {
+                    converted = convertSymbolItem(swf, characterVariables, characterClasses, characterScriptPacks, nonLibraryShapes, backgroundColor, tags, characters, output, flaVersion, symbols.get(i));
+                } else {
+                    while (forkedCount < symbols.size() && forkedCount < i + window) {
+                        final CharacterTag symbol = symbols.get(forkedCount++);
+                        tasks.add(SharedForkJoinPool.fork(() -> {
+                            try {
+                                return convertSymbol(swf, characterVariables, characterClasses, characterScriptPacks, nonLibraryShapes, backgroundColor, tags, characters, output, flaVersion, symbol);
+                            } catch (XMLStreamException ex) {
+                                // returned, so it is not wrapped by the pool
+                                return new ConvertedSymbol(ex);
                             }
-                        }
-                        symbolStr.writeEndElement(); // frames
-                        symbolStr.writeEndElement(); // DOMLayer
+                        }));
                     }
-                    symbolStr.writeEndElement(); // layers
-                    symbolStr.writeEndElement(); // DOMTimeline
-                } else if (symbol instanceof DefineSpriteTag) {
-                    DefineSpriteTag sprite = (DefineSpriteTag) symbol;
-                    if (sprite.getTags().isEmpty()) { //probably AS2 class
-                        continue;
+
+                    converted = tasks.poll().join();
+                    if (converted != null && converted.exception != null) {
+                        throw converted.exception;
                     }
-                    final ScriptPack spriteScriptPack = characterScriptPacks.containsKey(sprite.spriteId) ? characterScriptPacks.get(sprite.spriteId) : null;
-                    convertTimeline(sprite.spriteId, nonLibraryShapes, backgroundColor, tags, sprite.getTags(), characters, "Symbol " + symbol.getCharacterId(), flaVersion, files, symbolStr, spriteScriptPack);
-
-                } else if (symbol instanceof ShapeTag) {
-                    itemIcon = "1";
-                    ShapeTag shape = (ShapeTag) symbol;
-                    symbolStr.writeStartElement("DOMTimeline", new String[]{"name", "Symbol " + symbol.getCharacterId(), "currentFrame", "0"});
-                    symbolStr.writeStartElement("layers");
-                    SHAPEWITHSTYLE shapeWithStyle = shape.getShapes();
-                    if (shapeWithStyle != null) {
-                        convertShape(characters, null, shape.getShapeNum(), shapeWithStyle.shapeRecords, shapeWithStyle.fillStyles, shapeWithStyle.lineStyles, false, true, symbolStr);
+
+                    if (converted != null) {
+                        converted.data = replaceColorPlaceholders(converted.data, converted.colorCount);
                     }
+                }
 
-                    symbolStr.writeEndElement(); // layers
-                    symbolStr.writeEndElement(); // DOMTimeline
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
                 }
-                symbolStr.writeEndElement(); // timeline
-                symbolStr.writeEndElement(); // DOMSymbolItem
-                String symbolStr2 = prettyFormatXML(symbolStr.toString());
-                String symbolFile = "Symbol " + symbol.getCharacterId() + ".xml";
-                files.put(symbolFile, Utf8Helper.getBytes(symbolStr2));
+
+                if (converted == null) {
+                    continue;
+                }
+
+                output.putLibraryFile(converted.fileName, converted.data);
 
                 if (!hasSymbol) {
                     writer.writeStartElement("symbols");
                 }
 
                 // write symbLink
-                writer.writeStartElement("Include", new String[]{"href", symbolFile});
-                if (itemIcon != null) {
-                    writer.writeAttribute("itemIcon", itemIcon);
+                writer.writeStartElement("Include", new String[]{"href", converted.fileName});
+                if (converted.itemIcon != null) {
+                    writer.writeAttribute("itemIcon", converted.itemIcon);
                 }
                 writer.writeAttribute("loadImmediate", false);
                 if (flaVersion.ordinal() >= FLAVersion.CS5_5.ordinal()) {
@@ -1651,6 +1558,11 @@ public class XFLConverter {
                 writer.writeEndElement();
                 hasSymbol = true;
             }
+        } finally {
+            // not empty on error or interrupt
+            for (ForkJoinTask<ConvertedSymbol> task : tasks) {
+                task.cancel(false);
+            }
         }
 
         if (hasSymbol) {
@@ -1658,7 +1570,218 @@ public class XFLConverter {
         }
     }
 
-    private void convertMedia(SWF swf, Map<Integer, String> characterVariables, Map<Integer, String> characterClasses, List<Integer> nonLibraryShapes, String backgroundColor, ReadOnlyTagList tags, HashMap<Integer, CharacterTag> characters, HashMap<String, byte[]> files, HashMap<String, byte[]> datfiles, FLAVersion flaVersion, XFLXmlWriter writer) throws XMLStreamException {
+    private static ConvertedSymbol convertSymbol(SWF swf, Map<Integer, String> characterVariables, Map<Integer, String> characterClasses, Map<Integer, ScriptPack> characterScriptPacks, List<Integer> nonLibraryShapes, String backgroundColor, ReadOnlyTagList tags, HashMap<Integer, CharacterTag> characters, XFLOutput output, FLAVersion flaVersion, CharacterTag symbol) throws XMLStreamException {
+        XFLConverter converter = new XFLConverter(true);
+        ConvertedSymbol converted = converter.convertSymbolItem(swf, characterVariables, characterClasses, characterScriptPacks, nonLibraryShapes, backgroundColor, tags, characters, output, flaVersion, symbol);
+        if (converted != null) {
+            converted.colorCount = converter.colorPlaceholderCount;
+        }
+
+        return converted;
+    }
+
+    private byte[] replaceColorPlaceholders(byte[] data, int count) {
+        if (count == 0) {
+            return data;
+        }
+
+        // colors are taken in the order of the placeholder numbers, which is the order of writing
+        String[] colors = new String[count];
+        for (int i = 0; i < count; i++) {
+            colors[i] = randomOutlineColor();
+        }
+
+        String text = new String(data, Utf8Helper.charset);
+        StringBuilder sb = new StringBuilder(text.length());
+        int pos = 0;
+        int start;
+        while ((start = text.indexOf(COLOR_PLACEHOLDER_START, pos)) != -1) {
+            int end = text.indexOf(COLOR_PLACEHOLDER_END, start);
+            sb.append(text, pos, start);
+            sb.append(colors[Integer.parseInt(text.substring(start + 1, end))]);
+            pos = end + 1;
+        }
+
+        sb.append(text, pos, text.length());
+        return Utf8Helper.getBytes(sb.toString());
+    }
+
+    private ConvertedSymbol convertSymbolItem(SWF swf, Map<Integer, String> characterVariables, Map<Integer, String> characterClasses, Map<Integer, ScriptPack> characterScriptPacks, List<Integer> nonLibraryShapes, String backgroundColor, ReadOnlyTagList tags, HashMap<Integer, CharacterTag> characters, XFLOutput output, FLAVersion flaVersion, CharacterTag symbol) throws XMLStreamException {
+        XFLXmlWriter symbolStr = new XFLXmlWriter();
+
+        symbolStr.writeStartElement("DOMSymbolItem", new String[]{
+            "xmlns:xsi", "http://www.w3.org/2001/XMLSchema-instance",
+            "xmlns", "http://ns.adobe.com/xfl/2008/",
+            "name", "Symbol " + symbol.getCharacterId(),
+            "lastModified", Long.toString(getTimestamp(swf))}); //TODO:itemID
+        if (symbol instanceof ShapeTag) {
+            symbolStr.writeAttribute("symbolType", "graphic");
+        } else if (symbol instanceof ButtonTag) {
+            symbolStr.writeAttribute("symbolType", "button");
+            if (((ButtonTag) symbol).trackAsMenu()) {
+                symbolStr.writeAttribute("trackAsMenu", true);
+            }
+        }
+        boolean linkageExportForAS = false;
+        if (characterClasses.containsKey(symbol.getCharacterId())) {
+            linkageExportForAS = true;
+            symbolStr.writeAttribute("linkageClassName", characterClasses.get(symbol.getCharacterId()));
+        }
+        if (characterVariables.containsKey(symbol.getCharacterId())) {
+            linkageExportForAS = true;
+            symbolStr.writeAttribute("linkageIdentifier", characterVariables.get(symbol.getCharacterId()));
+        }
+        if (linkageExportForAS) {
+            symbolStr.writeAttribute("linkageExportForAS", true);
+        }
+        symbolStr.writeStartElement("timeline");
+        String itemIcon = null;
+        if (symbol instanceof ButtonTag) {
+            itemIcon = "0";
+            symbolStr.writeStartElement("DOMTimeline", new String[]{"name", "Symbol " + symbol.getCharacterId(), "currentFrame", "0"});
+            symbolStr.writeStartElement("layers");
+
+            ButtonTag button = (ButtonTag) symbol;
+            List<BUTTONRECORD> records = button.getRecords();
+
+            int maxDepth = 0;
+            for (BUTTONRECORD rec : records) {
+                if (rec.placeDepth > maxDepth) {
+                    maxDepth = rec.placeDepth;
+                }
+            }
+            for (int i = maxDepth; i >= 1; i--) {
+                symbolStr.writeStartElement("DOMLayer", new String[]{"name", "Layer " + (maxDepth - i + 1)});
+                if (i == 1) {
+                    symbolStr.writeAttribute("current", true);
+                    symbolStr.writeAttribute("isSelected", true);
+                }
+                symbolStr.writeAttribute("color", randomOutlineColor());
+                symbolStr.writeStartElement("frames");
+                int lastFrame = 0;
+                DefineButtonSoundTag sound = button.getSounds();
+                loopframes:
+                for (int frame = 1; frame <= 4; frame++) {
+                    if (sound != null) {
+                        switch (frame) {
+                            case 1:
+                                break;
+                            case 2:
+                                break;
+                            case 3:
+                                break;
+                            case 4:
+                                break;
+                        }
+                    }
+                    for (BUTTONRECORD rec : records) {
+                        if (rec.placeDepth == i) {
+                            boolean ok = false;
+                            switch (frame) {
+                                case 1:
+                                    ok = rec.buttonStateUp;
+                                    break;
+                                case 2:
+                                    ok = rec.buttonStateOver;
+                                    break;
+                                case 3:
+                                    ok = rec.buttonStateDown;
+                                    break;
+                                case 4:
+                                    ok = rec.buttonStateHitTest;
+                                    break;
+                            }
+                            if (!ok) {
+                                continue;
+                            }
+                            CXFORMWITHALPHA colorTransformAlpha = null;
+                            int blendMode = 0;
+                            List<FILTER> filters = new ArrayList<>();
+                            if (button instanceof DefineButton2Tag) {
+                                colorTransformAlpha = rec.colorTransform;
+                                if (rec.buttonHasBlendMode) {
+                                    blendMode = rec.blendMode;
+                                }
+                                if (rec.buttonHasFilterList) {
+                                    filters = rec.filterList;
+                                }
+                            }
+                            CharacterTag character = characters.get(rec.characterId);
+                            if (character != null) {
+                                MATRIX matrix = rec.placeMatrix;
+                                XFLXmlWriter recCharWriter = new XFLXmlWriter();
+
+                                int characterId = character.getCharacterId();
+                                if ((character instanceof ShapeTag) && (nonLibraryShapes.contains(characterId))) {
+                                    ShapeTag shape = (ShapeTag) character;
+                                    convertShape(characters, matrix, shape.getShapeNum(), shape.getShapes().shapeRecords, shape.getShapes().fillStyles, shape.getShapes().lineStyles, false, false, recCharWriter);
+                                } else if (character instanceof TextTag) {
+                                    convertText(null, (TextTag) character, matrix, filters, null, recCharWriter);
+                                } else if (character instanceof DefineVideoStreamTag) {
+                                    convertVideoInstance(null, matrix, (DefineVideoStreamTag) character, null, recCharWriter);
+                                } else {
+                                    convertSymbolInstance(null, matrix, colorTransformAlpha, false, blendMode, filters, true, null, null, null, characters.get(rec.characterId), characters, tags, flaVersion, recCharWriter);
+                                }
+
+                                int duration = frame - lastFrame;
+                                lastFrame = frame;
+                                if (duration > 0) {
+                                    if (duration > 1) {
+                                        symbolStr.writeStartElement("DOMFrame", new String[]{
+                                            "index", Integer.toString(frame - duration),
+                                            "duration", Integer.toString(duration - 1),
+                                            "keyMode", Integer.toString(KEY_MODE_NORMAL),});
+                                        symbolStr.writeElementValue("elements", "");
+                                        symbolStr.writeEndElement();
+                                    }
+                                    symbolStr.writeStartElement("DOMFrame", new String[]{
+                                        "index", Integer.toString(frame - 1),
+                                        "keyMode", Integer.toString(KEY_MODE_NORMAL),});
+                                    symbolStr.writeStartElement("elements");
+                                    symbolStr.writeCharactersRaw(recCharWriter.toString());
+                                    symbolStr.writeEndElement();
+                                    symbolStr.writeEndElement();
+                                }
+                            } else {
+                                logger.log(Level.WARNING, "Character with id={0} was not found.", rec.characterId);
+                            }
+                        }
+                    }
+                }
+                symbolStr.writeEndElement(); // frames
+                symbolStr.writeEndElement(); // DOMLayer
+            }
+            symbolStr.writeEndElement(); // layers
+            symbolStr.writeEndElement(); // DOMTimeline
+        } else if (symbol instanceof DefineSpriteTag) {
+            DefineSpriteTag sprite = (DefineSpriteTag) symbol;
+            if (sprite.getTags().isEmpty()) { //probably AS2 class
+                return null;
+            }
+            final ScriptPack spriteScriptPack = characterScriptPacks.containsKey(sprite.spriteId) ? characterScriptPacks.get(sprite.spriteId) : null;
+            convertTimeline(sprite.spriteId, nonLibraryShapes, backgroundColor, tags, sprite.getTags(), characters, "Symbol " + symbol.getCharacterId(), flaVersion, output, symbolStr, spriteScriptPack);
+
+        } else if (symbol instanceof ShapeTag) {
+            itemIcon = "1";
+            ShapeTag shape = (ShapeTag) symbol;
+            symbolStr.writeStartElement("DOMTimeline", new String[]{"name", "Symbol " + symbol.getCharacterId(), "currentFrame", "0"});
+            symbolStr.writeStartElement("layers");
+            SHAPEWITHSTYLE shapeWithStyle = shape.getShapes();
+            if (shapeWithStyle != null) {
+                convertShape(characters, null, shape.getShapeNum(), shapeWithStyle.shapeRecords, shapeWithStyle.fillStyles, shapeWithStyle.lineStyles, false, true, symbolStr);
+            }
+
+            symbolStr.writeEndElement(); // layers
+            symbolStr.writeEndElement(); // DOMTimeline
+        }
+        symbolStr.writeEndElement(); // timeline
+        symbolStr.writeEndElement(); // DOMSymbolItem
+        String symbolStr2 = prettyFormatXML(symbolStr.toString());
+        String symbolFile = "Symbol " + symbol.getCharacterId() + ".xml";
+        return new ConvertedSymbol(symbolFile, itemIcon, Utf8Helper.getBytes(symbolStr2));
+    }
+
+    private void convertMedia(SWF swf, Map<Integer, String> characterVariables, Map<Integer, String> characterClasses, List<Integer> nonLibraryShapes, String backgroundColor, ReadOnlyTagList tags, HashMap<Integer, CharacterTag> characters, XFLOutput output, FLAVersion flaVersion, XFLXmlWriter writer) throws XMLStreamException, IOException, InterruptedException {
         boolean hasMedia = false;
         for (int ch : characters.keySet()) {
             CharacterTag symbol = characters.get(ch);
@@ -1719,7 +1842,7 @@ public class XFLConverter {
                 SerializableImage image = imageTag.getImageCached();
                 ImageFormat format = imageTag.getImageFormat();
                 String symbolFile = "bitmap" + symbol.getCharacterId() + imageTag.getImageFormat().getExtension();
-                files.put(symbolFile, imageBytes);
+                output.putLibraryFile(symbolFile, imageBytes);
                 writer.writeStartElement("DOMBitmapItem", new String[]{
                     "name", symbolFile,
                     "sourceLastImported", Long.toString(getTimestamp(swf)),
@@ -1891,7 +2014,7 @@ public class XFLConverter {
                 }
 
                 String symbolFile = "sound" + symbol.getCharacterId() + "." + exportFormat;
-                files.put(symbolFile, data);
+                output.putLibraryFile(symbolFile, data);
                 writer.writeStartElement("DOMSoundItem", new String[]{
                     "name", symbolFile,
                     "sourceLastImported", Long.toString(getTimestamp(swf)),
@@ -1945,7 +2068,7 @@ public class XFLConverter {
                 String symbolFile = "movie" + symbol.getCharacterId() + "." + "flv";
                 if (data.length == 0) { //Video has zero length, this probably means it is "Video - Actionscript-controlled"
                     long ts = getTimestamp(swf);
-                    String datFileName = "M " + (datfiles.size() + 1) + " " + ts + ".dat";
+                    String datFileName = "M " + (output.getBinFileCount() + 1) + " " + ts + ".dat";
                     writer.writeEmptyElement("DOMVideoItem", new String[]{
                         "name", symbolFile,
                         "sourceExternalFilepath", "./LIBRARY/" + symbolFile,
@@ -1954,7 +2077,7 @@ public class XFLConverter {
                         "channels", "0",
                         "isSpecial", "true"});
                     //Use the dat file, otherwise it does not work
-                    datfiles.put(datFileName, new byte[]{ //Magic numbers, if anybody knows why, please tell me
+                    output.putBinFile(datFileName, new byte[]{ //Magic numbers, if anybody knows why, please tell me
                         (byte) 0x03, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00,
                         (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00,
                         (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00,
@@ -1970,7 +2093,7 @@ public class XFLConverter {
                         (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00
                     });
                 } else {
-                    files.put(symbolFile, data);
+                    output.putLibraryFile(symbolFile, data);
                     writer.writeStartElement("DOMVideoItem", new String[]{
                         "name", symbolFile,
                         "sourceLastImported", Long.toString(getTimestamp(swf)),
@@ -2023,7 +2146,7 @@ public class XFLConverter {
         }
     }
 
-    private static void convertFrame(boolean shapeTween, SoundStreamHeadTypeTag soundStreamHead, StartSoundTag startSound, int frame, int duration, String actionScript, String elements, HashMap<String, byte[]> files, XFLXmlWriter writer) throws XMLStreamException {
+    private static void convertFrame(boolean shapeTween, SoundStreamHeadTypeTag soundStreamHead, StartSoundTag startSound, int frame, int duration, String actionScript, String elements, XFLOutput output, XFLXmlWriter writer) throws XMLStreamException {
         DefineSoundTag sound = null;
         if (startSound != null) {
             SWF swf = startSound.getSwf();
@@ -2147,7 +2270,7 @@ public class XFLConverter {
         writer.writeEndElement();
     }
 
-    private static void convertFrames(String prevStr, String afterStr, List<Integer> nonLibraryShapes, ReadOnlyTagList tags, ReadOnlyTagList timelineTags, HashMap<Integer, CharacterTag> characters, int depth, FLAVersion flaVersion, HashMap<String, byte[]> files, XFLXmlWriter writer) throws XMLStreamException {
+    private static void convertFrames(String prevStr, String afterStr, List<Integer> nonLibraryShapes, ReadOnlyTagList tags, ReadOnlyTagList timelineTags, HashMap<Integer, CharacterTag> characters, int depth, FLAVersion flaVersion, XFLOutput output, XFLXmlWriter writer) throws XMLStreamException {
         XFLXmlWriter writer2 = new XFLXmlWriter();
         prevStr += "<frames>";
         int frame = -1;
@@ -2304,7 +2427,7 @@ public class XFLConverter {
                 frame++;
                 String elements = elementsWriter.toString();
                 if (!elements.equals(lastElements) && frame > 0) {
-                    convertFrame(lastShapeTween, null, null, frame - duration, duration, "", lastElements, files, writer2);
+                    convertFrame(lastShapeTween, null, null, frame - duration, duration, "", lastElements, output, writer2);
                     duration = 1;
                 } else if (frame == 0) {
                     duration = 1;
@@ -2318,7 +2441,7 @@ public class XFLConverter {
         }
         if (!lastElements.isEmpty()) {
             frame++;
-            convertFrame(lastShapeTween, null, null, (frame - duration < 0 ? 0 : frame - duration), duration, "", lastElements, files, writer2);
+            convertFrame(lastShapeTween, null, null, (frame - duration < 0 ? 0 : frame - duration), duration, "", lastElements, output, writer2);
         }
         afterStr = "</frames>" + afterStr;
 
@@ -2670,7 +2793,7 @@ public class XFLConverter {
         return hasLabel;
     }
 
-    private void convertSoundLayer(int layerIndex, ReadOnlyTagList timeLineTags, HashMap<String, byte[]> files, XFLXmlWriter writer) throws XMLStreamException {
+    private void convertSoundLayer(int layerIndex, ReadOnlyTagList timeLineTags, XFLOutput output, XFLXmlWriter writer) throws XMLStreamException {
         int soundLayerIndex = 0;
         XFLXmlWriter writer2 = new XFLXmlWriter();
         List<StartSoundTag> startSounds = new ArrayList<>();
@@ -2688,7 +2811,7 @@ public class XFLConverter {
                     continue;
                 }
 
-                if (!files.containsKey("sound" + s.soundId + "." + s.getExportFormat().toString().toLowerCase())) { //Sound was not exported
+                if (!output.containsLibraryFile("sound" + s.soundId + "." + s.getExportFormat().toString().toLowerCase())) { //Sound was not exported
                     startSound = null; // ignore
                 }
 
@@ -2698,7 +2821,7 @@ public class XFLConverter {
                 }
             } else if (t instanceof SoundStreamHeadTypeTag) {
                 SoundStreamHeadTypeTag soundStreamHead = (SoundStreamHeadTypeTag) t;
-                if (!files.containsKey("sound" + soundStreamHead.getCharacterId() + "." + soundStreamHead.getExportFormat().toString().toLowerCase())) { //Sound was not exported
+                if (!output.containsLibraryFile("sound" + soundStreamHead.getCharacterId() + "." + soundStreamHead.getExportFormat().toString().toLowerCase())) { //Sound was not exported
                     soundStreamHead = null; // ignore
                 }
 
@@ -2720,10 +2843,10 @@ public class XFLConverter {
 
             if (startFrame != 0) {
                 // empty frames should be added
-                convertFrame(false, null, null, 0, startFrame, "", "", files, writer);
+                convertFrame(false, null, null, 0, startFrame, "", "", output, writer);
             }
 
-            convertFrame(false, soundStreamHeads.get(i), null, startFrame, duration, "", "", files, writer);
+            convertFrame(false, soundStreamHeads.get(i), null, startFrame, duration, "", "", output, writer);
 
             writer.writeEndElement();
             writer.writeEndElement();
@@ -2738,10 +2861,10 @@ public class XFLConverter {
 
             if (startFrame != 0) {
                 // empty frames should be added
-                convertFrame(false, null, null, 0, startFrame, "", "", files, writer);
+                convertFrame(false, null, null, 0, startFrame, "", "", output, writer);
             }
 
-            convertFrame(false, null, startSounds.get(i), startFrame, duration, "", "", files, writer);
+            convertFrame(false, null, startSounds.get(i), startFrame, duration, "", "", output, writer);
 
             writer.writeEndElement();
             writer.writeEndElement();
@@ -2749,6 +2872,10 @@ public class XFLConverter {
     }
 
     private String randomOutlineColor() {
+        if (colorPlaceholders) {
+            return COLOR_PLACEHOLDER_START + Integer.toString(colorPlaceholderCount++) + COLOR_PLACEHOLDER_END;
+        }
+
         RGB outlineColor = new RGB();
         do {
             outlineColor.red = random.nextInt(256);
@@ -2758,7 +2885,7 @@ public class XFLConverter {
         return outlineColor.toHexRGB();
     }
 
-    private void convertTimeline(int spriteId, List<Integer> nonLibraryShapes, String backgroundColor, ReadOnlyTagList tags, ReadOnlyTagList timelineTags, HashMap<Integer, CharacterTag> characters, String name, FLAVersion flaVersion, HashMap<String, byte[]> files, XFLXmlWriter writer, ScriptPack scriptPack) throws XMLStreamException {
+    private void convertTimeline(int spriteId, List<Integer> nonLibraryShapes, String backgroundColor, ReadOnlyTagList tags, ReadOnlyTagList timelineTags, HashMap<Integer, CharacterTag> characters, String name, FLAVersion flaVersion, XFLOutput output, XFLXmlWriter writer, ScriptPack scriptPack) throws XMLStreamException {
         writer.writeStartElement("DOMTimeline", new String[]{"name", name});
         writer.writeStartElement("layers");
 
@@ -2792,7 +2919,7 @@ public class XFLConverter {
                             "color", randomOutlineColor(),
                             "layerType", "mask",
                             "locked", "true"});
-                        convertFrames("", "", nonLibraryShapes, tags, timelineTags, characters, po.getDepth(), flaVersion, files, writer);
+                        convertFrames("", "", nonLibraryShapes, tags, timelineTags, characters, po.getDepth(), flaVersion, output, writer);
                         writer.writeEndElement();
                         index++;
                         break;
@@ -2839,7 +2966,7 @@ public class XFLConverter {
             layerPrev.writeCharacters(""); // todo honfika: hack to close start tag
             String layerAfter = "</DOMLayer>";
             int prevLength = writer.length();
-            convertFrames(layerPrev.toString(), layerAfter, nonLibraryShapes, tags, timelineTags, characters, d, flaVersion, files, writer);
+            convertFrames(layerPrev.toString(), layerAfter, nonLibraryShapes, tags, timelineTags, characters, d, flaVersion, output, writer);
             if (writer.length() == prevLength) {
                 index--;
             }
@@ -2847,7 +2974,7 @@ public class XFLConverter {
 
         int soundLayerIndex = layerCount;
         layerCount++;
-        convertSoundLayer(soundLayerIndex, timelineTags, files, writer);
+        convertSoundLayer(soundLayerIndex, timelineTags, output, writer);
         writer.writeEndElement();
         writer.writeEndElement();
     }
@@ -3312,8 +3439,26 @@ public class XFLConverter {
         if (baseName.contains(".")) {
             baseName = baseName.substring(0, baseName.lastIndexOf('.'));
         }
-        final HashMap<String, byte[]> files = new HashMap<>();
-        final HashMap<String, byte[]> datfiles = new HashMap<>();
+        try (XFLOutput output = settings.compressed ? XFLOutput.createZip(file, handler) : XFLOutput.createDirectory(outDir, handler)) {
+            convertDocument(handler, swf, outDir, baseName, settings, generator, generatorVerName, generatorVersion, useAS3, useNetwork, parallel, flaVersion, output);
+        }
+
+        if (!settings.compressed) {
+            writeFile(handler, Utf8Helper.getBytes("PROXY-CS5"), outfile);
+        }
+
+        if (useAS3 && settings.exportScript) {
+            try {
+                ScriptExportSettings scriptExportSettings = new ScriptExportSettings(ScriptExportMode.AS, false);
+                swf.exportActionScript(handler, outDir.getAbsolutePath(), scriptExportSettings, parallel, null);
+            } catch (Exception ex) {
+                logger.log(Level.SEVERE, "Error during ActionScript3 export", ex);
+            }
+        }
+
+    }
+
+    private void convertDocument(AbortRetryIgnoreHandler handler, SWF swf, File outDir, String baseName, XFLExportSettings settings, String generator, String generatorVerName, String generatorVersion, boolean useAS3, boolean useNetwork, boolean parallel, FLAVersion flaVersion, XFLOutput output) throws IOException, InterruptedException {
         HashMap<Integer, CharacterTag> characters = getCharacters(swf.getTags());
         List<Integer> nonLibraryShapes = getNonLibraryShapes(swf.getTags(), characters);
         Map<Integer, String> characterClasses = getCharacterClasses(swf.getTags());
@@ -3360,11 +3505,11 @@ public class XFLConverter {
             }
 
             convertFonts(swf.getTags(), domDocument);
-            convertLibrary(swf, characterVariables, characterClasses, characterScriptPacks, nonLibraryShapes, backgroundColor, swf.getTags(), characters, files, datfiles, flaVersion, domDocument);
+            convertLibrary(swf, characterVariables, characterClasses, characterScriptPacks, nonLibraryShapes, backgroundColor, swf.getTags(), characters, output, flaVersion, parallel, domDocument);
 
             domDocument.writeStartElement("timelines");
             ScriptPack documentScriptPack = characterScriptPacks.containsKey(0) ? characterScriptPacks.get(0) : null;
-            convertTimeline(0, nonLibraryShapes, backgroundColor, swf.getTags(), swf.getTags(), characters, "Scene 1", flaVersion, files, domDocument, documentScriptPack);
+            convertTimeline(0, nonLibraryShapes, backgroundColor, swf.getTags(), swf.getTags(), characters, "Scene 1", flaVersion, output, domDocument, documentScriptPack);
             domDocument.writeEndElement();
 
             if (hasAmfMetadata) {
@@ -3668,52 +3813,9 @@ public class XFLConverter {
 
         String publishSettingsStr = publishSettings.toString();
 
-        if (settings.compressed) {
-            final String domDocumentF = domDocumentStr;
-            final String publishSettingsF = publishSettingsStr;
-            final String outfileF = outfile;
-            new RetryTask(() -> {
-                try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(outfileF))) {
-                    out.putNextEntry(new ZipEntry("DOMDocument.xml"));
-                    out.write(Utf8Helper.getBytes(domDocumentF));
-                    out.putNextEntry(new ZipEntry("PublishSettings.xml"));
-                    out.write(Utf8Helper.getBytes(publishSettingsF));
-                    for (String fileName : files.keySet()) {
-                        out.putNextEntry(new ZipEntry("LIBRARY/" + fileName));
-                        out.write(files.get(fileName));
-                    }
-                    for (String fileName : datfiles.keySet()) {
-                        out.putNextEntry(new ZipEntry("bin/" + fileName));
-                        out.write(datfiles.get(fileName));
-                    }
-                }
-            }, handler).run();
-
-        } else {
-            Path.createDirectorySafe(outDir);
-            writeFile(handler, Utf8Helper.getBytes(domDocumentStr), outDir.getAbsolutePath() + File.separator + "DOMDocument.xml");
-            writeFile(handler, Utf8Helper.getBytes(publishSettingsStr), outDir.getAbsolutePath() + File.separator + "PublishSettings.xml");
-            File libraryDir = new File(outDir.getAbsolutePath() + File.separator + "LIBRARY");
-            libraryDir.mkdir();
-            File binDir = new File(outDir.getAbsolutePath() + File.separator + "bin");
-            binDir.mkdir();
-            for (String fileName : files.keySet()) {
-                writeFile(handler, files.get(fileName), libraryDir.getAbsolutePath() + File.separator + fileName);
-            }
-            for (String fileName : datfiles.keySet()) {
-                writeFile(handler, datfiles.get(fileName), binDir.getAbsolutePath() + File.separator + fileName);
-            }
-            writeFile(handler, Utf8Helper.getBytes("PROXY-CS5"), outfile);
-        }
-        if (useAS3 && settings.exportScript) {
-            try {
-                ScriptExportSettings scriptExportSettings = new ScriptExportSettings(ScriptExportMode.AS, false);
-                swf.exportActionScript(handler, outDir.getAbsolutePath(), scriptExportSettings, parallel, null);
-            } catch (Exception ex) {
-                logger.log(Level.SEVERE, "Error during ActionScript3 export", ex);
-            }
-        }
-
+        // the library files are already written
+        output.putFile("DOMDocument.xml", Utf8Helper.getBytes(domDocumentStr));
+        output.putFile("PublishSettings.xml", Utf8Helper.getBytes(publishSettingsStr));
     }
 
     private static int normHue(double h) {
@@ -4133,4 +4235,30 @@ public class XFLConverter {
             }
         }
     }
+
+    private static class ConvertedSymbol {
+
+        String fileName;
+
+        String itemIcon;
+
+        byte[] data;
+
+        /**
+         * Number of outline color placeholders in data
+         */
+        int colorCount;
+
+        XMLStreamException exception;
+
+        public ConvertedSymbol(String fileName, String itemIcon, byte[] data) {
+            this.fileName = fileName;
+            this.itemIcon = itemIcon;
+            this.data = data;
+        }
+
+        public ConvertedSymbol(XMLStreamException exception) {
+            this.exception = exception;
+        }
+    }
 }
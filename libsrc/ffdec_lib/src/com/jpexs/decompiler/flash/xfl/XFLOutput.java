@@ -0,0 +1,193 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash.xfl;
+
+import com.jpexs.decompiler.flash.AbortRetryIgnoreHandler;
+import com.jpexs.decompiler.flash.RetryTask;
+import com.jpexs.helpers.Path;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Target of the XFL conversion, the files are written to the FLA archive or to
+ * the XFL directory as soon as they are produced, so the library is not kept
+ * in memory.
+ *
+ * Only the names of the written library files are stored, the converter uses
+ * them to check whether a sound was exported.
+ *
+ * @author JPEXS
+ */
+public abstract class XFLOutput implements Closeable {
+
+    public static final String LIBRARY_DIR = "LIBRARY";
+
+    public static final String BIN_DIR = "bin";
+
+    private final Set<String> libraryFiles = ConcurrentHashMap.newKeySet();
+
+    private int binFileCount;
+
+    /**
+     * Creates output to FLA (zip) file
+     *
+     * @param file FLA file
+     * @param handler Abort/retry/ignore handler used when the file cannot be
+     * created
+     * @return Output
+     * @throws IOException On error
+     * @throws InterruptedException On interrupt
+     */
+    public static XFLOutput createZip(File file, AbortRetryIgnoreHandler handler) throws IOException, InterruptedException {
+        return new ZipOutput(file, handler);
+    }
+
+    /**
+     * Creates output to XFL directory
+     *
+     * @param dir Directory
+     * @param handler Abort/retry/ignore handler used when a file cannot be
+     * written
+     * @return Output
+     * @throws IOException When the directory cannot be created
+     */
+    public static XFLOutput createDirectory(File dir, AbortRetryIgnoreHandler handler) throws IOException {
+        return new DirectoryOutput(dir, handler);
+    }
+
+    /**
+     * Writes the file to the root of the document
+     *
+     * @param name File name, for example DOMDocument.xml
+     * @param data Data
+     * @throws IOException On error
+     * @throws InterruptedException On interrupt
+     */
+    public void putFile(String name, byte[] data) throws IOException, InterruptedException {
+        write(name, data);
+    }
+
+    /**
+     * Writes the file to the LIBRARY directory
+     *
+     * @param name File name
+     * @param data Data
+     * @throws IOException On error
+     * @throws InterruptedException On interrupt
+     */
+    public void putLibraryFile(String name, byte[] data) throws IOException, InterruptedException {
+        write(LIBRARY_DIR + "/" + name, data);
+        libraryFiles.add(name);
+    }
+
+    /**
+     * Checks whether the file was written to the LIBRARY directory. Can be
+     * called from any thread.
+     *
+     * @param name File name
+     * @return True when written
+     */
+    public boolean containsLibraryFile(String name) {
+        return libraryFiles.contains(name);
+    }
+
+    /**
+     * Writes the file to the bin directory
+     *
+     * @param name File name
+     * @param data Data
+     * @throws IOException On error
+     * @throws InterruptedException On interrupt
+     */
+    public void putBinFile(String name, byte[] data) throws IOException, InterruptedException {
+        write(BIN_DIR + "/" + name, data);
+        binFileCount++;
+    }
+
+    public int getBinFileCount() {
+        return binFileCount;
+    }
+
+    /**
+     * Writes the file
+     *
+     * @param path Path relative to the document root, separated by /
+     * @param data Data
+     * @throws IOException On error
+     * @throws InterruptedException On interrupt
+     */
+    protected abstract void write(String path, byte[] data) throws IOException, InterruptedException;
+
+    private static class ZipOutput extends XFLOutput {
+
+        private ZipOutputStream out;
+
+        public ZipOutput(File file, AbortRetryIgnoreHandler handler) throws IOException, InterruptedException {
+            new RetryTask(() -> {
+                out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            }, handler).run();
+        }
+
+        @Override
+        protected void write(String path, byte[] data) throws IOException {
+            // an entry cannot be rewritten, so there is no retry
+            out.putNextEntry(new ZipEntry(path));
+            out.write(data);
+            out.closeEntry();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    private static class DirectoryOutput extends XFLOutput {
+
+        private final File dir;
+
+        private final AbortRetryIgnoreHandler handler;
+
+        public DirectoryOutput(File dir, AbortRetryIgnoreHandler handler) throws IOException {
+            this.dir = dir;
+            this.handler = handler;
+            Path.createDirectorySafe(dir);
+            new File(dir, LIBRARY_DIR).mkdir();
+            new File(dir, BIN_DIR).mkdir();
+        }
+
+        @Override
+        protected void write(String path, byte[] data) throws IOException, InterruptedException {
+            File file = new File(dir, path.replace("/", File.separator));
+            new RetryTask(() -> {
+                try (FileOutputStream fos = new FileOutputStream(file)) {
+                    fos.write(data);
+                }
+            }, handler).run();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -47,6 +47,7 @@ import com.jpexs.decompiler.graph.model.TernarOpItem;
 import com.jpexs.decompiler.graph.model.TrueItem;
 import com.jpexs.decompiler.graph.model.UniversalLoopItem;
 import com.jpexs.decompiler.graph.model.WhileItem;
+import com.jpexs.helpers.SharedForkJoinPool;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -604,6 +605,8 @@ public class Graph {
         //TODO: Make this working. :-(
         final boolean newLoopDetection = false;
 
+        checkInterrupted();
+
         if (!newLoopDetection) {
             getLoops(localData, heads.get(0), loops, null);
         } else {
@@ -633,6 +636,8 @@ public class Graph {
          }
          System.err.println("</loops>");
          */
+        checkInterrupted();
+
         //TODO: Make getPrecontinues faster
         getPrecontinues(path, localData, null, heads.get(0), allParts, loops, null);
 
@@ -641,9 +646,13 @@ public class Graph {
          System.err.println(el);
          }
          System.err.println("</loopspre>");//*/
+        checkInterrupted();
+
         List<GraphTargetItem> ret = printGraph(new HashMap<>(), new HashMap<>(), localData, stack, allParts, null, heads.get(0), null, loops, staticOperation, path);
         processIfs(ret);
         finalProcessStack(stack, ret);
+        checkInterrupted();
+
         finalProcessAll(ret, 0, new FinalProcessLocalData());
         return ret;
     }
@@ -724,9 +733,7 @@ public class Graph {
         //For detection based on debug line information
         boolean[] toDelete = new boolean[list.size()];
         for (int i = 0; i < list.size(); i++) {
-            if (Thread.currentThread().isInterrupted()) {
-                throw new InterruptedException();
-            }
+            checkInterrupted();
 
             GraphTargetItem itemI = list.get(i);
             if (itemI instanceof ForItem) {
@@ -1257,6 +1264,8 @@ public class Graph {
             return;
         }
 
+        checkInterrupted();
+
         part = checkPart(null, localData, part, null);
         if (part == null) {
             return;
@@ -1527,9 +1536,7 @@ public class Graph {
     }
 
     protected List<GraphTargetItem> printGraph(Map<GraphPart, List<GraphTargetItem>> partCodes, Map<GraphPart, Integer> partCodePos, Set<GraphPart> visited, BaseLocalData localData, TranslateStack stack, Set<GraphPart> allParts, GraphPart parent, GraphPart part, List<GraphPart> stopPart, List<Loop> loops, List<GraphTargetItem> ret, int staticOperation, String path, int recursionLevel) throws InterruptedException {
-        if (Thread.currentThread().isInterrupted()) {
-            throw new InterruptedException();
-        }
+        checkInterrupted();
         if (stopPart == null) {
             stopPart = new ArrayList<>();
         }
@@ -2257,10 +2264,14 @@ public class Graph {
         return ip;
     }
 
-    private GraphPart makeGraph(GraphPart parent, GraphPath path, GraphSource code, int startip, int lastIp, List<GraphPart> allBlocks, HashMap<Integer, List<Integer>> refs, boolean[] visited2) throws InterruptedException {
-        if (Thread.currentThread().isInterrupted()) {
+    protected static void checkInterrupted() throws InterruptedException {
+        if (Thread.currentThread().isInterrupted() || SharedForkJoinPool.isCancelled()) {
             throw new InterruptedException();
         }
+    }
+
+    private GraphPart makeGraph(GraphPart parent, GraphPath path, GraphSource code, int startip, int lastIp, List<GraphPart> allBlocks, HashMap<Integer, List<Integer>> refs, boolean[] visited2) throws InterruptedException {
+        checkInterrupted();
 
         int ip = startip;
         for (GraphPart p : allBlocks) {
@@ -0,0 +1,508 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.helpers;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Concurrent map with a maximum total weight of values.
+ *
+ * Eviction uses the W-TinyLFU policy: new entries go to a small LRU window,
+ * entries leaving the window compete with the least recently used entry of the
+ * main segmented LRU space and the one with the higher estimated access
+ * frequency stays. Reads are lock free, accesses are recorded to a buffer which
+ * is applied to the policy later.
+ *
+ * @author JPEXS
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public class BoundedCacheMap<K, V> {
+
+    private static final int WINDOW = 0;
+
+    private static final int PROBATION = 1;
+
+    private static final int PROTECTED = 2;
+
+    private static final int READ_BUFFER_DRAIN_THRESHOLD = 32;
+
+    private static final int READ_BUFFER_MAX_SIZE = 256;
+
+    private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+
+    private final ConcurrentLinkedQueue<Node<K, V>> readBuffer = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger readBufferSize = new AtomicInteger();
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final CacheWeigher<? super V> weigher;
+
+    private final AccessOrderQueue<K, V> windowQueue = new AccessOrderQueue<>();
+
+    private final AccessOrderQueue<K, V> probationQueue = new AccessOrderQueue<>();
+
+    private final AccessOrderQueue<K, V> protectedQueue = new AccessOrderQueue<>();
+
+    private final FrequencySketch sketch = new FrequencySketch();
+
+    private final long maximumWeight;
+
+    private final long windowMaximum;
+
+    private final long protectedMaximum;
+
+    private long windowWeight;
+
+    private long protectedWeight;
+
+    private volatile long weightedSize;
+
+    private volatile long evictionCount;
+
+    private volatile long evictionWeight;
+
+    /**
+     * Constructs the map
+     *
+     * @param maximumWeight Maximum total weight of the values
+     * @param weigher Weigher of the values
+     */
+    public BoundedCacheMap(long maximumWeight, CacheWeigher<? super V> weigher) {
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("maximumWeight must be positive");
+        }
+
+        this.maximumWeight = maximumWeight;
+        this.weigher = weigher;
+        windowMaximum = Math.max(1, maximumWeight / 100);
+        protectedMaximum = (long) ((maximumWeight - windowMaximum) * 0.8);
+    }
+
+    public boolean containsKey(K key) {
+        return data.containsKey(key);
+    }
+
+    public V get(K key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            return null;
+        }
+
+        afterRead(node);
+        return node.value;
+    }
+
+    /**
+     * Puts the value to the map. Values heavier than the maximum weight are
+     * not stored.
+     *
+     * @param key Key
+     * @param value Value
+     */
+    public void put(K key, V value) {
+        long weight = Math.max(1, weigher.weigh(value));
+        evictionLock.lock();
+        try {
+            drainReadBuffer();
+            Node<K, V> node = data.get(key);
+            if (weight > maximumWeight) {
+                if (node != null) {
+                    removeNode(node);
+                }
+
+                return;
+            }
+
+            if (node != null) {
+                node.value = value;
+                long delta = weight - node.weight;
+                node.weight = weight;
+                weightedSize += delta;
+                if (node.queue == WINDOW) {
+                    windowWeight += delta;
+                } else if (node.queue == PROTECTED) {
+                    protectedWeight += delta;
+                }
+
+                onAccess(node);
+            } else {
+                node = new Node<>(key, value, weight);
+                data.put(key, node);
+                windowQueue.add(node);
+                windowWeight += weight;
+                weightedSize += weight;
+                sketch.ensureCapacity(data.size());
+                sketch.increment(key);
+            }
+
+            evict();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public void remove(K key) {
+        evictionLock.lock();
+        try {
+            Node<K, V> node = data.get(key);
+            if (node != null) {
+                removeNode(node);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Removes all entries whose key matches the filter
+     *
+     * @param filter Filter of the keys
+     */
+    public void removeIf(Predicate<? super K> filter) {
+        evictionLock.lock();
+        try {
+            drainReadBuffer();
+            for (Node<K, V> node : data.values()) {
+                if (filter.test(node.key)) {
+                    removeNode(node);
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public void clear() {
+        evictionLock.lock();
+        try {
+            while (readBuffer.poll() != null) {
+                readBufferSize.decrementAndGet();
+            }
+
+            for (Node<K, V> node : data.values()) {
+                node.alive = false;
+            }
+
+            data.clear();
+            windowQueue.clear();
+            probationQueue.clear();
+            protectedQueue.clear();
+            windowWeight = 0;
+            protectedWeight = 0;
+            weightedSize = 0;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public int size() {
+        return data.size();
+    }
+
+    /**
+     * Gets the total weight of the stored values
+     *
+     * @return Weight
+     */
+    public long getWeightedSize() {
+        return weightedSize;
+    }
+
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public long getEvictionWeight() {
+        return evictionWeight;
+    }
+
+    private void afterRead(Node<K, V> node) {
+        if (readBufferSize.get() >= READ_BUFFER_MAX_SIZE) {
+            // the buffer is lossy, the policy does not need every access
+            return;
+        }
+
+        readBuffer.offer(node);
+        if (readBufferSize.incrementAndGet() >= READ_BUFFER_DRAIN_THRESHOLD && evictionLock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void drainReadBuffer() {
+        Node<K, V> node;
+        while ((node = readBuffer.poll()) != null) {
+            readBufferSize.decrementAndGet();
+            if (node.alive) {
+                onAccess(node);
+            }
+        }
+    }
+
+    private void onAccess(Node<K, V> node) {
+        sketch.increment(node.key);
+        switch (node.queue) {
+            case WINDOW:
+                windowQueue.moveToBack(node);
+                break;
+            case PROBATION:
+                probationQueue.remove(node);
+                node.queue = PROTECTED;
+                protectedQueue.add(node);
+                protectedWeight += node.weight;
+                while (protectedWeight > protectedMaximum) {
+                    Node<K, V> demoted = protectedQueue.poll();
+                    protectedWeight -= demoted.weight;
+                    demoted.queue = PROBATION;
+                    probationQueue.add(demoted);
+                }
+                break;
+            case PROTECTED:
+                protectedQueue.moveToBack(node);
+                break;
+        }
+    }
+
+    private void evict() {
+        int candidates = 0;
+        while (windowWeight > windowMaximum) {
+            Node<K, V> node = windowQueue.poll();
+            windowWeight -= node.weight;
+            node.queue = PROBATION;
+            probationQueue.add(node);
+            candidates++;
+        }
+
+        while (weightedSize > maximumWeight) {
+            Node<K, V> victim = probationQueue.first;
+            if (victim == null) {
+                victim = protectedQueue.first != null ? protectedQueue.first : windowQueue.first;
+                evictNode(victim);
+                continue;
+            }
+
+            // the entries which just left the window are at the end of the probation queue
+            Node<K, V> candidate = candidates > 0 ? probationQueue.last : null;
+            if (candidate == null || candidate == victim) {
+                if (candidate != null) {
+                    candidates--;
+                }
+
+                evictNode(victim);
+            } else if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                evictNode(victim);
+            } else {
+                candidates--;
+                evictNode(candidate);
+            }
+        }
+    }
+
+    private void evictNode(Node<K, V> node) {
+        removeNode(node);
+        evictionCount++;
+        evictionWeight += node.weight;
+    }
+
+    private void removeNode(Node<K, V> node) {
+        data.remove(node.key, node);
+        switch (node.queue) {
+            case WINDOW:
+                windowQueue.remove(node);
+                windowWeight -= node.weight;
+                break;
+            case PROBATION:
+                probationQueue.remove(node);
+                break;
+            case PROTECTED:
+                protectedQueue.remove(node);
+                protectedWeight -= node.weight;
+                break;
+        }
+
+        weightedSize -= node.weight;
+        node.alive = false;
+    }
+
+    private static final class Node<K, V> {
+
+        final K key;
+
+        volatile V value;
+
+        volatile boolean alive = true;
+
+        long weight;
+
+        int queue = WINDOW;
+
+        Node<K, V> prev;
+
+        Node<K, V> next;
+
+        Node(K key, V value, long weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Doubly linked list of nodes, the least recently used node is the first
+     */
+    private static final class AccessOrderQueue<K, V> {
+
+        Node<K, V> first;
+
+        Node<K, V> last;
+
+        void add(Node<K, V> node) {
+            node.prev = last;
+            node.next = null;
+            if (last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+
+            last = node;
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.prev == null) {
+                first = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+
+            if (node.next == null) {
+                last = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToBack(Node<K, V> node) {
+            if (node != last) {
+                remove(node);
+                add(node);
+            }
+        }
+
+        Node<K, V> poll() {
+            Node<K, V> node = first;
+            if (node != null) {
+                remove(node);
+            }
+
+            return node;
+        }
+
+        void clear() {
+            first = null;
+            last = null;
+        }
+    }
+
+    /**
+     * Count-min sketch of 4-bit access counters. The counters are halved
+     * periodically, so the old accesses are forgotten.
+     */
+    private static final class FrequencySketch {
+
+        private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private static final int MAXIMUM_LENGTH = 1 << 24;
+
+        private long[] table = new long[64];
+
+        private int additions;
+
+        void ensureCapacity(int size) {
+            if (size <= table.length || table.length >= MAXIMUM_LENGTH) {
+                return;
+            }
+
+            table = new long[Math.min(Integer.highestOneBit(size - 1) << 1, MAXIMUM_LENGTH)];
+            additions = 0;
+        }
+
+        int frequency(Object key) {
+            int hash = spread(key.hashCode());
+            int start = (hash & 3) << 2;
+            int frequency = 15;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i);
+                int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+                frequency = Math.min(frequency, count);
+            }
+
+            return frequency;
+        }
+
+        void increment(Object key) {
+            int hash = spread(key.hashCode());
+            int start = (hash & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i);
+                int offset = (start + i) << 2;
+                if (((table[index] >>> offset) & 0xfL) != 0xfL) {
+                    table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+
+            if (added && ++additions >= 10 * table.length) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & RESET_MASK;
+                }
+
+                additions /= 2;
+            }
+        }
+
+        private int indexOf(int hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return ((int) h) & (table.length - 1);
+        }
+
+        private static int spread(int x) {
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            return (x >>> 16) ^ x;
+        }
+    }
+}
@@ -16,6 +16,11 @@
 package com.jpexs.helpers;
 
 import com.jpexs.decompiler.flash.SWFInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  *
@@ -27,18 +32,32 @@ public class ByteArrayRange {
 
     private final byte[] array;
 
+    /**
+     * Backing buffer (for example memory mapped file) when there is no array
+     */
+    private final ByteBuffer buffer;
+
     private final int pos;
 
     private final int length;
 
     public ByteArrayRange(byte[] array) {
         this.array = array;
+        this.buffer = null;
         this.pos = 0;
         this.length = array.length;
     }
 
     public ByteArrayRange(byte[] array, int pos, int length) {
         this.array = array;
+        this.buffer = null;
+        this.pos = pos;
+        this.length = length;
+    }
+
+    public ByteArrayRange(ByteBuffer buffer, int pos, int length) {
+        this.array = null;
+        this.buffer = buffer;
         this.pos = pos;
         this.length = length;
     }
@@ -49,14 +68,29 @@ public class ByteArrayRange {
             array[i] = (byte) Integer.parseInt(hexString.substring(i * 2, i * 2 + 2), 16);
         }
         this.array = array;
+        this.buffer = null;
         this.pos = 0;
         this.length = array.length;
     }
 
+    /**
+     * Gets the backing array. Check hasArray() first, ranges backed by a
+     * ByteBuffer have no array.
+     *
+     * @return Backing array or null
+     */
     public byte[] getArray() {
         return array;
     }
 
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    public boolean hasArray() {
+        return array != null;
+    }
+
     public int getPos() {
         return pos;
     }
@@ -66,22 +100,71 @@ public class ByteArrayRange {
     }
 
     public byte get(int index) {
+        if (array == null) {
+            return buffer.get(pos + index);
+        }
+
         return array[pos + index];
     }
 
     public byte[] getRangeData() {
-        byte[] data = new byte[length];
-        System.arraycopy(array, pos, data, 0, length);
-        return data;
+        return getRangeData(0, length);
     }
 
     public byte[] getRangeData(int pos, int length) {
         byte[] data = new byte[length];
-        System.arraycopy(array, this.pos + pos, data, 0, length);
+        if (array == null) {
+            ByteBuffer buf = buffer.duplicate();
+            buf.position(this.pos + pos);
+            buf.get(data);
+        } else {
+            System.arraycopy(array, this.pos + pos, data, 0, length);
+        }
+
         return data;
     }
 
     public ByteArrayRange getSubRange(int pos, int length) {
+        if (array == null) {
+            return new ByteArrayRange(buffer, this.pos + pos, length);
+        }
+
         return new ByteArrayRange(array, this.pos + pos, length);
     }
+
+    /**
+     * Gets stream of the range data. Stream position 0 is the start of the
+     * range.
+     *
+     * @return Input stream
+     */
+    public InputStream getInputStream() {
+        if (array != null) {
+            return new ByteArrayInputStream(array, pos, length);
+        }
+
+        try {
+            return new MemoryInputStream(buffer, pos, length);
+        } catch (IOException ex) {
+            throw new Error("This should never happen.", ex);
+        }
+    }
+
+    public void writeTo(OutputStream os) throws IOException {
+        if (array != null) {
+            os.write(array, pos, length);
+            return;
+        }
+
+        ByteBuffer buf = buffer.duplicate();
+        buf.position(pos);
+        byte[] chunk = new byte[Math.min(length, 64 * 1024)];
+        int remaining = length;
+        while (remaining > 0) {
+            int cnt = Math.min(remaining, chunk.length);
+            buf.get(chunk, 0, cnt);
+            os.write(chunk, 0, cnt);
+            remaining -= cnt;
+        }
+    }
 }
@@ -15,15 +15,21 @@
  * License along with this library. */
 package com.jpexs.helpers;
 
+import com.jpexs.decompiler.flash.configuration.ConfigurationItem;
 import com.jpexs.decompiler.flash.helpers.Freed;
+import com.jpexs.helpers.stat.Counter;
+import com.jpexs.helpers.stat.Metrics;
 import java.io.File;
 import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  *
@@ -33,9 +39,25 @@ import java.util.WeakHashMap;
  */
 public class Cache<K, V> implements Freed {
 
-    private Map<K, V> cache;
+    private volatile Map<K, V> cache;
 
-    private static final List<WeakReference<Cache>> instances = new ArrayList<>();
+    private volatile BoundedCacheMap<OwnedKey, Object> boundedCache;
+
+    private static final List<WeakReference<Cache<?, ?>>> instances = new ArrayList<>();
+
+    /**
+     * References of the collected instances, their entries are removed from
+     * the shared limited caches
+     */
+    private static final ReferenceQueue<Cache<?, ?>> collectedInstances = new ReferenceQueue<>();
+
+    private static final AtomicLong lastId = new AtomicLong();
+
+    /**
+     * Limited caches shared by all instances with the same name, so the size
+     * limit applies to all open SWFs together
+     */
+    private static final Map<String, BoundedCacheMap<OwnedKey, Object>> boundedCaches = new HashMap<>();
 
     public static final int STORAGE_FILES = 1;
 
@@ -47,17 +69,35 @@ public class Cache<K, V> implements Freed {
 
     private final String name;
 
+    /**
+     * Identifier of the instance in the keys of the shared limited cache, the
+     * keys do not reference the instance, so it can be collected
+     */
+    private final long id = lastId.incrementAndGet();
+
+    private final ConfigurationItem<Integer> maxSize;
+
+    private final CacheWeigher<? super V> weigher;
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    /**
+     * Hits of all caches with the same name, for the metrics registry
+     */
+    private final Counter metricsHitCount;
+
+    private final Counter metricsMissCount;
+
     static {
         Runtime.getRuntime().addShutdownHook(new Thread() {
 
             @Override
             public void run() {
-                for (WeakReference<Cache> cw : instances) {
-                    Cache c = cw.get();
-                    if (c != null) {
-                        c.clear();
-                        c.free();
-                    }
+                for (Cache<?, ?> c : getInstances()) {
+                    c.clear();
+                    c.free();
                 }
             }
 
@@ -65,20 +105,80 @@ public class Cache<K, V> implements Freed {
     }
 
     public static <K, V> Cache<K, V> getInstance(boolean weak, boolean memoryOnly, String name) {
-        Cache<K, V> instance = new Cache<>(weak, memoryOnly, name);
-        instances.add(new WeakReference<>(instance));
+        return getInstance(weak, memoryOnly, name, null, null);
+    }
+
+    /**
+     * Gets cache instance which is limited by size when the maxSize
+     * configuration item is greater than zero. The limited cache is always
+     * stored in memory and the least valuable entries are evicted. The limit
+     * is shared by all instances with the same name. Keys of the limited cache
+     * are not weak, they are held until they are evicted, removed by clear or
+     * until the instance is garbage collected.
+     *
+     * @param <K> Key type
+     * @param <V> Value type
+     * @param weak Use weak keys when not limited
+     * @param memoryOnly Do not use file storage when not limited
+     * @param name Name of the cache
+     * @param maxSize Maximum size in megabytes, 0 = unlimited
+     * @param weigher Computes size of the values in bytes
+     * @return Cache instance
+     */
+    public static <K, V> Cache<K, V> getInstance(boolean weak, boolean memoryOnly, String name, ConfigurationItem<Integer> maxSize, CacheWeigher<? super V> weigher) {
+        purgeCollected();
+        Cache<K, V> instance = new Cache<>(weak, memoryOnly, name, maxSize, weigher);
+        synchronized (instances) {
+            instances.add(new InstanceReference(instance, collectedInstances));
+        }
+
         return instance;
     }
 
+    public static List<Cache<?, ?>> getInstances() {
+        List<Cache<?, ?>> result = new ArrayList<>();
+        synchronized (instances) {
+            for (WeakReference<Cache<?, ?>> cw : instances) {
+                Cache<?, ?> c = cw.get();
+                if (c != null) {
+                    result.add(c);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Removes the entries of the collected instances from the shared limited
+     * caches
+     */
+    private static void purgeCollected() {
+        InstanceReference ref;
+        while ((ref = (InstanceReference) collectedInstances.poll()) != null) {
+            synchronized (instances) {
+                instances.remove(ref);
+            }
+
+            BoundedCacheMap<OwnedKey, Object> bounded;
+            synchronized (boundedCaches) {
+                bounded = boundedCaches.get(ref.name);
+            }
+
+            if (bounded != null) {
+                long ownerId = ref.id;
+                bounded.removeIf((OwnedKey k) -> k.ownerId == ownerId);
+            }
+        }
+    }
+
     private static int storageType = STORAGE_FILES;
 
     public static void clearAll() {
-        for (WeakReference<Cache> cw : instances) {
-            Cache c = cw.get();
-            if (c != null) {
-                c.clear();
-                c.initCache();
-            }
+        purgeCollected();
+        for (Cache<?, ?> c : getInstances()) {
+            c.clear();
+            c.initCache();
         }
     }
 
@@ -103,7 +203,20 @@ public class Cache<K, V> implements Freed {
         return storageType;
     }
 
-    private void initCache() {
+    private synchronized void initCache() {
+        Integer maxSizeMb = maxSize == null ? null : maxSize.get();
+        if (maxSizeMb != null && maxSizeMb > 0) {
+            boundedCache = getBoundedCache(name, (long) maxSizeMb * 1024 * 1024, weigher);
+
+            if (this.cache instanceof Freed) {
+                ((Freed) this.cache).free();
+            }
+
+            this.cache = null;
+            return;
+        }
+
+        boundedCache = null;
         int thisStorageType = storageType;
         if (memoryOnly) {
             thisStorageType = STORAGE_MEMORY;
@@ -129,33 +242,196 @@ public class Cache<K, V> implements Freed {
         this.cache = newCache;
     }
 
-    private Cache(boolean weak, boolean memoryOnly, String name) {
+    @SuppressWarnings("unchecked")
+    private static BoundedCacheMap<OwnedKey, Object> getBoundedCache(String name, long maxWeight, CacheWeigher<?> weigher) {
+        synchronized (boundedCaches) {
+            BoundedCacheMap<OwnedKey, Object> result = boundedCaches.get(name);
+            if (result == null || result.getMaximumWeight() != maxWeight) {
+                result = new BoundedCacheMap<>(maxWeight, (CacheWeigher<Object>) weigher);
+                boundedCaches.put(name, result);
+                Metrics.gauge("cache." + name + ".weight", result::getWeightedSize);
+            }
+
+            return result;
+        }
+    }
+
+    private Cache(boolean weak, boolean memoryOnly, String name, ConfigurationItem<Integer> maxSize, CacheWeigher<? super V> weigher) {
         this.weak = weak;
         this.name = name;
         this.memoryOnly = memoryOnly;
+        this.maxSize = maxSize;
+        this.weigher = weigher;
+        metricsHitCount = Metrics.counter("cache." + name + ".hits");
+        metricsMissCount = Metrics.counter("cache." + name + ".misses");
         initCache();
     }
 
-    public synchronized boolean contains(K key) {
-        return cache.containsKey(key);
+    public boolean contains(K key) {
+        BoundedCacheMap<OwnedKey, Object> bounded = boundedCache;
+        if (bounded != null) {
+            return bounded.containsKey(new OwnedKey(id, key));
+        }
+
+        synchronized (this) {
+            return cache.containsKey(key);
+        }
     }
 
-    public synchronized void clear() {
-        cache.clear();
+    public void clear() {
+        BoundedCacheMap<OwnedKey, Object> bounded = boundedCache;
+        if (bounded != null) {
+            bounded.removeIf((OwnedKey k) -> k.ownerId == id);
+            return;
+        }
+
+        synchronized (this) {
+            cache.clear();
+        }
+    }
+
+    public void remove(K key) {
+        BoundedCacheMap<OwnedKey, Object> bounded = boundedCache;
+        if (bounded != null) {
+            bounded.remove(new OwnedKey(id, key));
+            return;
+        }
+
+        synchronized (this) {
+            if (cache.containsKey(key)) {
+                cache.remove(key);
+            }
+        }
     }
 
-    public synchronized void remove(K key) {
-        if (cache.containsKey(key)) {
-            cache.remove(key);
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        V result;
+        BoundedCacheMap<OwnedKey, Object> bounded = boundedCache;
+        if (bounded != null) {
+            result = (V) bounded.get(new OwnedKey(id, key));
+        } else {
+            synchronized (this) {
+                result = cache.get(key);
+            }
+        }
+
+        if (result == null) {
+            missCount.increment();
+            metricsMissCount.increment();
+        } else {
+            hitCount.increment();
+            metricsHitCount.increment();
         }
+
+        return result;
+    }
+
+    public void put(K key, V value) {
+        BoundedCacheMap<OwnedKey, Object> bounded = boundedCache;
+        if (bounded != null) {
+            bounded.put(new OwnedKey(id, key), value);
+            return;
+        }
+
+        synchronized (this) {
+            cache.put(key, value);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isBounded() {
+        return boundedCache != null;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Gets the ratio of successful get calls
+     *
+     * @return Hit rate between 0 and 1
+     */
+    public double getHitRate() {
+        long hits = hitCount.sum();
+        long total = hits + missCount.sum();
+        return total == 0 ? 1.0 : (double) hits / total;
+    }
+
+    /**
+     * Gets number of entries evicted because of the size limit from all caches
+     * with the same name
+     *
+     * @return Eviction count, 0 when the cache is not limited
+     */
+    public long getEvictionCount() {
+        BoundedCacheMap<OwnedKey, Object> bounded = boundedCache;
+        return bounded == null ? 0 : bounded.getEvictionCount();
     }
 
-    public synchronized V get(K key) {
-        return cache.get(key);
+    /**
+     * Gets total size of the cached values of all caches with the same name in
+     * bytes
+     *
+     * @return Size, -1 when the cache is not limited
+     */
+    public long getWeightedSize() {
+        BoundedCacheMap<OwnedKey, Object> bounded = boundedCache;
+        return bounded == null ? -1 : bounded.getWeightedSize();
     }
 
-    public synchronized void put(K key, V value) {
-        cache.put(key, value);
+    /**
+     * Weak reference of an instance which remembers what to purge
+     */
+    private static final class InstanceReference extends WeakReference<Cache<?, ?>> {
+
+        private final String name;
+
+        private final long id;
+
+        public InstanceReference(Cache<?, ?> instance, ReferenceQueue<Cache<?, ?>> queue) {
+            super(instance, queue);
+            name = instance.name;
+            id = instance.id;
+        }
+    }
+
+    /**
+     * Key of the shared limited cache
+     */
+    private static final class OwnedKey {
+
+        private final long ownerId;
+
+        private final Object key;
+
+        public OwnedKey(long ownerId, Object key) {
+            this.ownerId = ownerId;
+            this.key = key;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(ownerId) + key.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof OwnedKey)) {
+                return false;
+            }
+
+            OwnedKey other = (OwnedKey) obj;
+            return ownerId == other.ownerId && key.equals(other.key);
+        }
     }
 
     @Override
@@ -0,0 +1,141 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.helpers;
+
+import java.util.Arrays;
+
+/**
+ * List of primitive doubles with a reverse index. Values are compared by their
+ * bits like in Double.equals, so NaN can be found and 0.0 differs from -0.0.
+ *
+ * @author JPEXS
+ */
+public class DoubleHashArrayList extends OpenHashArrayList<Double> {
+
+    private double[] values;
+
+    public DoubleHashArrayList() {
+        values = new double[10];
+    }
+
+    public DoubleHashArrayList(DoubleHashArrayList list) {
+        values = Arrays.copyOf(list.values, Math.max(list.size, 10));
+        size = list.size;
+        ensureCapacity(size);
+        for (int i = 1; i < size; i++) {
+            indexPut(i);
+        }
+    }
+
+    public double getDouble(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+
+        return values[index];
+    }
+
+    public int addDouble(double value) {
+        if (size == values.length) {
+            growStorage(size + 1);
+        }
+
+        values[size] = value;
+        size++;
+        indexPut(size - 1);
+        return size - 1;
+    }
+
+    public void setDouble(int index, double value) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+
+        indexRemove(index);
+        values[index] = value;
+        indexPut(index);
+    }
+
+    public int indexOfDouble(double value) {
+        int slot = mix(Double.doubleToLongBits(value)) & mask;
+        int p;
+        while ((p = table[slot]) != 0) {
+            if (Double.doubleToLongBits(values[p - 1]) == Double.doubleToLongBits(value)) {
+                return p - 1;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    @Override
+    public Double get(int index) {
+        return getDouble(index);
+    }
+
+    /**
+     * Adds the value, null is stored as 0
+     *
+     * @param value Value
+     * @return True
+     */
+    @Override
+    public boolean add(Double value) {
+        addDouble(value == null ? 0 : value);
+        return true;
+    }
+
+    @Override
+    public Double set(int index, Double value) {
+        double old = getDouble(index);
+        setDouble(index, value == null ? 0 : value);
+        return old;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof Double)) {
+            return -1;
+        }
+
+        return indexOfDouble((Double) o);
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        clearIndex();
+    }
+
+    @Override
+    protected int hashAt(int position) {
+        return Double.hashCode(values[position]);
+    }
+
+    @Override
+    protected boolean equalsAt(int position1, int position2) {
+        return Double.doubleToLongBits(values[position1]) == Double.doubleToLongBits(values[position2]);
+    }
+
+    @Override
+    protected void growStorage(int capacity) {
+        if (capacity > values.length) {
+            values = Arrays.copyOf(values, grownCapacity(values.length, capacity));
+        }
+    }
+}
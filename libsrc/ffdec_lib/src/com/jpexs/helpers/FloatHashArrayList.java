@@ -0,0 +1,141 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.helpers;
+
+import java.util.Arrays;
+
+/**
+ * List of primitive floats with a reverse index. Values are compared by their
+ * bits like in Float.equals, so NaN can be found and 0.0 differs from -0.0.
+ *
+ * @author JPEXS
+ */
+public class FloatHashArrayList extends OpenHashArrayList<Float> {
+
+    private float[] values;
+
+    public FloatHashArrayList() {
+        values = new float[10];
+    }
+
+    public FloatHashArrayList(FloatHashArrayList list) {
+        values = Arrays.copyOf(list.values, Math.max(list.size, 10));
+        size = list.size;
+        ensureCapacity(size);
+        for (int i = 1; i < size; i++) {
+            indexPut(i);
+        }
+    }
+
+    public float getFloat(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+
+        return values[index];
+    }
+
+    public int addFloat(float value) {
+        if (size == values.length) {
+            growStorage(size + 1);
+        }
+
+        values[size] = value;
+        size++;
+        indexPut(size - 1);
+        return size - 1;
+    }
+
+    public void setFloat(int index, float value) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+
+        indexRemove(index);
+        values[index] = value;
+        indexPut(index);
+    }
+
+    public int indexOfFloat(float value) {
+        int slot = mix(Float.floatToIntBits(value)) & mask;
+        int p;
+        while ((p = table[slot]) != 0) {
+            if (Float.floatToIntBits(values[p - 1]) == Float.floatToIntBits(value)) {
+                return p - 1;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    @Override
+    public Float get(int index) {
+        return getFloat(index);
+    }
+
+    /**
+     * Adds the value, null is stored as 0
+     *
+     * @param value Value
+     * @return True
+     */
+    @Override
+    public boolean add(Float value) {
+        addFloat(value == null ? 0 : value);
+        return true;
+    }
+
+    @Override
+    public Float set(int index, Float value) {
+        float old = getFloat(index);
+        setFloat(index, value == null ? 0 : value);
+        return old;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof Float)) {
+            return -1;
+        }
+
+        return indexOfFloat((Float) o);
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        clearIndex();
+    }
+
+    @Override
+    protected int hashAt(int position) {
+        return Float.hashCode(values[position]);
+    }
+
+    @Override
+    protected boolean equalsAt(int position1, int position2) {
+        return Float.floatToIntBits(values[position1]) == Float.floatToIntBits(values[position2]);
+    }
+
+    @Override
+    protected void growStorage(int capacity) {
+        if (capacity > values.length) {
+            values = Arrays.copyOf(values, grownCapacity(values.length, capacity));
+        }
+    }
+}
@@ -704,7 +704,7 @@ public class Helper {
     }
 
     public static byte[] readStream(InputStream is) {
-        if (is instanceof MemoryInputStream) {
+        if (is instanceof MemoryInputStream && ((MemoryInputStream) is).hasArray()) {
             return ((MemoryInputStream) is).getAllRead();
         }
 
@@ -0,0 +1,140 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.helpers;
+
+import java.util.Arrays;
+
+/**
+ * List of primitive longs with a reverse index.
+ *
+ * @author JPEXS
+ */
+public class LongHashArrayList extends OpenHashArrayList<Long> {
+
+    private long[] values;
+
+    public LongHashArrayList() {
+        values = new long[10];
+    }
+
+    public LongHashArrayList(LongHashArrayList list) {
+        values = Arrays.copyOf(list.values, Math.max(list.size, 10));
+        size = list.size;
+        ensureCapacity(size);
+        for (int i = 1; i < size; i++) {
+            indexPut(i);
+        }
+    }
+
+    public long getLong(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+
+        return values[index];
+    }
+
+    public int addLong(long value) {
+        if (size == values.length) {
+            growStorage(size + 1);
+        }
+
+        values[size] = value;
+        size++;
+        indexPut(size - 1);
+        return size - 1;
+    }
+
+    public void setLong(int index, long value) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+
+        indexRemove(index);
+        values[index] = value;
+        indexPut(index);
+    }
+
+    public int indexOfLong(long value) {
+        int slot = mix(value) & mask;
+        int p;
+        while ((p = table[slot]) != 0) {
+            if (values[p - 1] == value) {
+                return p - 1;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    @Override
+    public Long get(int index) {
+        return getLong(index);
+    }
+
+    /**
+     * Adds the value, null is stored as 0
+     *
+     * @param value Value
+     * @return True
+     */
+    @Override
+    public boolean add(Long value) {
+        addLong(value == null ? 0 : value);
+        return true;
+    }
+
+    @Override
+    public Long set(int index, Long value) {
+        long old = getLong(index);
+        setLong(index, value == null ? 0 : value);
+        return old;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof Long)) {
+            return -1;
+        }
+
+        return indexOfLong((Long) o);
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        clearIndex();
+    }
+
+    @Override
+    protected int hashAt(int position) {
+        return Long.hashCode(values[position]);
+    }
+
+    @Override
+    protected boolean equalsAt(int position1, int position2) {
+        return values[position1] == values[position2];
+    }
+
+    @Override
+    protected void growStorage(int capacity) {
+        if (capacity > values.length) {
+            values = Arrays.copyOf(values, grownCapacity(values.length, capacity));
+        }
+    }
+}
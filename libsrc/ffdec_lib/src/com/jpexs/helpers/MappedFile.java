@@ -0,0 +1,96 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.helpers;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Read only file mapped to memory in parts, so files larger than 2 GB can be
+ * accessed.
+ *
+ * Streams are created over shared segments of 1 GB which start every 512 MB, so
+ * each stream can read at least 512 MB. The mapped buffers stay valid after the
+ * file is closed.
+ *
+ * @author JPEXS
+ */
+public class MappedFile implements Closeable {
+
+    private static final long SEGMENT_STEP = 512 * 1024 * 1024;
+
+    private static final long SEGMENT_SIZE = 1024 * 1024 * 1024;
+
+    private final RandomAccessFile raf;
+
+    private final FileChannel channel;
+
+    private final long length;
+
+    private final Map<Long, ByteBuffer> segments = new HashMap<>();
+
+    public MappedFile(File file) throws IOException {
+        raf = new RandomAccessFile(file, "r");
+        channel = raf.getChannel();
+        length = channel.size();
+    }
+
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Maps part of the file
+     *
+     * @param offset Offset in the file
+     * @param length Length
+     * @return Read only buffer
+     * @throws IOException On I/O error
+     */
+    public ByteBuffer map(long offset, int length) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    }
+
+    /**
+     * Gets stream which starts at the offset
+     *
+     * @param offset Offset in the file
+     * @return Stream of at least 512 MB or to the end of the file
+     * @throws IOException On I/O error
+     */
+    public synchronized MemoryInputStream getStream(long offset) throws IOException {
+        long segmentStart = offset / SEGMENT_STEP * SEGMENT_STEP;
+        ByteBuffer segment = segments.get(segmentStart);
+        if (segment == null) {
+            segment = map(segmentStart, (int) Math.min(SEGMENT_SIZE, length - segmentStart));
+            segments.put(segmentStart, segment);
+        }
+
+        int startPos = (int) (offset - segmentStart);
+        return new MemoryInputStream(segment, startPos, segment.limit() - startPos);
+    }
+
+    @Override
+    public void close() throws IOException {
+        raf.close();
+    }
+}
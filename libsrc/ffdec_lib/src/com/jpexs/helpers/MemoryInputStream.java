@@ -17,6 +17,7 @@ package com.jpexs.helpers;
 
 import com.jpexs.helpers.streams.SeekableInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  *
@@ -26,6 +27,12 @@ public class MemoryInputStream extends SeekableInputStream {
 
     private final byte[] buffer;
 
+    /**
+     * Buffer backing the stream when it does not read from an array, for
+     * example memory mapped file. Each stream has its own duplicate.
+     */
+    private final ByteBuffer byteBuffer;
+
     private long pos;
 
     private int startPos;
@@ -42,6 +49,7 @@ public class MemoryInputStream extends SeekableInputStream {
 
     public MemoryInputStream(byte[] buffer, int startPos, int maxLength) throws IOException {
         this.buffer = buffer;
+        this.byteBuffer = null;
         this.startPos = startPos;
         if (startPos > buffer.length) {
             throw new IOException("Invalid startPos");
@@ -52,14 +60,77 @@ public class MemoryInputStream extends SeekableInputStream {
         }
     }
 
+    public MemoryInputStream(ByteBuffer buffer, int startPos, int maxLength) throws IOException {
+        this.buffer = null;
+        this.byteBuffer = buffer.duplicate();
+        this.startPos = startPos;
+        int bufferLength = buffer.limit();
+        if (startPos > bufferLength) {
+            throw new IOException("Invalid startPos");
+        }
+        this.maxLength = maxLength;
+        if (startPos + maxLength >= bufferLength) {
+            this.maxLength = bufferLength - startPos;
+        }
+    }
+
+    /**
+     * Gets the backing array. Streams backed by a ByteBuffer return a copy of
+     * the whole buffer, check hasArray() to avoid copying.
+     *
+     * @return Backing array
+     */
     public byte[] getAllRead() {
-        return buffer;
+        if (buffer != null) {
+            return buffer;
+        }
+
+        ByteBuffer bb = byteBuffer.duplicate();
+        bb.position(0);
+        byte[] result = new byte[bb.limit()];
+        bb.get(result);
+        return result;
+    }
+
+    public ByteBuffer getBuffer() {
+        return byteBuffer;
+    }
+
+    public boolean hasArray() {
+        return buffer != null;
+    }
+
+    /**
+     * Creates a new stream over the same data with the same start position
+     *
+     * @param maxLength Maximum length of the new stream
+     * @return New stream positioned at 0
+     * @throws IOException
+     */
+    public MemoryInputStream getLimitedStream(int maxLength) throws IOException {
+        if (buffer != null) {
+            return new MemoryInputStream(buffer, startPos, maxLength);
+        }
+
+        return new MemoryInputStream(byteBuffer, startPos, maxLength);
     }
 
     public long getPos() {
         return pos;
     }
 
+    /**
+     * Shortens the stream, for example when the backing data turned out to be
+     * shorter than expected
+     *
+     * @param maxLength New maximum length
+     */
+    public void truncate(int maxLength) {
+        if (maxLength < this.maxLength) {
+            this.maxLength = maxLength;
+        }
+    }
+
     @Override
     public void seek(long pos) throws IOException {
         if (pos < 0) {
@@ -76,7 +147,7 @@ public class MemoryInputStream extends SeekableInputStream {
     @Override
     public int read() throws IOException {
         if (pos < maxLength) {
-            int ret = buffer[(int) pos + startPos] & 0xff;
+            int ret = (buffer != null ? buffer[(int) pos + startPos] : byteBuffer.get((int) pos + startPos)) & 0xff;
             pos++;
             return ret;
         }
@@ -88,7 +159,13 @@ public class MemoryInputStream extends SeekableInputStream {
     public int read(byte[] bytes) throws IOException {
         if (pos < maxLength) {
             int toRead = Math.min(available(), bytes.length);
-            System.arraycopy(buffer, (int) pos + startPos, bytes, 0, toRead);
+            if (buffer != null) {
+                System.arraycopy(buffer, (int) pos + startPos, bytes, 0, toRead);
+            } else {
+                byteBuffer.position((int) pos + startPos);
+                byteBuffer.get(bytes, 0, toRead);
+            }
+
             pos += toRead;
             return toRead;
         }
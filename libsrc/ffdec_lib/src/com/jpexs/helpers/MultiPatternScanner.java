@@ -0,0 +1,345 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.helpers;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Finds occurrences of multiple byte patterns in one pass (Aho-Corasick
+ * automaton).
+ *
+ * The automaton is compiled to a table of 256 transitions per state, so each
+ * byte costs one table lookup regardless of the number of patterns. Bytes which
+ * cannot start a pattern are skipped in a tight loop while the automaton is in
+ * the initial state. Large data is scanned in chunks in the shared fork-join
+ * pool.
+ *
+ * @author JPEXS
+ */
+public class MultiPatternScanner {
+
+    private static final int CHUNK_SIZE = 16 * 1024 * 1024;
+
+    private final byte[][] patterns;
+
+    private final int[] transitions;
+
+    /**
+     * Indices of patterns which end in the state, null = none
+     */
+    private final int[][] outputs;
+
+    private final boolean[] startBytes = new boolean[256];
+
+    private final int maxPatternLength;
+
+    public MultiPatternScanner(byte[]... patterns) {
+        this.patterns = patterns;
+        int maxLength = 0;
+        int stateCount = 1;
+        for (byte[] pattern : patterns) {
+            maxLength = Math.max(maxLength, pattern.length);
+            stateCount += pattern.length;
+        }
+
+        maxPatternLength = maxLength;
+
+        // trie
+        int[] trie = new int[stateCount * 256];
+        Arrays.fill(trie, -1);
+        List<int[]> stateOutputs = new ArrayList<>();
+        stateOutputs.add(null);
+        int states = 1;
+        for (int p = 0; p < patterns.length; p++) {
+            byte[] pattern = patterns[p];
+            if (pattern.length == 0) {
+                continue;
+            }
+
+            startBytes[pattern[0] & 0xff] = true;
+            int state = 0;
+            for (byte b : pattern) {
+                int t = (state << 8) | (b & 0xff);
+                if (trie[t] == -1) {
+                    trie[t] = states++;
+                    stateOutputs.add(null);
+                }
+
+                state = trie[t];
+            }
+
+            stateOutputs.set(state, addOutput(stateOutputs.get(state), p));
+        }
+
+        // failure links, breadth first, missing transitions point to the transitions of the failure state
+        transitions = Arrays.copyOf(trie, states * 256);
+        int[] fail = new int[states];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int b = 0; b < 256; b++) {
+            int next = transitions[b];
+            if (next == -1) {
+                transitions[b] = 0;
+            } else {
+                fail[next] = 0;
+                queue.add(next);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            int state = queue.removeFirst();
+            int[] failOutput = stateOutputs.get(fail[state]);
+            if (failOutput != null) {
+                int[] output = stateOutputs.get(state);
+                for (int p : failOutput) {
+                    output = addOutput(output, p);
+                }
+
+                stateOutputs.set(state, output);
+            }
+
+            for (int b = 0; b < 256; b++) {
+                int t = (state << 8) | b;
+                int next = transitions[t];
+                int failNext = transitions[(fail[state] << 8) | b];
+                if (next == -1) {
+                    transitions[t] = failNext;
+                } else {
+                    fail[next] = failNext;
+                    queue.add(next);
+                }
+            }
+        }
+
+        outputs = stateOutputs.toArray(new int[states][]);
+    }
+
+    private static int[] addOutput(int[] output, int patternIndex) {
+        if (output == null) {
+            return new int[]{patternIndex};
+        }
+
+        int[] ret = Arrays.copyOf(output, output.length + 1);
+        ret[output.length] = patternIndex;
+        return ret;
+    }
+
+    public byte[] getPattern(int index) {
+        return patterns[index];
+    }
+
+    public int getMaxPatternLength() {
+        return maxPatternLength;
+    }
+
+    /**
+     * Scans part of the buffer. The state can be passed to the next call, so
+     * data read in multiple blocks is scanned like one stream.
+     *
+     * @param buffer Buffer
+     * @param from Start index in the buffer
+     * @param to End index in the buffer (exclusive)
+     * @param bufferOffset Offset of the buffer index 0 in the scanned data
+     * @param state State returned by the previous call or 0 at start
+     * @param matches Found matches are added to this list
+     * @return State after the last scanned byte
+     */
+    public int scan(ByteBuffer buffer, int from, int to, long bufferOffset, int state, List<Match> matches) {
+        int i = from;
+        while (i < to) {
+            if (state == 0) {
+                while (i < to && !startBytes[buffer.get(i) & 0xff]) {
+                    i++;
+                }
+
+                if (i == to) {
+                    break;
+                }
+            }
+
+            state = transitions[(state << 8) | (buffer.get(i) & 0xff)];
+            int[] output = outputs[state];
+            if (output != null) {
+                for (int p : output) {
+                    int length = patterns[p].length;
+                    matches.add(new Match(bufferOffset + i - length + 1, length, p));
+                }
+            }
+
+            i++;
+        }
+
+        return state;
+    }
+
+    /**
+     * Scans the whole buffer. Large buffers are scanned in parallel.
+     *
+     * @param buffer Buffer
+     * @param listener Progress listener or null
+     * @return Matches ordered by offset
+     * @throws InterruptedIOException On interrupt
+     */
+    public List<Match> scan(final ByteBuffer buffer, ProgressListener listener) throws InterruptedIOException {
+        try {
+            return scanChunks(buffer.limit(), (long start, long end) -> {
+                List<Match> matches = new ArrayList<>();
+                scan(buffer, (int) start, (int) end, 0, 0, matches);
+                return matches;
+            }, listener);
+        } catch (InterruptedIOException ex) {
+            throw ex;
+        } catch (IOException ex) {
+            // Buffer reads do not throw IOException. This should never happen
+            throw new Error(ex);
+        }
+    }
+
+    /**
+     * Scans the file. The file is mapped to memory in chunks which are scanned
+     * in parallel, so the file can be larger than 2 GB.
+     *
+     * @param file File
+     * @param listener Progress listener or null
+     * @return Matches ordered by offset
+     * @throws IOException On I/O error
+     */
+    public List<Match> scan(final MappedFile file, ProgressListener listener) throws IOException {
+        return scanChunks(file.length(), (long start, long end) -> {
+            List<Match> matches = new ArrayList<>();
+            ByteBuffer buffer = file.map(start, (int) (end - start));
+            scan(buffer, 0, buffer.limit(), start, 0, matches);
+            return matches;
+        }, listener);
+    }
+
+    private List<Match> scanChunks(long length, ChunkScanner chunkScanner, ProgressListener listener) throws IOException {
+        List<Future<List<Match>>> futures = new ArrayList<>();
+        int overlap = Math.max(0, maxPatternLength - 1);
+        for (long chunkStart = 0; chunkStart < length; chunkStart += CHUNK_SIZE) {
+            final long start = chunkStart;
+            final long end = Math.min(length, chunkStart + CHUNK_SIZE);
+            Callable<List<Match>> task = () -> {
+                // chunk is scanned from earlier position, so matches which start before it are found too
+                List<Match> matches = chunkScanner.scan(Math.max(0, start - overlap), end);
+                List<Match> ret = new ArrayList<>(matches.size());
+                for (Match m : matches) {
+                    // matches which end before the chunk are found by the previous chunk
+                    if (m.getOffset() + m.getLength() > start) {
+                        ret.add(m);
+                    }
+                }
+
+                return ret;
+            };
+
+            futures.add(futures.isEmpty() && end == length ? new ImmediateFuture<>(callTask(task)) : SharedForkJoinPool.fork(task));
+        }
+
+        List<Match> ret = new ArrayList<>();
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                ret.addAll(futures.get(i).get());
+
+                if (listener != null) {
+                    listener.progress((int) ((i + 1) * 100L / futures.size()));
+                }
+            }
+        } catch (InterruptedException ex) {
+            for (Future<List<Match>> f : futures) {
+                f.cancel(true);
+            }
+
+            throw new InterruptedIOException();
+        } catch (ExecutionException ex) {
+            for (Future<List<Match>> f : futures) {
+                f.cancel(true);
+            }
+
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+
+            throw new IOException(ex.getCause());
+        }
+
+        ret.sort((Match m1, Match m2) -> m1.getOffset() != m2.getOffset() ? Long.compare(m1.getOffset(), m2.getOffset()) : Integer.compare(m1.getPatternIndex(), m2.getPatternIndex()));
+        return ret;
+    }
+
+    private static List<Match> callTask(Callable<List<Match>> task) throws IOException {
+        try {
+            return task.call();
+        } catch (IOException | RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    private interface ChunkScanner {
+
+        /**
+         * Scans the range of the data
+         *
+         * @param start Start offset
+         * @param end End offset (exclusive)
+         * @return Matches
+         * @throws IOException On I/O error
+         */
+        public List<Match> scan(long start, long end) throws IOException;
+    }
+
+    /**
+     * Occurrence of a pattern. It stores only the position, the data is not
+     * copied.
+     */
+    public static class Match {
+
+        private final long offset;
+
+        private final int length;
+
+        private final int patternIndex;
+
+        public Match(long offset, int length, int patternIndex) {
+            this.offset = offset;
+            this.length = length;
+            this.patternIndex = patternIndex;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        public int getPatternIndex() {
+            return patternIndex;
+        }
+    }
+}
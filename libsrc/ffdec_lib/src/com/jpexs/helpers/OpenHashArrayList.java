@@ -0,0 +1,202 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.helpers;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Base of the array lists with a reverse index (value to position) stored in an
+ * open addressing hash table of int positions, so no entry objects are
+ * allocated.
+ *
+ * Like in HashArrayList the index points to the last added position of equal
+ * values. Position 0 is never indexed, it is the reserved default entry of
+ * constant pools. Subclasses store the values and probe the table for lookups.
+ *
+ * @author JPEXS
+ * @param <E> Element type
+ */
+public abstract class OpenHashArrayList<E> extends AbstractList<E> implements RandomAccess {
+
+    private static final int MIN_TABLE_SIZE = 16;
+
+    /**
+     * Positions + 1, 0 = empty slot
+     */
+    protected int[] table = new int[MIN_TABLE_SIZE];
+
+    protected int mask = MIN_TABLE_SIZE - 1;
+
+    private int tableCount;
+
+    protected int size;
+
+    /**
+     * Gets the hash of the value stored at the position, it is mixed by the
+     * table, so lookups must use mix() of the same hash
+     *
+     * @param position Position
+     * @return Hash
+     */
+    protected abstract int hashAt(int position);
+
+    /**
+     * Checks whether the values at the positions are equal
+     *
+     * @param position1 Position 1
+     * @param position2 Position 2
+     * @return True when equal
+     */
+    protected abstract boolean equalsAt(int position1, int position2);
+
+    /**
+     * Checks whether the position should be indexed, for example null values
+     * are not indexed.
+     *
+     * @param position Position
+     * @return True when indexed
+     */
+    protected boolean isIndexed(int position) {
+        return true;
+    }
+
+    /**
+     * Grows the value storage
+     *
+     * @param capacity Minimum capacity
+     */
+    protected abstract void growStorage(int capacity);
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public void ensureCapacity(int capacity) {
+        growStorage(capacity);
+        int tableSize = tableSizeFor(capacity);
+        if (tableSize > table.length) {
+            rehash(tableSize);
+        }
+    }
+
+    protected static int mix(int hash) {
+        hash *= 0x9e3779b9;
+        return hash ^ (hash >>> 16);
+    }
+
+    protected static int mix(long value) {
+        return mix((int) (value ^ (value >>> 32)));
+    }
+
+    /**
+     * Adds the position to the index, replaces the position of equal value
+     *
+     * @param position Position
+     */
+    protected void indexPut(int position) {
+        if (position == 0 || !isIndexed(position)) {
+            return;
+        }
+
+        int slot = mix(hashAt(position)) & mask;
+        int p;
+        while ((p = table[slot]) != 0) {
+            if (equalsAt(p - 1, position)) {
+                table[slot] = position + 1;
+                return;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        table[slot] = position + 1;
+        tableCount++;
+        if (tableCount * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+    }
+
+    /**
+     * Removes the position from the index if the index points to it
+     *
+     * @param position Position
+     */
+    protected void indexRemove(int position) {
+        if (position == 0 || !isIndexed(position)) {
+            return;
+        }
+
+        int slot = mix(hashAt(position)) & mask;
+        int p;
+        while ((p = table[slot]) != 0) {
+            if (p - 1 == position) {
+                deleteSlot(slot);
+                return;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void deleteSlot(int slot) {
+        // shift back the following entries of the cluster, so no tombstones are needed
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        int p;
+        while ((p = table[next]) != 0) {
+            int ideal = mix(hashAt(p - 1)) & mask;
+            if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                table[hole] = p;
+                hole = next;
+            }
+
+            next = (next + 1) & mask;
+        }
+
+        table[hole] = 0;
+        tableCount--;
+    }
+
+    private void rehash(int tableSize) {
+        table = new int[tableSize];
+        mask = tableSize - 1;
+        tableCount = 0;
+        for (int i = 1; i < size; i++) {
+            indexPut(i);
+        }
+    }
+
+    protected void clearIndex() {
+        Arrays.fill(table, 0);
+        tableCount = 0;
+    }
+
+    protected static int grownCapacity(int length, int capacity) {
+        return Math.max(capacity, length + (length >> 1) + 1);
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int tableSize = MIN_TABLE_SIZE;
+        while (tableSize < capacity * 2 && tableSize < (1 << 30)) {
+            tableSize <<= 1;
+        }
+
+        return tableSize;
+    }
+}
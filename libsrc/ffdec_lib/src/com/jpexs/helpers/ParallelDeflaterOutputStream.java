@@ -0,0 +1,209 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.helpers;
+
+import com.jpexs.decompiler.flash.configuration.Configuration;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+/**
+ * Output stream which writes zlib stream compressed in parallel.
+ *
+ * The data is split to blocks which are compressed in the shared fork-join
+ * pool. Each block is compressed to raw deflate data ended by a sync flush, so
+ * the blocks can be concatenated. The last 32 KB of the previous block is used
+ * as dictionary of the next block (like in pigz), so the compression ratio is
+ * nearly the same as of the single-threaded deflater.
+ *
+ * @author JPEXS
+ */
+public class ParallelDeflaterOutputStream extends OutputStream {
+
+    private static final int BLOCK_SIZE = 128 * 1024;
+
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private final OutputStream os;
+
+    private final int level;
+
+    private final int maxPendingBlocks;
+
+    private final Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+
+    private final Adler32 adler = new Adler32();
+
+    private byte[] block = new byte[BLOCK_SIZE];
+
+    private int blockLength;
+
+    private byte[] dictionary;
+
+    private boolean headerWritten;
+
+    private boolean finished;
+
+    public ParallelDeflaterOutputStream(OutputStream os) {
+        this(os, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public ParallelDeflaterOutputStream(OutputStream os, int level) {
+        this.os = os;
+        this.level = level;
+        maxPendingBlocks = Configuration.getParallelThreadCount() * 2;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (finished) {
+            throw new IOException("Stream is finished");
+        }
+
+        adler.update(b, off, len);
+        while (len > 0) {
+            if (blockLength == BLOCK_SIZE) {
+                submitBlock(false);
+            }
+
+            int count = Math.min(len, BLOCK_SIZE - blockLength);
+            System.arraycopy(b, off, block, blockLength, count);
+            blockLength += count;
+            off += count;
+            len -= count;
+        }
+    }
+
+    /**
+     * Compresses the remaining data and writes the end of the zlib stream. The
+     * underlying stream is not closed.
+     *
+     * @throws IOException On I/O error
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+
+        submitBlock(true);
+        while (!pendingBlocks.isEmpty()) {
+            writeBlock(pendingBlocks.removeFirst());
+        }
+
+        long checksum = adler.getValue();
+        os.write(new byte[]{(byte) (checksum >> 24), (byte) (checksum >> 16), (byte) (checksum >> 8), (byte) checksum});
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            os.close();
+        }
+    }
+
+    private void submitBlock(boolean last) throws IOException {
+        final byte[] data = block;
+        final int length = blockLength;
+        final byte[] dict = dictionary;
+        if (!last) {
+            dictionary = Arrays.copyOfRange(data, length - DICTIONARY_SIZE, length);
+            block = new byte[BLOCK_SIZE];
+            blockLength = 0;
+        }
+
+        if (pendingBlocks.size() >= maxPendingBlocks) {
+            writeBlock(pendingBlocks.removeFirst());
+        }
+
+        pendingBlocks.addLast(SharedForkJoinPool.fork(() -> compressBlock(data, length, dict, last)));
+    }
+
+    private byte[] compressBlock(byte[] data, int length, byte[] dict, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dict != null) {
+                deflater.setDictionary(dict);
+            }
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(length / 2 + 64);
+            byte[] buf = new byte[16 * 1024];
+            deflater.setInput(data, 0, length);
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int count = deflater.deflate(buf);
+                    baos.write(buf, 0, count);
+                }
+            } else {
+                // sync flush ends the block on byte boundary, so the next block can follow
+                int count;
+                do {
+                    count = deflater.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH);
+                    baos.write(buf, 0, count);
+                } while (count == buf.length || !deflater.needsInput());
+            }
+
+            return baos.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void writeBlock(Future<byte[]> future) throws IOException {
+        byte[] data;
+        try {
+            data = future.get();
+        } catch (InterruptedException ex) {
+            cancelPendingBlocks();
+            throw new InterruptedIOException();
+        } catch (ExecutionException ex) {
+            cancelPendingBlocks();
+            throw new IOException(ex.getCause());
+        }
+
+        if (!headerWritten) {
+            // zlib header: deflate with 32 KB window, default compression
+            os.write(new byte[]{0x78, (byte) 0x9C});
+            headerWritten = true;
+        }
+
+        os.write(data);
+    }
+
+    private void cancelPendingBlocks() {
+        for (Future<byte[]> f : pendingBlocks) {
+            f.cancel(true);
+        }
+
+        pendingBlocks.clear();
+    }
+}
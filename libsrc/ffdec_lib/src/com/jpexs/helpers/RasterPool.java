@@ -0,0 +1,245 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.helpers;
+
+import com.jpexs.helpers.stat.Counter;
+import com.jpexs.helpers.stat.Metrics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pool of pixel arrays for the temporary images of rendering.
+ *
+ * The arrays are grouped to buckets by their size (4 buckets for each power of
+ * two), so an array can be reused for images with similar size. The pool is
+ * confined to a thread, use getInstance to get the pool of the current thread.
+ *
+ * An image or array can be returned only when it is not referenced anymore,
+ * for example images stored in a cache must not be returned.
+ *
+ * @author JPEXS
+ */
+public final class RasterPool {
+
+    private static final ThreadLocal<RasterPool> instances = new ThreadLocal<RasterPool>() {
+        @Override
+        protected RasterPool initialValue() {
+            return new RasterPool();
+        }
+    };
+
+    private static final int MIN_BUCKET_SIZE = 64;
+
+    /**
+     * Maximum number of pooled pixels of a thread (32 MB)
+     */
+    private static final long MAX_POOLED_SIZE = 8 * 1024 * 1024;
+
+    private static final int MAX_BUCKET_ARRAYS = 8;
+
+    private static final Map<Integer, BufferedImage> templates = new HashMap<>();
+
+    private static final Counter metricsAllocationCount = Metrics.counter(Metrics.RASTERS_ALLOCATED);
+
+    private static final Counter metricsReuseCount = Metrics.counter(Metrics.RASTERS_REUSED);
+
+    static {
+        for (int type : new int[]{BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_ARGB_PRE, BufferedImage.TYPE_INT_RGB}) {
+            templates.put(type, new BufferedImage(1, 1, type));
+        }
+    }
+
+    private final Map<Integer, ArrayDeque<int[]>> buckets = new HashMap<>();
+
+    private long pooledSize;
+
+    private long allocationCount;
+
+    private long allocatedSize;
+
+    private long reuseCount;
+
+    /**
+     * Gets pool of the current thread
+     *
+     * @return Raster pool
+     */
+    public static RasterPool getInstance() {
+        return instances.get();
+    }
+
+    RasterPool() {
+    }
+
+    private static int getBucketSize(int length) {
+        if (length <= MIN_BUCKET_SIZE) {
+            return MIN_BUCKET_SIZE;
+        }
+
+        int step = Integer.highestOneBit(length - 1) >> 2;
+        return ((length - 1) / step + 1) * step;
+    }
+
+    /**
+     * Gets an array with at least the given length. The content of the array
+     * is undefined.
+     *
+     * @param length Minimum length
+     * @return Array
+     */
+    public int[] getArray(int length) {
+        int bucketSize = getBucketSize(length);
+        ArrayDeque<int[]> bucket = buckets.get(bucketSize);
+        if (bucket != null && !bucket.isEmpty()) {
+            int[] array = bucket.pop();
+            pooledSize -= array.length;
+            reuseCount++;
+            metricsReuseCount.increment();
+            return array;
+        }
+
+        allocationCount++;
+        allocatedSize += bucketSize;
+        metricsAllocationCount.increment();
+        return new int[bucketSize];
+    }
+
+    /**
+     * Returns the array to the pool.
+     *
+     * @param array Array, it can be also an array which was not created by
+     * the pool
+     */
+    public void returnArray(int[] array) {
+        int length = array.length;
+        if (length < MIN_BUCKET_SIZE || pooledSize + length > MAX_POOLED_SIZE) {
+            return;
+        }
+
+        int step = Integer.highestOneBit(length) >> 2;
+        int bucketSize = length / step * step;
+        ArrayDeque<int[]> bucket = buckets.get(bucketSize);
+        if (bucket == null) {
+            bucket = new ArrayDeque<>();
+            buckets.put(bucketSize, bucket);
+        } else if (bucket.size() >= MAX_BUCKET_ARRAYS) {
+            return;
+        }
+
+        bucket.push(array);
+        pooledSize += length;
+    }
+
+    /**
+     * Gets a transparent image.
+     *
+     * @param width Width
+     * @param height Height
+     * @param imageType Image type, other types than TYPE_INT_ARGB,
+     * TYPE_INT_ARGB_PRE and TYPE_INT_RGB are not pooled
+     * @return Image
+     */
+    public BufferedImage getBufferedImage(int width, int height, int imageType) {
+        BufferedImage template = templates.get(imageType);
+        if (template == null) {
+            return new BufferedImage(width, height, imageType);
+        }
+
+        int length = width * height;
+        int[] array = getArray(length);
+        Arrays.fill(array, 0, length, 0);
+
+        int[] masks = ((SinglePixelPackedSampleModel) template.getSampleModel()).getBitMasks();
+        SinglePixelPackedSampleModel sampleModel = new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, width, height, masks);
+        WritableRaster raster = Raster.createWritableRaster(sampleModel, new DataBufferInt(array, length), null);
+        return new BufferedImage(template.getColorModel(), raster, template.isAlphaPremultiplied(), null);
+    }
+
+    /**
+     * Gets a transparent image of type TYPE_INT_ARGB_PRE.
+     *
+     * @param width Width
+     * @param height Height
+     * @return Image
+     */
+    public SerializableImage getImage(int width, int height) {
+        return new SerializableImage(getBufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE));
+    }
+
+    /**
+     * Returns pixels of the image to the pool.
+     *
+     * @param image Image
+     */
+    public void returnImage(BufferedImage image) {
+        DataBuffer dataBuffer = image.getRaster().getDataBuffer();
+        if (dataBuffer instanceof DataBufferInt && dataBuffer.getNumBanks() == 1) {
+            returnArray(((DataBufferInt) dataBuffer).getData());
+        }
+    }
+
+    /**
+     * Returns pixels of the image to the pool.
+     *
+     * @param image Image
+     */
+    public void returnImage(SerializableImage image) {
+        returnImage(image.getBufferedImage());
+    }
+
+    /**
+     * Gets number of arrays which were allocated by this pool
+     *
+     * @return Allocation count
+     */
+    public long getAllocationCount() {
+        return allocationCount;
+    }
+
+    /**
+     * Gets total size of the arrays which were allocated by this pool
+     *
+     * @return Size in bytes
+     */
+    public long getAllocatedBytes() {
+        return allocatedSize * 4;
+    }
+
+    /**
+     * Gets number of requests which were served by a pooled array
+     *
+     * @return Reuse count
+     */
+    public long getReuseCount() {
+        return reuseCount;
+    }
+
+    /**
+     * Removes all arrays from the pool
+     */
+    public void clear() {
+        buckets.clear();
+        pooledSize = 0;
+    }
+}
@@ -22,6 +22,7 @@ import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -264,7 +265,15 @@ public class ReflectionTools {
             }
         }
         if (List.class.isAssignableFrom(field.getType())) {
-            ParameterizedType listType = (ParameterizedType) field.getGenericType();
+            Type type = field.getGenericType();
+            // specialized lists like LongHashArrayList declare the element type in their superclass
+            while (!(type instanceof ParameterizedType) && type instanceof Class && type != Object.class) {
+                type = ((Class<?>) type).getGenericSuperclass();
+            }
+            if (!(type instanceof ParameterizedType)) {
+                return null;
+            }
+            ParameterizedType listType = (ParameterizedType) type;
             return (Class<?>) listType.getActualTypeArguments()[0];
         }
         return null;
@@ -140,6 +140,15 @@ public class SerializableImage implements Serializable {
         return image.getHeight();
     }
 
+    /**
+     * Gets approximate memory size of the image data
+     *
+     * @return Size in bytes
+     */
+    public long getEstimatedSize() {
+        return 4L * image.getWidth() * image.getHeight();
+    }
+
     public int getRGB(int i, int i1) {
         return image.getRGB(i, i1);
     }
@@ -0,0 +1,233 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.helpers;
+
+import com.jpexs.decompiler.flash.configuration.Configuration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+
+/**
+ * Fork-join pool shared by the parallel parts of decompilation.
+ *
+ * Tasks submitted from the threads of the pool are forked, so nested parallel
+ * work (for example traits of classes inside a script) is distributed by work
+ * stealing instead of creating a new thread pool for each level.
+ *
+ * ForkJoinTask.cancel does not interrupt a running task, so the tasks started
+ * by invokeAll and their nested tasks share a cancellation flag. When the
+ * waiting thread is interrupted, the flag is set, the threads running the
+ * tasks are interrupted and the tasks which have not started yet are skipped.
+ *
+ * @author JPEXS
+ */
+public class SharedForkJoinPool {
+
+    private static ForkJoinPool pool;
+
+    /**
+     * Group of the task running in the current pool thread
+     */
+    private static final ThreadLocal<TaskGroup> currentGroup = new ThreadLocal<>();
+
+    public static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(Configuration.getParallelThreadCount());
+        }
+
+        return pool;
+    }
+
+    /**
+     * Checks whether the current thread is a thread of the shared pool
+     *
+     * @return True when called from a task of the pool
+     */
+    public static boolean isPoolThread() {
+        ForkJoinPool p = ForkJoinTask.getPool();
+        return p != null && p == getPool();
+    }
+
+    /**
+     * Checks whether the group of the task running in the current thread was
+     * cancelled
+     *
+     * @return True when the current task should stop
+     */
+    public static boolean isCancelled() {
+        TaskGroup group = currentGroup.get();
+        return group != null && group.cancelled;
+    }
+
+    /**
+     * Starts the task, it is forked when called from the pool
+     *
+     * @param <T> Result type
+     * @param task Task
+     * @return Future of the task
+     */
+    public static <T> ForkJoinTask<T> fork(Callable<T> task) {
+        TaskGroup group = currentGroup.get();
+        ForkJoinTask<T> fjTask = ForkJoinTask.adapt(group == null ? task : group.wrap(task));
+        if (isPoolThread()) {
+            fjTask.fork();
+        } else {
+            getPool().execute(fjTask);
+        }
+
+        return fjTask;
+    }
+
+    /**
+     * Runs the tasks and waits until all of them are finished. The results
+     * and exceptions of the tasks can be get from the returned futures.
+     *
+     * @param <T> Result type
+     * @param tasks Tasks
+     * @return Completed futures in the order of the tasks
+     * @throws InterruptedException On interrupt, the not started tasks are
+     * cancelled
+     */
+    public static <T> List<Future<T>> invokeAll(List<? extends Callable<T>> tasks) throws InterruptedException {
+        ForkJoinPool p = getPool();
+        boolean poolThread = ForkJoinTask.getPool() == p;
+        TaskGroup group = poolThread ? currentGroup.get() : null;
+        if (group == null) {
+            group = new TaskGroup();
+        }
+
+        List<ForkJoinTask<T>> fjTasks = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            fjTasks.add(ForkJoinTask.adapt(group.wrap(task)));
+        }
+
+        if (poolThread) {
+            for (int i = fjTasks.size() - 1; i >= 0; i--) {
+                fjTasks.get(i).fork();
+            }
+        } else {
+            for (ForkJoinTask<T> task : fjTasks) {
+                p.execute(task);
+            }
+        }
+
+        try {
+            awaitAll(fjTasks);
+        } catch (InterruptedException ex) {
+            group.cancel();
+            throw ex;
+        }
+
+        return new ArrayList<>(fjTasks);
+    }
+
+    /**
+     * Waits until all the started tasks are finished
+     *
+     * @param tasks Tasks started by fork method
+     * @throws InterruptedException On interrupt, the not started tasks are
+     * cancelled
+     */
+    public static void awaitAll(List<? extends ForkJoinTask<?>> tasks) throws InterruptedException {
+        if (isPoolThread()) {
+            // joining thread executes the not stolen tasks itself
+            for (ForkJoinTask<?> task : tasks) {
+                task.quietlyJoin();
+            }
+
+            return;
+        }
+
+        try {
+            for (ForkJoinTask<?> task : tasks) {
+                try {
+                    task.get();
+                } catch (ExecutionException | CancellationException ex) {
+                    // returned in the future
+                }
+            }
+        } catch (InterruptedException ex) {
+            for (ForkJoinTask<?> task : tasks) {
+                task.cancel(true);
+            }
+
+            throw ex;
+        }
+    }
+
+    /**
+     * Tasks started by one invokeAll call including their nested tasks
+     */
+    private static class TaskGroup {
+
+        private volatile boolean cancelled;
+
+        /**
+         * Threads running the tasks of the group, guarded by this
+         */
+        private final Set<Thread> runningThreads = new HashSet<>();
+
+        public synchronized void cancel() {
+            cancelled = true;
+            for (Thread thread : runningThreads) {
+                thread.interrupt();
+            }
+        }
+
+        public <T> Callable<T> wrap(Callable<T> task) {
+            return () -> {
+                Thread thread = Thread.currentThread();
+                boolean registered;
+                synchronized (this) {
+                    if (cancelled) {
+                        throw new CancellationException();
+                    }
+
+                    // the thread is already registered when it runs a nested task while joining
+                    registered = runningThreads.add(thread);
+                }
+
+                TaskGroup previousGroup = currentGroup.get();
+                currentGroup.set(this);
+                try {
+                    return task.call();
+                } finally {
+                    currentGroup.set(previousGroup);
+                    if (registered) {
+                        synchronized (this) {
+                            runningThreads.remove(thread);
+                        }
+
+                        if (cancelled) {
+                            // the pool thread must not stay interrupted for its next task
+                            Thread.interrupted();
+                            if (previousGroup != null && previousGroup.cancelled) {
+                                thread.interrupt();
+                            }
+                        }
+                    }
+                }
+            };
+        }
+    }
+}
@@ -15,9 +15,13 @@
  * License along with this library. */
 package com.jpexs.helpers;
 
+import com.jpexs.helpers.MultiPatternScanner.Match;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -30,8 +34,22 @@ public class StreamSearch implements Searchable {
 
     private final MemoryInputStream is;
 
+    private final File file;
+
     public StreamSearch(InputStream is) throws IOException {
         this.is = new MemoryInputStream(Helper.readStream(is));
+        this.file = null;
+    }
+
+    /**
+     * Creates search in the file. The file is mapped to memory instead of
+     * reading, so it can be larger than 2 GB.
+     *
+     * @param file File
+     */
+    public StreamSearch(File file) {
+        this.is = null;
+        this.file = file;
     }
 
     @Override
@@ -41,60 +59,27 @@ public class StreamSearch implements Searchable {
 
     @Override
     public Map<Long, InputStream> search(ProgressListener progListener, byte[]... data) {
-        Map<Long, InputStream> ret = new HashMap<>();
-        int maxFindLen = 0;
-        for (int i = 0; i < data.length; i++) {
-            if (data[i].length > maxFindLen) {
-                maxFindLen = data[i].length;
-            }
-        }
+        Map<Long, InputStream> ret = new LinkedHashMap<>();
+        MultiPatternScanner scanner = new MultiPatternScanner(data);
         try {
-            is.seek(0);
-
-            byte[] buf = new byte[4096];
-            byte[] last = null;
-            int cnt = 0;
-            long pos = 0;
-            while ((cnt = is.read(buf)) > 0) {
-
-                for (int i = -maxFindLen + 1; i < cnt; i++) {
-
-                    loopdata:
-                    for (byte[] onedata : data) {
-                        boolean match = true;
-                        for (int d = 0; d < onedata.length; d++) {
-                            byte b;
-                            if (i + d < 0) {
-                                if (last != null) {
-                                    b = last[last.length + i + d];
-                                } else {
-                                    continue;
-                                }
-                            } else if (i + d >= buf.length) {
-                                continue;
-                            } else {
-                                b = buf[i + d];
-                            }
-
-                            if (b != onedata[d]) {
-                                match = false;
-                                break;
-                            }
-                        }
-                        if (match) {
-                            // todo: support > 2GB files
-                            InputStream fis = new MemoryInputStream(is.getAllRead(), (int) pos + i);
-                            ret.put(pos + i, fis);
-                            continue loopdata;
-                        }
+            if (file == null) {
+                byte[] buf = is.getAllRead();
+                for (Match m : scanner.scan(ByteBuffer.wrap(buf), progListener)) {
+                    ret.put(m.getOffset(), new MemoryInputStream(buf, (int) m.getOffset()));
+                }
+            } else {
+                try (MappedFile mappedFile = new MappedFile(file)) {
+                    for (Match m : scanner.scan(mappedFile, progListener)) {
+                        ret.put(m.getOffset(), mappedFile.getStream(m.getOffset()));
                     }
                 }
-                pos = pos + cnt;
             }
-
+        } catch (InterruptedIOException ex) {
+            Thread.currentThread().interrupt();
         } catch (IOException ex) {
             Logger.getLogger(StreamSearch.class.getName()).log(Level.SEVERE, null, ex);
         }
+
         return ret;
     }
 }
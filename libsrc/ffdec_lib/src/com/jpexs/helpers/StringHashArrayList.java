@@ -0,0 +1,130 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.helpers;
+
+import java.util.Arrays;
+
+/**
+ * List of strings with a reverse index. Added strings which are equal to an
+ * already stored string share its instance, so duplicates in constant pools
+ * do not occupy memory twice. Null values are not indexed.
+ *
+ * @author JPEXS
+ */
+public class StringHashArrayList extends OpenHashArrayList<String> {
+
+    private String[] values;
+
+    public StringHashArrayList() {
+        values = new String[10];
+    }
+
+    public StringHashArrayList(StringHashArrayList list) {
+        values = Arrays.copyOf(list.values, Math.max(list.size, 10));
+        size = list.size;
+        ensureCapacity(size);
+        for (int i = 1; i < size; i++) {
+            indexPut(i);
+        }
+    }
+
+    @Override
+    public String get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+
+        return values[index];
+    }
+
+    @Override
+    public boolean add(String value) {
+        if (size == values.length) {
+            growStorage(size + 1);
+        }
+
+        values[size] = intern(value);
+        size++;
+        indexPut(size - 1);
+        return true;
+    }
+
+    @Override
+    public String set(int index, String value) {
+        String old = get(index);
+        indexRemove(index);
+        values[index] = intern(value);
+        indexPut(index);
+        return old;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof String)) {
+            return -1;
+        }
+
+        int slot = mix(o.hashCode()) & mask;
+        int p;
+        while ((p = table[slot]) != 0) {
+            if (o.equals(values[p - 1])) {
+                return p - 1;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+        clearIndex();
+    }
+
+    private String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        int index = indexOf(value);
+        return index == -1 ? value : values[index];
+    }
+
+    @Override
+    protected boolean isIndexed(int position) {
+        return values[position] != null;
+    }
+
+    @Override
+    protected int hashAt(int position) {
+        return values[position].hashCode();
+    }
+
+    @Override
+    protected boolean equalsAt(int position1, int position2) {
+        return values[position1].equals(values[position2]);
+    }
+
+    @Override
+    protected void growStorage(int capacity) {
+        if (capacity > values.length) {
+            values = Arrays.copyOf(values, grownCapacity(values.length, capacity));
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.helpers.stat;
+
+import com.jpexs.decompiler.flash.configuration.Configuration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of named counters, gauges and timers.
+ *
+ * Counters are totals of events. Gauges read a current value (for example the
+ * weight of a cache) when the snapshot is taken.
+ *
+ * Recording is cheap and does not lock, so the counters are always updated.
+ * Timers (see Statistics) are only measured when the metrics are enabled.
+ *
+ * @author JPEXS
+ */
+public class Metrics {
+
+    public static final String TAGS_PARSED = "swf.tagsParsed";
+
+    public static final String BYTES_INFLATED = "swf.bytesInflated";
+
+    public static final String AS3_METHODS_DECOMPILED = "as3.methodsDecompiled";
+
+    public static final String AS2_BLOCKS_DECOMPILED = "as2.blocksDecompiled";
+
+    public static final String RASTERS_ALLOCATED = "render.rastersAllocated";
+
+    public static final String RASTERS_REUSED = "render.rastersReused";
+
+    private static final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    private static final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    private static final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private static volatile boolean enabled;
+
+    public static boolean isEnabled() {
+        return enabled || Configuration.showStat;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    public static Counter counter(String name) {
+        Counter counter = counters.get(name);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(name, (String n) -> new Counter());
+        }
+
+        return counter;
+    }
+
+    /**
+     * Registers a gauge, a gauge registered with the same name is replaced
+     *
+     * @param name Name
+     * @param value Supplier of the current value
+     */
+    public static void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    public static Timer timer(String name) {
+        Timer timer = timers.get(name);
+        if (timer == null) {
+            timer = timers.computeIfAbsent(name, (String n) -> new Timer());
+        }
+
+        return timer;
+    }
+
+    public static MetricsSnapshot snapshot() {
+        MetricsSnapshot snapshot = new MetricsSnapshot();
+        for (Map.Entry<String, Counter> e : counters.entrySet()) {
+            long value = e.getValue().get();
+            if (value != 0) {
+                snapshot.putCounter(e.getKey(), value);
+            }
+        }
+
+        for (Map.Entry<String, LongSupplier> e : gauges.entrySet()) {
+            snapshot.putGauge(e.getKey(), e.getValue().getAsLong());
+        }
+
+        for (Map.Entry<String, Timer> e : timers.entrySet()) {
+            TimerSnapshot timer = e.getValue().snapshot();
+            if (timer.getCount() != 0) {
+                snapshot.putTimer(e.getKey(), timer);
+            }
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Sets all counters and timers to zero, the registered instances stay
+     * valid
+     */
+    public static void reset() {
+        for (Counter counter : counters.values()) {
+            counter.reset();
+        }
+
+        for (Timer timer : timers.values()) {
+            timer.reset();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.helpers.stat;
+
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.WriterConfig;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes metrics snapshots as JSON or in the Prometheus text format.
+ *
+ * Counters are totals and get the _total suffix in the Prometheus format,
+ * gauges are current values and are written without it.
+ *
+ * @author JPEXS
+ */
+public class MetricsExporter {
+
+    private static final double[] QUANTILES = new double[]{0.5, 0.99, 0.999};
+
+    private static final String[] QUANTILE_NAMES = new String[]{"p50", "p99", "p999"};
+
+    private static final String PROMETHEUS_PREFIX = "ffdec_";
+
+    /**
+     * Writes the snapshot to file, files with .json extension are written as
+     * JSON, other files in the Prometheus text format
+     *
+     * @param snapshot Snapshot
+     * @param file File
+     * @throws IOException On I/O error
+     */
+    public static void export(MetricsSnapshot snapshot, File file) throws IOException {
+        String text = file.getName().toLowerCase(Locale.ENGLISH).endsWith(".json") ? toJson(snapshot) : toPrometheus(snapshot);
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(text);
+        }
+    }
+
+    public static String toJson(MetricsSnapshot snapshot) {
+        JsonObject counters = new JsonObject();
+        for (Map.Entry<String, Long> e : snapshot.getCounters().entrySet()) {
+            counters.add(e.getKey(), e.getValue());
+        }
+
+        JsonObject gauges = new JsonObject();
+        for (Map.Entry<String, Long> e : snapshot.getGauges().entrySet()) {
+            gauges.add(e.getKey(), e.getValue());
+        }
+
+        JsonObject timers = new JsonObject();
+        for (Map.Entry<String, TimerSnapshot> e : snapshot.getTimers().entrySet()) {
+            TimerSnapshot t = e.getValue();
+            JsonObject timer = new JsonObject();
+            timer.add("count", t.getCount());
+            timer.add("sumNanos", t.getSum());
+            timer.add("minNanos", t.getMin());
+            timer.add("maxNanos", t.getMax());
+            timer.add("meanNanos", t.getMean());
+            for (int i = 0; i < QUANTILES.length; i++) {
+                timer.add(QUANTILE_NAMES[i] + "Nanos", t.getPercentile(QUANTILES[i]));
+            }
+
+            timers.add(e.getKey(), timer);
+        }
+
+        JsonObject root = new JsonObject();
+        root.add("counters", counters);
+        root.add("gauges", gauges);
+        root.add("timers", timers);
+        return root.toString(WriterConfig.PRETTY_PRINT) + "\n";
+    }
+
+    public static String toPrometheus(MetricsSnapshot snapshot) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> e : snapshot.getCounters().entrySet()) {
+            String name = PROMETHEUS_PREFIX + prometheusName(e.getKey()) + "_total";
+            sb.append("# TYPE ").append(name).append(" counter\n");
+            sb.append(name).append(" ").append(e.getValue()).append("\n");
+        }
+
+        for (Map.Entry<String, Long> e : snapshot.getGauges().entrySet()) {
+            // current values, not totals
+            String name = PROMETHEUS_PREFIX + prometheusName(e.getKey());
+            sb.append("# TYPE ").append(name).append(" gauge\n");
+            sb.append(name).append(" ").append(e.getValue()).append("\n");
+        }
+
+        if (!snapshot.getTimers().isEmpty()) {
+            String name = PROMETHEUS_PREFIX + "duration_seconds";
+            sb.append("# TYPE ").append(name).append(" summary\n");
+            for (Map.Entry<String, TimerSnapshot> e : snapshot.getTimers().entrySet()) {
+                TimerSnapshot t = e.getValue();
+                String label = "name=\"" + prometheusLabel(e.getKey()) + "\"";
+                for (double quantile : QUANTILES) {
+                    sb.append(name).append("{").append(label).append(",quantile=\"").append(quantile).append("\"} ");
+                    sb.append(seconds(t.getPercentile(quantile))).append("\n");
+                }
+
+                sb.append(name).append("_sum{").append(label).append("} ").append(seconds(t.getSum())).append("\n");
+                sb.append(name).append("_count{").append(label).append("} ").append(t.getCount()).append("\n");
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    private static String prometheusName(String name) {
+        StringBuilder sb = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            sb.append((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') ? c : '_');
+        }
+
+        return sb.toString();
+    }
+
+    private static String prometheusLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.helpers.stat;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Values of all counters, gauges and timers at one moment, snapshots of multiple runs
+ * can be merged
+ *
+ * @author JPEXS
+ */
+public class MetricsSnapshot {
+
+    private final Map<String, Long> counters = new TreeMap<>();
+
+    private final Map<String, Long> gauges = new TreeMap<>();
+
+    private final Map<String, TimerSnapshot> timers = new TreeMap<>();
+
+    public Map<String, Long> getCounters() {
+        return counters;
+    }
+
+    public Map<String, Long> getGauges() {
+        return gauges;
+    }
+
+    public Map<String, TimerSnapshot> getTimers() {
+        return timers;
+    }
+
+    public long getCounter(String name) {
+        Long value = counters.get(name);
+        return value == null ? 0 : value;
+    }
+
+    public long getGauge(String name) {
+        Long value = gauges.get(name);
+        return value == null ? 0 : value;
+    }
+
+    public TimerSnapshot getTimer(String name) {
+        return timers.get(name);
+    }
+
+    void putCounter(String name, long value) {
+        counters.put(name, value);
+    }
+
+    void putGauge(String name, long value) {
+        gauges.put(name, value);
+    }
+
+    void putTimer(String name, TimerSnapshot timer) {
+        timers.put(name, timer);
+    }
+
+    public boolean isEmpty() {
+        return counters.isEmpty() && gauges.isEmpty() && timers.isEmpty();
+    }
+
+    public void add(MetricsSnapshot snapshot) {
+        for (Map.Entry<String, Long> e : snapshot.counters.entrySet()) {
+            counters.put(e.getKey(), getCounter(e.getKey()) + e.getValue());
+        }
+
+        // gauges are not summed, the later snapshot has the current value
+        gauges.putAll(snapshot.gauges);
+
+        for (Map.Entry<String, TimerSnapshot> e : snapshot.timers.entrySet()) {
+            TimerSnapshot timer = timers.get(e.getKey());
+            if (timer == null) {
+                timer = new TimerSnapshot();
+                timers.put(e.getKey(), timer);
+            }
+
+            timer.add(e.getValue());
+        }
+    }
+}
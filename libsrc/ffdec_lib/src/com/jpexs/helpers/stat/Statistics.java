@@ -15,93 +15,64 @@
  * License along with this library. */
 package com.jpexs.helpers.stat;
 
-import com.jpexs.decompiler.flash.configuration.Configuration;
-import com.jpexs.helpers.Stopwatch;
-import java.util.HashMap;
 import java.util.Map;
 
 /**
+ * Measures the duration of a block, the durations are recorded to the timer of
+ * the same name in Metrics.
  *
  * @author JPEXS
  */
 public class Statistics implements AutoCloseable {
 
-    private static final Map<String, StatisticData> map = new HashMap<>();
+    private final Timer timer;
 
-    private final String name;
+    private final long startTime;
 
-    private final Stopwatch sw;
-
-    private static synchronized void addTime(String name, long duration) {
-        StatisticData s = map.get(name);
-        if (s == null) {
-            s = new StatisticData();
-            map.put(name, s);
-        }
-
-        s.value += duration;
-        if (duration > s.max) {
-            s.max = duration;
-        }
-
-        if (duration < s.min) {
-            s.min = duration;
-        }
-
-        s.count++;
+    public static void print() {
+        print(Metrics.snapshot());
     }
 
-    public static synchronized void addToMap(Map<String, StatisticData> targetMap) {
-        for (Map.Entry<String, StatisticData> e : map.entrySet()) {
+    public static void print(MetricsSnapshot snapshot) {
+        for (Map.Entry<String, TimerSnapshot> e : snapshot.getTimers().entrySet()) {
             String name = e.getKey();
-            StatisticData d = e.getValue();
-            StatisticData d2 = targetMap.get(name);
-            if (d2 == null) {
-                d2 = new StatisticData();
-                targetMap.put(name, d2);
-            }
-
-            d2.value += d.value;
-            d2.count += d.count;
-            if (d.max > d2.max) {
-                d2.max = d.max;
-            }
-
-            if (d.min < d2.min) {
-                d2.min = d.min;
-            }
+            TimerSnapshot d = e.getValue();
+            System.out.println(name + ": count: " + d.getCount() + " / total: " + (d.getSum() / 1000000)
+                    + "ms / min: " + (d.getMin() / 1000)
+                    + "us / max: " + (d.getMax() / 1000)
+                    + "us / avg: " + (d.getMean() / 1000)
+                    + "us / p50: " + (d.getPercentile(0.5) / 1000)
+                    + "us / p99: " + (d.getPercentile(0.99) / 1000)
+                    + "us / p999: " + (d.getPercentile(0.999) / 1000) + "us");
         }
-    }
 
-    public static synchronized void print() {
-        print(map);
-    }
+        for (Map.Entry<String, Long> e : snapshot.getCounters().entrySet()) {
+            System.out.println(e.getKey() + ": " + e.getValue());
+        }
 
-    public static synchronized void print(Map<String, StatisticData> map) {
-        for (Map.Entry<String, StatisticData> e : map.entrySet()) {
-            String name = e.getKey();
-            StatisticData d = e.getValue();
-            System.out.println(name + ": count: " + d.count + " / total: " + (d.value / 1000000)
-                    + "ms / min: " + (d.min / 1000)
-                    + "us / max: " + (d.max / 1000)
-                    + "us / avg: " + (d.value / d.count / 1000) + "us");
+        for (Map.Entry<String, Long> e : snapshot.getGauges().entrySet()) {
+            System.out.println(e.getKey() + ": " + e.getValue());
         }
     }
 
-    public static synchronized void clear() {
-        map.clear();
+    public static void clear() {
+        Metrics.reset();
     }
 
     public Statistics(String name) {
-        this.name = name;
-        sw = Configuration.showStat ? Stopwatch.startNew() : null;
+        if (Metrics.isEnabled()) {
+            timer = Metrics.timer(name);
+            startTime = System.nanoTime();
+        } else {
+            timer = null;
+            startTime = 0;
+        }
     }
 
     @Override
     public void close() {
-        if (sw != null) {
-            sw.stop();
-            addTime(name, sw.getElapsedNanoseconds());
+        if (timer != null) {
+            timer.record(System.nanoTime() - startTime);
         }
     }
 }
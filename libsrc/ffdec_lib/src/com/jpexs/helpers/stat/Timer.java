@@ -0,0 +1,161 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.helpers.stat;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram of a timed operation.
+ *
+ * Each thread records to its own buckets without locking or compare-and-set
+ * loops, the buckets of all threads are summed when a snapshot is taken. The
+ * buckets are log-linear like in HdrHistogram: each power of two is divided to
+ * 32 buckets, so the percentiles are precise to about 3%.
+ *
+ * @author JPEXS
+ */
+public class Timer {
+
+    static final int SUB_BUCKET_BITS = 5;
+
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Longer durations (about 18 minutes) are counted in the last bucket
+     */
+    static final int MAX_EXPONENT = 39;
+
+    static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    private static final int COUNT = 0;
+
+    private static final int SUM = 1;
+
+    private static final int MIN = 2;
+
+    private static final int MAX = 3;
+
+    private static final int FIRST_BUCKET = 4;
+
+    private volatile Queue<Recorder> recorders = new ConcurrentLinkedQueue<>();
+
+    private final ThreadLocal<Recorder> threadRecorder = new ThreadLocal<>();
+
+    /**
+     * Records the duration
+     *
+     * @param nanos Duration in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+
+        Queue<Recorder> current = recorders;
+        Recorder recorder = threadRecorder.get();
+        if (recorder == null || recorder.owner != current) {
+            recorder = new Recorder(current);
+            threadRecorder.set(recorder);
+            current.add(recorder);
+        }
+
+        // only the owner thread writes, lazySet publishes the value without a barrier
+        AtomicLongArray data = recorder.data;
+        data.lazySet(COUNT, data.get(COUNT) + 1);
+        data.lazySet(SUM, data.get(SUM) + nanos);
+        if (nanos < data.get(MIN)) {
+            data.lazySet(MIN, nanos);
+        }
+
+        if (nanos > data.get(MAX)) {
+            data.lazySet(MAX, nanos);
+        }
+
+        int bucket = FIRST_BUCKET + getBucketIndex(nanos);
+        data.lazySet(bucket, data.get(bucket) + 1);
+    }
+
+    public TimerSnapshot snapshot() {
+        TimerSnapshot snapshot = new TimerSnapshot();
+        for (Recorder recorder : recorders) {
+            AtomicLongArray data = recorder.data;
+            long count = data.get(COUNT);
+            if (count == 0) {
+                continue;
+            }
+
+            snapshot.count += count;
+            snapshot.sum += data.get(SUM);
+            snapshot.min = Math.min(snapshot.min, data.get(MIN));
+            snapshot.max = Math.max(snapshot.max, data.get(MAX));
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                snapshot.buckets[i] += data.get(FIRST_BUCKET + i);
+            }
+        }
+
+        return snapshot;
+    }
+
+    void reset() {
+        // threads create new recorders on the next record call
+        recorders = new ConcurrentLinkedQueue<>();
+    }
+
+    static int getBucketIndex(long value) {
+        if (value < 2 * SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * Gets the highest value which is counted in the bucket
+     *
+     * @param index Bucket index
+     * @return Value
+     */
+    static long getBucketHighestValue(int index) {
+        if (index < 2 * SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKET_COUNT;
+        long lowest = (long) (SUB_BUCKET_COUNT + subBucket) << (exponent - SUB_BUCKET_BITS);
+        return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    private static class Recorder {
+
+        private final Queue<Recorder> owner;
+
+        private final AtomicLongArray data = new AtomicLongArray(FIRST_BUCKET + BUCKET_COUNT);
+
+        public Recorder(Queue<Recorder> owner) {
+            this.owner = owner;
+            data.set(MIN, Long.MAX_VALUE);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.helpers.stat;
+
+/**
+ * Durations recorded by a timer, snapshots can be merged
+ *
+ * @author JPEXS
+ */
+public class TimerSnapshot {
+
+    long count;
+
+    long sum;
+
+    long min = Long.MAX_VALUE;
+
+    long max = Long.MIN_VALUE;
+
+    final long[] buckets = new long[Timer.BUCKET_COUNT];
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets total duration in nanoseconds
+     *
+     * @return Total duration
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    public long getMax() {
+        return count == 0 ? 0 : max;
+    }
+
+    public long getMean() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * Gets the duration below which the given fraction of the recorded
+     * durations fall
+     *
+     * @param quantile Quantile, for example 0.99
+     * @return Duration in nanoseconds
+     */
+    public long getPercentile(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(quantile * count);
+        if (rank < 1) {
+            rank = 1;
+        }
+
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                if (i == buckets.length - 1) {
+                    // durations over the range of the buckets
+                    return max;
+                }
+
+                return Math.max(min, Math.min(max, Timer.getBucketHighestValue(i)));
+            }
+        }
+
+        return max;
+    }
+
+    public void add(TimerSnapshot snapshot) {
+        count += snapshot.count;
+        sum += snapshot.sum;
+        min = Math.min(min, snapshot.min);
+        max = Math.max(max, snapshot.max);
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] += snapshot.buckets[i];
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash;
+
+import com.jpexs.decompiler.flash.abc.ABC;
+import com.jpexs.decompiler.flash.abc.ScriptPack;
+import com.jpexs.decompiler.flash.tags.ABCContainerTag;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author JPEXS
+ */
+public class ABCClassIndexingTest {
+
+    @Test
+    public void testLookups() throws Exception {
+        SWF swf = new SWF(new BufferedInputStream(new FileInputStream("testdata/as3/as3.swf")), false);
+        List<ABC> allAbcs = new ArrayList<>();
+        for (ABCContainerTag tag : swf.getAbcList()) {
+            allAbcs.add(tag.getABC());
+        }
+
+        List<ScriptPack> allPacks = swf.getAS3Packs();
+        assertTrue(!allPacks.isEmpty());
+        for (ScriptPack pack : allPacks) {
+            String path = pack.getClassPath().toString();
+            assertEquals(pack.abc.findScriptPackByPath(path, allAbcs), pack);
+
+            String packagePrefix = pack.getClassPath().packageStr.toPrintableString(true);
+            if (!packagePrefix.isEmpty()) {
+                packagePrefix += ".";
+            }
+
+            List<ScriptPack> expected = new ArrayList<>();
+            List<ScriptPack> expectedWithSubPackages = new ArrayList<>();
+            for (ScriptPack p : pack.abc.getScriptPacks(null, allAbcs)) {
+                String s = p.getClassPath().toString();
+                if (s.startsWith(packagePrefix)) {
+                    expectedWithSubPackages.add(p);
+                    if (!s.substring(packagePrefix.length()).contains(".")) {
+                        expected.add(p);
+                    }
+                }
+            }
+
+            assertEquals(pack.abc.findScriptPacksByPath(packagePrefix + "*", allAbcs), expected);
+            assertEquals(pack.abc.findScriptPacksByPath(packagePrefix + "**", allAbcs), expectedWithSubPackages);
+        }
+
+        assertEquals(swf.getScriptPacksByClassNames(Arrays.asList("**")).size(), allPacks.size());
+        assertTrue(swf.getScriptPacksByClassNames(Arrays.asList("nonexistent.**")).isEmpty());
+
+        ABC abc = allPacks.get(0).abc;
+        for (int c = 0; c < abc.instance_info.size(); c++) {
+            String name = abc.instance_info.get(c).getName(abc.constants).getNameWithNamespace(abc.constants, true).toRawString();
+            assertEquals(abc.findClassByName(name), c);
+        }
+
+        // renaming clears the index
+        int classIndex = abc.instance_info.size() - 1;
+        int nameIndex = abc.instance_info.get(classIndex).name_index;
+        String oldName = abc.instance_info.get(classIndex).getName(abc.constants).getNameWithNamespace(abc.constants, true).toRawString();
+        abc.renameMultiname(nameIndex, "RenamedClass");
+        String newName = abc.instance_info.get(classIndex).getName(abc.constants).getNameWithNamespace(abc.constants, true).toRawString();
+        assertEquals(abc.findClassByName(oldName), -1);
+        assertEquals(abc.findClassByName(newName), classIndex);
+
+        // renaming directly in the constant pool is detected too
+        int strIndex = abc.constants.getMultiname(nameIndex).name_index;
+        abc.constants.setString(strIndex, "RenamedAgain");
+        String newestName = abc.instance_info.get(classIndex).getName(abc.constants).getNameWithNamespace(abc.constants, true).toRawString();
+        assertEquals(abc.findClassByName(newName), -1);
+        assertEquals(abc.findClassByName(newestName), classIndex);
+    }
+}
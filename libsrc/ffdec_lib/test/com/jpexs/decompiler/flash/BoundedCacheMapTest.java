@@ -0,0 +1,131 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash;
+
+import com.jpexs.decompiler.flash.configuration.ConfigurationItem;
+import com.jpexs.helpers.BoundedCacheMap;
+import com.jpexs.helpers.Cache;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author JPEXS
+ */
+public class BoundedCacheMapTest {
+
+    @Test
+    public void testWeightLimit() {
+        BoundedCacheMap<Integer, String> map = new BoundedCacheMap<>(100, (String value) -> value.length());
+        for (int i = 0; i < 50; i++) {
+            map.put(i, "0123456789");
+            assertTrue(map.getWeightedSize() <= 100);
+        }
+
+        assertEquals(map.size(), 10);
+        assertEquals(map.getWeightedSize(), 100);
+        assertEquals(map.getEvictionCount(), 40);
+        assertEquals(map.getEvictionWeight(), 400);
+
+        map.put(1000, "0123456789012345678901234567890123456789012345678901234567890123456789012345678901234567890123456789X");
+        assertFalse(map.containsKey(1000));
+
+        map.clear();
+        assertEquals(map.size(), 0);
+        assertEquals(map.getWeightedSize(), 0);
+    }
+
+    @Test
+    public void testFrequentEntriesStay() {
+        BoundedCacheMap<Integer, String> map = new BoundedCacheMap<>(1000, (String value) -> 10);
+        for (int i = 0; i < 100; i++) {
+            map.put(i, "v" + i);
+        }
+
+        for (int j = 0; j < 20; j++) {
+            for (int i = 0; i < 10; i++) {
+                assertEquals(map.get(i), "v" + i);
+            }
+        }
+
+        // one-hit entries must not push out the frequently used ones
+        for (int i = 100; i < 1000; i++) {
+            map.put(i, "v" + i);
+        }
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(map.get(i), "v" + i);
+        }
+
+        map.remove(0);
+        assertNull(map.get(0));
+        assertTrue(map.getWeightedSize() <= 1000);
+    }
+
+    @Test
+    public void testSharedLimit() {
+        ConfigurationItem<Integer> maxSize = new ConfigurationItem<>("testMaxSize", 1, 1);
+        Cache<Integer, byte[]> cache1 = Cache.getInstance(true, true, "testShared", maxSize, (byte[] value) -> value.length);
+        Cache<Integer, byte[]> cache2 = Cache.getInstance(true, true, "testShared", maxSize, (byte[] value) -> value.length);
+        for (int i = 0; i < 100; i++) {
+            cache1.put(i, new byte[16 * 1024]);
+            cache2.put(i, new byte[16 * 1024]);
+        }
+
+        // both caches together fit into 1 MB
+        assertTrue(cache1.getWeightedSize() <= 1024 * 1024);
+        assertEquals(cache1.getWeightedSize(), cache2.getWeightedSize());
+        assertTrue(cache1.getEvictionCount() > 0);
+
+        cache1.put(1000, new byte[1]);
+        cache2.put(1000, new byte[2]);
+        assertEquals(cache1.get(1000).length, 1);
+        assertEquals(cache2.get(1000).length, 2);
+
+        cache1.clear();
+        assertFalse(cache1.contains(1000));
+        assertTrue(cache2.contains(1000));
+        cache2.clear();
+        assertEquals(cache2.getWeightedSize(), 0);
+    }
+
+    @Test
+    public void testCollectedInstancesArePurged() throws InterruptedException {
+        ConfigurationItem<Integer> maxSize = new ConfigurationItem<>("testMaxSize", 1, 1);
+        Cache<Integer, byte[]> cache = Cache.getInstance(true, true, "testCollected", maxSize, (byte[] value) -> value.length);
+        cache.put(1, new byte[100]);
+        fillUnreferencedCache(maxSize);
+        assertEquals(cache.getWeightedSize(), 1100);
+
+        // creating an instance purges the entries of the collected ones
+        for (int i = 0; i < 50 && cache.getWeightedSize() > 100; i++) {
+            System.gc();
+            Thread.sleep(20);
+            Cache.getInstance(true, true, "testCollected", maxSize, (byte[] value) -> value.length);
+        }
+
+        assertEquals(cache.getWeightedSize(), 100);
+        assertTrue(cache.contains(1));
+    }
+
+    private static void fillUnreferencedCache(ConfigurationItem<Integer> maxSize) {
+        Cache<Integer, byte[]> cache = Cache.getInstance(true, true, "testCollected", maxSize, (byte[] value) -> value.length);
+        cache.put(1, new byte[1000]);
+    }
+}
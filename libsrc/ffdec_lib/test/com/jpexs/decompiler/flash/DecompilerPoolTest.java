@@ -0,0 +1,146 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash;
+
+import com.jpexs.decompiler.flash.abc.ScriptPack;
+import com.jpexs.decompiler.flash.action.ActionList;
+import com.jpexs.decompiler.flash.cache.ScriptDecompiledListener;
+import com.jpexs.decompiler.flash.configuration.Configuration;
+import com.jpexs.decompiler.flash.helpers.HighlightedText;
+import com.jpexs.decompiler.flash.tags.base.ASMSource;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author JPEXS
+ */
+public class DecompilerPoolTest {
+
+    @Test
+    public void testSharedTasks() throws Exception {
+        boolean parallel = Configuration.parallelSpeedUp.get();
+        Configuration.parallelSpeedUp.set(true);
+        DecompilerPool pool = new DecompilerPool();
+        try {
+            SWF swf = new SWF(new BufferedInputStream(new FileInputStream("testdata/as3/as3.swf")), false);
+            List<ScriptPack> packs = swf.getAS3Packs();
+            ScriptPack pack = packs.get(0);
+
+            // keep the task in flight until the third request is cancelled
+            Thread testThread = Thread.currentThread();
+            CountDownLatch latch = new CountDownLatch(1);
+            ScriptDecompiledListener<HighlightedText> blocker = new ScriptDecompiledListener<HighlightedText>() {
+                @Override
+                public void onStart() {
+                    if (Thread.currentThread() != testThread) {
+                        try {
+                            latch.await();
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+
+                @Override
+                public void onComplete(HighlightedText result) {
+                }
+            };
+
+            Future<HighlightedText> f1 = pool.submitTask(pack, blocker, DecompilerPool.Priority.EXPORT);
+            Future<HighlightedText> f2 = pool.submitTask(pack, null, DecompilerPool.Priority.INTERACTIVE);
+            Future<HighlightedText> f3 = pool.submitTask(pack, null, DecompilerPool.Priority.SEARCH);
+
+            // the task is still needed by the other requests
+            assertTrue(f3.cancel(true));
+            assertTrue(f3.isCancelled());
+            latch.countDown();
+
+            HighlightedText text = f1.get();
+            assertTrue(text == f2.get());
+            assertFalse(f1.isCancelled());
+
+            DecompilerPool.DecompilationFuture df = (DecompilerPool.DecompilationFuture) f1;
+            assertTrue(df.getQueueWaitTime() >= 0);
+            assertTrue(df.getRunTime() >= 0);
+
+            long total = 0;
+            for (DecompilerPool.Priority priority : DecompilerPool.Priority.values()) {
+                total += pool.getStatistics(priority).getTaskCount();
+            }
+
+            assertEquals(total, 1);
+            assertEquals(pool.getStatistics(DecompilerPool.Priority.EXPORT).getCancelledCount() + pool.getStatistics(DecompilerPool.Priority.INTERACTIVE).getCancelledCount(), 0);
+        } finally {
+            pool.shutdown();
+            Configuration.parallelSpeedUp.set(parallel);
+        }
+    }
+
+    @Test
+    public void testActionsAreNotShared() throws Exception {
+        boolean parallel = Configuration.parallelSpeedUp.get();
+        Configuration.parallelSpeedUp.set(true);
+        DecompilerPool pool = new DecompilerPool();
+        try {
+            SWF swf = new SWF(new BufferedInputStream(new FileInputStream("testdata/as2/as2.swf")), false);
+            ASMSource src = swf.getASMs(false).values().iterator().next();
+            ActionList actions = src.getActions();
+
+            // keep the first task in flight while the second one is submitted
+            Thread testThread = Thread.currentThread();
+            CountDownLatch latch = new CountDownLatch(1);
+            ScriptDecompiledListener<HighlightedText> blocker = new ScriptDecompiledListener<HighlightedText>() {
+                @Override
+                public void onStart() {
+                    if (Thread.currentThread() != testThread) {
+                        try {
+                            latch.await();
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+
+                @Override
+                public void onComplete(HighlightedText result) {
+                }
+            };
+
+            Future<HighlightedText> f1 = pool.submitTask(src, null, blocker, DecompilerPool.Priority.EXPORT);
+            Future<HighlightedText> f2 = pool.submitTask(src, actions, null, DecompilerPool.Priority.EXPORT);
+            latch.countDown();
+            assertFalse(f1.get() == f2.get());
+
+            long total = 0;
+            for (DecompilerPool.Priority priority : DecompilerPool.Priority.values()) {
+                total += pool.getStatistics(priority).getTaskCount();
+            }
+
+            assertEquals(total, 2);
+        } finally {
+            pool.shutdown();
+            Configuration.parallelSpeedUp.set(parallel);
+        }
+    }
+}
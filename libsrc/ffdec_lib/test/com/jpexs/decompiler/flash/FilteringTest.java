@@ -0,0 +1,176 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash;
+
+import com.jpexs.decompiler.flash.configuration.Configuration;
+import com.jpexs.decompiler.flash.exporters.commonshape.Matrix;
+import com.jpexs.decompiler.flash.tags.Tag;
+import com.jpexs.decompiler.flash.tags.base.RenderContext;
+import com.jpexs.decompiler.flash.tags.base.ShapeTag;
+import com.jpexs.decompiler.flash.types.CXFORMWITHALPHA;
+import com.jpexs.decompiler.flash.types.RECT;
+import com.jpexs.decompiler.flash.types.filters.Filtering;
+import com.jpexs.helpers.SerializableImage;
+import com.jpexs.helpers.utf8.Utf8Helper;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ * Compares results of the filters with the golden hashes generated by
+ * FilteringGoldenGenerator.
+ *
+ * @author JPEXS
+ */
+public class FilteringTest {
+
+    public static final String GOLDEN_FILE = "testdata/filters/golden.txt";
+
+    private static final Color[] GRADIENT_COLORS = new Color[]{new Color(255, 0, 0, 255), new Color(0, 255, 0, 128), new Color(0, 0, 255, 0)};
+
+    private static final float[] GRADIENT_RATIOS = new float[]{0f, 0.5f, 1f};
+
+    @Test
+    public void testGolden() throws Exception {
+        Map<String, String> golden = new LinkedHashMap<>();
+        for (String line : new String(Files.readAllBytes(Paths.get(GOLDEN_FILE)), Utf8Helper.charset).split("\n")) {
+            if (!line.trim().isEmpty()) {
+                String[] parts = line.trim().split(" ");
+                golden.put(parts[0], parts[1]);
+            }
+        }
+
+        assertTrue(golden.size() > 100);
+        boolean parallel = Configuration.parallelSpeedUp.get();
+        try {
+            for (boolean p : new boolean[]{false, true}) {
+                Configuration.parallelSpeedUp.set(p);
+                Map<String, String> hashes = computeHashes();
+                assertEquals(hashes.keySet(), golden.keySet());
+                for (String name : golden.keySet()) {
+                    assertEquals(hashes.get(name), golden.get(name), name + (p ? " parallel" : " serial"));
+                }
+            }
+        } finally {
+            Configuration.parallelSpeedUp.set(parallel);
+        }
+    }
+
+    public static Map<String, String> computeHashes() throws IOException, InterruptedException, NoSuchAlgorithmException {
+        List<SerializableImage> images = getImages();
+        Map<String, String> ret = new LinkedHashMap<>();
+        for (int i = 0; i < images.size(); i++) {
+            SerializableImage src = images.get(i);
+            String p = "image" + i + ".";
+            for (int it = 1; it <= 3; it += 2) {
+                ret.put(p + "blur" + it, hash(Filtering.blur(src, 5, 9, it)));
+                ret.put(p + "blurWide" + it, hash(Filtering.blur(src, 100, 2, it)));
+                for (boolean inner : new boolean[]{false, true}) {
+                    for (boolean knockout : new boolean[]{false, true}) {
+                        String suffix = it + (inner ? "Inner" : "Outer") + (knockout ? "Knockout" : "");
+                        ret.put(p + "glow" + suffix, hash(Filtering.glow(src, 6, 4, 1.5f, new Color(255, 200, 0, 200), inner, knockout, it)));
+                        ret.put(p + "dropShadow" + suffix, hash(Filtering.dropShadow(src, 4, 4, 45, 4, new Color(0, 0, 0, 160), inner, it, 1f, knockout)));
+                    }
+                }
+
+                for (int type = Filtering.INNER; type <= Filtering.FULL; type++) {
+                    String suffix = it + "Type" + type;
+                    ret.put(p + "bevel" + suffix, hash(Filtering.bevel(src, 4, 4, 1f, type, 0xffffffff, 0xff000000, 45, 4, false, it)));
+                    ret.put(p + "gradientBevel" + suffix, hash(Filtering.gradientBevel(src, GRADIENT_COLORS, GRADIENT_RATIOS, 4, 6, 1.2f, type, 30, 3, false, it)));
+                    ret.put(p + "gradientGlow" + suffix, hash(Filtering.gradientGlow(src, 4, 6, 30, 3, GRADIENT_COLORS, GRADIENT_RATIOS, type, it, 1.2f, false)));
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    private static List<SerializableImage> getImages() throws IOException, InterruptedException {
+        List<SerializableImage> ret = new ArrayList<>();
+        for (String file : new String[]{"testdata/as2/as2.swf", "testdata/as3/as3.swf"}) {
+            SWF swf = new SWF(new BufferedInputStream(new FileInputStream(file)), false);
+            int count = 0;
+            for (Tag t : swf.getTags()) {
+                if (!(t instanceof ShapeTag) || count == 3) {
+                    continue;
+                }
+
+                ShapeTag shape = (ShapeTag) t;
+                RECT rect = shape.getRect();
+                int width = (int) (rect.getWidth() / SWF.unitDivisor) + 20;
+                int height = (int) (rect.getHeight() / SWF.unitDivisor) + 20;
+                if (width > 300 || height > 300 || width < 5 || height < 5) {
+                    continue;
+                }
+
+                // shape with a transparent border, so the filters can spread out
+                SerializableImage image = new SerializableImage(width, height, SerializableImage.TYPE_INT_ARGB_PRE);
+                image.fillTransparent();
+                Matrix m = Matrix.getTranslateInstance(-rect.Xmin + 10 * SWF.unitDivisor, -rect.Ymin + 10 * SWF.unitDivisor);
+                shape.toImage(0, 0, 0, new RenderContext(), image, false, m, m, m, new CXFORMWITHALPHA());
+                ret.add(image);
+                count++;
+            }
+        }
+
+        // large image with small objects, most of the rows and columns are transparent
+        BufferedImage sparse = new BufferedImage(400, 300, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = sparse.createGraphics();
+        g.setColor(new Color(250, 250, 30, 200));
+        g.fillOval(360, 2, 38, 20);
+        g.setColor(new Color(30, 60, 230, 120));
+        g.fillRect(0, 290, 15, 10);
+        g.setColor(Color.black);
+        g.fillRect(200, 150, 1, 1);
+        ret.add(new SerializableImage(sparse));
+        return ret;
+    }
+
+    private static String hash(SerializableImage image) throws NoSuchAlgorithmException {
+        BufferedImage img = image.getBufferedImage();
+        int width = img.getWidth();
+        int height = img.getHeight();
+        MessageDigest md = MessageDigest.getInstance("MD5");
+        for (int rgb : img.getRGB(0, 0, width, height, null, 0, width)) {
+            md.update((byte) (rgb >> 24));
+            md.update((byte) (rgb >> 16));
+            md.update((byte) (rgb >> 8));
+            md.update((byte) rgb);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(width).append('x').append(height).append(':');
+        for (byte b : md.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+
+        return sb.toString();
+    }
+}
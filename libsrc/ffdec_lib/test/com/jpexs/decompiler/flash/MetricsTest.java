@@ -0,0 +1,148 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonObject;
+import com.jpexs.helpers.stat.Metrics;
+import com.jpexs.helpers.stat.MetricsExporter;
+import com.jpexs.helpers.stat.MetricsSnapshot;
+import com.jpexs.helpers.stat.Timer;
+import com.jpexs.helpers.stat.TimerSnapshot;
+import java.util.ArrayList;
+import java.util.List;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author JPEXS
+ */
+public class MetricsTest {
+
+    private static void assertClose(long actual, long expected) {
+        assertTrue(Math.abs(actual - expected) <= expected * 0.04, "Expected " + expected + ", got " + actual);
+    }
+
+    @Test
+    public void testPercentiles() {
+        Timer timer = new Timer();
+        for (int i = 1; i <= 100000; i++) {
+            timer.record(i * 1000L);
+        }
+
+        TimerSnapshot snapshot = timer.snapshot();
+        assertEquals(snapshot.getCount(), 100000);
+        assertEquals(snapshot.getMin(), 1000);
+        assertEquals(snapshot.getMax(), 100000000);
+        assertEquals(snapshot.getMean(), 50000500);
+        assertClose(snapshot.getPercentile(0.5), 50000000);
+        assertClose(snapshot.getPercentile(0.99), 99000000);
+        assertClose(snapshot.getPercentile(0.999), 99900000);
+        assertEquals(snapshot.getPercentile(1.0), 100000000);
+    }
+
+    @Test
+    public void testSmallAndHugeValues() {
+        Timer timer = new Timer();
+        for (int i = 0; i < 10; i++) {
+            timer.record(i);
+        }
+
+        assertEquals(timer.snapshot().getPercentile(0.5), 4);
+        timer.record(Long.MAX_VALUE);
+        assertEquals(timer.snapshot().getPercentile(1.0), Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+        final Timer timer = new Timer();
+        final String counterName = "test.concurrent";
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    timer.record(i);
+                    Metrics.counter(counterName).increment();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(timer.snapshot().getCount(), 80000);
+        assertEquals(timer.snapshot().getSum(), 8L * 9999 * 10000 / 2);
+        assertEquals(Metrics.counter(counterName).get(), 80000);
+    }
+
+    @Test
+    public void testSnapshotMergeAndReset() {
+        String timerName = "test.merge";
+        Metrics.counter("test.mergeCounter").add(5);
+        Metrics.timer(timerName).record(1000);
+        MetricsSnapshot first = Metrics.snapshot();
+        Metrics.reset();
+        assertEquals(Metrics.snapshot().getCounter("test.mergeCounter"), 0);
+        assertEquals(Metrics.snapshot().getTimer(timerName), null);
+
+        Metrics.counter("test.mergeCounter").add(3);
+        Metrics.timer(timerName).record(3000);
+        MetricsSnapshot total = new MetricsSnapshot();
+        total.add(first);
+        total.add(Metrics.snapshot());
+        assertEquals(total.getCounter("test.mergeCounter"), 8);
+        assertEquals(total.getTimer(timerName).getCount(), 2);
+        assertEquals(total.getTimer(timerName).getMin(), 1000);
+        assertEquals(total.getTimer(timerName).getMax(), 3000);
+
+        JsonObject json = Json.parse(MetricsExporter.toJson(total)).asObject();
+        assertEquals(json.get("counters").asObject().getLong("test.mergeCounter", 0), 8);
+        assertEquals(json.get("timers").asObject().get("test.merge").asObject().getLong("count", 0), 2);
+
+        String prometheus = MetricsExporter.toPrometheus(total);
+        assertTrue(prometheus.contains("ffdec_test_mergeCounter_total 8\n"));
+        assertTrue(prometheus.contains("ffdec_duration_seconds_count{name=\"test.merge\"} 2\n"));
+    }
+
+    @Test
+    public void testGaugesAndEscaping() {
+        String counterName = "test.\"quoted\\name\"";
+        Metrics.counter(counterName).add(2);
+        Metrics.gauge("test.gauge", () -> 42);
+        MetricsSnapshot first = Metrics.snapshot();
+        Metrics.gauge("test.gauge", () -> 40);
+        MetricsSnapshot total = new MetricsSnapshot();
+        total.add(first);
+        total.add(Metrics.snapshot());
+
+        // the current value is kept, gauges are not summed
+        assertEquals(total.getGauge("test.gauge"), 40);
+
+        JsonObject json = Json.parse(MetricsExporter.toJson(total)).asObject();
+        assertEquals(json.get("counters").asObject().getLong(counterName, 0), total.getCounter(counterName));
+        assertEquals(json.get("gauges").asObject().getLong("test.gauge", 0), 40);
+
+        String prometheus = MetricsExporter.toPrometheus(total);
+        assertTrue(prometheus.contains("# TYPE ffdec_test_gauge gauge\nffdec_test_gauge 40\n"));
+        assertFalse(prometheus.contains("ffdec_test_gauge_total"));
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash;
+
+import com.jpexs.helpers.Helper;
+import com.jpexs.helpers.MappedFile;
+import com.jpexs.helpers.MultiPatternScanner;
+import com.jpexs.helpers.MultiPatternScanner.Match;
+import com.jpexs.helpers.streams.SeekableInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author JPEXS
+ */
+public class MultiPatternScannerTest {
+
+    private static final byte[][] PATTERNS = new byte[][]{
+        "abab".getBytes(),
+        "bab".getBytes(),
+        "b".getBytes(),
+        "FWS".getBytes(),
+        "abcabd".getBytes()
+    };
+
+    @Test
+    public void testOverlappingPatterns() throws IOException {
+        byte[] data = "xababcabdababFWSb".getBytes();
+        MultiPatternScanner scanner = new MultiPatternScanner(PATTERNS);
+        assertTrue(toStrings(scanner.scan(ByteBuffer.wrap(data), null)).equals(toStrings(naiveSearch(data, 0, data.length))));
+    }
+
+    @Test
+    public void testStreamState() {
+        byte[] data = "ababcabdab".getBytes();
+        MultiPatternScanner scanner = new MultiPatternScanner(PATTERNS);
+        List<Match> matches = new ArrayList<>();
+        int state = 0;
+        for (int i = 0; i < data.length; i += 3) {
+            state = scanner.scan(ByteBuffer.wrap(data, 0, Math.min(i + 3, data.length)), i, Math.min(i + 3, data.length), 0, state, matches);
+        }
+
+        List<String> expected = toStrings(naiveSearch(data, 0, data.length));
+        List<String> actual = toStrings(matches);
+        actual.sort(null);
+        expected.sort(null);
+        assertTrue(actual.equals(expected));
+    }
+
+    @Test
+    public void testChunkBoundaries() throws IOException {
+        // larger than two scan chunks
+        byte[] data = createData(40 * 1024 * 1024);
+        MultiPatternScanner scanner = new MultiPatternScanner(PATTERNS);
+        List<Match> expected = naiveSearch(data, 0, data.length);
+        assertTrue(toStrings(scanner.scan(ByteBuffer.wrap(data), null)).equals(toStrings(expected)));
+
+        File file = File.createTempFile("ffdec_scan", ".bin");
+        try {
+            Files.write(file.toPath(), data);
+            try (MappedFile mappedFile = new MappedFile(file)) {
+                assertTrue(toStrings(scanner.scan(mappedFile, null)).equals(toStrings(expected)));
+                assertEquals(mappedFile.getStream(16 * 1024 * 1024 - 2).read(), data[16 * 1024 * 1024 - 2] & 0xff);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testBinarySWFBundle() throws IOException {
+        byte[] swfData = Files.readAllBytes(Paths.get("testdata/as3/as3.swf"));
+        Random random = new Random(1);
+        byte[] garbage = new byte[100000];
+        random.nextBytes(garbage);
+        File file = File.createTempFile("ffdec_bundle", ".bin");
+        try {
+            try (OutputStream os = new FileOutputStream(file)) {
+                os.write(garbage);
+                os.write(swfData);
+                os.write(garbage);
+            }
+
+            BinarySWFBundle bundle = new BinarySWFBundle(file, false, SearchMode.ALL);
+            Map<String, SeekableInputStream> swfs = bundle.getAll();
+            assertEquals(swfs.size(), 1);
+            SeekableInputStream is = swfs.get("[" + garbage.length + "]");
+            is.reset();
+            // the stream can be longer, decompression reads ahead
+            byte[] data = Helper.readStream(is);
+            assertTrue(data.length >= swfData.length);
+            assertEquals(Arrays.copyOf(data, swfData.length), swfData);
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static byte[] createData(int length) {
+        Random random = new Random(1);
+        byte[] data = new byte[length];
+        byte[] alphabet = "abcdFWSx".getBytes();
+        for (int i = 0; i < length; i++) {
+            data[i] = alphabet[random.nextInt(alphabet.length)];
+        }
+
+        // patterns over the chunk boundaries
+        System.arraycopy("abcabd".getBytes(), 0, data, 16 * 1024 * 1024 - 3, 6);
+        System.arraycopy("FWS".getBytes(), 0, data, 32 * 1024 * 1024 - 1, 3);
+        return data;
+    }
+
+    private static List<Match> naiveSearch(byte[] data, int from, int to) {
+        List<Match> ret = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            loopp:
+            for (int p = 0; p < PATTERNS.length; p++) {
+                byte[] pattern = PATTERNS[p];
+                if (i + pattern.length > to) {
+                    continue;
+                }
+
+                for (int j = 0; j < pattern.length; j++) {
+                    if (data[i + j] != pattern[j]) {
+                        continue loopp;
+                    }
+                }
+
+                ret.add(new Match(i, pattern.length, p));
+            }
+        }
+
+        return ret;
+    }
+
+    private static List<String> toStrings(List<Match> matches) {
+        List<String> ret = new ArrayList<>();
+        for (Match m : matches) {
+            ret.add(m.getOffset() + ":" + m.getLength() + ":" + m.getPatternIndex());
+        }
+
+        return ret;
+    }
+}
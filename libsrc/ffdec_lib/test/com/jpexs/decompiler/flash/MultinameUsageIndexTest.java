@@ -0,0 +1,121 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash;
+
+import com.jpexs.decompiler.flash.abc.ABC;
+import com.jpexs.decompiler.flash.abc.avm2.AVM2Code;
+import com.jpexs.decompiler.flash.abc.avm2.instructions.AVM2Instruction;
+import com.jpexs.decompiler.flash.abc.types.MethodBody;
+import com.jpexs.decompiler.flash.abc.types.traits.Trait;
+import com.jpexs.decompiler.flash.abc.types.traits.TraitSlotConst;
+import com.jpexs.decompiler.flash.abc.usages.MethodBodyMultinameUsage;
+import com.jpexs.decompiler.flash.abc.usages.MultinameUsage;
+import com.jpexs.decompiler.flash.abc.usages.MultinameUsageIndex;
+import com.jpexs.decompiler.flash.tags.ABCContainerTag;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.util.List;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author JPEXS
+ */
+public class MultinameUsageIndexTest {
+
+    private static void assertSameAsFullScan(ABC abc) {
+        // toString of some usages fails, so the lists are not compared by assertEquals
+        MultinameUsageIndex fresh = new MultinameUsageIndex(abc);
+        assertTrue(abc.findAllMultinameUsage().equals(fresh.getAllUsages()));
+        for (int m = 0; m < abc.constants.getMultinameCount(); m++) {
+            assertTrue(abc.findMultinameUsage(m).equals(fresh.getUsages(m)), "Usages of multiname " + m);
+        }
+    }
+
+    private static ABC getBiggestAbc(SWF swf) {
+        ABC ret = null;
+        for (ABCContainerTag tag : swf.getAbcList()) {
+            if (ret == null || tag.getABC().bodies.size() > ret.bodies.size()) {
+                ret = tag.getABC();
+            }
+        }
+
+        return ret;
+    }
+
+    @Test
+    public void testIncrementalUpdate() throws Exception {
+        SWF swf = new SWF(new BufferedInputStream(new FileInputStream("testdata/as3/as3.swf")), false);
+        ABC abc = getBiggestAbc(swf);
+        assertNotNull(abc);
+        assertSameAsFullScan(abc);
+
+        // method body edit
+        MethodBody editedBody = null;
+        int newMultinameIndex = -1;
+        loop:
+        for (int c = 0; c < abc.instance_info.size(); c++) {
+            MethodBody body = abc.findBody(abc.instance_info.get(c).iinit_index);
+            if (body == null) {
+                continue;
+            }
+
+            AVM2Code code = body.getCode();
+            for (AVM2Instruction ins : code.code) {
+                for (int o = 0; o < ins.definition.operands.length; o++) {
+                    if (ins.definition.operands[o] == AVM2Code.DAT_MULTINAME_INDEX && ins.operands[o] > 1) {
+                        newMultinameIndex = abc.constants.getMultinameCount() - 1;
+                        ins.setOperand(o, newMultinameIndex, code, body);
+                        editedBody = body;
+                        break loop;
+                    }
+                }
+            }
+        }
+
+        assertNotNull(editedBody);
+        boolean found = false;
+        for (MultinameUsage usage : abc.findMultinameUsage(newMultinameIndex)) {
+            found |= usage instanceof MethodBodyMultinameUsage;
+        }
+
+        assertTrue(found);
+        assertSameAsFullScan(abc);
+
+        // trait edit
+        TraitSlotConst slot = null;
+        for (Trait trait : abc.instance_info.get(0).instance_traits.traits) {
+            if (trait instanceof TraitSlotConst) {
+                slot = (TraitSlotConst) trait;
+                break;
+            }
+        }
+
+        if (slot != null) {
+            slot.type_index = newMultinameIndex;
+            abc.getMultinameUsageIndex().invalidateTrait(slot);
+            assertSameAsFullScan(abc);
+        }
+
+        // structural change
+        abc.addMethod(0, "addedMethod", false);
+        List<MultinameUsage> usages = abc.findMultinameUsage(abc.constants.getMultinameCount() - 1);
+        assertTrue(!usages.isEmpty());
+        assertSameAsFullScan(abc);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash;
+
+import com.jpexs.helpers.DoubleHashArrayList;
+import com.jpexs.helpers.LongHashArrayList;
+import com.jpexs.helpers.StringHashArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author JPEXS
+ */
+public class OpenHashArrayListTest {
+
+    @Test
+    public void testLongIndex() {
+        LongHashArrayList list = new LongHashArrayList();
+        list.add(null);
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 1; i < 10000; i++) {
+            long value = random.nextInt(3000) - 1500;
+            assertEquals(list.addLong(value), i);
+            expected.put(value, i);
+        }
+
+        // replace values, so entries are removed from the middle of clusters
+        for (int i = 1; i < 10000; i += 3) {
+            long value = random.nextInt(3000) + 5000;
+            list.setLong(i, value);
+        }
+
+        expected.clear();
+        for (int i = 1; i < list.size(); i++) {
+            expected.put(list.getLong(i), i);
+        }
+
+        for (long value = -1500; value < 8000; value++) {
+            Integer index = expected.get(value);
+            int found = list.indexOfLong(value);
+            if (value >= 5000 || found != -1) {
+                // like in HashArrayList, replaced value can be no longer indexed
+                assertEquals(found, index == null ? -1 : index);
+            }
+        }
+
+        assertEquals(list.getLong(0), 0L);
+        assertEquals(list.indexOfLong(12345), -1);
+
+        LongHashArrayList copy = new LongHashArrayList(list);
+        assertEquals(copy, list);
+        assertEquals(copy.indexOf(list.get(5)), list.indexOf(list.get(5)));
+    }
+
+    @Test
+    public void testDoubleBits() {
+        DoubleHashArrayList list = new DoubleHashArrayList();
+        list.add(null);
+        list.addDouble(0.0);
+        list.addDouble(-0.0);
+        list.addDouble(Double.NaN);
+        assertEquals(list.indexOfDouble(0.0), 1);
+        assertEquals(list.indexOfDouble(-0.0), 2);
+        assertEquals(list.indexOfDouble(Double.NaN), 3);
+    }
+
+    @Test
+    public void testStringPool() {
+        StringHashArrayList list = new StringHashArrayList();
+        list.add(null);
+        String a = new String("abc");
+        String b = new String("abc");
+        list.add(a);
+        list.add("def");
+        list.add(b);
+        assertEquals(list.indexOf("abc"), 3);
+        assertSame(list.get(3), a);
+        assertNull(list.get(0));
+        assertEquals(list.indexOf(null), -1);
+
+        list.set(3, "xyz");
+        assertEquals(list.indexOf("abc"), -1);
+        assertEquals(list.indexOf("xyz"), 3);
+        assertEquals(list.indexOf("def"), 2);
+    }
+}
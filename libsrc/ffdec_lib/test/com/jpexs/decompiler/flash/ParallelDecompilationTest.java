@@ -0,0 +1,96 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash;
+
+import com.jpexs.decompiler.flash.abc.ScriptPack;
+import com.jpexs.decompiler.flash.abc.types.ConvertData;
+import com.jpexs.decompiler.flash.configuration.Configuration;
+import com.jpexs.decompiler.flash.exporters.modes.ScriptExportMode;
+import com.jpexs.decompiler.flash.helpers.HighlightedTextWriter;
+import com.jpexs.helpers.SharedForkJoinPool;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author JPEXS
+ */
+public class ParallelDecompilationTest {
+
+    @Test
+    public void testSameAsSerial() throws Exception {
+        SWF swf = new SWF(new BufferedInputStream(new FileInputStream("testdata/as3/as3.swf")), false);
+        for (ScriptPack pack : swf.getAS3Packs()) {
+            if (!pack.isSimple) {
+                continue;
+            }
+
+            assertEquals(decompile(pack, true), decompile(pack, false), pack.getClassPath().toString());
+        }
+    }
+
+    @Test
+    public void testCancelNestedTasks() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch stopped = new CountDownLatch(1);
+        Callable<Void> nested = () -> {
+            started.countDown();
+            try {
+                while (true) {
+                    Thread.sleep(10);
+                }
+            } finally {
+                stopped.countDown();
+            }
+        };
+        List<Callable<Void>> outer = Collections.singletonList(() -> {
+            SharedForkJoinPool.invokeAll(Collections.singletonList(nested));
+            return null;
+        });
+
+        AtomicBoolean interrupted = new AtomicBoolean();
+        Thread thread = new Thread(() -> {
+            try {
+                SharedForkJoinPool.invokeAll(outer);
+            } catch (InterruptedException ex) {
+                interrupted.set(true);
+            }
+        });
+        thread.start();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        thread.interrupt();
+        thread.join(10000);
+        assertTrue(interrupted.get());
+
+        // the nested task is interrupted too, not only the waiting thread
+        assertTrue(stopped.await(10, TimeUnit.SECONDS));
+    }
+
+    private String decompile(ScriptPack pack, boolean parallel) throws InterruptedException {
+        HighlightedTextWriter writer = new HighlightedTextWriter(Configuration.getCodeFormatting(), false);
+        pack.toSource(writer, pack.abc.script_info.get(pack.scriptIndex).traits.traits, new ConvertData(), ScriptExportMode.AS, parallel);
+        return writer.toString();
+    }
+}
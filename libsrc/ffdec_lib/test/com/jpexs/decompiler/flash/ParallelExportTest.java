@@ -0,0 +1,282 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash;
+
+import com.jpexs.decompiler.flash.configuration.Configuration;
+import com.jpexs.decompiler.flash.exporters.ExportTaskQueue;
+import com.jpexs.decompiler.flash.exporters.FrameExporter;
+import com.jpexs.decompiler.flash.exporters.FrameImageIterator;
+import com.jpexs.decompiler.flash.exporters.ShapeExporter;
+import com.jpexs.decompiler.flash.exporters.modes.FrameExportMode;
+import com.jpexs.decompiler.flash.exporters.modes.ShapeExportMode;
+import com.jpexs.decompiler.flash.exporters.settings.FrameExportSettings;
+import com.jpexs.decompiler.flash.exporters.settings.ShapeExportSettings;
+import com.jpexs.decompiler.flash.tags.DefineSpriteTag;
+import com.jpexs.decompiler.flash.timeline.Timeline;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author JPEXS
+ */
+public class ParallelExportTest {
+
+    @Test
+    public void testShapesSameAsSerial() throws Exception {
+        SWF swf = new SWF(new BufferedInputStream(new FileInputStream("testdata/as2/as2.swf")), false);
+        boolean parallel = Configuration.parallelSpeedUp.get();
+        File dir = Files.createTempDirectory("ffdec_shapes").toFile();
+        try {
+            for (ShapeExportMode mode : new ShapeExportMode[]{ShapeExportMode.PNG, ShapeExportMode.SVG}) {
+                ShapeExportSettings settings = new ShapeExportSettings(mode, 1);
+                Configuration.parallelSpeedUp.set(false);
+                List<File> serialFiles = new ShapeExporter().exportShapes(null, new File(dir, "serial" + mode).getPath(), swf.getTags(), settings, null);
+                Configuration.parallelSpeedUp.set(true);
+                List<String> events = Collections.synchronizedList(new ArrayList<>());
+                List<File> parallelFiles = new ShapeExporter().exportShapes(null, new File(dir, "parallel" + mode).getPath(), swf.getTags(), settings, new EventListener() {
+                    @Override
+                    public void handleExportingEvent(String type, int index, int count, Object data) {
+                        events.add("exporting " + index);
+                    }
+
+                    @Override
+                    public void handleExportedEvent(String type, int index, int count, Object data) {
+                        events.add("exported " + index);
+                    }
+
+                    @Override
+                    public void handleEvent(String event, Object data) {
+                    }
+                });
+
+                assertTrue(serialFiles.size() > 1);
+                assertEquals(parallelFiles.size(), serialFiles.size());
+                for (int i = 0; i < serialFiles.size(); i++) {
+                    assertEquals(parallelFiles.get(i).getName(), serialFiles.get(i).getName());
+                    assertEquals(Files.readAllBytes(parallelFiles.get(i).toPath()), Files.readAllBytes(serialFiles.get(i).toPath()), serialFiles.get(i).getName());
+                    assertEquals(events.get(2 * i), "exporting " + (i + 1));
+                    assertEquals(events.get(2 * i + 1), "exported " + (i + 1));
+                }
+            }
+        } finally {
+            Configuration.parallelSpeedUp.set(parallel);
+            deleteDir(dir);
+        }
+    }
+
+    @Test
+    public void testFramesSameAsSerial() throws Exception {
+        SWF swf = new SWF(new BufferedInputStream(new FileInputStream("testdata/as2/as2.swf")), false);
+        boolean parallel = Configuration.parallelSpeedUp.get();
+        File dir = Files.createTempDirectory("ffdec_frames").toFile();
+        try {
+            for (FrameExportMode mode : new FrameExportMode[]{FrameExportMode.PNG, FrameExportMode.SVG, FrameExportMode.GIF, FrameExportMode.AVI}) {
+                FrameExportSettings settings = new FrameExportSettings(mode, 1);
+                Configuration.parallelSpeedUp.set(false);
+                List<File> serialFiles = new FrameExporter().exportFrames(null, new File(dir, "serial" + mode).getPath(), swf, 4, null, settings, null);
+                Configuration.parallelSpeedUp.set(true);
+                List<File> parallelFiles = new FrameExporter().exportFrames(null, new File(dir, "parallel" + mode).getPath(), swf, 4, null, settings, null);
+
+                assertFalse(serialFiles.isEmpty());
+                assertEquals(parallelFiles.size(), serialFiles.size());
+                for (int i = 0; i < serialFiles.size(); i++) {
+                    assertEquals(parallelFiles.get(i).getName(), serialFiles.get(i).getName());
+                    assertEquals(Files.readAllBytes(parallelFiles.get(i).toPath()), Files.readAllBytes(serialFiles.get(i).toPath()), mode + " " + serialFiles.get(i).getName());
+                }
+            }
+        } finally {
+            Configuration.parallelSpeedUp.set(parallel);
+            deleteDir(dir);
+        }
+    }
+
+    @Test
+    public void testIgnoredFramesNotReturned() throws Exception {
+        SWF swf = new SWF(new BufferedInputStream(new FileInputStream("testdata/as2/as2.swf")), false);
+        boolean parallel = Configuration.parallelSpeedUp.get();
+        File dir = Files.createTempDirectory("ffdec_frames").toFile();
+        AbortRetryIgnoreHandler handler = new AbortRetryIgnoreHandler() {
+            @Override
+            public int handle(Throwable thrown) {
+                return AbortRetryIgnoreHandler.IGNORE;
+            }
+
+            @Override
+            public AbortRetryIgnoreHandler getNewInstance() {
+                return this;
+            }
+        };
+        try {
+            Configuration.parallelSpeedUp.set(true);
+            for (FrameExportMode mode : new FrameExportMode[]{FrameExportMode.PNG, FrameExportMode.SVG}) {
+                String outDir = new File(dir, mode.toString()).getPath();
+                FrameExportSettings settings = new FrameExportSettings(mode, 1);
+                List<File> allFiles = new FrameExporter().exportFrames(null, outDir, swf, 4, null, settings, null);
+                assertTrue(allFiles.size() > 2);
+
+                // a directory in place of the second frame cannot be written
+                File blocked = allFiles.get(1);
+                assertTrue(blocked.delete());
+                assertTrue(blocked.mkdir());
+                assertTrue(new File(blocked, "file").createNewFile());
+
+                List<File> files = new FrameExporter().exportFrames(handler, outDir, swf, 4, null, settings, null);
+                List<File> expected = new ArrayList<>(allFiles);
+                expected.remove(blocked);
+                assertEquals(files, expected, mode.toString());
+                for (File file : files) {
+                    assertTrue(file.isFile(), file.getPath());
+                }
+            }
+        } finally {
+            Configuration.parallelSpeedUp.set(parallel);
+            deleteDir(dir);
+        }
+    }
+
+    @Test
+    public void testFrameImagesInOrder() throws Exception {
+        SWF swf = new SWF(new BufferedInputStream(new FileInputStream("testdata/as2/as2.swf")), false);
+
+        Timeline timeline = ((DefineSpriteTag) swf.getCharacter(4)).getTimeline();
+        List<Integer> frames = new ArrayList<>();
+        for (int i = timeline.getFrameCount() - 1; i >= 0; i -= 2) {
+            frames.add(i);
+        }
+
+        List<String> events = new ArrayList<>();
+        EventListener evl = new EventListener() {
+            @Override
+            public void handleExportingEvent(String type, int index, int count, Object data) {
+                events.add("exporting " + index);
+            }
+
+            @Override
+            public void handleExportedEvent(String type, int index, int count, Object data) {
+                events.add("exported " + index);
+            }
+
+            @Override
+            public void handleEvent(String event, Object data) {
+            }
+        };
+
+        try (FrameImageIterator serial = new FrameImageIterator(timeline, frames, null, 1, null, 0);
+                FrameImageIterator rendered = new FrameImageIterator(timeline, frames, null, 1, evl, 3)) {
+            for (int i = 0; i < frames.size(); i++) {
+                assertTrue(rendered.hasNext());
+                BufferedImage expected = serial.next();
+                BufferedImage image = rendered.next();
+                assertEquals(image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth()), expected.getRGB(0, 0, expected.getWidth(), expected.getHeight(), null, 0, expected.getWidth()), "frame " + frames.get(i));
+                assertEquals(events.get(2 * i), "exporting " + (i + 1));
+                assertEquals(events.get(2 * i + 1), "exported " + (i + 1));
+            }
+
+            assertFalse(rendered.hasNext());
+        }
+    }
+
+    @Test
+    public void testHandler() throws Exception {
+        boolean parallel = Configuration.parallelSpeedUp.get();
+        Configuration.parallelSpeedUp.set(true);
+        try {
+            final AtomicInteger runs = new AtomicInteger();
+            final List<Integer> decisions = new ArrayList<>();
+            AbortRetryIgnoreHandler handler = new AbortRetryIgnoreHandler() {
+                @Override
+                public int handle(Throwable thrown) {
+                    decisions.add(Integer.parseInt(thrown.getMessage()));
+                    return decisions.size() == 1 ? AbortRetryIgnoreHandler.RETRY : AbortRetryIgnoreHandler.IGNORE;
+                }
+
+                @Override
+                public AbortRetryIgnoreHandler getNewInstance() {
+                    return this;
+                }
+            };
+
+            // item 3 fails twice, then it is ignored, item 5 fails once and is ignored
+            ExportTaskQueue queue = new ExportTaskQueue(handler, null, "test");
+            for (int i = 0; i < 8; i++) {
+                final int index = i;
+                queue.add("item" + i, () -> {
+                    runs.incrementAndGet();
+                    if (index == 3 || (index == 5 && runs.get() < 100)) {
+                        throw new IOException(Integer.toString(index));
+                    }
+                });
+            }
+
+            queue.run();
+            assertEquals(decisions.size(), 3);
+            assertEquals((int) decisions.get(0), 3);
+            assertEquals((int) decisions.get(1), 3);
+            assertEquals((int) decisions.get(2), 5);
+            assertEquals(runs.get(), 9);
+
+            ExportTaskQueue abortQueue = new ExportTaskQueue(new AbortRetryIgnoreHandler() {
+                @Override
+                public int handle(Throwable thrown) {
+                    return AbortRetryIgnoreHandler.ABORT;
+                }
+
+                @Override
+                public AbortRetryIgnoreHandler getNewInstance() {
+                    return this;
+                }
+            }, null, "test");
+            abortQueue.add("ok", () -> {
+            });
+            abortQueue.add("failing", () -> {
+                throw new IOException("failed");
+            });
+            try {
+                abortQueue.run();
+                fail();
+            } catch (IOException ex) {
+                assertEquals(ex.getMessage(), "failed");
+            }
+        } finally {
+            Configuration.parallelSpeedUp.set(parallel);
+        }
+    }
+
+    private static void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                deleteDir(file);
+            }
+        }
+
+        dir.delete();
+    }
+}
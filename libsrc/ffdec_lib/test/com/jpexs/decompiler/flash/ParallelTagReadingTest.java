@@ -0,0 +1,89 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash;
+
+import com.jpexs.decompiler.flash.tags.DefineSpriteTag;
+import com.jpexs.decompiler.flash.tags.Tag;
+import com.jpexs.decompiler.flash.tags.TagStub;
+import com.jpexs.helpers.ProgressListener;
+import com.jpexs.helpers.SharedForkJoinPool;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author JPEXS
+ */
+public class ParallelTagReadingTest {
+
+    @DataProvider(name = "files")
+    public Object[][] provideFiles() {
+        return new Object[][]{{"testdata/as2/as2.swf"}, {"testdata/as3/as3.swf"}, {"testdata/embedded.swf"}};
+    }
+
+    @Test(dataProvider = "files")
+    public void testSameAsSerial(String file) throws Exception {
+        List<Integer> percents = Collections.synchronizedList(new ArrayList<>());
+        ProgressListener listener = (int p) -> percents.add(p);
+        SWF parallelSwf = new SWF(new BufferedInputStream(new FileInputStream(file)), null, null, listener, true, false, false);
+        SWF serialSwf = new SWF(new BufferedInputStream(new FileInputStream(file)), null, null, null, false, false, false);
+        assertEquals(describe(parallelSwf.getTags()), describe(serialSwf.getTags()));
+
+        assertFalse(percents.isEmpty());
+        for (int i = 1; i < percents.size(); i++) {
+            assertTrue(percents.get(i) > percents.get(i - 1), "Progress must grow: " + percents);
+        }
+
+        assertTrue(percents.get(percents.size() - 1) <= 100);
+    }
+
+    @Test
+    public void testNestedReadInPool() throws Exception {
+        // sprites resolved from a pool task fork their sub tags to the same pool
+        List<Callable<String>> tasks = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            tasks.add(() -> describe(new SWF(new BufferedInputStream(new FileInputStream("testdata/as2/as2.swf")), null, null, null, true, false, false).getTags()));
+        }
+
+        String expected = describe(new SWF(new BufferedInputStream(new FileInputStream("testdata/as2/as2.swf")), null, null, null, false, false, false).getTags());
+        for (Future<String> result : SharedForkJoinPool.invokeAll(tasks)) {
+            assertEquals(result.get(), expected);
+        }
+    }
+
+    private static String describe(Iterable<Tag> tags) {
+        StringBuilder sb = new StringBuilder();
+        for (Tag tag : tags) {
+            assertFalse(tag instanceof TagStub, "Unresolved tag " + tag.getId());
+            sb.append(tag.getClass().getSimpleName()).append(" ").append(tag.getOriginalRange().getPos()).append("\n");
+            if (tag instanceof DefineSpriteTag) {
+                sb.append("{\n").append(describe(((DefineSpriteTag) tag).getTags())).append("}\n");
+            }
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash;
+
+import com.jpexs.decompiler.flash.abc.ScriptPack;
+import com.jpexs.decompiler.flash.cache.PersistentDecompilationCache;
+import com.jpexs.decompiler.flash.cache.ScriptContentHasher;
+import com.jpexs.decompiler.flash.configuration.Configuration;
+import com.jpexs.decompiler.flash.helpers.HighlightedText;
+import com.jpexs.decompiler.flash.search.TrigramIndex;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author JPEXS
+ */
+public class PersistentDecompilationCacheTest {
+
+    private static final int PACK_COUNT = 10;
+
+    @Test
+    public void testReuseInOtherSwf() throws Exception {
+        File dir = Files.createTempDirectory("ffdec_decompcache").toFile();
+        boolean enabled = Configuration.persistentDecompilationCache.get();
+        String directory = Configuration.persistentDecompilationCacheDirectory.get();
+        try {
+            Configuration.persistentDecompilationCache.set(true);
+            Configuration.persistentDecompilationCacheDirectory.set(dir.getAbsolutePath());
+
+            SWF swf = new SWF(new BufferedInputStream(new FileInputStream("testdata/as3/as3.swf")), false);
+            List<ScriptPack> packs = swf.getAS3Packs();
+            int count = Math.min(PACK_COUNT, packs.size());
+            String[] texts = new String[count];
+            Set<String> hashes = new HashSet<>();
+            for (int i = 0; i < count; i++) {
+                assertNull(PersistentDecompilationCache.get(packs.get(i)));
+                texts[i] = SWF.getCached(packs.get(i)).text;
+                ScriptContentHasher hasher = new ScriptContentHasher("");
+                hasher.hashScriptPack(packs.get(i));
+                hashes.add(hasher.getHash());
+            }
+
+            assertEquals(hashes.size(), count);
+
+            SWF swf2 = new SWF(new BufferedInputStream(new FileInputStream("testdata/as3/as3.swf")), false);
+            List<ScriptPack> packs2 = swf2.getAS3Packs();
+            for (int i = 0; i < count; i++) {
+                HighlightedText cached = PersistentDecompilationCache.get(packs2.get(i));
+                assertNotNull(cached);
+                assertEquals(cached.text, texts[i]);
+                assertEquals(SWF.getCached(packs2.get(i)).text, texts[i]);
+                assertEquals(cached.getInstructionHighlights().size(), SWF.getCached(packs.get(i)).getInstructionHighlights().size());
+                assertEquals(cached.getMethodHighlights().size(), SWF.getCached(packs.get(i)).getMethodHighlights().size());
+            }
+
+            TrigramIndex index = TrigramIndex.create(texts[0]);
+            PersistentDecompilationCache.putSearchIndex(packs2.get(0), index);
+            TrigramIndex cachedIndex = PersistentDecompilationCache.getSearchIndex(packs2.get(0));
+            assertNotNull(cachedIndex);
+            assertEquals(cachedIndex.size(), index.size());
+
+            // other classes of a modified SWF can be changed
+            swf2.setModified(true);
+            try {
+                assertNull(PersistentDecompilationCache.get(packs2.get(0)));
+            } finally {
+                swf2.setModified(false);
+            }
+
+            // different settings must not use the stored scripts
+            Configuration.simplifyExpressions.set(!Configuration.simplifyExpressions.get());
+            try {
+                assertNull(PersistentDecompilationCache.get(packs2.get(0)));
+            } finally {
+                Configuration.simplifyExpressions.set(!Configuration.simplifyExpressions.get());
+            }
+
+            PersistentDecompilationCache.clear();
+            assertNull(PersistentDecompilationCache.get(packs2.get(0)));
+            assertEquals(PersistentDecompilationCache.getDirectory().list().length, 0);
+        } finally {
+            PersistentDecompilationCache.clear();
+            PersistentDecompilationCache.getDirectory().delete();
+            dir.delete();
+            Configuration.persistentDecompilationCache.set(enabled);
+            Configuration.persistentDecompilationCacheDirectory.set(directory);
+        }
+
+        assertTrue(!dir.exists());
+    }
+}
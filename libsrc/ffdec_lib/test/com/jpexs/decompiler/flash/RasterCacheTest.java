@@ -0,0 +1,85 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash;
+
+import com.jpexs.decompiler.flash.exporters.commonshape.Matrix;
+import com.jpexs.decompiler.flash.tags.Tag;
+import com.jpexs.decompiler.flash.tags.base.ShapeTag;
+import com.jpexs.decompiler.flash.timeline.Timeline;
+import com.jpexs.helpers.Cache;
+import com.jpexs.helpers.SerializableImage;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author JPEXS
+ */
+public class RasterCacheTest {
+
+    @Test
+    public void testRasterReuse() throws IOException, InterruptedException {
+        SWF swf = new SWF(new BufferedInputStream(new FileInputStream("testdata/as2/as2.swf")), false);
+        Timeline timeline = swf.getTimeline();
+        Cache<?, ?> cache = swf.getRasterCache();
+
+        // each frame rendered with empty cache
+        List<int[]> expected = new ArrayList<>();
+        for (int f = 0; f < timeline.getFrameCount(); f++) {
+            swf.clearRasterCache();
+            expected.add(getPixels(render(timeline, f)));
+        }
+
+        swf.clearRasterCache();
+        long hits = cache.getHitCount();
+        for (int f = 0; f < timeline.getFrameCount(); f++) {
+            assertEquals(getPixels(render(timeline, f)), expected.get(f), "Frame " + f);
+        }
+
+        assertTrue(cache.getHitCount() > hits, "Rasters are reused between frames");
+
+        // rendering the same frame again needs no new raster
+        long misses = cache.getMissCount();
+        render(timeline, 0);
+        assertEquals(cache.getMissCount(), misses);
+
+        for (Tag t : swf.getTags()) {
+            if (t instanceof ShapeTag) {
+                t.setModified(true);
+                break;
+            }
+        }
+
+        render(timeline, 0);
+        assertTrue(cache.getMissCount() > misses, "Cache is cleared on tag modification");
+    }
+
+    private static SerializableImage render(Timeline timeline, int frame) {
+        return SWF.frameToImageGet(timeline, frame, frame, null, 0, timeline.displayRect, new Matrix(), null, null, 1.0);
+    }
+
+    private static int[] getPixels(SerializableImage image) {
+        BufferedImage bi = image.getBufferedImage();
+        return bi.getRGB(0, 0, bi.getWidth(), bi.getHeight(), null, 0, bi.getWidth());
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash;
+
+import com.jpexs.decompiler.flash.exporters.commonshape.Matrix;
+import com.jpexs.decompiler.flash.tags.base.RenderContext;
+import com.jpexs.decompiler.flash.timeline.Timeline;
+import com.jpexs.helpers.RasterPool;
+import com.jpexs.helpers.SerializableImage;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author JPEXS
+ */
+public class RasterPoolTest {
+
+    @Test
+    public void testBuckets() {
+        RasterPool pool = RasterPool.getInstance();
+        pool.clear();
+        int[] array = pool.getArray(1000);
+        assertTrue(array.length >= 1000);
+        pool.returnArray(array);
+        assertSame(pool.getArray(990), array, "Array of the same bucket is reused");
+
+        pool.returnArray(array);
+        int[] larger = pool.getArray(array.length + 1);
+        assertNotSame(larger, array);
+        assertTrue(larger.length > array.length);
+
+        // arrays which were not created by the pool are accepted too
+        int[] foreign = new int[700];
+        pool.returnArray(foreign);
+        assertSame(pool.getArray(600), foreign);
+    }
+
+    @Test
+    public void testImages() {
+        RasterPool pool = RasterPool.getInstance();
+        for (int type : new int[]{BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_ARGB_PRE, BufferedImage.TYPE_INT_RGB}) {
+            BufferedImage image = pool.getBufferedImage(31, 17, type);
+            Graphics2D g = image.createGraphics();
+            g.setColor(Color.red);
+            g.fillRect(0, 0, 31, 17);
+            pool.returnImage(image);
+
+            BufferedImage reused = pool.getBufferedImage(30, 17, type);
+            assertEquals(reused.getType(), type);
+            assertEquals(reused.getWidth(), 30);
+            assertEquals(reused.getHeight(), 17);
+            assertSame(reused.getRaster().getDataBuffer().getClass(), image.getRaster().getDataBuffer().getClass());
+            for (int y = 0; y < 17; y++) {
+                for (int x = 0; x < 30; x++) {
+                    assertEquals(reused.getRGB(x, y), type == BufferedImage.TYPE_INT_RGB ? 0xff000000 : 0, "Pooled image is cleared");
+                }
+            }
+
+            pool.returnImage(reused);
+        }
+    }
+
+    @Test
+    public void testFrameAllocations() throws Exception {
+        SWF swf = new SWF(new BufferedInputStream(new FileInputStream("testdata/as2/as2.swf")), false);
+        Timeline timeline = swf.getTimeline();
+        RasterPool pool = RasterPool.getInstance();
+        pool.clear();
+
+        long allocations = pool.getAllocationCount();
+        SerializableImage first = render(timeline, 0);
+        long firstAllocations = pool.getAllocationCount() - allocations;
+        assertTrue(firstAllocations > 0);
+
+        // the rasters of the first frame are reused
+        long reuses = pool.getReuseCount();
+        allocations = pool.getAllocationCount();
+        SerializableImage second = render(timeline, 0);
+        assertEquals(pool.getAllocationCount() - allocations, 0);
+        assertTrue(pool.getReuseCount() - reuses >= firstAllocations);
+
+        int width = first.getWidth();
+        int height = first.getHeight();
+        assertEquals(second.getBufferedImage().getRGB(0, 0, width, height, null, 0, width), first.getBufferedImage().getRGB(0, 0, width, height, null, 0, width));
+    }
+
+    private static SerializableImage render(Timeline timeline, int frame) {
+        SerializableImage image = new SerializableImage((int) (timeline.displayRect.getWidth() / SWF.unitDivisor) + 1, (int) (timeline.displayRect.getHeight() / SWF.unitDivisor) + 1, SerializableImage.TYPE_INT_ARGB_PRE);
+        image.fillTransparent();
+
+        // rasters are not stored to the raster cache when the cursor is tracked
+        RenderContext renderContext = new RenderContext();
+        renderContext.cursorPosition = new Point(-1, -1);
+        renderContext.stateUnderCursor = new ArrayList<>();
+        Matrix m = Matrix.getTranslateInstance(-timeline.displayRect.Xmin, -timeline.displayRect.Ymin);
+        timeline.toImage(frame, frame, renderContext, image, false, m, new Matrix(), m, null);
+        return image;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash;
+
+import com.jpexs.decompiler.flash.exporters.commonshape.ExportRectangle;
+import com.jpexs.decompiler.flash.exporters.commonshape.Matrix;
+import com.jpexs.decompiler.flash.exporters.commonshape.SVGExporter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author JPEXS
+ */
+public class SVGExporterTest {
+
+    @Test
+    public void testStreamedDocument() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        SVGExporter exporter = new SVGExporter(new ExportRectangle(0, 0, 2000, 1000), 1, baos);
+        fill(exporter);
+        exporter.finish();
+        String svg = new String(baos.toByteArray(), StandardCharsets.UTF_8);
+
+        SVGExporter exporter2 = new SVGExporter(new ExportRectangle(0, 0, 2000, 1000), 1);
+        fill(exporter2);
+        assertEquals(exporter2.getSVG(), svg);
+
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(baos.toByteArray()));
+        Element root = doc.getDocumentElement();
+        assertEquals(root.getTagName(), "svg");
+        assertEquals(root.getAttribute("width"), "100.0px");
+
+        // the empty group is not written, the attribute set after creation is
+        assertEquals(doc.getElementsByTagName("g").getLength(), 3);
+        assertEquals(((Element) doc.getElementsByTagName("use").item(0)).getAttribute("fill"), "#ff0000");
+        assertEquals(doc.getElementsByTagName("linearGradient").getLength(), 1);
+        assertEquals(doc.getElementsByTagName("path").getLength(), 2);
+        assertTrue(svg.contains("id=\"def0\""));
+        assertFalse(svg.contains("id=\"empty\""));
+    }
+
+    private static void fill(SVGExporter exporter) {
+        exporter.createDefGroup(null, "empty");
+        assertFalse(exporter.endGroup());
+
+        exporter.createDefGroup(null, "def0");
+        for (int i = 0; i < 2; i++) {
+            Element gradient = exporter.createElement("linearGradient");
+            Element stop = exporter.createElement("stop");
+            stop.setAttribute("offset", "0");
+            gradient.appendChild(stop);
+            assertEquals(exporter.addGradient(gradient), "gradient0");
+            Element path = exporter.createElement("path");
+            path.setAttribute("d", "M0 0 L" + i + " 10");
+            path.setAttribute("fill", "url(#gradient0)");
+            exporter.addToGroup(path);
+        }
+
+        assertTrue(exporter.endGroup());
+
+        exporter.createSubGroup(new Matrix(), null);
+        Element use = exporter.addUse(null, null, "def0", null);
+        use.setAttribute("fill", "#ff0000");
+        exporter.endGroup();
+    }
+}
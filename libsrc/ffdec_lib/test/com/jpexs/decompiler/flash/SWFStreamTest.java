@@ -16,9 +16,27 @@
 package com.jpexs.decompiler.flash;
 
 //import com.jpexs.decompiler.flash.gui.Main;
+import com.jpexs.decompiler.flash.action.ActionList;
+import com.jpexs.decompiler.flash.configuration.Configuration;
+import com.jpexs.decompiler.flash.tags.Tag;
+import com.jpexs.decompiler.flash.tags.base.ASMSource;
 import com.jpexs.decompiler.flash.types.RECT;
+import com.jpexs.helpers.Helper;
+import com.jpexs.helpers.MemoryInputStream;
+import com.jpexs.helpers.ParallelDeflaterOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.InflaterInputStream;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 import org.testng.annotations.BeforeClass;
@@ -195,4 +213,188 @@ public class SWFStreamTest {
             assertEquals(readRECT.Ymax, 0x3FFFFFFF);
         }
     }
+
+    @Test
+    public void testMappedLoading() throws IOException, InterruptedException {
+        File compressedFile = new File("testdata/as2/as2.swf");
+        File uncompressedFile = File.createTempFile("ffdec_test_", ".swf");
+        try {
+            try (InputStream is = new FileInputStream(compressedFile);
+                    OutputStream os = new FileOutputStream(uncompressedFile)) {
+                assertTrue(SWF.decompress(is, os));
+            }
+
+            for (File file : new File[]{compressedFile, uncompressedFile}) {
+                SWF swf;
+                SWF mappedSwf;
+                try (InputStream is = new FileInputStream(file)) {
+                    swf = new SWF(is, file.getPath(), file.getName(), null, false, false, true, null, false);
+                }
+                try (InputStream is = new FileInputStream(file)) {
+                    mappedSwf = new SWF(is, file.getPath(), file.getName(), null, false, false, true, null, true);
+                }
+
+                assertTrue(mappedSwf.uncompressedData == null);
+                assertTrue(mappedSwf.uncompressedDataBuffer != null);
+                assertEquals(mappedSwf.getTags().size(), swf.getTags().size());
+                for (int i = 0; i < swf.getTags().size(); i++) {
+                    Tag tag = swf.getTags().get(i);
+                    Tag mappedTag = mappedSwf.getTags().get(i);
+                    assertEquals(mappedTag.getClass(), tag.getClass());
+                    assertEquals(mappedTag.getOriginalData(), tag.getOriginalData());
+                    assertEquals(mappedTag.getData(), tag.getData());
+                }
+
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                swf.saveTo(baos);
+                ByteArrayOutputStream mappedBaos = new ByteArrayOutputStream();
+                mappedSwf.saveTo(mappedBaos);
+                assertEquals(mappedBaos.toByteArray(), baos.toByteArray());
+
+                Map<String, ASMSource> asms = swf.getASMs(false);
+                Map<String, ASMSource> mappedAsms = mappedSwf.getASMs(false);
+                assertTrue(!asms.isEmpty());
+                for (String path : asms.keySet()) {
+                    ActionList actions = SWF.getCachedActionList(asms.get(path), new ArrayList<>());
+                    ActionList mappedActions = SWF.getCachedActionList(mappedAsms.get(path), new ArrayList<>());
+                    assertEquals(mappedActions.fileData.getRangeData(), actions.fileData.getRangeData(), path);
+                }
+
+                ByteBuffer buffer = mappedSwf.uncompressedDataBuffer;
+                assertEquals(Helper.readStream(new MemoryInputStream(buffer, 0, buffer.limit())), swf.uncompressedData);
+                mappedSwf.clearTagSwfs();
+                assertTrue(mappedSwf.uncompressedDataBuffer == null);
+            }
+        } finally {
+            uncompressedFile.delete();
+        }
+    }
+
+    @Test
+    public void testPipelinedDecompression() throws IOException, InterruptedException {
+        SWF origSwf;
+        try (InputStream is = new FileInputStream("testdata/as3/as3.swf")) {
+            origSwf = new SWF(is, false, false);
+        }
+
+        for (SWFCompression compression : new SWFCompression[]{SWFCompression.ZLIB, SWFCompression.LZMA}) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            origSwf.compression = compression;
+            origSwf.saveTo(baos);
+            byte[] data = baos.toByteArray();
+
+            SWF swf = new SWF(new ByteArrayInputStream(data), null, null, null, false, false, true, null, false);
+            SWF pipelinedSwf = new SWF(new ByteArrayInputStream(data), null, null, null, true, false, true, null, false);
+            assertEquals(pipelinedSwf.compression, compression);
+            assertEquals(pipelinedSwf.uncompressedData, swf.uncompressedData);
+            assertEquals(pipelinedSwf.getTags().size(), swf.getTags().size());
+            for (int i = 0; i < swf.getTags().size(); i++) {
+                assertEquals(pipelinedSwf.getTags().get(i).getClass(), swf.getTags().get(i).getClass());
+                assertEquals(pipelinedSwf.getTags().get(i).getData(), swf.getTags().get(i).getData());
+            }
+
+            // header says the data are longer than they are
+            long fileSize = (data[4] & 0xff) | ((data[5] & 0xff) << 8) | ((data[6] & 0xff) << 16) | ((long) (data[7] & 0xff) << 24);
+            fileSize += 1000;
+            for (int i = 0; i < 4; i++) {
+                data[4 + i] = (byte) (fileSize >> (8 * i));
+            }
+
+            swf = new SWF(new ByteArrayInputStream(data), null, null, null, false, false, true, null, false);
+            pipelinedSwf = new SWF(new ByteArrayInputStream(data), null, null, null, true, false, true, null, false);
+            assertEquals(pipelinedSwf.uncompressedData.length, swf.uncompressedData.length + 1000);
+            assertEquals(pipelinedSwf.getTags().size(), swf.getTags().size());
+            for (int i = 0; i < swf.getTags().size(); i++) {
+                assertEquals(pipelinedSwf.getTags().get(i).getData(), swf.getTags().get(i).getData());
+            }
+        }
+    }
+
+    @Test
+    public void testStreamingSave() throws IOException, InterruptedException {
+        SWF origSwf;
+        try (InputStream is = new FileInputStream("testdata/as3/as3.swf")) {
+            origSwf = new SWF(is, false, false);
+        }
+
+        // modified tag is serialized again, the others are copied
+        origSwf.getTags().get(1).setModified(true);
+        origSwf.compression = SWFCompression.NONE;
+        ByteArrayOutputStream uncompressedBaos = new ByteArrayOutputStream();
+        origSwf.saveTo(uncompressedBaos);
+        byte[] uncompressedData = uncompressedBaos.toByteArray();
+        assertEquals(uncompressedData, origSwf.uncompressedData);
+
+        for (SWFCompression compression : new SWFCompression[]{SWFCompression.ZLIB, SWFCompression.LZMA}) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            origSwf.compression = compression;
+            origSwf.saveTo(baos);
+
+            SWF swf = new SWF(new ByteArrayInputStream(baos.toByteArray()), false, false);
+            assertEquals(swf.compression, compression);
+            assertEquals(swf.fileSize, uncompressedData.length);
+            assertEquals(swf.uncompressedData, uncompressedData);
+        }
+    }
+
+    @Test
+    public void testParallelDeflater() throws IOException {
+        Random random = new Random(1);
+        for (int length : new int[]{0, 100, 128 * 1024, 1000 * 1000}) {
+            byte[] data = new byte[length];
+            for (int i = 0; i < length; i++) {
+                // compressible data with matches across block boundaries
+                data[i] = (byte) (i % 1000 < 500 ? i % 251 : random.nextInt(16));
+            }
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            ParallelDeflaterOutputStream dos = new ParallelDeflaterOutputStream(baos);
+            dos.write(data, 0, length / 3);
+            dos.write(data, length / 3, length - length / 3);
+            dos.finish();
+
+            ByteArrayOutputStream inflated = new ByteArrayOutputStream();
+            Helper.copyStream(new InflaterInputStream(new ByteArrayInputStream(baos.toByteArray())), inflated);
+            assertEquals(inflated.toByteArray(), data);
+        }
+    }
+
+    @Test
+    public void testParallelCompression() throws IOException, InterruptedException {
+        SWF origSwf;
+        try (InputStream is = new FileInputStream("testdata/as3/as3.swf")) {
+            origSwf = new SWF(is, false, false);
+        }
+
+        origSwf.compression = SWFCompression.NONE;
+        ByteArrayOutputStream uncompressedBaos = new ByteArrayOutputStream();
+        origSwf.saveTo(uncompressedBaos);
+
+        boolean parallelCompression = Configuration.parallelCompression.get();
+        try {
+            Configuration.parallelCompression.set(true);
+            for (SWFCompression compression : new SWFCompression[]{SWFCompression.ZLIB, SWFCompression.LZMA}) {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                origSwf.compression = compression;
+                origSwf.saveTo(baos);
+
+                SWF swf = new SWF(new ByteArrayInputStream(baos.toByteArray()), false, false);
+                assertEquals(swf.compression, compression);
+                assertEquals(swf.uncompressedData, uncompressedBaos.toByteArray());
+            }
+
+            // small dictionary, larger ones are tried up to the body length
+            origSwf.lzmaProperties = new byte[]{93, 0, 0x40, 0, 0};
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            origSwf.saveTo(baos);
+            byte[] data = baos.toByteArray();
+            int dictionarySize = (data[13] & 0xff) | (data[14] & 0xff) << 8 | (data[15] & 0xff) << 16 | (data[16] & 0xff) << 24;
+            assertTrue(dictionarySize >= 0x4000);
+            assertTrue(dictionarySize <= uncompressedBaos.size() - 8);
+            SWF swf = new SWF(new ByteArrayInputStream(data), false, false);
+            assertEquals(swf.uncompressedData, uncompressedBaos.toByteArray());
+        } finally {
+            Configuration.parallelCompression.set(parallelCompression);
+        }
+    }
 }
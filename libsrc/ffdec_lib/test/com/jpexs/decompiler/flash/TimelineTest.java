@@ -0,0 +1,76 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash;
+
+import com.jpexs.decompiler.flash.timeline.DepthState;
+import com.jpexs.decompiler.flash.timeline.Frame;
+import com.jpexs.decompiler.flash.timeline.Timeline;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author JPEXS
+ */
+public class TimelineTest {
+
+    @Test
+    public void testSharedFrameState() throws IOException, InterruptedException {
+        SWF swf = new SWF(new BufferedInputStream(new FileInputStream("testdata/as2/as2.swf")), false);
+        Timeline timeline = swf.getTimeline();
+        assertTrue(timeline.getFrameCount() > 1);
+
+        Set<DepthState> states = Collections.newSetFromMap(new IdentityHashMap<>());
+        int layerCount = 0;
+        for (int f = 0; f < timeline.getFrameCount(); f++) {
+            Frame frame = timeline.getFrame(f);
+            layerCount += frame.layers.size();
+            states.addAll(frame.layers.values());
+            if (f == 0) {
+                continue;
+            }
+
+            Frame prevFrame = timeline.getFrame(f - 1);
+            if (!frame.layersChanged) {
+                assertSame(frame.layers, prevFrame.layers, "Unchanged frame shares the layers");
+            }
+
+            for (Map.Entry<Integer, DepthState> entry : frame.layers.entrySet()) {
+                DepthState ds = entry.getValue();
+                DepthState prevDs = prevFrame.layers.get(entry.getKey());
+                if (ds == prevDs) {
+                    assertFalse(ds.isKey(frame), "Shared state is not key frame");
+                    assertEquals(ds.getTime(f), prevDs.getTime(f - 1) + 1);
+                } else if (prevDs != null && ds.instanceId == prevDs.instanceId) {
+                    assertSame(ds.frame, frame);
+                    assertEquals(ds.getTime(f), prevDs.getTime(f - 1) + 1);
+                }
+            }
+        }
+
+        assertTrue(states.size() < layerCount, "Depth states are shared between frames");
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash;
+
+import com.jpexs.decompiler.flash.abc.ScriptPack;
+import com.jpexs.decompiler.flash.search.ABCSearchResult;
+import com.jpexs.decompiler.flash.search.ActionScriptSearch;
+import com.jpexs.decompiler.flash.search.ScriptSearchListener;
+import com.jpexs.decompiler.flash.search.TrigramIndex;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author JPEXS
+ */
+public class TrigramIndexTest {
+
+    private static final String TEXT = "public function TestClass() {\n    trace(\"Hello World\");\n}";
+
+    @Test
+    public void testLiteralQuery() {
+        TrigramIndex index = TrigramIndex.create(TEXT);
+        assertTrue(index.containsAll(TrigramIndex.getRequiredTrigrams("Hello", false)));
+        assertTrue(index.containsAll(TrigramIndex.getRequiredTrigrams("hello world", false)));
+        assertTrue(index.containsAll(TrigramIndex.getRequiredTrigrams("TESTCLASS()", false)));
+        assertFalse(index.containsAll(TrigramIndex.getRequiredTrigrams("Hello Moon", false)));
+
+        // too short to be filtered
+        assertEquals(TrigramIndex.getRequiredTrigrams("He", false).length, 0);
+        assertEquals(TrigramIndex.getRequiredTrigrams("He", true).length, 0);
+    }
+
+    @Test
+    public void testRegexpQuery() {
+        TrigramIndex index = TrigramIndex.create(TEXT);
+        assertTrue(index.containsAll(TrigramIndex.getRequiredTrigrams("trace\\(\"Hel+o", true)));
+        assertTrue(index.containsAll(TrigramIndex.getRequiredTrigrams("function [a-z]+Class(Moon)?\\(", true)));
+        assertTrue(index.containsAll(TrigramIndex.getRequiredTrigrams("Hello\\s+Wor.d", true)));
+        assertFalse(index.containsAll(TrigramIndex.getRequiredTrigrams("TestXClass", true)));
+        assertTrue(index.containsAll(TrigramIndex.getRequiredTrigrams("TestX?Class", true)));
+        assertTrue(index.containsAll(TrigramIndex.getRequiredTrigrams("TestX*Class", true)));
+        assertTrue(index.containsAll(TrigramIndex.getRequiredTrigrams("TestX{0,2}Class", true)));
+
+        // not analyzed expressions match anything
+        assertEquals(TrigramIndex.getRequiredTrigrams("Moon|Hello", true).length, 0);
+        assertEquals(TrigramIndex.getRequiredTrigrams("(?x) M o o n", true).length, 0);
+        assertEquals(TrigramIndex.getRequiredTrigrams("\\QMoon\\E", true).length, 0);
+    }
+
+    @Test
+    public void testRegexpEscapes() {
+        TrigramIndex index = TrigramIndex.create(TEXT);
+        String[] queries = new String[]{
+            "Hello \\x57orld",
+            "Hello \\x{57}orld",
+            "Hello \\u0057orld",
+            "Hello \\0127orld",
+            "Hello\\k<name>World",
+            "Hello \\x57 World",
+            "Hello\\p{Zs}World",
+            "Hello\\p{javaWhitespace}World",
+            "Hello\\P{L}World",
+            "Hello\\pZWorld",
+            "Hello\\cJ?World",
+            "\\bHello\\b \\bWorld\\b"
+        };
+        for (String query : queries) {
+            assertTrue(index.containsAll(TrigramIndex.getRequiredTrigrams(query, true)), query);
+        }
+
+        index = TrigramIndex.create("abcabc xyzxyz");
+        assertTrue(index.containsAll(TrigramIndex.getRequiredTrigrams("(abc)\\1 (xyz)\\2", true)));
+        assertTrue(index.containsAll(TrigramIndex.getRequiredTrigrams("(abc)\\10?", true)));
+        assertFalse(index.containsAll(TrigramIndex.getRequiredTrigrams("abc\\x41xyq", true)));
+    }
+
+    @Test
+    public void testIndexedSearch() throws IOException, InterruptedException {
+        SWF swf = new SWF(new BufferedInputStream(new FileInputStream("testdata/as3/as3.swf")), false);
+        ActionScriptSearch search = new ActionScriptSearch();
+
+        List<ABCSearchResult> streamed = new ArrayList<>();
+        Set<String> firstResults = toStrings(search.searchAs3(swf, "trace", false, false, false, null, (ABCSearchResult result) -> {
+            synchronized (streamed) {
+                streamed.add(result);
+            }
+        }));
+        assertFalse(firstResults.isEmpty());
+        assertEquals(toStrings(streamed), firstResults);
+
+        for (ScriptPack pack : swf.getAS3Packs()) {
+            if (pack.isSimple) {
+                assertNotNull(swf.as3Cache.getSearchIndex(pack));
+            }
+        }
+
+        assertEquals(toStrings(search.searchAs3(swf, "trace", false, false, false, null)), firstResults);
+        assertEquals(toStrings(search.searchAs3(swf, "TRACE\\(", true, true, false, null)), toStrings(search.searchAs3(swf, "trace(", false, false, false, null)));
+
+        AtomicInteger searched = new AtomicInteger();
+        ScriptSearchListener listener = new ScriptSearchListener() {
+            @Override
+            public void onDecompile(int pos, int total, String name) {
+            }
+
+            @Override
+            public void onSearch(int pos, int total, String name) {
+                searched.incrementAndGet();
+            }
+        };
+        assertTrue(search.searchAs3(swf, "NotExistingIdentifier", false, false, false, listener).isEmpty());
+        assertEquals(searched.get(), 0, "No script is searched when the index does not contain the text");
+    }
+
+    private static Set<String> toStrings(List<ABCSearchResult> results) {
+        Set<String> ret = new HashSet<>();
+        for (ABCSearchResult result : results) {
+            ret.add(result.toString());
+        }
+
+        return ret;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash;
+
+import com.jpexs.decompiler.flash.treeitems.SWFList;
+import com.jpexs.decompiler.flash.xfl.FLAVersion;
+import com.jpexs.decompiler.flash.xfl.XFLExportSettings;
+import com.jpexs.helpers.Helper;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ *
+ * @author JPEXS
+ */
+public class XFLExportTest {
+
+    @DataProvider(name = "swfs")
+    public Object[][] provideSwfs() {
+        return new Object[][]{{"testdata/as2/as2.swf"}, {"testdata/as3/as3.swf"}};
+    }
+
+    @Test(dataProvider = "swfs")
+    public void testParallelSameAsSerial(String fileName) throws Exception {
+        SWF swf = new SWF(new BufferedInputStream(new FileInputStream(fileName)), false);
+        // timestamps of the library items are taken from the file
+        swf.swfList = new SWFList();
+        swf.swfList.sourceInfo = new SWFSourceInfo(null, fileName, null);
+        File dir = Files.createTempDirectory("ffdec_xfl").toFile();
+        try {
+            XFLExportSettings settings = new XFLExportSettings();
+            settings.compressed = true;
+            settings.exportScript = false;
+            File serialFile = new File(dir, "serial.fla");
+            File parallelFile = new File(dir, "parallel.fla");
+            swf.exportXfl(null, serialFile.getPath(), fileName, "generator", "generator 1.0", "1.0", false, FLAVersion.CS6, settings);
+            swf.exportXfl(null, parallelFile.getPath(), fileName, "generator", "generator 1.0", "1.0", true, FLAVersion.CS6, settings);
+
+            Map<String, byte[]> serialEntries = readZip(serialFile);
+            Map<String, byte[]> parallelEntries = readZip(parallelFile);
+            assertTrue(serialEntries.containsKey("DOMDocument.xml"));
+            assertTrue(serialEntries.containsKey("PublishSettings.xml"));
+            assertTrue(serialEntries.size() > 3);
+            assertEquals(parallelEntries.keySet(), serialEntries.keySet());
+            for (String name : serialEntries.keySet()) {
+                assertEquals(parallelEntries.get(name), serialEntries.get(name), name);
+            }
+
+            // the uncompressed document has the same files
+            File xflDir = new File(dir, "xfl");
+            xflDir.mkdir();
+            settings.compressed = false;
+            swf.exportXfl(null, new File(xflDir, "document.xfl").getPath(), fileName, "generator", "generator 1.0", "1.0", true, FLAVersion.CS6, settings);
+            for (String name : serialEntries.keySet()) {
+                File file = new File(xflDir, name.replace("/", File.separator));
+                assertEquals(Files.readAllBytes(file.toPath()), serialEntries.get(name), name);
+            }
+        } finally {
+            deleteDir(dir);
+        }
+    }
+
+    @Test
+    public void testOutlineColorsSameAsPreviousVersions() throws Exception {
+        String fileName = "testdata/as3/as3.swf";
+        SWF swf = new SWF(new BufferedInputStream(new FileInputStream(fileName)), false);
+        swf.swfList = new SWFList();
+        swf.swfList.sourceInfo = new SWFSourceInfo(null, fileName, null);
+        File dir = Files.createTempDirectory("ffdec_xfl").toFile();
+        try {
+            XFLExportSettings settings = new XFLExportSettings();
+            settings.compressed = true;
+            settings.exportScript = false;
+            File file = new File(dir, "parallel.fla");
+            swf.exportXfl(null, file.getPath(), fileName, "generator", "generator 1.0", "1.0", true, FLAVersion.CS6, settings);
+
+            // symbols take the layer colors from one sequence in character order, the main timeline continues it
+            Map<String, byte[]> entries = readZip(file);
+            assertTrue(new String(entries.get("LIBRARY/Symbol 6.xml"), "UTF-8").contains("color=\"#b93cfd\""));
+            String document = new String(entries.get("DOMDocument.xml"), "UTF-8");
+            assertTrue(document.contains("name=\"Layer 1\" color=\"#9b42ce\""));
+            assertTrue(document.contains("name=\"Layer 4\" color=\"#eedfad\""));
+        } finally {
+            deleteDir(dir);
+        }
+    }
+
+    private static Map<String, byte[]> readZip(File file) throws Exception {
+        Map<String, byte[]> entries = new TreeMap<>();
+        try (ZipInputStream zis = new ZipInputStream(new FileInputStream(file))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                entries.put(entry.getName(), Helper.readStream(zis));
+            }
+        }
+
+        return entries;
+    }
+
+    private static void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                deleteDir(file);
+            }
+        }
+
+        dir.delete();
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library. */
+package com.jpexs.decompiler.flash.generators;
+
+import com.jpexs.decompiler.flash.FilteringTest;
+import com.jpexs.helpers.utf8.Utf8Helper;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Map;
+
+/**
+ *
+ * Generates golden hashes for FilteringTest, it should be run only when the
+ * results of the filters are changed intentionally
+ *
+ * @author JPEXS
+ */
+public class FilteringGoldenGenerator {
+
+    public static void main(String[] args) throws Exception {
+        StringBuilder s = new StringBuilder();
+        for (Map.Entry<String, String> entry : FilteringTest.computeHashes().entrySet()) {
+            s.append(entry.getKey()).append(" ").append(entry.getValue()).append("\n");
+        }
+
+        File file = new File(FilteringTest.GOLDEN_FILE);
+        file.getParentFile().mkdirs();
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            fos.write(Utf8Helper.getBytes(s.toString()));
+        }
+    }
+}
@@ -154,7 +154,9 @@ import com.jpexs.helpers.Helper;
 import com.jpexs.helpers.MemoryInputStream;
 import com.jpexs.helpers.Path;
 import com.jpexs.helpers.ProgressListener;
-import com.jpexs.helpers.stat.StatisticData;
+import com.jpexs.helpers.stat.Metrics;
+import com.jpexs.helpers.stat.MetricsExporter;
+import com.jpexs.helpers.stat.MetricsSnapshot;
 import com.jpexs.helpers.stat.Statistics;
 import com.jpexs.helpers.streams.SeekableInputStream;
 import com.jpexs.helpers.utf8.Utf8Helper;
@@ -203,6 +205,11 @@ import java.util.Set;
 import java.util.Stack;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -219,6 +226,18 @@ public class CommandLineArgumentParser {
 
     private static boolean showStat = false;
 
+    /**
+     * Metrics of the already processed files, the registry is reset after each
+     * file when the statistics are shown
+     */
+    private static final MetricsSnapshot collectedMetrics = new MetricsSnapshot();
+
+    /**
+     * Estimated memory needed for the export of a SWF file in multiples of its
+     * uncompressed size
+     */
+    private static final int EXPORT_MEMORY_FACTOR = 8;
+
     private static String stdOut = null;
 
     private static String stdErr = null;
@@ -504,6 +523,23 @@ public class CommandLineArgumentParser {
             out.println("  ...show export performance statistics");
         }
 
+        if (filter == null || filter.equals("parallelfiles")) {
+            out.println(" " + (cnt++) + ") -parallelFiles <N>");
+            out.println("  ...export <N> SWF files at the same time when the export input is a folder");
+        }
+
+        if (filter == null || filter.equals("memorybudget")) {
+            out.println(" " + (cnt++) + ") -memoryBudget <N>");
+            out.println("  ...memory budget in MB for files exported at the same time, large files wait until their estimated memory fits");
+            out.println("  ...default is half of the maximum heap size");
+        }
+
+        if (filter == null || filter.equals("metrics")) {
+            out.println(" " + (cnt++) + ") -metrics <outfile>");
+            out.println("  ...write performance counters and latency percentiles to <outfile> on exit");
+            out.println("  ...JSON when <outfile> has .json extension, Prometheus text format otherwise");
+        }
+
         if (filter == null || filter.equals("flashpaper2pdf")) {
             out.println(" " + (cnt++) + ") -flashpaper2pdf <infile> <outfile>");
             out.println("  ...converts FlashPaper SWF file <infile> to PDF <outfile>. Use -zoom parameter to specify image quality.");
@@ -821,6 +857,15 @@ public class CommandLineArgumentParser {
                 case "-stat":
                     parseStat(args);
                     break;
+                case "-metrics":
+                    parseMetrics(args);
+                    break;
+                case "-parallelfiles":
+                    parseParallelFiles(args);
+                    break;
+                case "-memorybudget":
+                    parseMemoryBudget(args);
+                    break;
                 case "-info":
                     parseInfo(args);
                     break;
@@ -1840,6 +1885,57 @@ public class CommandLineArgumentParser {
         Configuration.showStat = showStat;
     }
 
+    private static void parseParallelFiles(Stack<String> args) {
+        if (args.isEmpty()) {
+            System.err.println("Parallel file count parameter expected");
+            badArguments("parallelfiles");
+        }
+
+        try {
+            int count = Integer.parseInt(args.pop());
+            Configuration.exportParallelFiles.set(count);
+        } catch (NumberFormatException nex) {
+            System.err.println("Bad parallel file count value");
+        }
+    }
+
+    private static void parseMemoryBudget(Stack<String> args) {
+        if (args.isEmpty()) {
+            System.err.println("Memory budget parameter expected");
+            badArguments("memorybudget");
+        }
+
+        try {
+            int budget = Integer.parseInt(args.pop());
+            Configuration.exportMemoryBudget.set(budget);
+        } catch (NumberFormatException nex) {
+            System.err.println("Bad memory budget value");
+        }
+    }
+
+    private static void parseMetrics(Stack<String> args) {
+        if (args.isEmpty()) {
+            System.err.println("Metrics file parameter expected");
+            badArguments("metrics");
+        }
+
+        final File file = new File(args.pop());
+        Metrics.setEnabled(true);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            MetricsSnapshot snapshot = new MetricsSnapshot();
+            synchronized (collectedMetrics) {
+                snapshot.add(collectedMetrics);
+            }
+
+            snapshot.add(Metrics.snapshot());
+            try {
+                MetricsExporter.export(snapshot, file);
+            } catch (IOException ex) {
+                System.err.println("Cannot write metrics to " + file.getPath() + ": " + ex.getMessage());
+            }
+        }));
+    }
+
     private static void parseStdOut(Stack<String> args) {
         if (args.isEmpty()) {
             System.err.println("stdOut parameter expected");
@@ -2126,11 +2222,24 @@ public class CommandLineArgumentParser {
             as3classes.addAll(selectionClasses);
         }
 
-        Map<String, StatisticData> stat = new HashMap<>();
+        // First check all the specified export formats
+        for (String exportFormat : exportFormats) {
+            if (Arrays.asList(removedExportFormats).contains(exportFormat)) {
+                System.err.println("Error: Export format : " + exportFormat + " was REMOVED. Run application with --help parameter to see available formats.");
+                System.exit(1);
+            } else if (!Arrays.asList(validExportItems).contains(exportFormat)) {
+                System.err.println("Invalid export item:" + exportFormat);
+                badArguments("export");
+            }
+        }
 
+        // Here the exportFormats array should contain only validitems
+        commandLineMode = true;
+        List<String> failedFiles = Collections.synchronizedList(new ArrayList<>());
+        int fileCount = 0;
+        boolean singleFile = true;
         try {
             File[] inFiles;
-            boolean singleFile = true;
             if (inFileOrFolder.isDirectory()) {
                 singleFile = false;
                 inFiles = inFileOrFolder.listFiles(getSwfFilter());
@@ -2138,246 +2247,415 @@ public class CommandLineArgumentParser {
                 inFiles = new File[]{inFileOrFolder};
             }
 
-            for (File inFile : inFiles) {
-                String inFileName = Path.getFileNameWithoutExtension(inFile);
-                if (stdOut != null) {
-                    String outFilePath = stdOut.replace("{swfFile}", inFileName);
-                    Path.createDirectorySafe(new File(outFilePath).getParentFile());
-                    System.setOut(new PrintStream(new FileOutputStream(outFilePath, true)));
-                }
+            fileCount = inFiles.length;
+            int parallelFiles = singleFile ? 1 : Math.max(1, Configuration.exportParallelFiles.get());
+            if (parallelFiles > 1) {
+                exportOK = exportFilesParallel(inFiles, parallelFiles, outDirBase, exportFormats, selection, selectionIds, as3classes, handler, traceLevel, formats, zoom, failedFiles);
+            } else {
+                for (File inFile : inFiles) {
+                    String inFileName = Path.getFileNameWithoutExtension(inFile);
+                    if (stdOut != null) {
+                        String outFilePath = stdOut.replace("{swfFile}", inFileName);
+                        Path.createDirectorySafe(new File(outFilePath).getParentFile());
+                        System.setOut(new PrintStream(new FileOutputStream(outFilePath, true)));
+                    }
 
-                if (stdErr != null) {
-                    String errFilePath = stdErr.replace("{swfFile}", inFileName);
-                    Path.createDirectorySafe(new File(errFilePath).getParentFile());
-                    System.setErr(new PrintStream(new FileOutputStream(errFilePath, true)));
-                    Main.initLogging(Configuration._debugMode.get());
-                }
+                    if (stdErr != null) {
+                        String errFilePath = stdErr.replace("{swfFile}", inFileName);
+                        Path.createDirectorySafe(new File(errFilePath).getParentFile());
+                        System.setErr(new PrintStream(new FileOutputStream(errFilePath, true)));
+                        Main.initLogging(Configuration._debugMode.get());
+                    }
 
-                long startTimeSwf = 0;
-                if (!singleFile) {
-                    startTimeSwf = System.currentTimeMillis();
-                    System.out.println("Start exporting " + inFile.getName());
-                }
+                    try {
+                        if (!exportFile(inFile, singleFile, outDirBase, exportFormats, selection, selectionIds, as3classes, handler, traceLevel, formats, zoom, true)) {
+                            exportOK = false;
+                            failedFiles.add(inFile.getName());
+                        }
+                    } catch (FileNotFoundException | SwfOpenException ex) {
+                        // FileNotFoundException when anti virus software blocks to open the file
+                        logger.log(Level.SEVERE, "Failed to open swf: " + inFile.getName(), ex);
+                        failedFiles.add(inFile.getName());
+                        continue;
+                    }
 
-                SWFSourceInfo sourceInfo = new SWFSourceInfo(null, inFile.getAbsolutePath(), inFile.getName());
-                SWF swf;
-                try {
-                    swf = new SWF(new FileInputStream(inFile), sourceInfo.getFile(), sourceInfo.getFileTitle(), Configuration.parallelSpeedUp.get());
-                } catch (FileNotFoundException | SwfOpenException ex) {
-                    // FileNotFoundException when anti virus software blocks to open the file
-                    logger.log(Level.SEVERE, "Failed to open swf: " + inFile.getName(), ex);
-                    continue;
+                    CancellableWorker.cancelBackgroundThreads();
                 }
+            }
+        } catch (OutOfMemoryError | Exception ex) {
+            System.err.print("FAIL: Exporting Failed on Exception - ");
+            logger.log(Level.SEVERE, null, ex);
+            System.exit(1);
+        }
+
+        if (showStat) {
+            synchronized (collectedMetrics) {
+                // files exported in parallel do not clear the metrics
+                collectedMetrics.add(Metrics.snapshot());
+                Statistics.clear();
+                Statistics.print(collectedMetrics);
+            }
+        }
 
-                swf.swfList = new SWFList();
-                swf.swfList.sourceInfo = sourceInfo;
-                String outDir = outDirBase.getAbsolutePath();
-                if (!singleFile) {
-                    outDir = Path.combine(outDir, inFile.getName());
+        long stopTime = System.currentTimeMillis();
+        long time = stopTime - startTime;
+        if (!singleFile) {
+            System.out.println("Exported files: " + (fileCount - failedFiles.size()) + "/" + fileCount);
+            if (!failedFiles.isEmpty()) {
+                Collections.sort(failedFiles);
+                System.out.println("Failed files:");
+                for (String failedFile : failedFiles) {
+                    System.out.println("  " + failedFile);
                 }
+            }
+        }
+
+        System.out.println("Export finished. Total export time: " + Helper.formatTimeSec(time));
+        System.out.println(exportOK ? "OK" : "FAIL");
+        System.exit(exportOK ? 0 : 1);
+    }
+
+    /**
+     * Exports the SWF files of a folder at the same time. Files are started in
+     * the order of the list when their estimated memory fits into the memory
+     * budget, per file stdout and stderr is written by the thread of the file.
+     */
+    private static boolean exportFilesParallel(File[] inFiles, int parallelFiles, final File outDirBase, final List<String> exportFormats, final Selection selection, final Selection selectionIds, final List<String> as3classes, final AbortRetryIgnoreHandler handler, final Level traceLevel, final Map<String, String> formats, final double zoom, final List<String> failedFiles) throws InterruptedException {
+        int memoryBudget = Configuration.exportMemoryBudget.get();
+        if (memoryBudget <= 0) {
+            memoryBudget = (int) Math.max(1, Runtime.getRuntime().maxMemory() / 2 / (1024 * 1024));
+        }
+
+        final Semaphore memory = new Semaphore(memoryBudget, true);
+        final PerThreadOutputStream outStream = stdOut == null ? null : new PerThreadOutputStream(System.out);
+        final PerThreadOutputStream errStream = stdErr == null ? null : new PerThreadOutputStream(System.err);
+        if (outStream != null) {
+            System.setOut(new PrintStream(outStream, true));
+        }
+
+        if (errStream != null) {
+            System.setErr(new PrintStream(errStream, true));
+            Main.initLogging(Configuration._debugMode.get());
+        }
 
-                List<Tag> extags = new ArrayList<>();
-                for (Tag t : swf.getTags()) {
-                    if (t instanceof CharacterIdTag) {
-                        CharacterIdTag c = (CharacterIdTag) t;
-                        if (selectionIds.contains(c.getCharacterId())) {
-                            extags.add(t);
+        boolean exportOK = true;
+        ExecutorService executor = Executors.newFixedThreadPool(parallelFiles);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (final File inFile : inFiles) {
+                // a file larger than the budget waits for all running files
+                final int fileMemory = Math.min(memoryBudget, estimateExportMemory(inFile));
+                memory.acquire(fileMemory);
+                try {
+                    results.add(executor.submit(() -> {
+                        try {
+                            return exportFileRedirected(inFile, outStream, errStream, outDirBase, exportFormats, selection, selectionIds, as3classes, handler, traceLevel, formats, zoom);
+                        } finally {
+                            memory.release(fileMemory);
                         }
-                    } else if (selectionIds.contains(0)) {
-                        extags.add(t);
-                    }
+                    }));
+                } catch (RejectedExecutionException ex) {
+                    memory.release(fileMemory);
+                    throw ex;
                 }
+            }
 
-                final Level level = traceLevel;
-                swf.addEventListener(new EventListener() {
-                    @Override
-                    public void handleExportingEvent(String type, int index, int count, Object data) {
-                        if (level.intValue() <= Level.FINE.intValue()) {
-                            String text = "Exporting ";
-                            if (type != null && type.length() > 0) {
-                                text += type + " ";
-                            }
-                            System.out.println(text + index + "/" + count + " " + data);
-                        }
+            for (int i = 0; i < results.size(); i++) {
+                String fileName = inFiles[i].getName();
+                try {
+                    if (!results.get(i).get()) {
+                        exportOK = false;
+                        failedFiles.add(fileName);
                     }
+                } catch (ExecutionException ex) {
+                    exportOK = false;
+                    failedFiles.add(fileName);
+                    logger.log(Level.SEVERE, "Failed to export swf: " + fileName, ex.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
 
-                    @Override
-                    public void handleExportedEvent(String type, int index, int count, Object data) {
-                        String text = "Exported ";
-                        if (type != null && type.length() > 0) {
-                            text += type + " ";
-                        }
-                        System.out.println(text + index + "/" + count + " " + data);
-                    }
+        SWF.clearAllStaticCache();
+        CancellableWorker.cancelBackgroundThreads();
+        return exportOK;
+    }
 
-                    @Override
-                    public void handleEvent(String event, Object data) {
-                    }
-                });
+    private static boolean exportFileRedirected(File inFile, PerThreadOutputStream outStream, PerThreadOutputStream errStream, File outDirBase, List<String> exportFormats, Selection selection, Selection selectionIds, List<String> as3classes, AbortRetryIgnoreHandler handler, Level traceLevel, Map<String, String> formats, double zoom) throws Exception {
+        String inFileName = Path.getFileNameWithoutExtension(inFile);
+        OutputStream fileOut = null;
+        OutputStream fileErr = null;
+        try {
+            if (outStream != null) {
+                String outFilePath = stdOut.replace("{swfFile}", inFileName);
+                Path.createDirectorySafe(new File(outFilePath).getParentFile());
+                fileOut = new BufferedOutputStream(new FileOutputStream(outFilePath, true));
+                outStream.setThreadStream(fileOut);
+            }
 
-                // First check all the specified export formats
-                for (String exportFormat : exportFormats) {
-                    if (Arrays.asList(removedExportFormats).contains(exportFormat)) {
-                        System.err.println("Error: Export format : " + exportFormat + " was REMOVED. Run application with --help parameter to see available formats.");
-                        System.exit(1);
-                    } else if (!Arrays.asList(validExportItems).contains(exportFormat)) {
-                        System.err.println("Invalid export item:" + exportFormat);
-                        badArguments("export");
-                    }
-                }
+            if (errStream != null) {
+                String errFilePath = stdErr.replace("{swfFile}", inFileName);
+                Path.createDirectorySafe(new File(errFilePath).getParentFile());
+                fileErr = new BufferedOutputStream(new FileOutputStream(errFilePath, true));
+                errStream.setThreadStream(fileErr);
+            }
 
-                // Here the exportFormats array should contain only validitems
-                commandLineMode = true;
-                boolean exportAll = exportFormats.contains("all");
-                boolean multipleExportTypes = exportAll || exportFormats.size() > 1;
-                EventListener evl = swf.getExportEventListener();
+            try {
+                return exportFile(inFile, false, outDirBase, exportFormats, selection, selectionIds, as3classes, handler, traceLevel, formats, zoom, false);
+            } catch (FileNotFoundException | SwfOpenException ex) {
+                // FileNotFoundException when anti virus software blocks to open the file
+                logger.log(Level.SEVERE, "Failed to open swf: " + inFile.getName(), ex);
+                return false;
+            }
+        } finally {
+            if (outStream != null) {
+                outStream.setThreadStream(null);
+            }
 
-                if (exportAll || exportFormats.contains("image")) {
-                    System.out.println("Exporting images...");
-                    new ImageExporter().exportImages(handler, outDir + (multipleExportTypes ? File.separator + ImageExportSettings.EXPORT_FOLDER_NAME : ""), new ReadOnlyTagList(extags), new ImageExportSettings(enumFromStr(formats.get("image"), ImageExportMode.class)), evl);
-                }
+            if (errStream != null) {
+                errStream.setThreadStream(null);
+            }
 
-                if (exportAll || exportFormats.contains("shape")) {
-                    System.out.println("Exporting shapes...");
-                    new ShapeExporter().exportShapes(handler, outDir + (multipleExportTypes ? File.separator + ShapeExportSettings.EXPORT_FOLDER_NAME : ""), new ReadOnlyTagList(extags), new ShapeExportSettings(enumFromStr(formats.get("shape"), ShapeExportMode.class), zoom), evl);
-                }
+            if (fileOut != null) {
+                fileOut.close();
+            }
 
-                if (exportAll || exportFormats.contains("morphshape")) {
-                    System.out.println("Exporting morphshapes...");
-                    new MorphShapeExporter().exportMorphShapes(handler, outDir + (multipleExportTypes ? File.separator + MorphShapeExportSettings.EXPORT_FOLDER_NAME : ""), new ReadOnlyTagList(extags), new MorphShapeExportSettings(enumFromStr(formats.get("morphshape"), MorphShapeExportMode.class), zoom), evl);
-                }
+            if (fileErr != null) {
+                fileErr.close();
+            }
+        }
+    }
 
-                if (exportAll || exportFormats.contains("movie")) {
-                    System.out.println("Exporting movies...");
-                    new MovieExporter().exportMovies(handler, outDir + (multipleExportTypes ? File.separator + MovieExportSettings.EXPORT_FOLDER_NAME : ""), new ReadOnlyTagList(extags), new MovieExportSettings(enumFromStr(formats.get("movie"), MovieExportMode.class)), evl);
-                }
+    /**
+     * Estimates the memory needed for the export of the SWF file from the
+     * uncompressed size in its header
+     *
+     * @param file SWF file
+     * @return Memory in MB
+     */
+    private static int estimateExportMemory(File file) {
+        long size = file.length();
+        try (InputStream is = new FileInputStream(file)) {
+            byte[] header = new byte[8];
+            if (is.read(header) == header.length) {
+                long uncompressedSize = (header[4] & 0xff) | ((header[5] & 0xff) << 8) | ((header[6] & 0xff) << 16) | ((long) (header[7] & 0xff) << 24);
+                size = Math.max(size, uncompressedSize);
+            }
+        } catch (IOException ex) {
+            // the error is reported by the export
+        }
 
-                if (exportAll || exportFormats.contains("font")) {
-                    System.out.println("Exporting fonts...");
-                    new FontExporter().exportFonts(handler, outDir + (multipleExportTypes ? File.separator + FontExportSettings.EXPORT_FOLDER_NAME : ""), new ReadOnlyTagList(extags), new FontExportSettings(enumFromStr(formats.get("font"), FontExportMode.class)), evl);
-                }
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1, size * EXPORT_MEMORY_FACTOR / (1024 * 1024)));
+    }
 
-                if (exportAll || exportFormats.contains("sound")) {
-                    System.out.println("Exporting sounds...");
-                    new SoundExporter().exportSounds(handler, outDir + (multipleExportTypes ? File.separator + SoundExportSettings.EXPORT_FOLDER_NAME : ""), new ReadOnlyTagList(extags), new SoundExportSettings(enumFromStr(formats.get("sound"), SoundExportMode.class)), evl);
-                }
+    /**
+     * Exports one SWF file
+     *
+     * @param serial True when no other file is exported at the same time
+     * @return False when the script export failed
+     */
+    private static boolean exportFile(File inFile, boolean singleFile, File outDirBase, List<String> exportFormats, Selection selection, Selection selectionIds, List<String> as3classes, AbortRetryIgnoreHandler handler, Level traceLevel, Map<String, String> formats, double zoom, boolean serial) throws Exception {
+        boolean exportOK = true;
 
-                if (exportAll || exportFormats.contains("binarydata")) {
-                    System.out.println("Exporting binaryData...");
-                    new BinaryDataExporter().exportBinaryData(handler, outDir + (multipleExportTypes ? File.separator + BinaryDataExportSettings.EXPORT_FOLDER_NAME : ""), new ReadOnlyTagList(extags), new BinaryDataExportSettings(enumFromStr(formats.get("binarydata"), BinaryDataExportMode.class)), evl);
-                }
+        long startTimeSwf = 0;
+        if (!singleFile) {
+            startTimeSwf = System.currentTimeMillis();
+            System.out.println("Start exporting " + inFile.getName());
+        }
 
-                if (exportAll || exportFormats.contains("text")) {
-                    System.out.println("Exporting texts...");
-                    Boolean singleTextFile = parseBooleanConfigValue(formats.get("singletext"));
-                    if (singleTextFile == null) {
-                        singleTextFile = Configuration.textExportSingleFile.get();
-                    }
-                    new TextExporter().exportTexts(handler, outDir + (multipleExportTypes ? File.separator + TextExportSettings.EXPORT_FOLDER_NAME : ""), new ReadOnlyTagList(extags), new TextExportSettings(enumFromStr(formats.get("text"), TextExportMode.class), singleTextFile, zoom), evl);
-                }
+        SWFSourceInfo sourceInfo = new SWFSourceInfo(null, inFile.getAbsolutePath(), inFile.getName());
+        SWF swf = new SWF(new FileInputStream(inFile), sourceInfo.getFile(), sourceInfo.getFileTitle(), Configuration.parallelSpeedUp.get());
 
-                FrameExporter frameExporter = new FrameExporter();
+        swf.swfList = new SWFList();
+        swf.swfList.sourceInfo = sourceInfo;
+        String outDir = outDirBase.getAbsolutePath();
+        if (!singleFile) {
+            outDir = Path.combine(outDir, inFile.getName());
+        }
 
-                if (exportAll || exportFormats.contains("frame")) {
-                    System.out.println("Exporting frames...");
-                    List<Integer> frames = new ArrayList<>();
-                    for (int i = 0; i < swf.frameCount; i++) {
-                        if (selection.contains(i + 1)) {
-                            frames.add(i);
-                        }
-                    }
-                    FrameExportSettings fes = new FrameExportSettings(enumFromStr(formats.get("frame"), FrameExportMode.class), zoom);
-                    frameExporter.exportFrames(handler, outDir + (multipleExportTypes ? File.separator + FrameExportSettings.EXPORT_FOLDER_NAME : ""), swf, 0, frames, fes, evl);
+        List<Tag> extags = new ArrayList<>();
+        for (Tag t : swf.getTags()) {
+            if (t instanceof CharacterIdTag) {
+                CharacterIdTag c = (CharacterIdTag) t;
+                if (selectionIds.contains(c.getCharacterId())) {
+                    extags.add(t);
                 }
+            } else if (selectionIds.contains(0)) {
+                extags.add(t);
+            }
+        }
 
-                if (exportAll || exportFormats.contains("sprite")) {
-                    System.out.println("Exporting sprite...");
-                    SpriteExportSettings ses = new SpriteExportSettings(enumFromStr(formats.get("sprite"), SpriteExportMode.class), zoom);
-                    for (CharacterTag c : swf.getCharacters().values()) {
-                        if (c instanceof DefineSpriteTag) {
-                            frameExporter.exportSpriteFrames(handler, outDir + (multipleExportTypes ? File.separator + SpriteExportSettings.EXPORT_FOLDER_NAME : ""), swf, c.getCharacterId(), null, ses, evl);
-                        }
+        final Level level = traceLevel;
+        swf.addEventListener(new EventListener() {
+            @Override
+            public void handleExportingEvent(String type, int index, int count, Object data) {
+                if (level.intValue() <= Level.FINE.intValue()) {
+                    String text = "Exporting ";
+                    if (type != null && type.length() > 0) {
+                        text += type + " ";
                     }
+                    System.out.println(text + index + "/" + count + " " + data);
                 }
+            }
 
-                if (exportAll || exportFormats.contains("button")) {
-                    System.out.println("Exporting buttons...");
-                    ButtonExportSettings bes = new ButtonExportSettings(enumFromStr(formats.get("button"), ButtonExportMode.class), zoom);
-                    for (CharacterTag c : swf.getCharacters().values()) {
-                        if (c instanceof ButtonTag) {
-                            frameExporter.exportButtonFrames(handler, outDir + (multipleExportTypes ? File.separator + ButtonExportSettings.EXPORT_FOLDER_NAME : ""), swf, c.getCharacterId(), null, bes, evl);
-                        }
-                    }
+            @Override
+            public void handleExportedEvent(String type, int index, int count, Object data) {
+                String text = "Exported ";
+                if (type != null && type.length() > 0) {
+                    text += type + " ";
                 }
+                System.out.println(text + index + "/" + count + " " + data);
+            }
 
-                boolean parallel = Configuration.parallelSpeedUp.get();
-                Boolean singleScriptFile = parseBooleanConfigValue(formats.get("singlescript"));
-                if (singleScriptFile == null) {
-                    singleScriptFile = Configuration.scriptExportSingleFile.get();
-                }
+            @Override
+            public void handleEvent(String event, Object data) {
+            }
+        });
 
-                if (parallel && singleScriptFile) {
-                    logger.log(Level.WARNING, AppStrings.translate("export.script.singleFilePallelModeWarning"));
-                    singleScriptFile = false;
-                }
+        boolean exportAll = exportFormats.contains("all");
+        boolean multipleExportTypes = exportAll || exportFormats.size() > 1;
+        EventListener evl = swf.getExportEventListener();
 
-                ScriptExportSettings scriptExportSettings = new ScriptExportSettings(enumFromStr(formats.get("script"), ScriptExportMode.class), singleScriptFile);
-                boolean exportAllScript = exportAll || exportFormats.contains("script");
-                boolean exportAs2Script = exportAllScript || exportFormats.contains("script_as2");
-                boolean exportAs3Script = exportAllScript || exportFormats.contains("script_as3");
-                if (exportAs2Script || exportAs3Script) {
-                    System.out.println("Exporting scripts...");
-
-                    String scriptsFolder = Path.combine(outDir, ScriptExportSettings.EXPORT_FOLDER_NAME);
-                    Path.createDirectorySafe(new File(scriptsFolder));
-                    String singleFileName = Path.combine(scriptsFolder, swf.getShortFileName() + scriptExportSettings.getFileExtension());
-                    try (FileTextWriter writer = scriptExportSettings.singleFile ? new FileTextWriter(Configuration.getCodeFormatting(), new FileOutputStream(singleFileName)) : null) {
-                        scriptExportSettings.singleFileWriter = writer;
-                        List<ScriptPack> as3packs = as3classes.isEmpty() ? null : swf.getScriptPacksByClassNames(as3classes);
-                        exportOK = swf.exportActionScript(handler, scriptsFolder, as3classes.isEmpty() ? null : as3packs, scriptExportSettings, parallel, evl, exportAs2Script, exportAs3Script) != null && exportOK;
-                    }
+        if (exportAll || exportFormats.contains("image")) {
+            System.out.println("Exporting images...");
+            new ImageExporter().exportImages(handler, outDir + (multipleExportTypes ? File.separator + ImageExportSettings.EXPORT_FOLDER_NAME : ""), new ReadOnlyTagList(extags), new ImageExportSettings(enumFromStr(formats.get("image"), ImageExportMode.class)), evl);
+        }
 
-                    if (showStat) {
-                        Statistics.print();
-                        Statistics.addToMap(stat);
-                        Statistics.clear();
-                    }
-                }
+        if (exportAll || exportFormats.contains("shape")) {
+            System.out.println("Exporting shapes...");
+            new ShapeExporter().exportShapes(handler, outDir + (multipleExportTypes ? File.separator + ShapeExportSettings.EXPORT_FOLDER_NAME : ""), new ReadOnlyTagList(extags), new ShapeExportSettings(enumFromStr(formats.get("shape"), ShapeExportMode.class), zoom), evl);
+        }
+
+        if (exportAll || exportFormats.contains("morphshape")) {
+            System.out.println("Exporting morphshapes...");
+            new MorphShapeExporter().exportMorphShapes(handler, outDir + (multipleExportTypes ? File.separator + MorphShapeExportSettings.EXPORT_FOLDER_NAME : ""), new ReadOnlyTagList(extags), new MorphShapeExportSettings(enumFromStr(formats.get("morphshape"), MorphShapeExportMode.class), zoom), evl);
+        }
+
+        if (exportAll || exportFormats.contains("movie")) {
+            System.out.println("Exporting movies...");
+            new MovieExporter().exportMovies(handler, outDir + (multipleExportTypes ? File.separator + MovieExportSettings.EXPORT_FOLDER_NAME : ""), new ReadOnlyTagList(extags), new MovieExportSettings(enumFromStr(formats.get("movie"), MovieExportMode.class)), evl);
+        }
+
+        if (exportAll || exportFormats.contains("font")) {
+            System.out.println("Exporting fonts...");
+            new FontExporter().exportFonts(handler, outDir + (multipleExportTypes ? File.separator + FontExportSettings.EXPORT_FOLDER_NAME : ""), new ReadOnlyTagList(extags), new FontExportSettings(enumFromStr(formats.get("font"), FontExportMode.class)), evl);
+        }
+
+        if (exportAll || exportFormats.contains("sound")) {
+            System.out.println("Exporting sounds...");
+            new SoundExporter().exportSounds(handler, outDir + (multipleExportTypes ? File.separator + SoundExportSettings.EXPORT_FOLDER_NAME : ""), new ReadOnlyTagList(extags), new SoundExportSettings(enumFromStr(formats.get("sound"), SoundExportMode.class)), evl);
+        }
+
+        if (exportAll || exportFormats.contains("binarydata")) {
+            System.out.println("Exporting binaryData...");
+            new BinaryDataExporter().exportBinaryData(handler, outDir + (multipleExportTypes ? File.separator + BinaryDataExportSettings.EXPORT_FOLDER_NAME : ""), new ReadOnlyTagList(extags), new BinaryDataExportSettings(enumFromStr(formats.get("binarydata"), BinaryDataExportMode.class)), evl);
+        }
+
+        if (exportAll || exportFormats.contains("text")) {
+            System.out.println("Exporting texts...");
+            Boolean singleTextFile = parseBooleanConfigValue(formats.get("singletext"));
+            if (singleTextFile == null) {
+                singleTextFile = Configuration.textExportSingleFile.get();
+            }
+            new TextExporter().exportTexts(handler, outDir + (multipleExportTypes ? File.separator + TextExportSettings.EXPORT_FOLDER_NAME : ""), new ReadOnlyTagList(extags), new TextExportSettings(enumFromStr(formats.get("text"), TextExportMode.class), singleTextFile, zoom), evl);
+        }
+
+        FrameExporter frameExporter = new FrameExporter();
 
-                if (exportFormats.contains("fla")) {
-                    System.out.println("Exporting FLA...");
-                    exportFla(true, outDir, inFile, swf, multipleExportTypes, formats, handler);
+        if (exportAll || exportFormats.contains("frame")) {
+            System.out.println("Exporting frames...");
+            List<Integer> frames = new ArrayList<>();
+            for (int i = 0; i < swf.frameCount; i++) {
+                if (selection.contains(i + 1)) {
+                    frames.add(i);
                 }
+            }
+            FrameExportSettings fes = new FrameExportSettings(enumFromStr(formats.get("frame"), FrameExportMode.class), zoom);
+            frameExporter.exportFrames(handler, outDir + (multipleExportTypes ? File.separator + FrameExportSettings.EXPORT_FOLDER_NAME : ""), swf, 0, frames, fes, evl);
+        }
 
-                if (exportFormats.contains("xfl")) {
-                    System.out.println("Exporting XFL...");
-                    exportFla(false, outDir, inFile, swf, multipleExportTypes, formats, handler);
+        if (exportAll || exportFormats.contains("sprite")) {
+            System.out.println("Exporting sprite...");
+            SpriteExportSettings ses = new SpriteExportSettings(enumFromStr(formats.get("sprite"), SpriteExportMode.class), zoom);
+            for (CharacterTag c : swf.getCharacters().values()) {
+                if (c instanceof DefineSpriteTag) {
+                    frameExporter.exportSpriteFrames(handler, outDir + (multipleExportTypes ? File.separator + SpriteExportSettings.EXPORT_FOLDER_NAME : ""), swf, c.getCharacterId(), null, ses, evl);
                 }
+            }
+        }
 
-                if (!singleFile) {
-                    long stopTimeSwf = System.currentTimeMillis();
-                    long time = stopTimeSwf - startTimeSwf;
-                    System.out.println("Export finished: " + inFile.getName() + " Export time: " + Helper.formatTimeSec(time));
+        if (exportAll || exportFormats.contains("button")) {
+            System.out.println("Exporting buttons...");
+            ButtonExportSettings bes = new ButtonExportSettings(enumFromStr(formats.get("button"), ButtonExportMode.class), zoom);
+            for (CharacterTag c : swf.getCharacters().values()) {
+                if (c instanceof ButtonTag) {
+                    frameExporter.exportButtonFrames(handler, outDir + (multipleExportTypes ? File.separator + ButtonExportSettings.EXPORT_FOLDER_NAME : ""), swf, c.getCharacterId(), null, bes, evl);
                 }
+            }
+        }
 
-                swf.clearAllCache();
-                CancellableWorker.cancelBackgroundThreads();
+        boolean parallel = Configuration.parallelSpeedUp.get();
+        Boolean singleScriptFile = parseBooleanConfigValue(formats.get("singlescript"));
+        if (singleScriptFile == null) {
+            singleScriptFile = Configuration.scriptExportSingleFile.get();
+        }
+
+        if (parallel && singleScriptFile) {
+            logger.log(Level.WARNING, AppStrings.translate("export.script.singleFilePallelModeWarning"));
+            singleScriptFile = false;
+        }
+
+        ScriptExportSettings scriptExportSettings = new ScriptExportSettings(enumFromStr(formats.get("script"), ScriptExportMode.class), singleScriptFile);
+        boolean exportAllScript = exportAll || exportFormats.contains("script");
+        boolean exportAs2Script = exportAllScript || exportFormats.contains("script_as2");
+        boolean exportAs3Script = exportAllScript || exportFormats.contains("script_as3");
+        if (exportAs2Script || exportAs3Script) {
+            System.out.println("Exporting scripts...");
+
+            String scriptsFolder = Path.combine(outDir, ScriptExportSettings.EXPORT_FOLDER_NAME);
+            Path.createDirectorySafe(new File(scriptsFolder));
+            String singleFileName = Path.combine(scriptsFolder, swf.getShortFileName() + scriptExportSettings.getFileExtension());
+            try (FileTextWriter writer = scriptExportSettings.singleFile ? new FileTextWriter(Configuration.getCodeFormatting(), new FileOutputStream(singleFileName)) : null) {
+                scriptExportSettings.singleFileWriter = writer;
+                List<ScriptPack> as3packs = as3classes.isEmpty() ? null : swf.getScriptPacksByClassNames(as3classes);
+                exportOK = swf.exportActionScript(handler, scriptsFolder, as3classes.isEmpty() ? null : as3packs, scriptExportSettings, parallel, evl, exportAs2Script, exportAs3Script) != null && exportOK;
+            }
+
+            if (showStat && serial) {
+                MetricsSnapshot fileMetrics = Metrics.snapshot();
+                Statistics.clear();
+                Statistics.print(fileMetrics);
+                synchronized (collectedMetrics) {
+                    collectedMetrics.add(fileMetrics);
+                }
             }
-        } catch (OutOfMemoryError | Exception ex) {
-            System.err.print("FAIL: Exporting Failed on Exception - ");
-            logger.log(Level.SEVERE, null, ex);
-            System.exit(1);
         }
 
-        if (showStat) {
-            Statistics.print(stat);
+        if (exportFormats.contains("fla")) {
+            System.out.println("Exporting FLA...");
+            exportFla(true, outDir, inFile, swf, multipleExportTypes, formats, handler);
         }
 
-        long stopTime = System.currentTimeMillis();
-        long time = stopTime - startTime;
-        System.out.println("Export finished. Total export time: " + Helper.formatTimeSec(time));
-        System.out.println(exportOK ? "OK" : "FAIL");
-        System.exit(exportOK ? 0 : 1);
+        if (exportFormats.contains("xfl")) {
+            System.out.println("Exporting XFL...");
+            exportFla(false, outDir, inFile, swf, multipleExportTypes, formats, handler);
+        }
+
+        if (!singleFile) {
+            long stopTimeSwf = System.currentTimeMillis();
+            long time = stopTimeSwf - startTimeSwf;
+            System.out.println("Export finished: " + inFile.getName() + " Export time: " + Helper.formatTimeSec(time));
+        }
+
+        if (serial) {
+            swf.clearAllCache();
+        } else {
+            // static caches are shared with the files exported at the same time
+            swf.clearSwfCache();
+        }
+
+        return exportOK;
     }
 
     private static void exportFla(boolean compressed, String outDir, File inFile, SWF swf, boolean multipleExportTypes, Map<String, String> formats, AbortRetryIgnoreHandler handler) throws IOException, InterruptedException {
@@ -18,6 +18,7 @@ package com.jpexs.decompiler.flash.console;
 
 import com.jpexs.decompiler.flash.AbortRetryIgnoreHandler;
 import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -27,7 +28,10 @@ import java.util.logging.Logger;
  */
 public class ConsoleAbortRetryIgnoreHandler implements AbortRetryIgnoreHandler {
 
-    int errorCount = 0;
+    /**
+     * Retries used, shared by the files exported in parallel
+     */
+    final AtomicInteger errorCount = new AtomicInteger();
 
     int errorMode;
 
@@ -43,9 +47,7 @@ public class ConsoleAbortRetryIgnoreHandler implements AbortRetryIgnoreHandler {
         if (errorMode != AbortRetryIgnoreHandler.UNDEFINED) {
             int result = errorMode;
 
-            if (errorMode == AbortRetryIgnoreHandler.RETRY && errorCount < retryCount) {
-                errorCount++;
-            } else {
+            if (errorMode != AbortRetryIgnoreHandler.RETRY || errorCount.getAndIncrement() >= retryCount) {
                 result = AbortRetryIgnoreHandler.IGNORE;
             }
 
@@ -0,0 +1,74 @@
+/*
+ *  Copyright (C) 2010-2018 JPEXS
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.jpexs.decompiler.flash.console;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream which writes to a different stream in each thread, used for
+ * System.out and System.err when multiple SWF files are exported in parallel.
+ *
+ * The stream is not inherited, pooled threads live longer than the file which
+ * started them. The stream is set and cleared around each file task, other
+ * threads write to the default stream.
+ *
+ * @author JPEXS
+ */
+public class PerThreadOutputStream extends OutputStream {
+
+    private final OutputStream defaultStream;
+
+    private final ThreadLocal<OutputStream> threadStream = new ThreadLocal<>();
+
+    public PerThreadOutputStream(OutputStream defaultStream) {
+        this.defaultStream = defaultStream;
+    }
+
+    /**
+     * Sets the stream of the current thread
+     *
+     * @param stream Stream or null to use the default stream again
+     */
+    public void setThreadStream(OutputStream stream) {
+        if (stream == null) {
+            threadStream.remove();
+        } else {
+            threadStream.set(stream);
+        }
+    }
+
+    private OutputStream getStream() {
+        OutputStream stream = threadStream.get();
+        return stream == null ? defaultStream : stream;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        getStream().write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        getStream().write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        getStream().flush();
+    }
+}
@@ -97,7 +97,7 @@ public class FolderPreviewPanel extends JPanel {
 
     public FolderPreviewPanel(final MainPanel mainPanel, List<TreeItem> items) {
         this.items = items;
-        cachedPreviews = Cache.getInstance(false, false, "preview");
+        cachedPreviews = Cache.getInstance(false, false, "preview", Configuration.maxCacheSizeImage, SerializableImage::getEstimatedSize);
 
         addMouseListener(new MouseAdapter() {
             @Override
@@ -121,7 +121,7 @@ public final class ImagePanel extends JPanel implements MediaDisplay {
 
     private final List<SoundTagPlayer> soundPlayers = new ArrayList<>();
 
-    private final Cache<PlaceObjectTypeTag, SerializableImage> displayObjectCache = Cache.getInstance(false, false, "displayObject");
+    private final Cache<PlaceObjectTypeTag, SerializableImage> displayObjectCache = Cache.getInstance(false, false, "displayObject", Configuration.maxCacheSizeImage, SerializableImage::getEstimatedSize);
 
     private final IconPanel iconPanel;
 
@@ -616,7 +616,7 @@ public final class ImagePanel extends JPanel implements MediaDisplay {
             @Override
             public Object callFunction(long functionAddress, long functionLength, List<Object> args, Map<Integer, String> regNames, Object thisObj) {
                 try {
-                    SWFInputStream sis = new SWFInputStream(swf, swf.uncompressedData, functionAddress, (int) (functionAddress + functionLength));
+                    SWFInputStream sis = new SWFInputStream(swf, swf.getUncompressedDataRange((int) functionAddress, (int) functionLength));
                     return execute(sis);
                 } catch (IOException ex) {
                     Logger.getLogger(ImagePanel.class.getName()).log(Level.SEVERE, null, ex);
@@ -967,11 +967,7 @@ public final class ImagePanel extends JPanel implements MediaDisplay {
         for (DoActionTag src : actions) {
             try {
                 ByteArrayRange actionBytes = src.getActionBytes();
-                int prevLength = actionBytes.getPos();
-                SWFInputStream rri = new SWFInputStream(swf, actionBytes.getArray(), 0, prevLength + actionBytes.getLength());
-                if (prevLength != 0) {
-                    rri.seek(prevLength);
-                }
+                SWFInputStream rri = new SWFInputStream(swf, actionBytes);
                 execute(rri);
             } catch (IOException ex) {
                 Logger.getLogger(ImagePanel.class.getName()).log(Level.SEVERE, null, ex);
@@ -108,6 +108,7 @@ import com.jpexs.decompiler.flash.importers.TextImporter;
 import com.jpexs.decompiler.flash.importers.svg.SvgImporter;
 import com.jpexs.decompiler.flash.search.ABCSearchResult;
 import com.jpexs.decompiler.flash.search.ActionSearchResult;
+import com.jpexs.decompiler.flash.search.ScriptSearchResultListener;
 import com.jpexs.decompiler.flash.tags.ABCContainerTag;
 import com.jpexs.decompiler.flash.tags.DefineBinaryDataTag;
 import com.jpexs.decompiler.flash.tags.DefineBitsJPEG3Tag;
@@ -1764,33 +1765,18 @@ public final class MainPanel extends JPanel implements TreeSelectionListener, Se
                     new CancellableWorker<Void>() {
                         @Override
                         protected Void doInBackground() throws Exception {
-                            List<ABCSearchResult> abcResult = null;
-                            List<ActionSearchResult> actionResult = null;
+                            boolean found;
                             if (swf.isAS3()) {
-                                abcResult = getABCPanel().search(swf, txt, ignoreCase, regexp, pCodeSearch, this);
+                                IncrementalSearchResults<ABCSearchResult> results = new IncrementalSearchResults<>(txt, getABCPanel(), getABCPanel().searchPanel);
+                                getABCPanel().search(swf, txt, ignoreCase, regexp, pCodeSearch, this, results);
+                                found = results.isFound();
                             } else {
-                                actionResult = getActionPanel().search(swf, txt, ignoreCase, regexp, pCodeSearch, this);
+                                IncrementalSearchResults<ActionSearchResult> results = new IncrementalSearchResults<>(txt, getActionPanel(), getActionPanel().searchPanel);
+                                getActionPanel().search(swf, txt, ignoreCase, regexp, pCodeSearch, this, results);
+                                found = results.isFound();
                             }
 
-                            List<ABCSearchResult> fAbcResult = abcResult;
-                            List<ActionSearchResult> fActionResult = actionResult;
                             View.execInEventDispatch(() -> {
-                                boolean found = false;
-                                if (fAbcResult != null) {
-                                    found = true;
-                                    getABCPanel().searchPanel.setSearchText(txt);
-                                    SearchResultsDialog<ABCSearchResult> sr = new SearchResultsDialog<>(getMainFrame().getWindow(), txt, getABCPanel());
-                                    sr.setResults(fAbcResult);
-                                    sr.setVisible(true);
-                                } else if (fActionResult != null) {
-                                    found = true;
-                                    getActionPanel().searchPanel.setSearchText(txt);
-
-                                    SearchResultsDialog<ActionSearchResult> sr = new SearchResultsDialog<>(getMainFrame().getWindow(), txt, getActionPanel());
-                                    sr.setResults(fActionResult);
-                                    sr.setVisible(true);
-                                }
-
                                 if (!found) {
                                     View.showMessageDialog(null, translate("message.search.notfound").replace("%searchtext%", txt), translate("message.search.notfound.title"), JOptionPane.INFORMATION_MESSAGE);
                                 }
@@ -3723,4 +3709,45 @@ public final class MainPanel extends JPanel implements TreeSelectionListener, Se
         disposeInner(this);
         Helper.emptyObject(this);
     }
+
+    /**
+     * Shows the script search results as they are found. The results dialog
+     * is opened with the first result.
+     */
+    private class IncrementalSearchResults<E> implements ScriptSearchResultListener<E> {
+
+        private final String text;
+
+        private final SearchListener<E> searchListener;
+
+        private final SearchPanel<E> searchPanel;
+
+        private volatile boolean found;
+
+        private SearchResultsDialog<E> dialog;
+
+        public IncrementalSearchResults(String text, SearchListener<E> searchListener, SearchPanel<E> searchPanel) {
+            this.text = text;
+            this.searchListener = searchListener;
+            this.searchPanel = searchPanel;
+        }
+
+        @Override
+        public void onResult(E result) {
+            found = true;
+            View.execInEventDispatchLater(() -> {
+                if (dialog == null) {
+                    searchPanel.setSearchText(text);
+                    dialog = new SearchResultsDialog<>(getMainFrame().getWindow(), text, searchListener);
+                    dialog.setVisible(true);
+                }
+
+                dialog.addResult(result);
+            });
+        }
+
+        public boolean isFound() {
+            return found;
+        }
+    }
 }
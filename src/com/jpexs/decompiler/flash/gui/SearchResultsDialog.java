@@ -100,6 +100,10 @@ public class SearchResultsDialog<E> extends AppDialog {
         }
     }
 
+    public void addResult(E result) {
+        model.addElement(result);
+    }
+
     private void gotoButtonActionPerformed(ActionEvent evt) {
         gotoElement();
         setVisible(false);
@@ -20,6 +20,7 @@ import com.jpexs.decompiler.flash.configuration.Configuration;
 import com.jpexs.decompiler.flash.tags.base.CharacterTag;
 import com.jpexs.decompiler.flash.tags.base.MorphShapeTag;
 import com.jpexs.decompiler.flash.timeline.DepthState;
+import com.jpexs.decompiler.flash.timeline.Frame;
 import com.jpexs.decompiler.flash.timeline.Timeline;
 import java.awt.Color;
 import java.awt.Dimension;
@@ -241,8 +242,9 @@ public class TimelineBodyPanel extends JPanel implements MouseListener, KeyListe
                     blockType = BlockType.EMPTY;
                 } else {
                     for (; f + 1 < timeline.getFrameCount(); f++) {
-                        fl = timeline.getFrame(f + 1).layers.get(d);
-                        if (fl == null || fl.key) {
+                        Frame nextFrame = timeline.getFrame(f + 1);
+                        fl = nextFrame.layers.get(d);
+                        if (fl == null || fl.isKey(nextFrame)) {
                             break;
                         }
 
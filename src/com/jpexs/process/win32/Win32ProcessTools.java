@@ -16,6 +16,8 @@
  */
 package com.jpexs.process.win32;
 
+import com.jpexs.helpers.MultiPatternScanner;
+import com.jpexs.helpers.MultiPatternScanner.Match;
 import com.jpexs.helpers.ProgressListener;
 import com.jpexs.process.ProcessTools;
 import com.sun.jna.Memory;
@@ -44,7 +46,6 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -136,14 +137,6 @@ public class Win32ProcessTools extends ProcessTools {
         System.out.println("========================");
     }
 
-    private static byte[] mergeArrays(byte[] one, byte[] two) {
-        byte[] combined = new byte[one.length + two.length];
-
-        System.arraycopy(one, 0, combined, 0, one.length);
-        System.arraycopy(two, 0, combined, one.length, two.length);
-        return combined;
-    }
-
     public static Map<String, Character> getDriveMappings() {
         Map<String, Character> ret = new HashMap<>();
         for (char d = 'A'; d <= 'Z'; d++) {
@@ -371,12 +364,8 @@ public class Win32ProcessTools extends ProcessTools {
     }
 
     public static Map<Long, InputStream> findBytesInProcessMemory(ProgressListener progListener, WinDef.DWORD dwProcessID, byte[][] findBytesAll) {
-        int maxFindLen = 0;
-        for (int i = 0; i < findBytesAll.length; i++) {
-            if (findBytesAll[i].length > maxFindLen) {
-                maxFindLen = findBytesAll[i].length;
-            }
-        }
+        MultiPatternScanner scanner = new MultiPatternScanner(findBytesAll);
+        List<Match> matches = new ArrayList<>();
         Map<Long, InputStream> ret = new HashMap<>();
         WinNT.HANDLE hOtherProcess = Kernel32.INSTANCE.OpenProcess(Kernel32.PROCESS_VM_READ | Kernel32.PROCESS_VM_WRITE | Kernel32.PROCESS_QUERY_INFORMATION | Kernel32.PROCESS_VM_OPERATION /*for VirtualProtectEx*/, false, dwProcessID);
         List<MEMORY_BASIC_INFORMATION> pages = getPageRanges(hOtherProcess);
@@ -395,6 +384,7 @@ public class Win32ProcessTools extends ProcessTools {
                 int maxsize = mbi.regionSize.intValue();
                 long pos = 0;
                 long bufSize = 1024 * 512;
+                int state = 0;
                 do {
                     NativeLongByReference bytesReadRef = new NativeLongByReference();
                     Memory buf = new Memory(bufSize);
@@ -406,26 +396,15 @@ public class Win32ProcessTools extends ProcessTools {
                         break;
                     }
 
-                    byte[] data = buf.getByteArray(0, bytesReadRef.getValue().intValue());
-
-                    byte[] prevBytes = Arrays.copyOfRange(data, data.length - maxFindLen, data.length);
-                    byte[] dataPlusPrev = mergeArrays(prevBytes, data);
-                    loopi:
-                    for (int i = 0; i < dataPlusPrev.length - maxFindLen; i++) {
-                        loopk:
-                        for (int k = 0; k < findBytesAll.length; k++) {
-                            if (dataPlusPrev[i] == findBytesAll[k][0]) {
-                                for (int p = 1; p < findBytesAll[k].length; p++) {
-                                    if (dataPlusPrev[i + p] != findBytesAll[k][p]) {
-                                        continue loopk;
-                                    }
-                                }
-                                long dataAddr = (long) (addr + pos - prevBytes.length + i);
-                                ret.put(dataAddr, new ProcessMemoryInputStream(pages, hOtherProcess, pg, pos - prevBytes.length + i));
-                            }
-                        }
+                    int dataLength = bytesReadRef.getValue().intValue();
 
+                    // scanner state continues from the previous block, so matches across blocks are found
+                    state = scanner.scan(buf.getByteBuffer(0, dataLength), 0, dataLength, pos, state, matches);
+                    for (Match m : matches) {
+                        ret.put(addr + m.getOffset(), new ProcessMemoryInputStream(pages, hOtherProcess, pg, m.getOffset()));
                     }
+
+                    matches.clear();
                     pos += bytesReadRef.getValue().longValue();
                     if (progListener != null) {
                         int newprogress = Math.round((actualPos + pos) * 100 / totalMemLen);